@@ -1,6 +1,7 @@
 package com.ponggame.mobile.game
 
-import androidx.lifecycle.ViewModel
+import android.app.Application
+import androidx.lifecycle.AndroidViewModel
 import androidx.lifecycle.viewModelScope
 import com.ponggame.mobile.model.GameState
 import com.ponggame.mobile.network.SocketManager
@@ -10,20 +11,38 @@ import kotlinx.coroutines.flow.combine
 import kotlinx.coroutines.flow.stateIn
 import kotlinx.coroutines.launch
 
-class GameViewModel : ViewModel() {
+class GameViewModel(application: Application) : AndroidViewModel(application) {
 
     private val socketManager = SocketManager
+    private val localGame = LocalGame(viewModelScope)
+    private val qualityController = QualityController(application, viewModelScope)
+
+    // Steps rendering and network rates down when the phone runs hot or low on battery
+    val quality: StateFlow<QualityTier> = qualityController.tier
 
     val connectionState = socketManager.connectionState
-    val gameState: StateFlow<GameState> = socketManager.gameState
     val currentRoom = socketManager.currentRoom
-    
+
+    // An offline match, while one exists, takes over from the server's state
+    val gameState: StateFlow<GameState> = combine(socketManager.gameState, localGame.state) { online, local ->
+        local ?: online
+    }.stateIn(viewModelScope, SharingStarted.Eagerly, GameState())
+
     // Helper to know which paddle is ours
-    val myPosition: StateFlow<String?> = socketManager.playerPosition
+    val myPosition: StateFlow<String?> = combine(
+        socketManager.playerPosition, localGame.position, localGame.state
+    ) { online, local, match ->
+        if (match != null) local else online
+    }.stateIn(viewModelScope, SharingStarted.Eagerly, null)
 
     init {
         // Auto-connect on init (or you can do this in MainActivity)
         socketManager.connect()
+
+        qualityController.start()
+        viewModelScope.launch {
+            quality.collect { socketManager.setQuality(it) }
+        }
     }
 
     fun quickPlay() {
@@ -34,17 +53,33 @@ class GameViewModel : ViewModel() {
         socketManager.joinRoom(roomId)
     }
 
+    // Runs on the device with the shared engine; no server needed
+    fun playOffline() {
+        localGame.start(humanPosition = "left")
+    }
+
+    fun watchAiMatch() {
+        localGame.start(humanPosition = null)
+    }
+
     fun onInput(direction: String) {
         // Direction: "up", "down", "left", "right", "stop"
-        socketManager.sendInput(direction)
+        if (localGame.isRunning) localGame.setInput(direction)
+        else socketManager.setInput(direction)
     }
     
     fun toggleReady() {
         socketManager.toggleReady()
     }
 
+    fun startGame() {
+        socketManager.startGame()
+    }
+
     override fun onCleared() {
         super.onCleared()
+        localGame.stop()
+        qualityController.stop()
         socketManager.disconnect()
     }
 }
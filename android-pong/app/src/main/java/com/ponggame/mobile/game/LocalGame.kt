@@ -0,0 +1,104 @@
+package com.ponggame.mobile.game
+
+import com.ponggame.mobile.model.Ball
+import com.ponggame.mobile.model.GameState
+import com.ponggame.mobile.model.Paddle
+import com.ponggame.mobile.network.InputChannel
+import com.ponggame.net.Protocol
+import com.ponggame.sim.FixedMath
+import com.ponggame.sim.LocalMatch
+import com.ponggame.sim.SimState
+import com.ponggame.sim.Simulation
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.asStateFlow
+import kotlinx.coroutines.isActive
+import kotlinx.coroutines.launch
+
+/**
+ * Offline match on the device using the shared pong-core engine (the same rules
+ * and AI as the desktop game). Ticks at 60 Hz on a background coroutine and
+ * publishes each frame as a [GameState], so the existing screens draw it exactly
+ * like a server snapshot.
+ */
+class LocalGame(private val scope: CoroutineScope) {
+
+    private val _state = MutableStateFlow<GameState?>(null)
+    val state = _state.asStateFlow()
+
+    private val _position = MutableStateFlow<String?>(null)
+    val position = _position.asStateFlow()
+
+    private var match: LocalMatch? = null
+    private var job: Job? = null
+
+    val isRunning: Boolean
+        get() = job?.isActive == true
+
+    /** humanPosition "left".."bottom", or null to watch AI against AI. */
+    fun start(humanPosition: String?, playerCount: Int = 2) {
+        stop()
+        val code = if (humanPosition != null) Protocol.positionCode(humanPosition) else LocalMatch.NO_HUMAN
+        val localMatch = LocalMatch(playerCount, System.nanoTime(), code)
+        match = localMatch
+        _position.value = humanPosition
+
+        job = scope.launch(Dispatchers.Default) {
+            var next = System.nanoTime()
+            while (isActive) {
+                localMatch.step()
+                val over = localMatch.isOver
+                _state.value = toGameState(localMatch.state, if (over) "finished" else "playing")
+                if (over) break
+
+                next += TICK_NANOS
+                val sleep = next - System.nanoTime()
+                if (sleep > 0) delay(sleep / 1_000_000) else next = System.nanoTime()
+            }
+        }
+    }
+
+    fun setInput(direction: String) {
+        match?.setHumanInput(InputChannel.bitsFor(direction))
+    }
+
+    fun stop() {
+        job?.cancel()
+        job = null
+        match = null
+        _state.value = null
+        _position.value = null
+    }
+
+    private fun toGameState(s: SimState, phase: String): GameState {
+        val paddles = HashMap<String, Paddle>()
+        val scores = HashMap<String, Int>()
+        for (pos in 0 until 4) {
+            if (!s.isActive(pos)) continue
+            val name = Protocol.positionName(pos)
+            paddles[name] = Paddle(
+                x = toFloat(s.paddleX[pos]),
+                y = toFloat(s.paddleY[pos]),
+                width = toFloat(Simulation.PADDLE_W[pos]),
+                height = toFloat(Simulation.PADDLE_H[pos])
+            )
+            scores[name] = s.scores[pos]
+        }
+        return GameState(
+            ball = Ball(toFloat(s.ballX), toFloat(s.ballY), toFloat(s.ballVX), toFloat(s.ballVY)),
+            paddles = paddles,
+            scores = scores,
+            gameState = phase,
+            timestamp = s.tick.toLong()
+        )
+    }
+
+    private fun toFloat(v: Int): Float = FixedMath.toDouble(v).toFloat()
+
+    companion object {
+        private const val TICK_NANOS = 1_000_000_000L / LocalMatch.TICK_RATE
+    }
+}
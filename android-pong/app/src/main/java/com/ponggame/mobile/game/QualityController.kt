@@ -0,0 +1,117 @@
+package com.ponggame.mobile.game
+
+import android.content.Context
+import android.content.Intent
+import android.content.IntentFilter
+import android.os.BatteryManager
+import android.os.Build
+import android.os.PowerManager
+import android.os.SystemClock
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.asStateFlow
+import kotlinx.coroutines.isActive
+import kotlinx.coroutines.launch
+
+/**
+ * How much work a session may spend on looks and traffic. Rates of 0 mean "no
+ * limit" (draw every vsync, let the server pick the snapshot rate).
+ *
+ * Even the lowest tier keeps input at 30 Hz and snapshots at 20 Hz. That adds
+ * at most ~33 ms before an input leaves the phone and ~50 ms of interpolation
+ * delay, which is the latency budget we accept for saving power.
+ */
+enum class QualityTier(
+    val maxFrameRate: Int,
+    val glow: Boolean,
+    val grid: Boolean,
+    val inputRateHz: Int,
+    val snapshotRateHz: Int
+) {
+    FULL(0, glow = true, grid = true, inputRateHz = 60, snapshotRateHz = 0),
+    REDUCED(60, glow = true, grid = false, inputRateHz = 60, snapshotRateHz = 30),
+    LOW(30, glow = false, grid = false, inputRateHz = 30, snapshotRateHz = 20)
+}
+
+/**
+ * Picks a [QualityTier] from the device's thermal status and battery. It checks
+ * every few seconds, drops straight to the tier conditions call for, and climbs
+ * back one tier at a time only after conditions have stayed better for
+ * [RECOVERY_MS], so it doesn't flap around a threshold.
+ */
+class QualityController(context: Context, private val scope: CoroutineScope) {
+
+    private val appContext = context.applicationContext
+    private val powerManager = appContext.getSystemService(Context.POWER_SERVICE) as PowerManager
+
+    private val _tier = MutableStateFlow(QualityTier.FULL)
+    val tier = _tier.asStateFlow()
+
+    private var job: Job? = null
+    private var betterSince = 0L
+
+    fun start() {
+        if (job?.isActive == true) return
+        job = scope.launch {
+            while (isActive) {
+                update(wantedTier(), SystemClock.elapsedRealtime())
+                delay(POLL_INTERVAL_MS)
+            }
+        }
+    }
+
+    fun stop() {
+        job?.cancel()
+        job = null
+    }
+
+    private fun update(wanted: QualityTier, now: Long) {
+        val current = _tier.value
+        when {
+            wanted.ordinal > current.ordinal -> {
+                _tier.value = wanted
+                betterSince = 0L
+            }
+            wanted.ordinal < current.ordinal -> {
+                if (betterSince == 0L) {
+                    betterSince = now
+                } else if (now - betterSince >= RECOVERY_MS) {
+                    _tier.value = QualityTier.values()[current.ordinal - 1]
+                    betterSince = now
+                }
+            }
+            else -> betterSince = 0L
+        }
+    }
+
+    private fun wantedTier(): QualityTier {
+        val thermal = thermalStatus()
+        val battery = appContext.registerReceiver(null, IntentFilter(Intent.ACTION_BATTERY_CHANGED))
+        val level = battery?.getIntExtra(BatteryManager.EXTRA_LEVEL, -1) ?: -1
+        val scale = battery?.getIntExtra(BatteryManager.EXTRA_SCALE, 100) ?: 100
+        val plugged = (battery?.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) ?: 0) != 0
+        val percent = if (level >= 0 && scale > 0) level * 100 / scale else 100
+        // Charging doesn't help with heat, so only the battery checks look at it
+        val lowBattery = !plugged && percent <= LOW_BATTERY_PERCENT
+        val saving = powerManager.isPowerSaveMode || (!plugged && percent <= SAVE_BATTERY_PERCENT)
+
+        return when {
+            thermal >= PowerManager.THERMAL_STATUS_SEVERE || lowBattery -> QualityTier.LOW
+            thermal >= PowerManager.THERMAL_STATUS_MODERATE || saving -> QualityTier.REDUCED
+            else -> QualityTier.FULL
+        }
+    }
+
+    private fun thermalStatus(): Int =
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) powerManager.currentThermalStatus
+        else PowerManager.THERMAL_STATUS_NONE
+
+    companion object {
+        private const val POLL_INTERVAL_MS = 5_000L
+        private const val RECOVERY_MS = 30_000L
+        private const val LOW_BATTERY_PERCENT = 15
+        private const val SAVE_BATTERY_PERCENT = 30
+    }
+}
@@ -0,0 +1,128 @@
+package com.ponggame.mobile.network
+
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.isActive
+import kotlinx.coroutines.launch
+
+/**
+ * Fixed-rate input channel.
+ *
+ * Touch handlers only update [controlBits]; the channel samples that state once per
+ * server tick (or every [sampleRateHz]) and packs it into a small binary packet:
+ *
+ *   [0..1] sequence number of the newest sample (u16, big endian)
+ *   [2]    sample count n
+ *   [3..]  n control bitmasks, newest first
+ *
+ * Every packet repeats the last few samples, so a single lost packet is covered by
+ * the next one. Packets are only sent when the control state changes, while that
+ * change is still being repeated, or as a slow keepalive.
+ */
+class InputChannel(private val send: (ByteArray) -> Unit) {
+
+    companion object {
+        // Must match tickRate in server/game/GameLoop.js
+        const val TICK_RATE_HZ = 60
+        const val REDUNDANCY = 4 // samples per packet
+        const val REPEAT_INTERVAL_TICKS = 3 // resend spacing after a change
+        const val KEEPALIVE_TICKS = 30
+
+        const val BIT_UP = 1
+        const val BIT_DOWN = 2
+        const val BIT_LEFT = 4
+        const val BIT_RIGHT = 8
+
+        fun bitsFor(direction: String): Int = when (direction) {
+            "up" -> BIT_UP
+            "down" -> BIT_DOWN
+            "left" -> BIT_LEFT
+            "right" -> BIT_RIGHT
+            else -> 0
+        }
+    }
+
+    @Volatile
+    var controlBits = 0
+
+    // Lowered by the quality controller to save power; the server always applies
+    // the newest sample, so a slower channel only adds delay
+    @Volatile
+    var sampleRateHz = TICK_RATE_HZ
+
+    private val history = IntArray(REDUNDANCY)
+    private val packet = ByteArray(3 + REDUNDANCY)
+    private var sequence = 0
+    private var lastSampled = 0
+    private var repeatsLeft = 0
+    private var ticksSinceSend = 0
+    private var job: Job? = null
+
+    fun start(scope: CoroutineScope) {
+        if (job?.isActive == true) return
+        reset()
+        job = scope.launch {
+            var next = System.nanoTime()
+            while (isActive) {
+                sample()
+                next += 1_000_000_000L / sampleRateHz.coerceIn(1, TICK_RATE_HZ)
+                val sleepMs = (next - System.nanoTime()) / 1_000_000
+                if (sleepMs > 0) delay(sleepMs) else next = System.nanoTime()
+            }
+        }
+    }
+
+    fun stop() {
+        job?.cancel()
+        job = null
+    }
+
+    private fun reset() {
+        history.fill(0)
+        sequence = 0
+        lastSampled = 0
+        repeatsLeft = 0
+        ticksSinceSend = 0
+        controlBits = 0
+    }
+
+    private fun sample() {
+        val bits = controlBits
+        sequence = (sequence + 1) and 0xFFFF
+        System.arraycopy(history, 0, history, 1, REDUNDANCY - 1)
+        history[0] = bits
+        ticksSinceSend++
+
+        val changed = bits != lastSampled
+        lastSampled = bits
+
+        val shouldSend = when {
+            changed -> {
+                repeatsLeft = REDUNDANCY - 1
+                true
+            }
+            repeatsLeft > 0 && ticksSinceSend >= REPEAT_INTERVAL_TICKS -> {
+                repeatsLeft--
+                true
+            }
+            else -> ticksSinceSend >= KEEPALIVE_TICKS
+        }
+
+        if (shouldSend) {
+            ticksSinceSend = 0
+            send(encode())
+        }
+    }
+
+    private fun encode(): ByteArray {
+        packet[0] = (sequence shr 8).toByte()
+        packet[1] = sequence.toByte()
+        packet[2] = REDUNDANCY.toByte()
+        for (i in 0 until REDUNDANCY) {
+            packet[3 + i] = history[i].toByte()
+        }
+        // Socket.IO keeps a reference to the payload, so hand it a copy
+        return packet.copyOf()
+    }
+}
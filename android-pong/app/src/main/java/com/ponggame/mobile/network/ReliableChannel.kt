@@ -0,0 +1,152 @@
+package com.ponggame.mobile.network
+
+import java.nio.ByteBuffer
+
+/**
+ * Ack/resend channel for lobby and room events over UDP. Mirrors
+ * com.ponggame.net.ReliableChannel on the Java server; see UdpProtocol for the
+ * wire format.
+ */
+class ReliableChannel {
+
+    private class Message(val seq: Int, val event: Int, val payload: ByteArray) {
+        var lastSentNanos = 0L
+        var sendCount = 0
+    }
+
+    companion object {
+        private const val WINDOW = 32
+        private const val MIN_RTO_NANOS = 50_000_000L
+        private const val MAX_RTO_NANOS = 1_000_000_000L
+    }
+
+    private val outgoing = arrayOfNulls<Message>(WINDOW)
+    private var nextSendSeq = 0
+    private var oldestUnacked = 0
+
+    private val incoming = arrayOfNulls<Message>(WINDOW)
+    private var nextDeliverSeq = 0
+    private var anyReceived = false
+
+    var ack = 0xFFFF
+        private set
+    var ackBits = 0
+        private set
+    var ackPending = false
+
+    private var srttNanos = 200_000_000.0
+    private var rttVarNanos = 50_000_000.0
+
+    fun send(event: Int, payload: ByteArray): Boolean {
+        if (((nextSendSeq - oldestUnacked) and 0xFFFF) >= WINDOW) return false
+        outgoing[nextSendSeq % WINDOW] = Message(nextSendSeq, event, payload)
+        nextSendSeq = (nextSendSeq + 1) and 0xFFFF
+        return true
+    }
+
+    fun hasDue(now: Long): Boolean {
+        var seq = oldestUnacked
+        while (seq != nextSendSeq) {
+            val m = outgoing[seq % WINDOW]
+            if (m != null && isDue(m, now)) return true
+            seq = (seq + 1) and 0xFFFF
+        }
+        return false
+    }
+
+    private fun isDue(m: Message, now: Long): Boolean =
+        m.sendCount == 0 || now - m.lastSentNanos >= rtoNanos(m.sendCount)
+
+    private fun rtoNanos(sendCount: Int): Long {
+        val rto = (srttNanos + 4 * rttVarNanos).toLong().coerceIn(MIN_RTO_NANOS, MAX_RTO_NANOS)
+        return minOf(MAX_RTO_NANOS, rto shl minOf(sendCount - 1, 4))
+    }
+
+    fun writeDue(buf: ByteBuffer, now: Long): Int {
+        if (buf.remaining() < 1) return 0
+        val countPos = buf.position()
+        buf.put(0)
+        var count = 0
+        var seq = oldestUnacked
+        while (seq != nextSendSeq && count < 255) {
+            val m = outgoing[seq % WINDOW]
+            seq = (seq + 1) and 0xFFFF
+            if (m == null || !isDue(m, now)) continue
+            if (buf.remaining() < 5 + m.payload.size) break
+            buf.putShort(m.seq.toShort())
+            buf.put(m.event.toByte())
+            buf.putShort(m.payload.size.toShort())
+            buf.put(m.payload)
+            m.lastSentNanos = now
+            m.sendCount++
+            count++
+        }
+        if (count == 0) buf.position(countPos) else buf.put(countPos, count.toByte())
+        return count
+    }
+
+    fun onAck(ack: Int, ackBits: Int, now: Long) {
+        var seq = oldestUnacked
+        while (seq != nextSendSeq) {
+            val m = outgoing[seq % WINDOW]
+            if (m != null && isAcked(seq, ack, ackBits)) {
+                if (m.sendCount == 1) sampleRtt(now - m.lastSentNanos)
+                outgoing[seq % WINDOW] = null
+            }
+            seq = (seq + 1) and 0xFFFF
+        }
+        while (oldestUnacked != nextSendSeq && outgoing[oldestUnacked % WINDOW] == null) {
+            oldestUnacked = (oldestUnacked + 1) and 0xFFFF
+        }
+    }
+
+    private fun isAcked(seq: Int, ack: Int, ackBits: Int): Boolean {
+        if (seq == ack) return true
+        val behind = (ack - seq) and 0xFFFF
+        return behind in 1..32 && (ackBits and (1 shl (behind - 1))) != 0
+    }
+
+    private fun sampleRtt(rtt: Long) {
+        rttVarNanos = 0.75 * rttVarNanos + 0.25 * Math.abs(srttNanos - rtt)
+        srttNanos = 0.875 * srttNanos + 0.125 * rtt
+    }
+
+    fun readMessages(buf: ByteBuffer, receiver: (Int, ByteBuffer) -> Unit) {
+        val count = buf.get().toInt() and 0xFF
+        repeat(count) {
+            val seq = buf.getShort().toInt() and 0xFFFF
+            val event = buf.get().toInt() and 0xFF
+            val len = buf.getShort().toInt() and 0xFFFF
+            val payload = ByteArray(len)
+            buf.get(payload)
+            ackPending = true
+            recordAck(seq)
+            val ahead = (seq - nextDeliverSeq) and 0xFFFF
+            if (ahead < WINDOW) incoming[seq % WINDOW] = Message(seq, event, payload)
+        }
+        while (true) {
+            val next = incoming[nextDeliverSeq % WINDOW] ?: break
+            if (next.seq != nextDeliverSeq) break
+            incoming[nextDeliverSeq % WINDOW] = null
+            nextDeliverSeq = (nextDeliverSeq + 1) and 0xFFFF
+            receiver(next.event, ByteBuffer.wrap(next.payload))
+        }
+    }
+
+    private fun recordAck(seq: Int) {
+        if (!anyReceived) {
+            anyReceived = true
+            ack = seq
+            return
+        }
+        val shift = (seq - ack) and 0xFFFF
+        if (shift != 0 && shift < 0x8000) {
+            ackBits = if (shift >= 32) 0 else ackBits shl shift
+            if (shift <= 32) ackBits = ackBits or (1 shl (shift - 1))
+            ack = seq
+        } else {
+            val behind = (ack - seq) and 0xFFFF
+            if (behind in 1..32) ackBits = ackBits or (1 shl (behind - 1))
+        }
+    }
+}
@@ -2,24 +2,48 @@ package com.ponggame.mobile.network
 
 import android.util.Log
 import com.google.gson.Gson
+import com.ponggame.mobile.game.QualityTier
 import com.ponggame.mobile.model.GameState
+import com.ponggame.mobile.model.Player
 import com.ponggame.mobile.model.RoomInfo
 import io.socket.client.IO
 import io.socket.client.Socket
 import org.json.JSONObject
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.launch
 import kotlinx.coroutines.flow.MutableStateFlow
 import kotlinx.coroutines.flow.StateFlow
 import kotlinx.coroutines.flow.asStateFlow
 import java.net.URISyntaxException
+import java.nio.ByteBuffer
 
 object SocketManager {
     // 10.0.2.2 is localhost for Android Emulator
     // For real device, use your PC's LAN IP (e.g., http://192.168.1.5:3000)
     private const val BASE_URL = "http://10.0.2.2:3000"
-    
+
+    // Java server (com.ponggame.server.PongServer). When enabled, UDP is tried first
+    // and the WebSocket above is only used if the handshake fails.
+    private const val UDP_HOST = "10.0.2.2"
+    var udpEnabled = false
+    // Identifies this install on the Java server's leaderboard; 0 = a new player each session
+    var playerKey = 0L
+
     private var socket: Socket? = null
+    private var udp: UdpTransport? = null
     private val gson = Gson()
 
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.Default)
+    private val inputChannel = InputChannel { packet ->
+        val transport = udp
+        if (transport != null) transport.sendInput(packet) else socket?.emit("inputBatch", packet)
+    }
+
+    // Snapshot rate cap requested from the Java server, 0 = no cap
+    private var snapshotRateHz = 0
+
     private val _connectionState = MutableStateFlow(false)
     val connectionState = _connectionState.asStateFlow()
 
@@ -36,8 +60,60 @@ object SocketManager {
     val playerPosition = _playerPosition.asStateFlow()
 
     fun connect(url: String = BASE_URL) {
+        if (udp?.connected == true || socket?.connected() == true) return
+        if (!udpEnabled) {
+            connectWebSocket(url)
+            return
+        }
+        scope.launch {
+            val transport = UdpTransport(UDP_HOST, UdpProtocol.DEFAULT_PORT, udpListener, playerKey)
+            if (transport.connect(scope)) {
+                Log.d("SocketManager", "Connected over UDP")
+                udp = transport
+                _connectionState.value = true
+                inputChannel.start(scope)
+                sendSnapshotRate()
+            } else {
+                Log.d("SocketManager", "UDP unavailable, falling back to WebSocket")
+                connectWebSocket(url)
+            }
+        }
+    }
+
+    private val udpListener = object : UdpTransport.Listener {
+        override fun onRoomJoined(room: RoomInfo, playerId: String, position: String?) {
+            _currentRoom.value = room
+            _playerId.value = playerId
+            _playerPosition.value = position
+        }
+
+        override fun onRoomUpdate(players: List<Player>) {
+            _currentRoom.value = _currentRoom.value?.copy(players = players, playerCount = players.size)
+        }
+
+        override fun onGameState(state: GameState) {
+            _gameState.value = state
+        }
+
+        override fun onGameEnded(winner: String?) {
+            // Handle game over
+        }
+
+        override fun onError(message: String) {
+            Log.w("SocketManager", "Server error: $message")
+        }
+
+        override fun onDisconnected() {
+            Log.d("SocketManager", "UDP connection lost")
+            inputChannel.stop()
+            udp = null
+            _connectionState.value = false
+            _currentRoom.value = null
+        }
+    }
+
+    private fun connectWebSocket(url: String) {
         try {
-            if (socket?.connected() == true) return
 
             val options = IO.Options().apply {
                 transports = arrayOf("websocket")
@@ -47,10 +123,12 @@ object SocketManager {
             socket?.on(Socket.EVENT_CONNECT) {
                 Log.d("SocketManager", "Connected")
                 _connectionState.value = true
+                inputChannel.start(scope)
             }
 
             socket?.on(Socket.EVENT_DISCONNECT) {
                 Log.d("SocketManager", "Disconnected")
+                inputChannel.stop()
                 _connectionState.value = false
                 _currentRoom.value = null
             }
@@ -138,6 +216,10 @@ object SocketManager {
     }
 
     fun quickPlay() {
+        udp?.let {
+            it.sendEvent(UdpProtocol.EV_QUICK_PLAY, byteArrayOf(UdpProtocol.modeCode("human_vs_ai").toByte(), 2))
+            return
+        }
         val config = JSONObject()
         config.put("mode", "human_vs_ai")
         config.put("playerCount", 2)
@@ -145,20 +227,58 @@ object SocketManager {
     }
     
     fun joinRoom(roomId: String) {
+        udp?.let {
+            val payload = ByteBuffer.allocate(256)
+            UdpProtocol.putString(payload, roomId)
+            it.sendEvent(UdpProtocol.EV_JOIN_ROOM, payload.array().copyOf(payload.position()))
+            return
+        }
         socket?.emit("joinRoom", roomId)
     }
 
-    fun sendInput(direction: String) {
-        val data = JSONObject()
-        data.put("direction", direction)
-        socket?.emit("input", data)
+    /**
+     * Records the current control direction. Nothing is sent here; the input
+     * channel samples it at the server tick rate.
+     */
+    fun setInput(direction: String) {
+        inputChannel.controlBits = InputChannel.bitsFor(direction)
     }
     
+    /**
+     * Applies a quality tier's network side: how often input is sampled and, over
+     * UDP, the snapshot rate the server may send us. The Node server broadcasts
+     * one stream per room, so over WebSocket only the input rate changes.
+     */
+    fun setQuality(tier: QualityTier) {
+        inputChannel.sampleRateHz = tier.inputRateHz
+        snapshotRateHz = tier.snapshotRateHz
+        sendSnapshotRate()
+    }
+
+    private fun sendSnapshotRate() {
+        udp?.sendEvent(UdpProtocol.EV_SET_RATE, byteArrayOf(snapshotRateHz.toByte()))
+    }
+
     fun toggleReady() {
+        udp?.let {
+            it.sendEvent(UdpProtocol.EV_TOGGLE_READY)
+            return
+        }
         socket?.emit("toggleReady")
     }
+
+    fun startGame() {
+        udp?.let {
+            it.sendEvent(UdpProtocol.EV_START_GAME)
+            return
+        }
+        socket?.emit("startGame")
+    }
     
     fun disconnect() {
+        inputChannel.stop()
+        udp?.close()
+        udp = null
         socket?.disconnect()
     }
 }
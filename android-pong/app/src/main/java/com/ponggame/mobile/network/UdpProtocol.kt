@@ -0,0 +1,76 @@
+package com.ponggame.mobile.network
+
+import java.nio.ByteBuffer
+
+/**
+ * Constants for the Java server's UDP protocol. The authoritative description of
+ * the wire format is com.ponggame.net.Protocol in the desktop/server project.
+ */
+object UdpProtocol {
+    const val MAGIC = 0x5047
+    const val VERSION = 2
+    const val DEFAULT_PORT = 3001
+    const val MTU = 1200
+    const val HEADER_SIZE = 8
+
+    const val HELLO = 1
+    const val WELCOME = 2
+    const val DATA = 3
+    const val DISCONNECT = 4
+
+    const val FLAG_RELIABLE = 1
+    const val FLAG_SNAPSHOT = 2
+    const val FLAG_INPUT = 4
+
+    const val SNAPSHOT_KEYFRAME = 0
+    const val SNAPSHOT_DELTA = 1
+
+    const val EV_CREATE_ROOM = 1
+    const val EV_JOIN_ROOM = 2
+    const val EV_QUICK_PLAY = 3
+    const val EV_TOGGLE_READY = 4
+    const val EV_START_GAME = 5
+    const val EV_SET_RATE = 6
+
+    const val EV_ROOM_JOINED = 20
+    const val EV_ROOM_UPDATE = 21
+    const val EV_GAME_STARTED = 22
+    const val EV_GAME_ENDED = 23
+    const val EV_ERROR = 24
+
+    val POSITIONS = arrayOf("left", "right", "top", "bottom")
+    val MODES = arrayOf("human_vs_human", "human_vs_ai", "ai_vs_ai")
+    val GAME_STATES = arrayOf("waiting", "playing", "paused", "ended")
+
+    fun writeHeader(buf: ByteBuffer, type: Int, token: Int) {
+        buf.putShort(MAGIC.toShort())
+        buf.put(VERSION.toByte())
+        buf.put(type.toByte())
+        buf.putInt(token)
+    }
+
+    /** Returns the packet type, or -1 if the datagram is not ours. */
+    fun readHeader(buf: ByteBuffer): Int {
+        if (buf.remaining() < HEADER_SIZE) return -1
+        if ((buf.getShort().toInt() and 0xFFFF) != MAGIC) return -1
+        if ((buf.get().toInt() and 0xFF) != VERSION) return -1
+        return buf.get().toInt() and 0xFF
+    }
+
+    fun putString(buf: ByteBuffer, s: String) {
+        val bytes = s.toByteArray(Charsets.UTF_8)
+        val len = minOf(bytes.size, 255)
+        buf.put(len.toByte())
+        buf.put(bytes, 0, len)
+    }
+
+    fun getString(buf: ByteBuffer): String {
+        val bytes = ByteArray(buf.get().toInt() and 0xFF)
+        buf.get(bytes)
+        return String(bytes, Charsets.UTF_8)
+    }
+
+    fun positionName(code: Int): String? = POSITIONS.getOrNull(code)
+
+    fun modeCode(mode: String): Int = MODES.indexOf(mode).let { if (it < 0) 1 else it }
+}
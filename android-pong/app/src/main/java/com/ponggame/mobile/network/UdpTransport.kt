@@ -0,0 +1,391 @@
+package com.ponggame.mobile.network
+
+import android.util.Log
+import com.ponggame.mobile.model.Ball
+import com.ponggame.mobile.model.GameState
+import com.ponggame.mobile.model.Paddle
+import com.ponggame.mobile.model.Player
+import com.ponggame.mobile.model.RoomInfo
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.isActive
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
+import java.net.DatagramPacket
+import java.net.DatagramSocket
+import java.net.InetSocketAddress
+import java.net.SocketTimeoutException
+import java.nio.ByteBuffer
+import kotlin.random.Random
+
+/**
+ * Optional UDP transport to the Java server. State snapshots and inputs are sent
+ * unreliably; room events go through [ReliableChannel]. If the handshake does not
+ * complete, [connect] returns false and SocketManager stays on the WebSocket.
+ */
+class UdpTransport(
+    private val host: String,
+    private val port: Int,
+    private val listener: Listener,
+    // Stable id for match history and the leaderboard, 0 = this session only
+    private val playerKey: Long = 0L
+) {
+    interface Listener {
+        fun onRoomJoined(room: RoomInfo, playerId: String, position: String?)
+        fun onRoomUpdate(players: List<Player>)
+        fun onGameState(state: GameState)
+        fun onGameEnded(winner: String?)
+        fun onError(message: String)
+        fun onDisconnected()
+    }
+
+    companion object {
+        private const val TAG = "UdpTransport"
+        private const val HELLO_ATTEMPTS = 6
+        private const val HELLO_TIMEOUT_MS = 250
+        private const val FLUSH_INTERVAL_MS = 50L
+        private const val SERVER_TIMEOUT_NANOS = 5_000_000_000L
+        private const val SNAPSHOT_HISTORY = 64
+
+        // Delta field mask bits, see com.ponggame.server.SnapshotCodec
+        private const val F_STATE = 1
+        private const val F_BALL_POS = 1 shl 1
+        private const val F_BALL_VEL = 1 shl 2
+        private const val F_PADDLE = 1 shl 3
+        private const val F_SCORE = 1 shl 7
+    }
+
+    /** Quantized snapshot as sent by the server, kept as a baseline for deltas. */
+    private class SnapshotState {
+        var tick = -1
+        var gameState = 0
+        var ballX = 0
+        var ballY = 0
+        var ballVX = 0
+        var ballVY = 0
+        var activeMask = 0
+        val paddleX = IntArray(4)
+        val paddleY = IntArray(4)
+        val paddleW = IntArray(4)
+        val paddleH = IntArray(4)
+        val scores = IntArray(4)
+
+        fun copyFrom(o: SnapshotState) {
+            tick = o.tick
+            gameState = o.gameState
+            ballX = o.ballX
+            ballY = o.ballY
+            ballVX = o.ballVX
+            ballVY = o.ballVY
+            activeMask = o.activeMask
+            o.paddleX.copyInto(paddleX)
+            o.paddleY.copyInto(paddleY)
+            o.paddleW.copyInto(paddleW)
+            o.paddleH.copyInto(paddleH)
+            o.scores.copyInto(scores)
+        }
+    }
+
+    private var socket: DatagramSocket? = null
+    private var token = 0
+    private val channel = ReliableChannel()
+    private val out = ByteBuffer.allocate(UdpProtocol.MTU)
+    private var latestTick = -1
+    private var ackedTick = -1
+    private var snapshotsReceived = 0
+    private val snapshots = Array(SNAPSHOT_HISTORY) { SnapshotState() }
+    private var lastReceiveNanos = 0L
+    private var receiver: Thread? = null
+    private var flushJob: Job? = null
+
+    @Volatile
+    var connected = false
+        private set
+
+    /** Performs the HELLO/WELCOME handshake. Returns false if the server never answered. */
+    suspend fun connect(scope: CoroutineScope): Boolean = withContext(Dispatchers.IO) {
+        try {
+            val s = DatagramSocket()
+            s.connect(InetSocketAddress(host, port))
+            s.soTimeout = HELLO_TIMEOUT_MS
+            val nonce = Random.nextInt()
+            val buf = ByteArray(UdpProtocol.MTU)
+
+            repeat(HELLO_ATTEMPTS) {
+                val hello = ByteBuffer.allocate(UdpProtocol.HEADER_SIZE + 12)
+                UdpProtocol.writeHeader(hello, UdpProtocol.HELLO, 0)
+                hello.putInt(nonce)
+                hello.putLong(playerKey)
+                s.send(DatagramPacket(hello.array(), hello.position()))
+                try {
+                    val packet = DatagramPacket(buf, buf.size)
+                    s.receive(packet)
+                    val reply = ByteBuffer.wrap(buf, 0, packet.length)
+                    if (UdpProtocol.readHeader(reply) == UdpProtocol.WELCOME) {
+                        val assigned = reply.getInt()
+                        if (reply.getInt() == nonce) {
+                            token = assigned
+                            socket = s
+                            s.soTimeout = 0
+                            startLoops(scope)
+                            return@withContext true
+                        }
+                    }
+                } catch (e: SocketTimeoutException) {
+                    // resend HELLO
+                }
+            }
+            s.close()
+            false
+        } catch (e: Exception) {
+            Log.w(TAG, "UDP handshake failed: ${e.message}")
+            false
+        }
+    }
+
+    private fun startLoops(scope: CoroutineScope) {
+        connected = true
+        lastReceiveNanos = System.nanoTime()
+        receiver = Thread({ receiveLoop() }, "udp-receiver").apply {
+            isDaemon = true
+            start()
+        }
+        flushJob = scope.launch(Dispatchers.IO) {
+            while (isActive && connected) {
+                flush(null)
+                if (System.nanoTime() - lastReceiveNanos > SERVER_TIMEOUT_NANOS) {
+                    close()
+                    listener.onDisconnected()
+                }
+                delay(FLUSH_INTERVAL_MS)
+            }
+        }
+    }
+
+    private fun receiveLoop() {
+        val buf = ByteArray(UdpProtocol.MTU * 2)
+        val packet = DatagramPacket(buf, buf.size)
+        while (connected) {
+            try {
+                socket?.receive(packet) ?: return
+                val data = ByteBuffer.wrap(buf, 0, packet.length)
+                synchronized(this) { handlePacket(data) }
+            } catch (e: Exception) {
+                if (connected) Log.w(TAG, "UDP receive failed: ${e.message}")
+            }
+        }
+    }
+
+    private fun handlePacket(buf: ByteBuffer) {
+        val type = UdpProtocol.readHeader(buf)
+        if (type != UdpProtocol.DATA || buf.getInt() != token) return
+        lastReceiveNanos = System.nanoTime()
+
+        val ack = buf.getShort().toInt() and 0xFFFF
+        val ackBits = buf.getInt()
+        buf.getInt() // newest input sequence applied by the server
+        buf.getShort() // input packets received by the server
+        val flags = buf.get().toInt() and 0xFF
+
+        channel.onAck(ack, ackBits, System.nanoTime())
+        if ((flags and UdpProtocol.FLAG_RELIABLE) != 0) {
+            channel.readMessages(buf, ::handleEvent)
+        }
+        if ((flags and UdpProtocol.FLAG_SNAPSHOT) != 0) {
+            snapshotsReceived = (snapshotsReceived + 1) and 0xFFFF
+            val tick = buf.getInt()
+            // Unreliable and unordered: only ever move forward
+            if (tick > latestTick) {
+                val state = decodeSnapshot(tick, buf)
+                if (state != null) {
+                    latestTick = tick
+                    listener.onGameState(toGameState(state))
+                }
+            }
+        }
+    }
+
+    private fun handleEvent(event: Int, payload: ByteBuffer) {
+        when (event) {
+            UdpProtocol.EV_ROOM_JOINED -> {
+                val roomId = UdpProtocol.getString(payload)
+                val playerId = UdpProtocol.getString(payload)
+                val position = UdpProtocol.positionName(payload.get().toInt() and 0xFF)
+                payload.get() // host/spectator flags
+                payload.get() // mode
+                val playerCount = payload.get().toInt()
+                val players = decodePlayers(payload)
+                val room = RoomInfo(
+                    id = roomId,
+                    playerCount = players.size,
+                    players = players,
+                    positions = UdpProtocol.POSITIONS.take(playerCount.coerceIn(2, 4)),
+                    gameState = "waiting"
+                )
+                listener.onRoomJoined(room, playerId, position)
+            }
+            UdpProtocol.EV_ROOM_UPDATE -> {
+                payload.get() // all ready
+                listener.onRoomUpdate(decodePlayers(payload))
+            }
+            UdpProtocol.EV_GAME_ENDED -> {
+                listener.onGameEnded(UdpProtocol.positionName(payload.get().toInt() and 0xFF))
+            }
+            UdpProtocol.EV_ERROR -> listener.onError(UdpProtocol.getString(payload))
+        }
+    }
+
+    private fun decodePlayers(buf: ByteBuffer): List<Player> {
+        val count = buf.get().toInt() and 0xFF
+        return List(count) {
+            val id = UdpProtocol.getString(buf)
+            val position = UdpProtocol.positionName(buf.get().toInt() and 0xFF) ?: ""
+            val flags = buf.get().toInt()
+            Player(
+                id = id,
+                position = position,
+                isAI = (flags and 1) != 0,
+                isHost = (flags and 2) != 0,
+                isReady = (flags and 4) != 0
+            )
+        }
+    }
+
+    /**
+     * Decodes a keyframe, or applies a delta to the stored baseline it names.
+     * Returns null if that baseline has already been overwritten.
+     */
+    private fun decodeSnapshot(tick: Int, buf: ByteBuffer): SnapshotState? {
+        val kind = buf.get().toInt()
+        val state = snapshots[tick and (SNAPSHOT_HISTORY - 1)]
+
+        if (kind == UdpProtocol.SNAPSHOT_KEYFRAME) {
+            state.gameState = buf.get().toInt()
+            state.ballX = buf.getShort().toInt() and 0xFFFF
+            state.ballY = buf.getShort().toInt() and 0xFFFF
+            state.ballVX = buf.getShort().toInt()
+            state.ballVY = buf.getShort().toInt()
+            state.activeMask = buf.get().toInt()
+            for (pos in 0 until 4) {
+                if ((state.activeMask and (1 shl pos)) == 0) continue
+                state.paddleX[pos] = buf.getShort().toInt() and 0xFFFF
+                state.paddleY[pos] = buf.getShort().toInt() and 0xFFFF
+                state.paddleW[pos] = buf.getShort().toInt() and 0xFFFF
+                state.paddleH[pos] = buf.getShort().toInt() and 0xFFFF
+                state.scores[pos] = buf.get().toInt() and 0xFF
+            }
+            state.tick = tick
+            return state
+        }
+
+        val baseTick = buf.getInt()
+        val base = snapshots[baseTick and (SNAPSHOT_HISTORY - 1)]
+        if (base.tick != baseTick || base === state) return null
+        val fields = buf.getShort().toInt() and 0xFFFF
+        state.copyFrom(base)
+        state.tick = tick
+        if ((fields and F_STATE) != 0) state.gameState = buf.get().toInt()
+        if ((fields and F_BALL_POS) != 0) {
+            state.ballX = buf.getShort().toInt() and 0xFFFF
+            state.ballY = buf.getShort().toInt() and 0xFFFF
+        }
+        if ((fields and F_BALL_VEL) != 0) {
+            state.ballVX = buf.getShort().toInt()
+            state.ballVY = buf.getShort().toInt()
+        }
+        for (pos in 0 until 4) {
+            if ((fields and (F_PADDLE shl pos)) != 0) {
+                state.paddleX[pos] = buf.getShort().toInt() and 0xFFFF
+                state.paddleY[pos] = buf.getShort().toInt() and 0xFFFF
+            }
+        }
+        for (pos in 0 until 4) {
+            if ((fields and (F_SCORE shl pos)) != 0) state.scores[pos] = buf.get().toInt() and 0xFF
+        }
+        return state
+    }
+
+    private fun toGameState(s: SnapshotState): GameState {
+        val paddles = HashMap<String, Paddle>(4)
+        val scores = HashMap<String, Int>(4)
+        for (pos in 0 until 4) {
+            if ((s.activeMask and (1 shl pos)) == 0) continue
+            val name = UdpProtocol.POSITIONS[pos]
+            paddles[name] = Paddle(
+                x = position(s.paddleX[pos]),
+                y = position(s.paddleY[pos]),
+                width = s.paddleW[pos].toFloat(),
+                height = s.paddleH[pos].toFloat()
+            )
+            scores[name] = s.scores[pos]
+        }
+        val ball = Ball(position(s.ballX), position(s.ballY), s.ballVX / 256f, s.ballVY / 256f)
+        val gameState = UdpProtocol.GAME_STATES.getOrElse(s.gameState) { "waiting" }
+        return GameState(ball, paddles, scores, gameState, System.currentTimeMillis())
+    }
+
+    // u16 in 1/32 px with a 64 px offset
+    private fun position(q: Int): Float = q / 32f - 64f
+
+    fun sendEvent(event: Int, payload: ByteArray = ByteArray(0)) {
+        synchronized(this) { channel.send(event, payload) }
+        flush(null)
+    }
+
+    /** Sends an InputChannel packet unreliably, together with any due room events. */
+    fun sendInput(inputPacket: ByteArray) {
+        flush(inputPacket)
+    }
+
+    private fun flush(inputPacket: ByteArray?) {
+        val s = socket ?: return
+        synchronized(this) {
+            val now = System.nanoTime()
+            val ackDue = latestTick != ackedTick
+            if (inputPacket == null && !ackDue && !channel.ackPending && !channel.hasDue(now)) return
+
+            out.clear()
+            UdpProtocol.writeHeader(out, UdpProtocol.DATA, token)
+            out.putShort(channel.ack.toShort())
+            out.putInt(channel.ackBits)
+            out.putInt(maxOf(latestTick, 0))
+            out.putShort(snapshotsReceived.toShort())
+            val flagsPos = out.position()
+            out.put(0)
+
+            var flags = 0
+            if (channel.writeDue(out, now) > 0) flags = flags or UdpProtocol.FLAG_RELIABLE
+            if (inputPacket != null && out.remaining() >= inputPacket.size) {
+                out.put(inputPacket)
+                flags = flags or UdpProtocol.FLAG_INPUT
+            }
+            out.put(flagsPos, flags.toByte())
+            channel.ackPending = false
+            ackedTick = latestTick
+            try {
+                s.send(DatagramPacket(out.array(), out.position()))
+            } catch (e: Exception) {
+                Log.w(TAG, "UDP send failed: ${e.message}")
+            }
+        }
+    }
+
+    fun close() {
+        if (!connected) return
+        connected = false
+        flushJob?.cancel()
+        socket?.let { s ->
+            try {
+                val bye = ByteBuffer.allocate(UdpProtocol.HEADER_SIZE)
+                UdpProtocol.writeHeader(bye, UdpProtocol.DISCONNECT, token)
+                s.send(DatagramPacket(bye.array(), bye.position()))
+            } catch (e: Exception) {
+                // best effort
+            }
+            s.close()
+        }
+        socket = null
+    }
+}
@@ -0,0 +1,127 @@
+package com.ponggame.mobile.ui.render
+
+import android.graphics.Canvas
+import android.graphics.Paint
+import android.graphics.RectF
+import androidx.compose.ui.graphics.toArgb
+import com.ponggame.mobile.ui.screens.ColorArena
+import com.ponggame.mobile.ui.screens.ColorBackground
+import com.ponggame.mobile.ui.screens.ColorBall
+import com.ponggame.mobile.ui.screens.ColorBallGlow
+import com.ponggame.mobile.ui.screens.ColorBorder
+import com.ponggame.mobile.ui.screens.ColorGrid
+import com.ponggame.mobile.ui.screens.PaddleColors
+import com.ponggame.net.Protocol
+
+/**
+ * Draws the arena the way the old Compose canvas did, but with every Paint,
+ * rect and grid line prepared up front. [resize] does the allocation when the
+ * surface changes; [draw] runs each vsync and allocates nothing.
+ */
+class ArenaPainter {
+
+    private val background = ColorBackground.toArgb()
+    private val arenaPaint = Paint().apply { color = ColorArena.toArgb() }
+    private val gridPaint = Paint().apply { color = ColorGrid.toArgb(); strokeWidth = 1f }
+    private val borderPaint = Paint(Paint.ANTI_ALIAS_FLAG).apply {
+        color = ColorBorder.toArgb()
+        style = Paint.Style.STROKE
+    }
+    private val ballPaint = Paint(Paint.ANTI_ALIAS_FLAG).apply { color = ColorBall.toArgb() }
+    private val paddlePaints = Array(4) { pos ->
+        Paint(Paint.ANTI_ALIAS_FLAG).apply {
+            color = (PaddleColors[Protocol.positionName(pos)] ?: ColorBall).toArgb()
+        }
+    }
+    private val rect = RectF()
+
+    private var scale = 1f
+    private var offsetX = 0f
+    private var offsetY = 0f
+    private var gridLines = FloatArray(0)
+    private var glow = true
+    private var grid = true
+
+    fun resize(width: Int, height: Int) {
+        // Fit the square arena with a margin, as before
+        scale = minOf(width / ARENA_SIZE, height / ARENA_SIZE) * 0.9f
+        offsetX = (width - ARENA_SIZE * scale) / 2
+        offsetY = (height - ARENA_SIZE * scale) / 2
+
+        borderPaint.strokeWidth = 2f * scale
+        applyGlow()
+
+        val lines = (ARENA_SIZE / GRID_STEP).toInt() + 1
+        gridLines = FloatArray(lines * 8)
+        val extent = ARENA_SIZE * scale
+        for (i in 0 until lines) {
+            val p = i * GRID_STEP * scale
+            val o = i * 8
+            gridLines[o] = p; gridLines[o + 1] = 0f; gridLines[o + 2] = p; gridLines[o + 3] = extent
+            gridLines[o + 4] = 0f; gridLines[o + 5] = p; gridLines[o + 6] = extent; gridLines[o + 7] = p
+        }
+    }
+
+    // Glow (shadow layers) and the grid are the expensive parts, dropped first to save power
+    fun setEffects(glow: Boolean, grid: Boolean) {
+        this.grid = grid
+        if (glow != this.glow) {
+            this.glow = glow
+            applyGlow()
+        }
+    }
+
+    private fun applyGlow() {
+        if (glow) {
+            ballPaint.setShadowLayer(20f * scale, 0f, 0f, ColorBallGlow.toArgb())
+            for (paint in paddlePaints) {
+                paint.setShadowLayer(15f * scale, 0f, 0f, paint.color)
+            }
+        } else {
+            ballPaint.clearShadowLayer()
+            for (paint in paddlePaints) {
+                paint.clearShadowLayer()
+            }
+        }
+    }
+
+    // alpha 0 draws [from], 1 draws [to]
+    fun draw(canvas: Canvas, from: SnapshotBuffer.Frame, to: SnapshotBuffer.Frame, alpha: Float) {
+        canvas.drawColor(background)
+        canvas.save()
+        canvas.translate(offsetX, offsetY)
+
+        val extent = ARENA_SIZE * scale
+        canvas.drawRect(0f, 0f, extent, extent, arenaPaint)
+        if (grid) canvas.drawLines(gridLines, gridPaint)
+        canvas.drawRect(0f, 0f, extent, extent, borderPaint)
+
+        for (pos in 0 until 4) {
+            if (!to.isActive(pos)) continue
+            val o = pos * 4
+            // A paddle that just appeared has nothing to blend from
+            val a = if (from.isActive(pos)) alpha else 1f
+            val x = lerp(from.paddles[o], to.paddles[o], a)
+            val y = lerp(from.paddles[o + 1], to.paddles[o + 1], a)
+            rect.set(x * scale, y * scale, (x + to.paddles[o + 2]) * scale, (y + to.paddles[o + 3]) * scale)
+            canvas.drawRoundRect(rect, 5f * scale, 5f * scale, paddlePaints[pos])
+        }
+
+        // After a point the ball jumps back to the centre; don't sweep it across the arena
+        val serve = Math.abs(to.ballX - from.ballX) + Math.abs(to.ballY - from.ballY) > SNAP_DISTANCE
+        val ballX = if (serve) to.ballX else lerp(from.ballX, to.ballX, alpha)
+        val ballY = if (serve) to.ballY else lerp(from.ballY, to.ballY, alpha)
+        canvas.drawCircle(ballX * scale, ballY * scale, BALL_RADIUS * scale, ballPaint)
+
+        canvas.restore()
+    }
+
+    private fun lerp(a: Float, b: Float, t: Float) = a + (b - a) * t
+
+    companion object {
+        private const val ARENA_SIZE = 800f
+        private const val GRID_STEP = 40f
+        private const val BALL_RADIUS = 10f
+        private const val SNAP_DISTANCE = 250f
+    }
+}
@@ -0,0 +1,148 @@
+package com.ponggame.mobile.ui.render
+
+import android.content.Context
+import android.os.Build
+import android.os.Handler
+import android.os.HandlerThread
+import android.os.Process
+import android.view.Choreographer
+import android.view.Surface
+import android.view.SurfaceHolder
+import android.view.SurfaceView
+
+/**
+ * The play field, drawn on its own thread instead of through Compose
+ * recomposition. A [Choreographer] on the render thread wakes it once per
+ * vsync (60, 90 or 120 Hz, whatever the display runs at). Each frame blends the
+ * two newest snapshots in [snapshots] by how far the frame is past the newest
+ * one's arrival, so motion stays smooth however unevenly snapshots arrive.
+ */
+class ArenaSurfaceView(context: Context, private val snapshots: SnapshotBuffer) :
+    SurfaceView(context), SurfaceHolder.Callback {
+
+    private var renderThread: RenderThread? = null
+
+    // Set from the UI thread, picked up by the render thread on its next vsync
+    @Volatile private var maxFrameRate = 0
+    @Volatile private var glow = true
+    @Volatile private var grid = true
+
+    /** Caps the frame rate (0 = every vsync) and switches effects, per QualityTier. */
+    fun setQuality(maxFrameRate: Int, glow: Boolean, grid: Boolean) {
+        this.maxFrameRate = maxFrameRate
+        this.glow = glow
+        this.grid = grid
+        applyFrameRate()
+    }
+
+    // Android 11+ can then lower the panel's refresh rate itself, which saves more than skipping vsyncs
+    private fun applyFrameRate() {
+        val surface = holder.surface
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R && surface.isValid) {
+            surface.setFrameRate(maxFrameRate.toFloat(), Surface.FRAME_RATE_COMPATIBILITY_DEFAULT)
+        }
+    }
+
+    init {
+        holder.addCallback(this)
+    }
+
+    override fun surfaceCreated(holder: SurfaceHolder) {
+        renderThread = RenderThread(holder, snapshots).also { it.start() }
+        applyFrameRate()
+    }
+
+    override fun surfaceChanged(holder: SurfaceHolder, format: Int, width: Int, height: Int) {
+        renderThread?.resize(width, height)
+    }
+
+    override fun surfaceDestroyed(holder: SurfaceHolder) {
+        // The surface is gone once this returns, so the thread must have stopped drawing
+        renderThread?.finish()
+        renderThread = null
+    }
+
+    private inner class RenderThread(
+        private val holder: SurfaceHolder,
+        private val snapshots: SnapshotBuffer
+    ) : HandlerThread("ArenaRender", Process.THREAD_PRIORITY_DISPLAY), Choreographer.FrameCallback {
+
+        private val painter = ArenaPainter()
+        private val from = SnapshotBuffer.Frame()
+        private val to = SnapshotBuffer.Frame()
+        private lateinit var choreographer: Choreographer
+
+        @Volatile private var width = 0
+        @Volatile private var height = 0
+        private var paintedWidth = 0
+        private var paintedHeight = 0
+        private var drawnVersion = -1L
+        private var drawnAlpha = 0f
+        private var drawnTime = 0L
+        private var paintedGlow = true
+        private var paintedGrid = true
+
+        override fun onLooperPrepared() {
+            // Choreographer is per thread: this one delivers vsync to the render looper
+            choreographer = Choreographer.getInstance()
+            choreographer.postFrameCallback(this)
+        }
+
+        fun resize(width: Int, height: Int) {
+            this.width = width
+            this.height = height
+        }
+
+        fun finish() {
+            Handler(looper).post {
+                choreographer.removeFrameCallback(this)
+                quit()
+            }
+            join()
+        }
+
+        override fun doFrame(frameTimeNanos: Long) {
+            choreographer.postFrameCallback(this)
+
+            val cap = maxFrameRate
+            // Half a millisecond of slack so vsync jitter doesn't halve the rate again
+            if (cap > 0 && frameTimeNanos - drawnTime < 1_000_000_000L / cap - 500_000L) return
+
+            val w = width
+            val h = height
+            if (w == 0 || h == 0) return
+            val resized = w != paintedWidth || h != paintedHeight
+            if (resized) {
+                painter.resize(w, h)
+                paintedWidth = w
+                paintedHeight = h
+            }
+
+            val effectsChanged = glow != paintedGlow || grid != paintedGrid
+            if (effectsChanged) {
+                paintedGlow = glow
+                paintedGrid = grid
+                painter.setEffects(paintedGlow, paintedGrid)
+            }
+
+            val version = snapshots.read(from, to)
+            val interval = to.time - from.time
+            val alpha = if (interval <= 0) 1f
+            else ((frameTimeNanos - to.time).toFloat() / interval).coerceIn(0f, 1f)
+
+            // Nothing new to show: leave the last frame up rather than redraw it
+            if (!resized && !effectsChanged && version == drawnVersion && drawnAlpha >= 1f) return
+
+            val canvas = (if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) holder.lockHardwareCanvas()
+            else holder.lockCanvas()) ?: return
+            try {
+                painter.draw(canvas, from, to, alpha)
+            } finally {
+                holder.unlockCanvasAndPost(canvas)
+            }
+            drawnVersion = version
+            drawnAlpha = alpha
+            drawnTime = frameTimeNanos
+        }
+    }
+}
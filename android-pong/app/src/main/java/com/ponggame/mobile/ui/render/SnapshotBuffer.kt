@@ -0,0 +1,67 @@
+package com.ponggame.mobile.ui.render
+
+import com.ponggame.mobile.model.GameState
+import com.ponggame.net.Protocol
+
+/**
+ * Hands snapshots from the state flow to the render thread. Keeps only the two
+ * newest, stamped with their arrival time, which is all interpolation needs.
+ * Snapshots are flattened into float arrays on the way in so the render thread
+ * never touches maps or allocates.
+ */
+class SnapshotBuffer {
+
+    class Frame {
+        var time = 0L
+        var ballX = 0f
+        var ballY = 0f
+        var activeMask = 0
+        val paddles = FloatArray(16) // x, y, width, height by position code
+
+        fun copyFrom(o: Frame) {
+            time = o.time
+            ballX = o.ballX
+            ballY = o.ballY
+            activeMask = o.activeMask
+            o.paddles.copyInto(paddles)
+        }
+
+        fun isActive(pos: Int) = activeMask and (1 shl pos) != 0
+    }
+
+    private val lock = Any()
+    private val previous = Frame()
+    private val latest = Frame()
+    private var version = 0L
+
+    fun push(state: GameState, nowNanos: Long) {
+        synchronized(lock) {
+            previous.copyFrom(latest)
+            latest.time = nowNanos
+            latest.ballX = state.ball.x
+            latest.ballY = state.ball.y
+            latest.activeMask = 0
+            for ((name, paddle) in state.paddles) {
+                val pos = Protocol.positionCode(name)
+                if (pos == Protocol.NO_POSITION) continue
+                latest.activeMask = latest.activeMask or (1 shl pos)
+                latest.paddles[pos * 4] = paddle.x
+                latest.paddles[pos * 4 + 1] = paddle.y
+                latest.paddles[pos * 4 + 2] = paddle.width
+                latest.paddles[pos * 4 + 3] = paddle.height
+            }
+            // First snapshot: nothing to interpolate from yet
+            if (previous.time == 0L) previous.copyFrom(latest)
+            version++
+        }
+    }
+
+    /** Copies the two newest snapshots into [from] and [to]; returns a counter that changes on every push. */
+    fun read(from: Frame, to: Frame): Long {
+        synchronized(lock) {
+            from.copyFrom(previous)
+            to.copyFrom(latest)
+            return version
+        }
+    }
+}
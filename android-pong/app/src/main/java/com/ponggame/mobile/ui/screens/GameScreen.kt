@@ -1,29 +1,22 @@
 package com.ponggame.mobile.ui.screens
 
 import android.view.MotionEvent
-import androidx.compose.foundation.Canvas
 import androidx.compose.foundation.background
 import androidx.compose.foundation.layout.*
-import androidx.compose.material3.Button
 import androidx.compose.material3.Text
 import androidx.compose.runtime.*
 import androidx.compose.ui.Alignment
 import androidx.compose.ui.ExperimentalComposeUiApi
 import androidx.compose.ui.Modifier
-import androidx.compose.ui.geometry.Offset
-import androidx.compose.ui.geometry.Size
 import androidx.compose.ui.graphics.Color
-import androidx.compose.ui.graphics.Paint
-import androidx.compose.ui.graphics.PaintingStyle
-import androidx.compose.ui.graphics.drawscope.DrawScope
-import androidx.compose.ui.graphics.drawscope.Stroke
-import androidx.compose.ui.graphics.drawscope.drawIntoCanvas
-import androidx.compose.ui.graphics.toArgb
 import androidx.compose.ui.input.pointer.pointerInteropFilter
 import androidx.compose.ui.unit.dp
+import androidx.compose.ui.viewinterop.AndroidView
 import com.ponggame.mobile.game.GameViewModel
-import com.ponggame.mobile.model.Ball
-import com.ponggame.mobile.model.Paddle
+import com.ponggame.mobile.ui.render.ArenaSurfaceView
+import com.ponggame.mobile.ui.render.SnapshotBuffer
+import kotlinx.coroutines.flow.distinctUntilChanged
+import kotlinx.coroutines.flow.map
 
 // Colors
 val ColorBackground = Color(0xFF0A0A1A)
@@ -44,8 +37,17 @@ val PaddleColors = mapOf(
 @OptIn(ExperimentalComposeUiApi::class)
 @Composable
 fun GameScreen(viewModel: GameViewModel) {
-    val gameState by viewModel.gameState.collectAsState()
     val myPosition by viewModel.myPosition.collectAsState()
+    val quality by viewModel.quality.collectAsState()
+    // Only the HUD recomposes, and only when a score changes
+    val scores by remember { viewModel.gameState.map { it.scores }.distinctUntilChanged() }
+        .collectAsState(initial = emptyMap())
+
+    // Snapshots go straight to the render thread, bypassing composition
+    val snapshots = remember { SnapshotBuffer() }
+    LaunchedEffect(Unit) {
+        viewModel.gameState.collect { snapshots.push(it, System.nanoTime()) }
+    }
     
     // Determine input logic based on position
     // If we are 'left'/'right', we control Y axis (Up/Down).
@@ -75,122 +77,26 @@ fun GameScreen(viewModel: GameViewModel) {
                             else viewModel.onInput("right")
                         }
                     }
-                    MotionEvent.ACTION_UP -> {
+                    MotionEvent.ACTION_UP, MotionEvent.ACTION_CANCEL -> {
                         viewModel.onInput("stop")
                     }
                 }
                 true
             }
     ) {
-        // Game Canvas
-        GameCanvas(gameState, Modifier.fillMaxSize())
-        
+        // Game field, drawn on its own vsync-paced thread
+        AndroidView(
+            factory = { context -> ArenaSurfaceView(context, snapshots) },
+            modifier = Modifier.fillMaxSize(),
+            update = { it.setQuality(quality.maxFrameRate, quality.glow, quality.grid) }
+        )
+
         // Overlay info
         Column(modifier = Modifier.align(Alignment.TopCenter).padding(16.dp)) {
             Text("Playing as: ${myPosition ?: "Spectator"}", color = Color.Gray)
-        }
-    }
-}
-
-@Composable
-fun GameCanvas(state: com.ponggame.mobile.model.GameState, modifier: Modifier) {
-    Canvas(modifier = modifier) {
-        val arenaSize = 800f
-        // Calculate scale to fit screen while maintaining aspect ratio
-        val scale = minOf(size.width / arenaSize, size.height / arenaSize) * 0.9f
-        
-        // Center the arena
-        val offsetX = (size.width - arenaSize * scale) / 2
-        val offsetY = (size.height - arenaSize * scale) / 2
-        
-        translate(left = offsetX, top = offsetY) {
-            // 1. Draw Arena Background
-            drawRect(
-                color = ColorArena,
-                size = Size(arenaSize * scale, arenaSize * scale)
-            )
-            
-            // 2. Draw Grid
-            drawGrid(arenaSize, scale)
-            
-            // 3. Draw Border
-            drawRect(
-                color = ColorBorder,
-                size = Size(arenaSize * scale, arenaSize * scale),
-                style = Stroke(width = 2f * scale)
-            )
-            
-            // 4. Draw Paddles
-            state.paddles.forEach { (pos, paddle) ->
-                drawPaddle(paddle, PaddleColors[pos] ?: Color.White, scale)
+            if (scores.isNotEmpty()) {
+                Text(scores.entries.joinToString("   ") { "${it.key} ${it.value}" }, color = Color.White)
             }
-            
-            // 5. Draw Ball
-            drawBall(state.ball, scale)
-        }
-    }
-}
-
-fun DrawScope.drawGrid(arenaSize: Float, scale: Float) {
-    val step = 40f
-    var x = 0f
-    while (x <= arenaSize) {
-        drawLine(
-            color = ColorGrid,
-            start = Offset(x * scale, 0f),
-            end = Offset(x * scale, arenaSize * scale),
-            strokeWidth = 1f
-        )
-        x += step
-    }
-    var y = 0f
-    while (y <= arenaSize) {
-        drawLine(
-            color = ColorGrid,
-            start = Offset(0f, y * scale),
-            end = Offset(arenaSize * scale, y * scale),
-            strokeWidth = 1f
-        )
-        y += step
-    }
-}
-
-fun DrawScope.drawPaddle(paddle: Paddle, color: Color, scale: Float) {
-    // Glow Effect
-    drawIntoCanvas {
-        val paint = Paint().apply {
-            this.color = color
-            strokeWidth = 0f
-            style = PaintingStyle.Fill
-        }
-        val frameworkPaint = paint.asFrameworkPaint()
-        frameworkPaint.setShadowLayer(15f * scale, 0f, 0f, color.toArgb())
-        
-        it.drawRoundRect(
-            left = paddle.x * scale,
-            top = paddle.y * scale,
-            right = (paddle.x + paddle.width) * scale,
-            bottom = (paddle.y + paddle.height) * scale,
-            radiusX = 5f * scale,
-            radiusY = 5f * scale,
-            paint = paint
-        )
-    }
-}
-
-fun DrawScope.drawBall(ball: Ball, scale: Float) {
-    val radius = 10f * scale
-    val x = ball.x * scale
-    val y = ball.y * scale
-    
-    drawIntoCanvas {
-        val paint = Paint().apply {
-            color = ColorBall
-            style = PaintingStyle.Fill
         }
-        val frameworkPaint = paint.asFrameworkPaint()
-        frameworkPaint.setShadowLayer(20f * scale, 0f, 0f, ColorBallGlow.toArgb())
-        
-        it.drawCircle(Offset(x, y), radius, paint)
     }
 }
@@ -47,6 +47,15 @@ fun LobbyScreen(viewModel: GameViewModel, onGameStart: () -> Unit) {
                 Button(onClick = { viewModel.quickPlay() }) {
                     Text("Quick Play (vs AI)")
                 }
+
+                // Offline modes run the shared engine on the device
+                Button(onClick = { viewModel.playOffline() }) {
+                    Text("Play Offline (vs AI)")
+                }
+
+                Button(onClick = { viewModel.watchAiMatch() }) {
+                    Text("Watch AI vs AI")
+                }
                 
                 var roomInput by remember { mutableStateOf("") }
                 Row(verticalAlignment = Alignment.CenterVertically) {
@@ -14,3 +14,7 @@ dependencyResolutionManagement {
 }
 rootProject.name = "PongMobile"
 include(":app")
+
+// Shared JavaFX-free engine, built from the Maven module next to this project
+include(":pong-core")
+project(":pong-core").projectDir = file("../pong-core")
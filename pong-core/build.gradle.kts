@@ -0,0 +1,10 @@
+// Lets the Android build (android-pong/settings.gradle.kts) compile this module
+// from the same sources Maven uses.
+plugins {
+    `java-library`
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_17
+    targetCompatibility = JavaVersion.VERSION_17
+}
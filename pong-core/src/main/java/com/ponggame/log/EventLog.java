@@ -0,0 +1,256 @@
+package com.ponggame.log;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Structured log of game events (hits, scores, connections, game start and end)
+ * written as JSON lines:
+ *
+ * <pre>
+ *   {"t":1700000000000,"ev":"score","room":"K3F9QZ","position":1,"score":4}
+ * </pre>
+ *
+ * {@link #record} is called by one thread only, normally the game tick. It fills
+ * a slot of a preallocated ring and publishes it with an ordered store, so it
+ * never locks, blocks or allocates; when the ring is full the event is counted
+ * in {@link #getDropped} and discarded. A writer thread drains the ring in
+ * batches, formats them and appends them to events.log in the log directory,
+ * rolling it over to events.1.log, events.2.log and so on once it reaches the
+ * size limit.
+ */
+public final class EventLog implements AutoCloseable {
+
+    public static final int DEFAULT_CAPACITY = 64 * 1024;
+    public static final long DEFAULT_FILE_BYTES = 16L * 1024 * 1024;
+    public static final int DEFAULT_FILES = 5;
+
+    // Does nothing; used when logging is off so callers need no null checks
+    public static final EventLog NONE = new EventLog();
+
+    private static final EventType[] TYPES = EventType.values();
+    private static final String FILE_NAME = "events";
+    private static final int MAX_BATCH = 4096;
+    private static final int MAX_LINE = 160;
+    private static final long IDLE_PARK_NANOS = 5_000_000L;
+
+    // Ring slots, indexed by sequence & mask
+    private final int mask;
+    private final long[] times;
+    private final long[] subjects;
+    private final byte[] types;
+    private final int[] argsA;
+    private final int[] argsB;
+
+    // Producer only
+    private long head;
+    private long cachedTail;
+
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong consumed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    // Writer thread only
+    private final Path dir;
+    private final long fileBytes;
+    private final int files;
+    private final Thread writer;
+    private final ByteBuffer out;
+    private final StringBuilder line = new StringBuilder(MAX_LINE);
+    private FileChannel channel;
+    private long written;
+    private volatile boolean closing;
+
+    private EventLog() {
+        mask = -1;
+        times = subjects = null;
+        types = null;
+        argsA = argsB = null;
+        dir = null;
+        fileBytes = 0;
+        files = 0;
+        writer = null;
+        out = null;
+    }
+
+    private EventLog(Path dir, int capacity, long fileBytes, int files) throws IOException {
+        if (Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        this.mask = capacity - 1;
+        this.times = new long[capacity];
+        this.subjects = new long[capacity];
+        this.types = new byte[capacity];
+        this.argsA = new int[capacity];
+        this.argsB = new int[capacity];
+        this.dir = dir;
+        this.fileBytes = fileBytes;
+        this.files = Math.max(1, files);
+        this.out = ByteBuffer.allocateDirect(MAX_BATCH * MAX_LINE);
+
+        Files.createDirectories(dir);
+        openFile();
+        writer = new Thread(this::writeLoop, "event-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public static EventLog open(Path dir) throws IOException {
+        return open(dir, DEFAULT_CAPACITY, DEFAULT_FILE_BYTES, DEFAULT_FILES);
+    }
+
+    public static EventLog open(Path dir, int capacity, long fileBytes, int files) throws IOException {
+        return new EventLog(dir, capacity, fileBytes, files);
+    }
+
+    // Packs a room code of up to 8 ASCII characters into a subject, so callers pass a long, not a String
+    public static long subject(String id) {
+        long packed = 0;
+        for (int i = 0; i < Math.min(8, id.length()); i++) {
+            packed = packed << 8 | (id.charAt(i) & 0x7F);
+        }
+        return packed;
+    }
+
+    public void record(EventType type, long subject) {
+        record(type, subject, 0, 0);
+    }
+
+    public void record(EventType type, long subject, int a) {
+        record(type, subject, a, 0);
+    }
+
+    // Single producer only
+    public void record(EventType type, long subject, int a, int b) {
+        if (mask < 0)
+            return;
+        long h = head;
+        if (h - cachedTail > mask) {
+            cachedTail = consumed.get();
+            if (h - cachedTail > mask) {
+                dropped.incrementAndGet();
+                return;
+            }
+        }
+        int i = (int) h & mask;
+        times[i] = System.currentTimeMillis();
+        subjects[i] = subject;
+        types[i] = (byte) type.ordinal();
+        argsA[i] = a;
+        argsB[i] = b;
+        head = h + 1;
+        // Ordered store: the slot is fully written before the writer can see it
+        published.lazySet(h + 1);
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    // Events taken off the ring so far
+    public long getWritten() {
+        return consumed.get();
+    }
+
+    private void writeLoop() {
+        long tail = consumed.get();
+        try {
+            while (true) {
+                long end = published.get();
+                if (end == tail) {
+                    if (closing)
+                        break;
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                    continue;
+                }
+                long batchEnd = Math.min(end, tail + MAX_BATCH);
+                out.clear();
+                for (long s = tail; s < batchEnd; s++) {
+                    format((int) s & mask);
+                }
+                // Slots are copied out; the producer may reuse them while the batch is written
+                tail = batchEnd;
+                consumed.lazySet(tail);
+                out.flip();
+                while (out.hasRemaining()) {
+                    written += channel.write(out);
+                }
+                if (written >= fileBytes)
+                    rotate();
+            }
+        } catch (IOException e) {
+            // Stop writing; the ring fills and later events are counted as dropped
+            e.printStackTrace();
+        }
+    }
+
+    private void format(int i) {
+        EventType type = TYPES[types[i]];
+        line.setLength(0);
+        line.append("{\"t\":").append(times[i]).append(",\"ev\":\"").append(type.name).append('"');
+        long subject = subjects[i];
+        if (subject != 0) {
+            line.append(",\"room\":\"");
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                char c = (char) (subject >>> shift & 0x7F);
+                if (c != 0)
+                    line.append(c);
+            }
+            line.append('"');
+        }
+        if (type.argA != null)
+            line.append(",\"").append(type.argA).append("\":").append(argsA[i]);
+        if (type.argB != null)
+            line.append(",\"").append(type.argB).append("\":").append(argsB[i]);
+        line.append("}\n");
+        for (int c = 0; c < line.length(); c++) {
+            out.put((byte) line.charAt(c));
+        }
+    }
+
+    private void openFile() throws IOException {
+        channel = FileChannel.open(dir.resolve(FILE_NAME + ".log"), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        written = channel.size();
+    }
+
+    // events.log becomes events.1.log, each older file moves up one, the oldest is dropped
+    private void rotate() throws IOException {
+        channel.close();
+        Files.deleteIfExists(dir.resolve(FILE_NAME + "." + (files - 1) + ".log"));
+        for (int n = files - 2; n >= 1; n--) {
+            Path from = dir.resolve(FILE_NAME + "." + n + ".log");
+            if (Files.exists(from))
+                Files.move(from, dir.resolve(FILE_NAME + "." + (n + 1) + ".log"), StandardCopyOption.REPLACE_EXISTING);
+        }
+        Path current = dir.resolve(FILE_NAME + ".log");
+        if (files > 1)
+            Files.move(current, dir.resolve(FILE_NAME + ".1.log"), StandardCopyOption.REPLACE_EXISTING);
+        else
+            Files.delete(current);
+        openFile();
+    }
+
+    // Writes out whatever is in the ring, then closes the file
+    @Override
+    public void close() {
+        if (writer == null || closing)
+            return;
+        closing = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+            channel.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.ponggame.log;
+
+/**
+ * Kinds of entry in an {@link EventLog}. Each event carries a subject (a room,
+ * or 0 for a local game) and two ints whose meaning depends on the type; the
+ * names below are what they are called in the written log.
+ *
+ * Positions are protocol position codes (left, right, top, bottom).
+ */
+public enum EventType {
+    CONNECTED("token", null),
+    DISCONNECTED("token", "timeout"),
+    ROOM_CREATED("players", null),
+    ROOM_CLOSED("idle", null),
+    GAME_STARTED("players", null),
+    GAME_ENDED("winner", "reason"),
+    GAME_RESET(null, null),
+    PADDLE_HIT("position", "speed"),
+    SCORE("position", "score"),
+    BALL_RESET(null, null);
+
+    final String name;
+    final String argA;
+    final String argB;
+
+    EventType(String argA, String argB) {
+        this.name = name().toLowerCase();
+        this.argA = argA;
+        this.argB = argB;
+    }
+}
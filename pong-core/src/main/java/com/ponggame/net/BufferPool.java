@@ -0,0 +1,79 @@
+package com.ponggame.net;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * Pool of direct buffers for frames that are encoded once and sent to many
+ * peers. Each frame is reference counted and goes back to the pool when the
+ * last holder releases it. Like the rest of the server state, a pool belongs
+ * to the game thread and is not thread-safe.
+ */
+public class BufferPool {
+
+    public final class Frame {
+        private final ByteBuffer buffer;
+        private int refCount;
+        private int length;
+
+        private Frame(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        public ByteBuffer buffer() {
+            return buffer;
+        }
+
+        // Marks the end of the encoded bytes; senders reset position/limit from it
+        public void seal() {
+            length = buffer.position();
+        }
+
+        public int length() {
+            return length;
+        }
+
+        public Frame retain() {
+            if (refCount <= 0)
+                throw new IllegalStateException("Frame already released");
+            refCount++;
+            return this;
+        }
+
+        public void release() {
+            if (refCount <= 0)
+                throw new IllegalStateException("Frame already released");
+            if (--refCount == 0)
+                free.push(this);
+        }
+    }
+
+    private final ArrayDeque<Frame> free = new ArrayDeque<>();
+    private final int frameSize;
+    private int allocated = 0;
+
+    public BufferPool(int frameSize) {
+        this.frameSize = frameSize;
+    }
+
+    // Returns a cleared frame holding one reference
+    public Frame acquire() {
+        Frame frame = free.poll();
+        if (frame == null) {
+            frame = new Frame(ByteBuffer.allocateDirect(frameSize));
+            allocated++;
+        }
+        frame.refCount = 1;
+        frame.length = 0;
+        frame.buffer.clear();
+        return frame;
+    }
+
+    public int getAllocated() {
+        return allocated;
+    }
+
+    public int getFree() {
+        return free.size();
+    }
+}
@@ -0,0 +1,93 @@
+package com.ponggame.net;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size log-linear histogram of durations in microseconds. Each power of two
+ * is split into 16 buckets, so percentiles are accurate to about 6%. Recording
+ * never allocates. Not thread-safe; give each recording thread its own instance
+ * and {@link #add} them together.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = 64 * SUB_BUCKETS;
+
+    private final long[] counts = new long[BUCKETS];
+    private long total;
+    private long max;
+
+    public void recordNanos(long nanos) {
+        recordMicros(Math.max(0, nanos / 1000));
+    }
+
+    public void recordMicros(long micros) {
+        counts[indexFor(micros)]++;
+        total++;
+        if (micros > max)
+            max = micros;
+    }
+
+    private static int indexFor(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+        int msb = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (msb - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (msb - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    // Upper bound of the values that land in a bucket
+    private static long valueFor(int index) {
+        if (index < SUB_BUCKETS)
+            return index;
+        int msb = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int sub = index % SUB_BUCKETS;
+        long base = (long) (SUB_BUCKETS | sub) << (msb - SUB_BUCKET_BITS);
+        return base + (1L << (msb - SUB_BUCKET_BITS)) - 1;
+    }
+
+    public long percentileMicros(double percentile) {
+        if (total == 0)
+            return 0;
+        long rank = (long) Math.ceil(percentile / 100.0 * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank)
+                return Math.min(valueFor(i), max);
+        }
+        return max;
+    }
+
+    public double percentileMillis(double percentile) {
+        return percentileMicros(percentile) / 1000.0;
+    }
+
+    public long getCount() {
+        return total;
+    }
+
+    public long getMaxMicros() {
+        return max;
+    }
+
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] += other.counts[i];
+        }
+        total += other.total;
+        max = Math.max(max, other.max);
+    }
+
+    public void reset() {
+        Arrays.fill(counts, 0);
+        total = 0;
+        max = 0;
+    }
+
+    public String summary() {
+        return String.format("n=%d p50=%.2fms p90=%.2fms p99=%.2fms max=%.2fms",
+                total, percentileMillis(50), percentileMillis(90), percentileMillis(99), max / 1000.0);
+    }
+}
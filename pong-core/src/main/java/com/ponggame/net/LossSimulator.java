@@ -0,0 +1,38 @@
+package com.ponggame.net;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+// Drops and delays datagrams to reproduce lossy Wi-Fi on a local machine
+public class LossSimulator {
+    private final double lossRate;
+    private final int latencyMillis;
+    private final int jitterMillis;
+
+    public static final LossSimulator NONE = new LossSimulator(0, 0, 0);
+
+    public LossSimulator(double lossRate, int latencyMillis, int jitterMillis) {
+        this.lossRate = lossRate;
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+    }
+
+    public boolean isEnabled() {
+        return lossRate > 0 || latencyMillis > 0 || jitterMillis > 0;
+    }
+
+    public boolean shouldDrop() {
+        return lossRate > 0 && ThreadLocalRandom.current().nextDouble() < lossRate;
+    }
+
+    // One-way delay to apply to a datagram that was not dropped
+    public int delayMillis() {
+        if (jitterMillis <= 0)
+            return latencyMillis;
+        return latencyMillis + ThreadLocalRandom.current().nextInt(jitterMillis + 1);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("loss=%.1f%% latency=%dms jitter=%dms", lossRate * 100, latencyMillis, jitterMillis);
+    }
+}
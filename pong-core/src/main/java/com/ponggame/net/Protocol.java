@@ -0,0 +1,166 @@
+package com.ponggame.net;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * UDP wire format shared by the Java server and the Android client.
+ *
+ * Every datagram starts with an 8 byte header:
+ *
+ * <pre>
+ *   u16 magic 'PG'   u8 version   u8 type   u32 connection token
+ * </pre>
+ *
+ * HELLO (client, token 0) carries a u32 nonce and optionally a u64 player key
+ * that stays the same across sessions (0 or absent = none), and is answered by
+ * WELCOME with the same nonce, the assigned token and the server tick rate. All later traffic is
+ * DATA:
+ *
+ * <pre>
+ *   u16 ack  u32 ackBits  u32 stamp  u16 received  u8 flags
+ *   [RELIABLE] u8 count, count x (u16 seq, u8 event, u16 length, payload)
+ *   [SNAPSHOT] see com.ponggame.server.SnapshotCodec
+ *   [INPUT]    u16 seq, u8 count, count x u8 control bits (newest first)
+ * </pre>
+ *
+ * ack/ackBits acknowledge reliable messages from the peer. stamp is the newest
+ * snapshot tick received (client to server) or the newest input sequence applied
+ * (server to client). received is a cumulative count of snapshots (client to
+ * server) or input packets (server to client) the sender has taken in, used to
+ * estimate loss. Sections are packed into one datagram up to {@link #MTU}.
+ *
+ * ROLLBACK packets go directly between two peers playing with
+ * com.ponggame.sim.RollbackSession, with the match id as token:
+ *
+ * <pre>
+ *   u32 ackTick  u32 hashTick  u64 hash  u32 firstTick  u8 count, count x u8 control bits
+ * </pre>
+ */
+public final class Protocol {
+
+    public static final int MAGIC = 0x5047;
+    public static final int VERSION = 2;
+    public static final int DEFAULT_PORT = 3001;
+
+    // Conservative payload size that survives common tunnels without fragmenting
+    public static final int MTU = 1200;
+    public static final int HEADER_SIZE = 8;
+    public static final int DATA_HEADER_SIZE = HEADER_SIZE + 13;
+
+    // Packet types
+    public static final int HELLO = 1;
+    public static final int WELCOME = 2;
+    public static final int DATA = 3;
+    public static final int DISCONNECT = 4;
+    public static final int ROLLBACK = 5;
+
+    // DATA section flags
+    public static final int FLAG_RELIABLE = 1;
+    public static final int FLAG_SNAPSHOT = 2;
+    public static final int FLAG_INPUT = 4;
+
+    // Reliable events, client to server
+    public static final int EV_CREATE_ROOM = 1;
+    public static final int EV_JOIN_ROOM = 2;
+    public static final int EV_QUICK_PLAY = 3;
+    public static final int EV_TOGGLE_READY = 4;
+    public static final int EV_START_GAME = 5;
+    public static final int EV_SET_RATE = 6; // u8 max snapshots per second, 0 = no limit
+    public static final int EV_LIST_ROOMS = 7; // string cursor ("" = first page), u8 page size
+    public static final int EV_MATCHMAKE = 8; // u8 player count, u16 rating (0 = unrated)
+    public static final int EV_CANCEL_MATCHMAKING = 9;
+    public static final int EV_LEADERBOARD = 10; // u8 kind (LEADERBOARD_TOP or _AROUND_ME), u8 count
+
+    // Reliable events, server to client
+    public static final int EV_ROOM_JOINED = 20;
+    public static final int EV_ROOM_UPDATE = 21;
+    public static final int EV_GAME_STARTED = 22;
+    public static final int EV_GAME_ENDED = 23;
+    public static final int EV_ERROR = 24;
+    public static final int EV_ROOM_LIST = 25; // u32 open rooms, u8 count, entries, string next cursor ("" = last page)
+    // u32 ranked players, u32 my rank (0 = unranked), u16 my rating, u8 count,
+    // count x (u32 rank, u64 player key, u16 rating, u16 games)
+    public static final int EV_LEADERBOARD_PAGE = 26;
+
+    public static final int LEADERBOARD_TOP = 0;
+    public static final int LEADERBOARD_AROUND_ME = 1;
+
+    // Control bits, same values as the Socket.IO inputBatch packet
+    public static final int INPUT_UP = 1;
+    public static final int INPUT_DOWN = 2;
+    public static final int INPUT_LEFT = 4;
+    public static final int INPUT_RIGHT = 8;
+
+    // Position codes, in GameConfig.Position order
+    public static final String[] POSITIONS = { "left", "right", "top", "bottom" };
+    public static final int NO_POSITION = 0xFF;
+
+    public static final String[] MODES = { "human_vs_human", "human_vs_ai", "ai_vs_ai" };
+
+    private Protocol() {
+    }
+
+    public static void writeHeader(ByteBuffer buf, int type, int token) {
+        buf.putShort((short) MAGIC);
+        buf.put((byte) VERSION);
+        buf.put((byte) type);
+        buf.putInt(token);
+    }
+
+    // Returns the packet type, or -1 if the datagram is not ours
+    public static int readHeader(ByteBuffer buf) {
+        if (buf.remaining() < HEADER_SIZE)
+            return -1;
+        if ((buf.getShort() & 0xFFFF) != MAGIC || (buf.get() & 0xFF) != VERSION)
+            return -1;
+        return buf.get() & 0xFF;
+    }
+
+    public static void putString(ByteBuffer buf, String s) {
+        byte[] bytes = s == null ? new byte[0] : s.getBytes(StandardCharsets.UTF_8);
+        int len = Math.min(bytes.length, 255);
+        buf.put((byte) len);
+        buf.put(bytes, 0, len);
+    }
+
+    // A string cut off by the end of the buffer is read as far as it goes
+    public static String getString(ByteBuffer buf) {
+        if (!buf.hasRemaining())
+            return "";
+        int len = Math.min(buf.get() & 0xFF, buf.remaining());
+        byte[] bytes = new byte[len];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public static int positionCode(String position) {
+        for (int i = 0; i < POSITIONS.length; i++) {
+            if (POSITIONS[i].equals(position))
+                return i;
+        }
+        return NO_POSITION;
+    }
+
+    public static String positionName(int code) {
+        return code >= 0 && code < POSITIONS.length ? POSITIONS[code] : null;
+    }
+
+    public static int modeCode(String mode) {
+        for (int i = 0; i < MODES.length; i++) {
+            if (MODES[i].equals(mode))
+                return i;
+        }
+        return 1;
+    }
+
+    public static String modeName(int code) {
+        return code >= 0 && code < MODES.length ? MODES[code] : MODES[1];
+    }
+
+    // 16-bit sequence comparison with wrap-around
+    public static boolean seqGreater(int a, int b) {
+        int diff = (a - b) & 0xFFFF;
+        return diff != 0 && diff < 0x8000;
+    }
+}
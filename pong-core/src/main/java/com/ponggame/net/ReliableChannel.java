@@ -0,0 +1,230 @@
+package com.ponggame.net;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Ack/resend channel for the few messages that must arrive (lobby and room events).
+ * Snapshots and inputs bypass it; acks ride along on every DATA packet.
+ *
+ * Outgoing messages stay in a fixed window until acknowledged and are resent once
+ * the retransmission timeout expires. Incoming messages are delivered in order.
+ */
+public class ReliableChannel {
+
+    public interface Receiver {
+        void onMessage(int event, ByteBuffer payload);
+    }
+
+    // ackBits covers 32 messages behind ack, so never have more than that in flight
+    private static final int WINDOW = 32;
+    private static final long MIN_RTO_NANOS = 50_000_000L;
+    private static final long MAX_RTO_NANOS = 1_000_000_000L;
+
+    private final Message[] outgoing = new Message[WINDOW];
+    private int nextSendSeq = 0;
+    private int oldestUnacked = 0;
+
+    private final Message[] incoming = new Message[WINDOW];
+    private int nextDeliverSeq = 0;
+    private int remoteAck = 0xFFFF;
+    private int remoteAckBits = 0;
+    private boolean anyReceived = false;
+    private boolean ackPending = false;
+
+    private double srttNanos = 200_000_000.0;
+    private double rttVarNanos = 50_000_000.0;
+
+    private static class Message {
+        int seq;
+        int event;
+        byte[] payload;
+        long lastSentNanos;
+        int sendCount;
+    }
+
+    // Returns false when the window is full; the caller should retry later
+    public boolean send(int event, byte[] payload) {
+        if (((nextSendSeq - oldestUnacked) & 0xFFFF) >= WINDOW)
+            return false;
+        Message m = new Message();
+        m.seq = nextSendSeq;
+        m.event = event;
+        m.payload = payload;
+        outgoing[nextSendSeq % WINDOW] = m;
+        nextSendSeq = (nextSendSeq + 1) & 0xFFFF;
+        return true;
+    }
+
+    public boolean hasDue(long now) {
+        for (int seq = oldestUnacked; seq != nextSendSeq; seq = (seq + 1) & 0xFFFF) {
+            Message m = outgoing[seq % WINDOW];
+            if (m != null && isDue(m, now))
+                return true;
+        }
+        return false;
+    }
+
+    private boolean isDue(Message m, long now) {
+        return m.sendCount == 0 || now - m.lastSentNanos >= rtoNanos(m.sendCount);
+    }
+
+    private long rtoNanos(int sendCount) {
+        long rto = (long) (srttNanos + 4 * rttVarNanos);
+        rto = Math.max(MIN_RTO_NANOS, Math.min(MAX_RTO_NANOS, rto));
+        // Back off on repeated loss
+        return Math.min(MAX_RTO_NANOS, rto << Math.min(sendCount - 1, 4));
+    }
+
+    /**
+     * Writes the reliable section (count + messages) with as many due messages as fit
+     * in the buffer. Returns the number written; writes nothing when none are due.
+     */
+    public int writeDue(ByteBuffer buf, long now) {
+        int countPos = buf.position();
+        if (buf.remaining() < 1)
+            return 0;
+        buf.put((byte) 0);
+        int count = 0;
+        for (int seq = oldestUnacked; seq != nextSendSeq && count < 255; seq = (seq + 1) & 0xFFFF) {
+            Message m = outgoing[seq % WINDOW];
+            if (m == null || !isDue(m, now))
+                continue;
+            if (buf.remaining() < 5 + m.payload.length)
+                break;
+            buf.putShort((short) m.seq);
+            buf.put((byte) m.event);
+            buf.putShort((short) m.payload.length);
+            buf.put(m.payload);
+            m.lastSentNanos = now;
+            m.sendCount++;
+            count++;
+        }
+        if (count == 0) {
+            buf.position(countPos);
+        } else {
+            buf.put(countPos, (byte) count);
+        }
+        return count;
+    }
+
+    public void onAck(int ack, int ackBits, long now) {
+        for (int seq = oldestUnacked; seq != nextSendSeq; seq = (seq + 1) & 0xFFFF) {
+            Message m = outgoing[seq % WINDOW];
+            if (m == null)
+                continue;
+            if (isAcked(seq, ack, ackBits)) {
+                // Karn: only sample RTT from messages that were never resent
+                if (m.sendCount == 1)
+                    sampleRtt(now - m.lastSentNanos);
+                outgoing[seq % WINDOW] = null;
+            }
+        }
+        while (oldestUnacked != nextSendSeq && outgoing[oldestUnacked % WINDOW] == null) {
+            oldestUnacked = (oldestUnacked + 1) & 0xFFFF;
+        }
+    }
+
+    private static boolean isAcked(int seq, int ack, int ackBits) {
+        if (seq == ack)
+            return true;
+        int behind = (ack - seq) & 0xFFFF;
+        return behind >= 1 && behind <= 32 && (ackBits & (1 << (behind - 1))) != 0;
+    }
+
+    private void sampleRtt(long rtt) {
+        rttVarNanos = 0.75 * rttVarNanos + 0.25 * Math.abs(srttNanos - rtt);
+        srttNanos = 0.875 * srttNanos + 0.125 * rtt;
+    }
+
+    /**
+     * Reads a reliable section and delivers every message that is now in order.
+     * A section whose count or lengths run past the end of the buffer is
+     * ignored whole, nothing acked or delivered, and false is returned.
+     */
+    public boolean readMessages(ByteBuffer buf, Receiver receiver) {
+        if (!isComplete(buf))
+            return false;
+        int count = buf.get() & 0xFF;
+        for (int i = 0; i < count; i++) {
+            int seq = buf.getShort() & 0xFFFF;
+            int event = buf.get() & 0xFF;
+            int len = buf.getShort() & 0xFFFF;
+            byte[] payload = new byte[len];
+            buf.get(payload);
+            ackPending = true;
+            recordAck(seq);
+
+            int ahead = (seq - nextDeliverSeq) & 0xFFFF;
+            if (ahead >= WINDOW)
+                continue; // duplicate of something already delivered
+            Message m = new Message();
+            m.seq = seq;
+            m.event = event;
+            m.payload = payload;
+            incoming[seq % WINDOW] = m;
+        }
+
+        Message next;
+        while ((next = incoming[nextDeliverSeq % WINDOW]) != null && next.seq == nextDeliverSeq) {
+            incoming[nextDeliverSeq % WINDOW] = null;
+            nextDeliverSeq = (nextDeliverSeq + 1) & 0xFFFF;
+            receiver.onMessage(next.event, ByteBuffer.wrap(next.payload));
+        }
+        return true;
+    }
+
+    // Walks the section with absolute reads, so a short one is rejected before anything is consumed
+    private static boolean isComplete(ByteBuffer buf) {
+        int p = buf.position();
+        int limit = buf.limit();
+        if (p >= limit)
+            return false;
+        int count = buf.get(p++) & 0xFF;
+        for (int i = 0; i < count; i++) {
+            if (limit - p < 5)
+                return false;
+            p += 5 + (buf.getShort(p + 3) & 0xFFFF);
+            if (p > limit)
+                return false;
+        }
+        return true;
+    }
+
+    private void recordAck(int seq) {
+        if (!anyReceived) {
+            anyReceived = true;
+            remoteAck = seq;
+        } else if (Protocol.seqGreater(seq, remoteAck)) {
+            int shift = (seq - remoteAck) & 0xFFFF;
+            remoteAckBits = shift >= 32 ? 0 : remoteAckBits << shift;
+            if (shift <= 32)
+                remoteAckBits |= 1 << (shift - 1);
+            remoteAck = seq;
+        } else {
+            int behind = (remoteAck - seq) & 0xFFFF;
+            if (behind >= 1 && behind <= 32)
+                remoteAckBits |= 1 << (behind - 1);
+        }
+    }
+
+    public int getAck() {
+        return remoteAck;
+    }
+
+    public int getAckBits() {
+        return remoteAckBits;
+    }
+
+    // True when the peer sent reliable messages we have not acknowledged yet
+    public boolean isAckPending() {
+        return ackPending;
+    }
+
+    public void clearAckPending() {
+        ackPending = false;
+    }
+
+    public double getSmoothedRttMillis() {
+        return srttNanos / 1_000_000.0;
+    }
+}
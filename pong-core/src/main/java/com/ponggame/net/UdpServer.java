@@ -0,0 +1,162 @@
+package com.ponggame.net;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Datagram socket with a dedicated receive thread. Received packets are queued
+ * and drained by the game thread, so all protocol and game state stays
+ * single-threaded. Sends go straight to the channel unless the loss simulator
+ * is enabled. The channel is non-blocking, so a full socket send buffer shows up
+ * as a failed {@link #trySend} instead of stalling the game thread.
+ */
+public class UdpServer {
+
+    public static class Datagram {
+        public final SocketAddress from;
+        public final ByteBuffer data;
+
+        Datagram(SocketAddress from, ByteBuffer data) {
+            this.from = from;
+            this.data = data;
+        }
+    }
+
+    private final DatagramChannel channel;
+    private final Selector selector;
+    private final LossSimulator loss;
+    private final Queue<Datagram> inbound = new ConcurrentLinkedQueue<>();
+    private ScheduledExecutorService delayedSender;
+    private Thread receiver;
+    private volatile boolean running;
+
+    public UdpServer(int port, LossSimulator loss) throws IOException {
+        this.channel = DatagramChannel.open();
+        this.channel.bind(new InetSocketAddress(port));
+        this.channel.configureBlocking(false);
+        this.selector = Selector.open();
+        this.channel.register(selector, SelectionKey.OP_READ);
+        this.loss = loss;
+    }
+
+    public void start() {
+        running = true;
+        if (loss.isEnabled()) {
+            delayedSender = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "udp-loss-sim");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        receiver = new Thread(this::receiveLoop, "udp-receiver");
+        receiver.setDaemon(true);
+        receiver.start();
+    }
+
+    private void receiveLoop() {
+        ByteBuffer buf = ByteBuffer.allocate(Protocol.MTU * 2);
+        while (running) {
+            try {
+                selector.select();
+                selector.selectedKeys().clear();
+                SocketAddress from;
+                while (running && (from = receiveNext(buf)) != null) {
+                    enqueue(from, buf);
+                }
+            } catch (ClosedChannelException | ClosedSelectorException e) {
+                return;
+            } catch (IOException e) {
+                if (running)
+                    System.err.println("UDP receive failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private SocketAddress receiveNext(ByteBuffer buf) throws IOException {
+        buf.clear();
+        SocketAddress from = channel.receive(buf);
+        buf.flip();
+        return from;
+    }
+
+    private void enqueue(SocketAddress from, ByteBuffer buf) {
+        if (loss.shouldDrop())
+            return;
+        ByteBuffer copy = ByteBuffer.allocate(buf.remaining());
+        copy.put(buf).flip();
+        int delay = loss.isEnabled() ? loss.delayMillis() : 0;
+        if (delay > 0) {
+            delayedSender.schedule(() -> inbound.add(new Datagram(from, copy)), delay, TimeUnit.MILLISECONDS);
+        } else {
+            inbound.add(new Datagram(from, copy));
+        }
+    }
+
+    // Next received datagram, or null when the queue is empty
+    public Datagram poll() {
+        return inbound.poll();
+    }
+
+    public void send(SocketAddress to, ByteBuffer packet) {
+        if (!loss.isEnabled()) {
+            sendNow(to, packet);
+            return;
+        }
+        if (loss.shouldDrop())
+            return;
+        ByteBuffer copy = ByteBuffer.allocate(packet.remaining());
+        copy.put(packet).flip();
+        delayedSender.schedule(() -> sendNow(to, copy), loss.delayMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sends without copying. Returns false if the socket send buffer is full; the
+     * caller keeps the packet and decides whether to retry or skip it.
+     */
+    public boolean trySend(SocketAddress to, ByteBuffer packet) {
+        if (loss.isEnabled()) {
+            send(to, packet);
+            return true;
+        }
+        return sendNow(to, packet);
+    }
+
+    private boolean sendNow(SocketAddress to, ByteBuffer packet) {
+        try {
+            return channel.send(packet, to) > 0;
+        } catch (IOException e) {
+            if (running)
+                System.err.println("UDP send to " + to + " failed: " + e.getMessage());
+            // Unreachable peers are not a reason to hold the packet back
+            return true;
+        }
+    }
+
+    public int getPort() {
+        return channel.socket().getLocalPort();
+    }
+
+    public void stop() {
+        running = false;
+        selector.wakeup();
+        try {
+            selector.close();
+            channel.close();
+        } catch (IOException ignored) {
+        }
+        if (delayedSender != null)
+            delayedSender.shutdownNow();
+    }
+}
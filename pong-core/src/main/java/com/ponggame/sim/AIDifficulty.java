@@ -0,0 +1,133 @@
+package com.ponggame.sim;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * How well the game's own AI plays: how many ticks it waits between looks at
+ * the ball, how far off the ball it may aim, and how fast it moves its paddle.
+ * Named presets come from ai-difficulty.properties next to this class, which
+ * {@link DifficultyCalibrator} writes so each preset wins a known share of
+ * matches against {@link #BASELINE}:
+ *
+ * <pre>
+ *   levels=easy,medium,hard
+ *   easy.reactionDelay=1   easy.errorMargin=79.4   easy.maxSpeed=5.41   easy.winRate=0.206
+ * </pre>
+ *
+ * errorMargin and maxSpeed are in pixels and pixels per tick; a maxSpeed at
+ * or above the simulation's paddle speed means full speed.
+ */
+public final class AIDifficulty {
+
+    public static final String RESOURCE = "ai-difficulty.properties";
+    public static final String DEFAULT_LEVEL = "medium";
+
+    // The desktop AI as it always played, at 4 px per tick, and the opponent presets are measured against
+    public static final AIDifficulty BASELINE = new AIDifficulty("baseline", 8, 30, 4.0, 0.5);
+
+    private static final Map<String, AIDifficulty> PRESETS = loadPresets();
+
+    private final String name;
+    private final int reactionDelay;
+    private final double errorMargin;
+    private final double maxSpeed;
+    private final double winRate;
+
+    public AIDifficulty(String name, int reactionDelay, double errorMargin, double maxSpeed, double winRate) {
+        this.name = name;
+        this.reactionDelay = Math.max(1, reactionDelay);
+        this.errorMargin = Math.max(0, errorMargin);
+        this.maxSpeed = maxSpeed;
+        this.winRate = winRate;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    // Ticks between target decisions
+    public int getReactionDelay() {
+        return reactionDelay;
+    }
+
+    // Largest distance, in px, the target may be off the ball
+    public double getErrorMargin() {
+        return errorMargin;
+    }
+
+    // Paddle speed in px per tick
+    public double getMaxSpeed() {
+        return maxSpeed;
+    }
+
+    // Share of matches won against BASELINE when calibrated
+    public double getWinRate() {
+        return winRate;
+    }
+
+    // The preset names, easiest first
+    public static List<String> levels() {
+        return new ArrayList<>(PRESETS.keySet());
+    }
+
+    // The named preset, or BASELINE when there is none by that name
+    public static AIDifficulty get(String level) {
+        AIDifficulty d = level == null ? null : PRESETS.get(level);
+        return d != null ? d : BASELINE;
+    }
+
+    // Writes presets in the format loadPresets reads
+    public static void store(List<AIDifficulty> presets, String comment, Writer out) throws IOException {
+        StringBuilder levels = new StringBuilder();
+        for (AIDifficulty d : presets) {
+            levels.append(levels.length() == 0 ? "" : ",").append(d.name);
+        }
+        out.write("# " + comment + "\n");
+        out.write("levels=" + levels + "\n");
+        for (AIDifficulty d : presets) {
+            out.write(d.name + ".reactionDelay=" + d.reactionDelay + "\n");
+            out.write(d.name + ".errorMargin=" + d.errorMargin + "\n");
+            out.write(d.name + ".maxSpeed=" + d.maxSpeed + "\n");
+            out.write(d.name + ".winRate=" + d.winRate + "\n");
+        }
+        out.flush();
+    }
+
+    private static Map<String, AIDifficulty> loadPresets() {
+        Map<String, AIDifficulty> presets = new LinkedHashMap<>();
+        try (InputStream in = AIDifficulty.class.getResourceAsStream(RESOURCE)) {
+            if (in == null)
+                return presets;
+            Properties p = new Properties();
+            p.load(in);
+            for (String level : p.getProperty("levels", "").split(",")) {
+                level = level.trim();
+                if (level.isEmpty())
+                    continue;
+                presets.put(level, new AIDifficulty(level,
+                        Integer.parseInt(p.getProperty(level + ".reactionDelay", "" + BASELINE.reactionDelay).trim()),
+                        Double.parseDouble(p.getProperty(level + ".errorMargin", "" + BASELINE.errorMargin).trim()),
+                        Double.parseDouble(p.getProperty(level + ".maxSpeed", "" + BASELINE.maxSpeed).trim()),
+                        Double.parseDouble(p.getProperty(level + ".winRate", "0.5").trim())));
+            }
+        } catch (IOException | RuntimeException e) {
+            // A broken file leaves every level on the baseline rather than the game without an AI
+            e.printStackTrace();
+            presets.clear();
+        }
+        return presets;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: reactionDelay=%d errorMargin=%.1f maxSpeed=%.2f winRate=%.2f",
+                name, reactionDelay, errorMargin, maxSpeed, winRate);
+    }
+}
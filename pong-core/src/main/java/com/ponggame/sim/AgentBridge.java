@@ -0,0 +1,353 @@
+package com.ponggame.sim;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Lets a paddle be played by another process on the same machine through a
+ * memory-mapped file, with no sockets and no serialization. The game writes
+ * each agent's observation (the same {@link VectorEnv#OBS_SIZE} floats a
+ * VectorEnv gives, so a policy trained there plays unchanged) and the agent
+ * answers with one {@link VectorEnv} ACTION_* value.
+ *
+ * <pre>
+ *   header, 64 bytes:  u32 magic 'PGAB'  u32 version  u32 slots  u32 obsSize  u32 slotBytes
+ *   slot n at 64 + n * 256:
+ *     0  i64 obsSeq      odd while the game writes, even once the observation is complete
+ *     8  i32 tick        16 f32[obsSize] observation
+ *    12  i32 position    protocol position code of the paddle
+ *   128  i64 actionSeq   the obsSeq the agent is answering
+ *   136  i32 action
+ * </pre>
+ *
+ * Everything is little-endian. Each side publishes with a release store of its
+ * sequence number and the other side spins on an acquire load, so when both
+ * have a core a handoff costs a cache line transfer, well under a microsecond.
+ * Game and agent write to separate cache lines. A side that has waited a while
+ * starts yielding, so the two still make progress on a single core.
+ *
+ * The game calls {@link #publish} and then {@link #action}, which waits a little
+ * for a fresh answer and otherwise keeps the last one, so a slow agent can't
+ * stall the game. The agent calls {@link #awaitObservation} and {@link #submit}.
+ * An agent written in another language maps the same file and follows the
+ * layout above.
+ *
+ * Usage: java -cp pong-core-1.0.jar com.ponggame.sim.AgentBridge file
+ *            --host [--players 2] [--agents 1] [--ticks 36000] [--lockstep true]
+ *            | --agent [--slot 0]
+ */
+public final class AgentBridge implements AutoCloseable {
+
+    public static final int MAGIC = 0x42414750; // "PGAB" little-endian
+    public static final int VERSION = 1;
+    public static final int MAX_SLOTS = 4;
+
+    private static final int HEADER_SIZE = 64;
+    private static final int SLOT_SIZE = 256;
+    private static final int OBS_SEQ = 0;
+    private static final int TICK = 8;
+    private static final int POSITION = 12;
+    private static final int OBS = 16;
+    private static final int ACTION_SEQ = 128;
+    private static final int ACTION = 136;
+    // Spin this long before each check of the clock
+    private static final int SPINS_PER_CHECK = 64;
+    // After this long, yield between checks so the other side can run on a busy or single core machine
+    private static final long SPIN_NANOS = 50_000;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class,
+            ByteOrder.LITTLE_ENDIAN);
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buf;
+    private final int slots;
+    private final int obsSize;
+    // Game side: last sequence published per slot, and the last action taken
+    private final long[] published;
+    private final int[] lastAction;
+
+    private AgentBridge(FileChannel channel, MappedByteBuffer buf, int slots, int obsSize) {
+        this.channel = channel;
+        this.buf = buf;
+        this.slots = slots;
+        this.obsSize = obsSize;
+        this.published = new long[slots];
+        this.lastAction = new int[slots];
+    }
+
+    // Game side: creates the file, replacing any old one, with one slot per external paddle
+    public static AgentBridge create(Path file, int slots) throws IOException {
+        if (slots < 1 || slots > MAX_SLOTS)
+            throw new IllegalArgumentException("slots must be 1.." + MAX_SLOTS + ": " + slots);
+        FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) slots * SLOT_SIZE);
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(4, VERSION);
+        buf.putInt(8, slots);
+        buf.putInt(12, VectorEnv.OBS_SIZE);
+        buf.putInt(16, SLOT_SIZE);
+        for (int s = 0; s < slots; s++) {
+            buf.putInt(HEADER_SIZE + s * SLOT_SIZE + POSITION, -1);
+        }
+        // Magic last, so an agent that opens the file early never sees a half-written header
+        VarHandle.releaseFence();
+        buf.putInt(0, MAGIC);
+        return new AgentBridge(ch, buf, slots, VectorEnv.OBS_SIZE);
+    }
+
+    // Agent side: maps a file the game created
+    public static AgentBridge attach(Path file) throws IOException {
+        FileChannel ch = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (ch.size() < HEADER_SIZE) {
+            ch.close();
+            throw new IOException("Not an agent bridge: " + file);
+        }
+        MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_WRITE, 0, ch.size());
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        int slots = buf.getInt(8);
+        int obsSize = buf.getInt(12);
+        if (buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION || buf.getInt(16) != SLOT_SIZE
+                || ch.size() < HEADER_SIZE + (long) slots * SLOT_SIZE) {
+            ch.close();
+            throw new IOException("Not a version " + VERSION + " agent bridge: " + file);
+        }
+        // The observation must end before the agent's cache line, and slots fit what create() allows
+        if (slots < 1 || slots > MAX_SLOTS || obsSize < 1 || OBS + 4L * obsSize > ACTION_SEQ) {
+            ch.close();
+            throw new IOException("Bad agent bridge header in " + file + ": slots=" + slots + " obsSize=" + obsSize);
+        }
+        return new AgentBridge(ch, buf, slots, obsSize);
+    }
+
+    public int getSlots() {
+        return slots;
+    }
+
+    public int getObsSize() {
+        return obsSize;
+    }
+
+    // Position code the game has put in this slot, or -1 before the first observation
+    public int getPosition(int slot) {
+        return buf.getInt(base(slot) + POSITION);
+    }
+
+    private static int base(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    // Game side: one observation for a slot, obsSize floats from obs[at]
+    public void publish(int slot, int tick, int position, float[] obs, int at) {
+        int b = base(slot);
+        long seq = published[slot];
+        // Seqlock: odd tells a reader the observation is being rewritten
+        LONGS.setRelease(buf, b + OBS_SEQ, seq + 1);
+        VarHandle.storeStoreFence();
+        buf.putInt(b + TICK, tick);
+        buf.putInt(b + POSITION, position);
+        for (int i = 0; i < obsSize; i++) {
+            buf.putFloat(b + OBS + i * 4, obs[at + i]);
+        }
+        published[slot] = seq + 2;
+        LONGS.setRelease(buf, b + OBS_SEQ, seq + 2);
+    }
+
+    /**
+     * Game side: the agent's answer to the last observation, waiting up to
+     * waitNanos for it. If it doesn't arrive in time the previous action is
+     * repeated, as a network game would with a late input.
+     */
+    public int action(int slot, long waitNanos) {
+        int b = base(slot);
+        long want = published[slot];
+        long start = 0;
+        for (int spin = 0; (long) LONGS.getAcquire(buf, b + ACTION_SEQ) < want; spin++) {
+            if (spin % SPINS_PER_CHECK == 0) {
+                long now = System.nanoTime();
+                if (start == 0)
+                    start = now;
+                else if (now - start >= waitNanos)
+                    return answered(slot, b);
+                backOff(now - start);
+            }
+            Thread.onSpinWait();
+        }
+        return answered(slot, b);
+    }
+
+    // The newest action the agent has sent, if any
+    private int answered(int slot, int b) {
+        if ((long) LONGS.getAcquire(buf, b + ACTION_SEQ) > 0)
+            lastAction[slot] = buf.getInt(b + ACTION);
+        return lastAction[slot];
+    }
+
+    /**
+     * Agent side: waits for an observation newer than after and copies it into
+     * obs[at]. Returns its sequence number, to pass to {@link #submit}, or -1 if
+     * none arrived within timeoutNanos.
+     */
+    public long awaitObservation(int slot, long after, float[] obs, int at, long timeoutNanos) {
+        int b = base(slot);
+        long start = 0;
+        int n = Math.min(obsSize, obs.length - at);
+        for (int spin = 0;; spin++) {
+            long seq = (long) LONGS.getAcquire(buf, b + OBS_SEQ);
+            if (seq > after && (seq & 1) == 0) {
+                for (int i = 0; i < n; i++) {
+                    obs[at + i] = buf.getFloat(b + OBS + i * 4);
+                }
+                VarHandle.loadLoadFence();
+                if ((long) LONGS.getAcquire(buf, b + OBS_SEQ) == seq)
+                    return seq;
+                continue; // overwritten while copying
+            }
+            if (spin % SPINS_PER_CHECK == 0) {
+                long now = System.nanoTime();
+                if (start == 0)
+                    start = now;
+                else if (now - start >= timeoutNanos)
+                    return -1;
+                backOff(now - start);
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    private static void backOff(long waited) {
+        if (waited > SPIN_NANOS)
+            Thread.yield();
+    }
+
+    // Tick of the observation last read from this slot
+    public int getTick(int slot) {
+        return buf.getInt(base(slot) + TICK);
+    }
+
+    // Agent side: answers observation seq with an ACTION_* value
+    public void submit(int slot, long seq, int action) {
+        int b = base(slot);
+        buf.putInt(b + ACTION, action);
+        LONGS.setRelease(buf, b + ACTION_SEQ, seq);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: AgentBridge file --host [--players 2] [--agents 1] [--ticks 36000]"
+                    + " [--lockstep true] | --agent [--slot 0]");
+            return;
+        }
+        Path file = Path.of(args[0]);
+        boolean host = args[1].equals("--host");
+        int players = 2;
+        int agents = 1;
+        int ticks = VectorEnv.DEFAULT_MAX_TICKS;
+        boolean lockstep = true;
+        int slot = 0;
+        for (int i = 2; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--players" -> players = Integer.parseInt(args[i + 1]);
+                case "--agents" -> agents = Integer.parseInt(args[i + 1]);
+                case "--ticks" -> ticks = Integer.parseInt(args[i + 1]);
+                case "--lockstep" -> lockstep = Boolean.parseBoolean(args[i + 1]);
+                case "--slot" -> slot = Integer.parseInt(args[i + 1]);
+                default -> System.err.println("Unknown option " + args[i]);
+            }
+        }
+        if (host)
+            runHost(file, players, agents, ticks, lockstep);
+        else
+            runAgent(file, slot);
+    }
+
+    /**
+     * A headless match whose first agents positions are played through the
+     * bridge and the rest by SimAI. Lockstep waits for every action, for
+     * training; otherwise it runs at 60 Hz and gives each agent a millisecond.
+     */
+    private static void runHost(Path file, int players, int agents, int ticks, boolean lockstep) throws IOException {
+        SimState state = new SimState();
+        Simulation.init(state, players, System.nanoTime());
+        int[] positions = new int[4];
+        SimAI[] ais = new SimAI[4];
+        int n = 0;
+        for (int pos = 0; pos < 4; pos++) {
+            if (!state.isActive(pos))
+                continue;
+            if (n < agents)
+                positions[n++] = pos;
+            else
+                ais[pos] = new SimAI(pos, pos);
+        }
+        int[] inputs = new int[4];
+        float[] obs = new float[VectorEnv.OBS_SIZE];
+        long[] waits = new long[ticks];
+        long waitNanos = lockstep ? 5_000_000_000L : 1_000_000L;
+        long period = 1_000_000_000L / LocalMatch.TICK_RATE;
+
+        try (AgentBridge bridge = create(file, n)) {
+            System.out.println("Hosting " + n + " agent slot(s) in " + file + (lockstep ? " (lockstep)" : ""));
+            long next = System.nanoTime();
+            int t = 0;
+            for (; t < ticks && !state.isOver(); t++) {
+                for (int pos = 0; pos < 4; pos++) {
+                    inputs[pos] = ais[pos] != null ? ais[pos].update(state) : 0;
+                }
+                long start = System.nanoTime();
+                for (int a = 0; a < n; a++) {
+                    VectorEnv.observe(state, positions[a], obs, 0);
+                    bridge.publish(a, state.tick, positions[a], obs, 0);
+                }
+                for (int a = 0; a < n; a++) {
+                    inputs[positions[a]] = VectorEnv.controlBits(positions[a], bridge.action(a, waitNanos));
+                }
+                waits[t] = System.nanoTime() - start;
+                Simulation.step(state, inputs);
+                if (!lockstep) {
+                    next += period;
+                    while (System.nanoTime() < next) {
+                        Thread.onSpinWait();
+                    }
+                }
+            }
+            Arrays.sort(waits, 0, t);
+            System.out.printf("%d ticks, scores %s, handoff p50 %.1fus p99 %.1fus%n", t,
+                    Arrays.toString(Arrays.copyOf(state.scores, players)), waits[t / 2] / 1e3,
+                    waits[Math.min(t - 1, t * 99 / 100)] / 1e3);
+        }
+    }
+
+    // A scripted agent that keeps its paddle under the ball, as an example of the agent side
+    private static void runAgent(Path file, int slot) throws IOException {
+        try (AgentBridge bridge = attach(file)) {
+            if (slot < 0 || slot >= bridge.getSlots()) {
+                System.err.println("No slot " + slot + "; the game has " + bridge.getSlots());
+                return;
+            }
+            float[] obs = new float[bridge.getObsSize()];
+            long seq = 0;
+            long answered = 0;
+            while ((seq = bridge.awaitObservation(slot, seq, obs, 0, 2_000_000_000L)) >= 0) {
+                float diff = obs[VectorEnv.OBS_BALL_U] - obs[VectorEnv.OBS_PADDLE];
+                int action = diff > 0.01f ? VectorEnv.ACTION_FORWARD
+                        : diff < -0.01f ? VectorEnv.ACTION_BACK : VectorEnv.ACTION_STAY;
+                bridge.submit(slot, seq, action);
+                answered++;
+            }
+            System.out.println("Game went quiet after " + answered + " observations");
+        }
+    }
+}
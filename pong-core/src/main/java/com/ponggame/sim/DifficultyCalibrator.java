@@ -0,0 +1,319 @@
+package com.ponggame.sim;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Finds {@link AIDifficulty} presets that win a chosen share of matches
+ * against {@link AIDifficulty#BASELINE}, and writes them in the format
+ * AIDifficulty loads. Every candidate plays headless 2-player matches of
+ * {@link Simulation} against the baseline, sides alternating, each match
+ * capped at VectorEnv.DEFAULT_MAX_TICKS with a capped match going to whoever
+ * leads (half a win when level).
+ *
+ * The search is successive halving over a Latin hypercube sample of reaction
+ * delay, error margin and paddle speed, plus the baseline itself: every
+ * candidate plays a few matches, the half closest to the target win rate
+ * play twice as many, and so on until one is left. Win rate is steep in
+ * these parameters, so a few refinement rounds then halve again over
+ * neighbours of the winner, each round searching closer. The winner is then
+ * confirmed over --confirm matches; while that rate is further than
+ * --tolerance from the target, refinement goes on, up to a limit. If a level
+ * still misses, main writes nothing and exits with status 1. Match n of every
+ * candidate uses the same seed, so
+ * candidates are compared on equal terms, and results carry over from one
+ * target to the next. Matches are played in chunks on a fork-join pool with
+ * one thread per core, and the outcome does not depend on the thread count.
+ *
+ * Usage: java -cp pong-core-1.0.jar com.ponggame.sim.DifficultyCalibrator
+ *            [--targets 0.2,0.5,0.8] [--levels easy,medium,hard] [--candidates 64]
+ *            [--matches 8] [--confirm 1024] [--tolerance 0.03] [--threads cores] [--seed 1]
+ *            [--out ai-difficulty.properties]
+ */
+public final class DifficultyCalibrator {
+
+    private static final int CHUNK = 8;
+    private static final int REFINE_ROUNDS = 5;
+    // Further rounds allowed while the confirmed win rate is out of tolerance
+    private static final int EXTRA_ROUNDS = 10;
+    private static final double MIN_SCALE = 0.01;
+    public static final int DEFAULT_CONFIRM_MATCHES = 1024;
+    public static final double DEFAULT_TOLERANCE = 0.03;
+    private static final int REFINE_SIZE = 16;
+
+    // Search space: reaction delay in ticks, error margin in px, paddle speed in px per tick
+    private static final int MIN_DELAY = 1;
+    private static final int MAX_DELAY = 16;
+    private static final double MAX_ERROR = 120;
+    private static final double MIN_SPEED = 3;
+    private static final double MAX_SPEED = FixedMath.toDouble(Simulation.PADDLE_SPEED);
+
+    private final ForkJoinPool pool;
+    private final long seed;
+    private final List<Candidate> candidates = new ArrayList<>();
+    // Candidates that have played the confirmation matches, the baseline first
+    private final List<Candidate> confirmed = new ArrayList<>();
+    private final Random rng;
+    private long matchesPlayed;
+
+    public DifficultyCalibrator(ForkJoinPool pool, int count, long seed) {
+        this.pool = pool;
+        this.seed = seed;
+        this.rng = new Random(seed);
+        // The baseline wins half its matches by symmetry, so a 0.5 target is always reachable
+        candidates.add(candidate(AIDifficulty.BASELINE.getReactionDelay(), AIDifficulty.BASELINE.getErrorMargin(),
+                AIDifficulty.BASELINE.getMaxSpeed()));
+        int[][] strata = new int[3][];
+        for (int d = 0; d < strata.length; d++) {
+            strata[d] = permutation(count, rng);
+        }
+        for (int i = 0; i < count; i++) {
+            int delay = MIN_DELAY + (int) ((strata[0][i] + rng.nextDouble()) / count * (MAX_DELAY - MIN_DELAY + 1));
+            double error = (strata[1][i] + rng.nextDouble()) / count * MAX_ERROR;
+            double speed = MIN_SPEED + (strata[2][i] + rng.nextDouble()) / count * (MAX_SPEED - MIN_SPEED);
+            candidates.add(candidate(delay, error, speed));
+        }
+    }
+
+    private Candidate candidate(int delay, double error, double speed) {
+        return new Candidate(new AIDifficulty("candidate" + candidates.size(),
+                Math.max(MIN_DELAY, Math.min(MAX_DELAY, delay)),
+                Math.round(Math.max(0, Math.min(MAX_ERROR, error)) * 10) / 10.0,
+                Math.round(Math.max(MIN_SPEED, Math.min(MAX_SPEED, speed)) * 100) / 100.0, 0));
+    }
+
+    // A random point near d, at most scale of each range away
+    private Candidate neighbour(AIDifficulty d, double scale) {
+        Candidate c = candidate(
+                d.getReactionDelay() + (int) Math.round((rng.nextDouble() * 2 - 1) * scale * (MAX_DELAY - MIN_DELAY)),
+                d.getErrorMargin() + (rng.nextDouble() * 2 - 1) * scale * MAX_ERROR,
+                d.getMaxSpeed() + (rng.nextDouble() * 2 - 1) * scale * (MAX_SPEED - MIN_SPEED));
+        candidates.add(c);
+        return c;
+    }
+
+    private static int[] permutation(int n, Random rng) {
+        int[] p = new int[n];
+        for (int i = 0; i < n; i++) {
+            p[i] = i;
+        }
+        for (int i = n - 1; i > 0; i--) {
+            int j = rng.nextInt(i + 1);
+            int t = p[i];
+            p[i] = p[j];
+            p[j] = t;
+        }
+        return p;
+    }
+
+    public long getMatchesPlayed() {
+        return matchesPlayed;
+    }
+
+    /**
+     * Successive halving towards a target win rate, starting every candidate
+     * at firstMatches, then refinement until the winner's rate over
+     * confirmMatches is within tolerance of the target or the extra rounds
+     * run out. The preset returned is named level and carries its confirmed
+     * win rate, which callers check against the tolerance.
+     */
+    public AIDifficulty calibrate(String level, double target, int firstMatches, int confirmMatches, double tolerance) {
+        // The closest confirmed candidate so far; the baseline and earlier levels' presets start it off
+        if (confirmed.isEmpty())
+            confirm(candidates.get(0), confirmMatches);
+        Candidate champion = null;
+        for (Candidate c : confirmed) {
+            champion = closer(champion, c, target);
+        }
+
+        Candidate best = halve(new ArrayList<>(candidates), target, firstMatches);
+        double scale = 0.15;
+        for (int r = 0; ; r++) {
+            if (r >= REFINE_ROUNDS) {
+                // Halving favours candidates that got lucky; only confirmed rates are trusted
+                champion = closer(champion, confirm(best, confirmMatches), target);
+                if (Math.abs(champion.winRate() - target) <= tolerance || r == REFINE_ROUNDS + EXTRA_ROUNDS)
+                    break;
+                best = champion;
+            }
+            List<Candidate> local = new ArrayList<>();
+            local.add(best);
+            for (int i = 1; i < REFINE_SIZE; i++) {
+                local.add(neighbour(best.difficulty, scale));
+            }
+            best = halve(local, target, firstMatches);
+            scale = Math.max(MIN_SCALE, scale / 2);
+        }
+        AIDifficulty d = champion.difficulty;
+        return new AIDifficulty(level, d.getReactionDelay(), d.getErrorMargin(), d.getMaxSpeed(),
+                Math.round(champion.winRate() * 1000) / 1000.0);
+    }
+
+    private Candidate confirm(Candidate c, int matches) {
+        playUpTo(List.of(c), matches);
+        if (!confirmed.contains(c))
+            confirmed.add(c);
+        return c;
+    }
+
+    private static Candidate closer(Candidate a, Candidate b, double target) {
+        if (a == null)
+            return b;
+        return Math.abs(b.winRate() - target) < Math.abs(a.winRate() - target) ? b : a;
+    }
+
+    private Candidate halve(List<Candidate> survivors, double target, int firstMatches) {
+        Comparator<Candidate> closest = Comparator.comparingDouble(c -> Math.abs(c.winRate() - target));
+        int matches = firstMatches;
+        while (true) {
+            playUpTo(survivors, matches);
+            survivors.sort(closest);
+            if (survivors.size() == 1)
+                return survivors.get(0);
+            survivors = new ArrayList<>(survivors.subList(0, (survivors.size() + 1) / 2));
+            matches *= 2;
+        }
+    }
+
+    // Brings every candidate up to this many matches, in chunks spread over the pool
+    private void playUpTo(List<Candidate> list, int matches) {
+        List<Callable<Double>> tasks = new ArrayList<>();
+        List<Candidate> owners = new ArrayList<>();
+        for (Candidate c : list) {
+            for (int from = c.matches; from < matches; from += CHUNK) {
+                int start = from;
+                int end = Math.min(matches, from + CHUNK);
+                tasks.add(() -> c.play(start, end));
+                owners.add(c);
+            }
+        }
+        List<Future<Double>> results = pool.invokeAll(tasks);
+        try {
+            for (int i = 0; i < results.size(); i++) {
+                owners.get(i).wins += results.get(i).get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+        for (Candidate c : list) {
+            if (c.matches < matches) {
+                matchesPlayed += matches - c.matches;
+                c.matches = matches;
+            }
+        }
+    }
+
+    private final class Candidate {
+        final AIDifficulty difficulty;
+        int matches;
+        double wins;
+
+        Candidate(AIDifficulty difficulty) {
+            this.difficulty = difficulty;
+        }
+
+        double winRate() {
+            return matches == 0 ? 0 : wins / matches;
+        }
+
+        // Matches [from, to), each on its own seed; 1 per win, 0.5 per capped draw
+        double play(int from, int to) {
+            SimState s = new SimState();
+            int[] inputs = new int[4];
+            double won = 0;
+            for (int m = from; m < to; m++) {
+                long matchSeed = seed * 0x9E3779B97F4A7C15L + m;
+                int side = m & 1;
+                SimAI candidate = new SimAI(side, matchSeed + 1, difficulty);
+                SimAI baseline = new SimAI(1 - side, matchSeed + 2, AIDifficulty.BASELINE);
+                Simulation.init(s, 2, matchSeed);
+                while (!s.isOver() && s.tick < VectorEnv.DEFAULT_MAX_TICKS) {
+                    inputs[side] = candidate.update(s);
+                    inputs[1 - side] = baseline.update(s);
+                    Simulation.step(s, inputs);
+                }
+                int mine = s.scores[side];
+                int theirs = s.scores[1 - side];
+                won += mine > theirs ? 1 : mine == theirs ? 0.5 : 0;
+            }
+            return won;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        double[] targets = {0.2, 0.5, 0.8};
+        String[] levels = {"easy", "medium", "hard"};
+        int count = 64;
+        int firstMatches = 8;
+        int confirmMatches = DEFAULT_CONFIRM_MATCHES;
+        double tolerance = DEFAULT_TOLERANCE;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = 1;
+        Path out = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--targets" -> targets = Arrays.stream(args[i + 1].split(",")).mapToDouble(Double::parseDouble).toArray();
+                case "--levels" -> levels = args[i + 1].split(",");
+                case "--candidates" -> count = Integer.parseInt(args[i + 1]);
+                case "--matches" -> firstMatches = Integer.parseInt(args[i + 1]);
+                case "--confirm" -> confirmMatches = Integer.parseInt(args[i + 1]);
+                case "--tolerance" -> tolerance = Double.parseDouble(args[i + 1]);
+                case "--threads" -> threads = Integer.parseInt(args[i + 1]);
+                case "--seed" -> seed = Long.parseLong(args[i + 1]);
+                case "--out" -> out = Path.of(args[i + 1]);
+                default -> System.err.println("Unknown option " + args[i]);
+            }
+        }
+        if (levels.length != targets.length)
+            throw new IllegalArgumentException("Need one level name per target");
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        DifficultyCalibrator calibrator = new DifficultyCalibrator(pool, count, seed);
+        List<AIDifficulty> presets = new ArrayList<>();
+        long start = System.nanoTime();
+        boolean missed = false;
+        for (int t = 0; t < targets.length; t++) {
+            AIDifficulty d = calibrator.calibrate(levels[t], targets[t], firstMatches, confirmMatches, tolerance);
+            presets.add(d);
+            System.err.printf("target %.2f -> %s (%d matches so far, %.1f s)%n", targets[t], d,
+                    calibrator.getMatchesPlayed(), (System.nanoTime() - start) / 1e9);
+            if (Math.abs(d.getWinRate() - targets[t]) > tolerance) {
+                System.err.printf("%s wins %.3f, not within %.3f of %.2f%n", levels[t], d.getWinRate(), tolerance, targets[t]);
+                missed = true;
+            }
+        }
+        pool.shutdown();
+        if (missed) {
+            System.err.println("Not writing presets; try more --candidates or --matches, or a looser --tolerance");
+            System.exit(1);
+        }
+
+        String comment = String.format("Written by DifficultyCalibrator --candidates %d --matches %d --confirm %d"
+                + " --tolerance %s --seed %d; winRate is measured against SimAI's baseline over %d matches",
+                count, firstMatches, confirmMatches, tolerance, seed, confirmMatches);
+        if (out == null) {
+            AIDifficulty.store(presets, comment, new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        } else {
+            try (Writer w = Files.newBufferedWriter(out)) {
+                AIDifficulty.store(presets, comment, w);
+            }
+            System.err.println("Wrote " + out);
+        }
+    }
+}
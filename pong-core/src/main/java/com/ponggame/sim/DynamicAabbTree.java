@@ -0,0 +1,279 @@
+package com.ponggame.sim;
+
+import java.util.Arrays;
+
+/**
+ * Bounding-volume tree for objects that move, appear and disappear: a level's
+ * moving obstacles and power-ups. Each object's leaf holds a box grown by a
+ * margin, so while the object stays inside it a {@link #move} costs nothing;
+ * only when it leaves is the leaf reinserted, next to the sibling whose box
+ * grows least. On the way back up, any node whose children's heights differ
+ * by more than one is rotated, as in an AVL tree, so the tree stays O(log n)
+ * deep and queries stay logarithmic in whatever order objects arrive.
+ *
+ * Capacity is fixed when the tree is made and nodes come from a free list,
+ * so nothing allocates after construction and {@link #copyFrom} can restore
+ * a tree for rollback. The same operations in the same order always build the
+ * same tree.
+ */
+public final class DynamicAabbTree {
+
+    private static final int NONE = -1;
+
+    private final int capacity;
+    private final int margin;
+    private final int[] minX, minY, maxX, maxY;
+    private final int[] parent, left, right, item;
+    private final int[] depth; // height of the subtree below a node, 0 for a leaf
+    private final int[] leafOf;
+    private final int[] stack;
+    private int root = NONE;
+    private int free;
+
+    // Up to items objects, numbered 0..items-1, with boxes grown by margin on every side
+    public DynamicAabbTree(int items, int margin) {
+        this.capacity = Math.max(1, 2 * items - 1);
+        this.margin = margin;
+        minX = new int[capacity];
+        minY = new int[capacity];
+        maxX = new int[capacity];
+        maxY = new int[capacity];
+        parent = new int[capacity];
+        left = new int[capacity];
+        right = new int[capacity];
+        item = new int[capacity];
+        depth = new int[capacity];
+        leafOf = new int[items];
+        stack = new int[capacity];
+        clear();
+    }
+
+    public void clear() {
+        root = NONE;
+        for (int n = 0; n < capacity; n++) {
+            left[n] = n + 1 < capacity ? n + 1 : NONE; // the free list runs through left
+        }
+        free = 0;
+        Arrays.fill(leafOf, NONE);
+    }
+
+    public void copyFrom(DynamicAabbTree o) {
+        System.arraycopy(o.minX, 0, minX, 0, capacity);
+        System.arraycopy(o.minY, 0, minY, 0, capacity);
+        System.arraycopy(o.maxX, 0, maxX, 0, capacity);
+        System.arraycopy(o.maxY, 0, maxY, 0, capacity);
+        System.arraycopy(o.parent, 0, parent, 0, capacity);
+        System.arraycopy(o.left, 0, left, 0, capacity);
+        System.arraycopy(o.right, 0, right, 0, capacity);
+        System.arraycopy(o.item, 0, item, 0, capacity);
+        System.arraycopy(o.depth, 0, depth, 0, capacity);
+        System.arraycopy(o.leafOf, 0, leafOf, 0, leafOf.length);
+        root = o.root;
+        free = o.free;
+    }
+
+    public boolean contains(int i) {
+        return leafOf[i] != NONE;
+    }
+
+    public void insert(int i, int bMinX, int bMinY, int bMaxX, int bMaxY) {
+        if (leafOf[i] != NONE)
+            remove(i);
+        int leaf = allocate();
+        item[leaf] = i;
+        left[leaf] = NONE;
+        right[leaf] = NONE;
+        depth[leaf] = 0;
+        minX[leaf] = bMinX - margin;
+        minY[leaf] = bMinY - margin;
+        maxX[leaf] = bMaxX + margin;
+        maxY[leaf] = bMaxY + margin;
+        leafOf[i] = leaf;
+        insertLeaf(leaf);
+    }
+
+    public void remove(int i) {
+        int leaf = leafOf[i];
+        if (leaf == NONE)
+            return;
+        removeLeaf(leaf);
+        release(leaf);
+        leafOf[i] = NONE;
+    }
+
+    // New box for an object; the tree only changes when the box has left its margin
+    public void move(int i, int bMinX, int bMinY, int bMaxX, int bMaxY) {
+        int leaf = leafOf[i];
+        if (leaf != NONE && bMinX >= minX[leaf] && bMinY >= minY[leaf] && bMaxX <= maxX[leaf] && bMaxY <= maxY[leaf])
+            return;
+        insert(i, bMinX, bMinY, bMaxX, bMaxY);
+    }
+
+    /**
+     * Objects whose grown boxes overlap the query box, written to out; returns
+     * how many. Callers test the exact shapes.
+     */
+    public int query(int qMinX, int qMinY, int qMaxX, int qMaxY, int[] out) {
+        if (root == NONE)
+            return 0;
+        int found = 0;
+        int top = 0;
+        stack[top++] = root;
+        while (top > 0) {
+            int node = stack[--top];
+            if (minX[node] > qMaxX || maxX[node] < qMinX || minY[node] > qMaxY || maxY[node] < qMinY)
+                continue;
+            if (left[node] == NONE) {
+                out[found++] = item[node];
+            } else {
+                stack[top++] = right[node];
+                stack[top++] = left[node];
+            }
+        }
+        return found;
+    }
+
+    // Nodes from the root to the deepest leaf, to check the tree stays shallow
+    public int height() {
+        return root == NONE ? 0 : depth[root] + 1;
+    }
+
+    private void insertLeaf(int leaf) {
+        if (root == NONE) {
+            root = leaf;
+            parent[leaf] = NONE;
+            return;
+        }
+        // Walk down towards the child whose box would grow least, by perimeter
+        int node = root;
+        while (left[node] != NONE) {
+            long costLeft = grownPerimeter(left[node], leaf);
+            long costRight = grownPerimeter(right[node], leaf);
+            node = costLeft <= costRight ? left[node] : right[node];
+        }
+
+        int oldParent = parent[node];
+        int branch = allocate();
+        item[branch] = NONE;
+        parent[branch] = oldParent;
+        left[branch] = node;
+        right[branch] = leaf;
+        depth[branch] = depth[node] + 1;
+        parent[node] = branch;
+        parent[leaf] = branch;
+        if (oldParent == NONE)
+            root = branch;
+        else if (left[oldParent] == node)
+            left[oldParent] = branch;
+        else
+            right[oldParent] = branch;
+        refit(branch);
+    }
+
+    private void removeLeaf(int leaf) {
+        if (leaf == root) {
+            root = NONE;
+            return;
+        }
+        int branch = parent[leaf];
+        int sibling = left[branch] == leaf ? right[branch] : left[branch];
+        int grand = parent[branch];
+        parent[sibling] = grand;
+        if (grand == NONE) {
+            root = sibling;
+        } else {
+            if (left[grand] == branch)
+                left[grand] = sibling;
+            else
+                right[grand] = sibling;
+            refit(grand);
+        }
+        release(branch);
+    }
+
+    // Rebalances and recomputes boxes and heights from node up to the root
+    private void refit(int node) {
+        for (; node != NONE; node = parent[node]) {
+            node = balance(node);
+            fit(node);
+        }
+    }
+
+    private void fit(int node) {
+        int l = left[node];
+        int r = right[node];
+        depth[node] = 1 + Math.max(depth[l], depth[r]);
+        minX[node] = Math.min(minX[l], minX[r]);
+        minY[node] = Math.min(minY[l], minY[r]);
+        maxX[node] = Math.max(maxX[l], maxX[r]);
+        maxY[node] = Math.max(maxY[l], maxY[r]);
+    }
+
+    /**
+     * If a's children differ in height by more than one, lifts the taller child
+     * into a's place, a becoming its left child; the taller grandchild stays
+     * with the lifted node and the shorter moves under a. Returns the node now
+     * at a's place.
+     */
+    private int balance(int a) {
+        if (left[a] == NONE || depth[a] < 2)
+            return a;
+        int b = left[a];
+        int c = right[a];
+        int skew = depth[c] - depth[b];
+        if (skew > 1)
+            return rotate(a, c, b);
+        if (skew < -1)
+            return rotate(a, b, c);
+        return a;
+    }
+
+    // Lifts up, a child of a, above a; other is a's other child
+    private int rotate(int a, int up, int other) {
+        int f = left[up];
+        int g = right[up];
+        int keep = depth[f] > depth[g] ? f : g;
+        int move = keep == f ? g : f;
+
+        int top = parent[a];
+        parent[up] = top;
+        if (top == NONE)
+            root = up;
+        else if (left[top] == a)
+            left[top] = up;
+        else
+            right[top] = up;
+
+        left[up] = a;
+        right[up] = keep;
+        parent[a] = up;
+        parent[keep] = up;
+        left[a] = other;
+        right[a] = move;
+        parent[other] = a;
+        parent[move] = a;
+        fit(a);
+        fit(up);
+        return up;
+    }
+
+    private long grownPerimeter(int node, int leaf) {
+        long w = (long) Math.max(maxX[node], maxX[leaf]) - Math.min(minX[node], minX[leaf]);
+        long h = (long) Math.max(maxY[node], maxY[leaf]) - Math.min(minY[node], minY[leaf]);
+        long before = (long) maxX[node] - minX[node] + maxY[node] - minY[node];
+        return w + h - before;
+    }
+
+    private int allocate() {
+        if (free == NONE)
+            throw new IllegalStateException("Tree is full");
+        int node = free;
+        free = left[node];
+        return node;
+    }
+
+    private void release(int node) {
+        left[node] = free;
+        free = node;
+    }
+}
@@ -0,0 +1,47 @@
+package com.ponggame.sim;
+
+/**
+ * 16.16 fixed-point helpers for the deterministic simulation. Integer arithmetic
+ * gives the same bits on every JVM and on Android's runtime, which double
+ * arithmetic and Math.sin/cos do not guarantee.
+ */
+public final class FixedMath {
+
+    public static final int SHIFT = 16;
+    public static final int ONE = 1 << SHIFT;
+
+    // Angles are an index into a 1024 step circle
+    public static final int ANGLE_STEPS = 1024;
+    private static final int[] SIN = new int[ANGLE_STEPS];
+
+    static {
+        // StrictMath is specified bit-for-bit (fdlibm), so every platform builds the same table
+        for (int i = 0; i < ANGLE_STEPS; i++) {
+            SIN[i] = (int) StrictMath.round(StrictMath.sin(2 * StrictMath.PI * i / ANGLE_STEPS) * ONE);
+        }
+    }
+
+    private FixedMath() {
+    }
+
+    public static int fromInt(int v) {
+        return v << SHIFT;
+    }
+
+    public static int mul(int a, int b) {
+        return (int) (((long) a * b) >> SHIFT);
+    }
+
+    public static int sin(int angle) {
+        return SIN[angle & (ANGLE_STEPS - 1)];
+    }
+
+    public static int cos(int angle) {
+        return SIN[(angle + ANGLE_STEPS / 4) & (ANGLE_STEPS - 1)];
+    }
+
+    // For rendering and logging only; never feed the result back into the simulation
+    public static double toDouble(int v) {
+        return v / (double) ONE;
+    }
+}
@@ -0,0 +1,66 @@
+package com.ponggame.sim;
+
+/**
+ * What a {@link PaddleStrategy} sees of a match: the fields of a
+ * {@link SimState} through getters only, so a strategy can't move the ball or
+ * another paddle. Positions and velocities are 16.16 fixed point and indexed
+ * by position code, as in SimState.
+ */
+public final class GameView {
+
+    private final SimState state;
+
+    public GameView(SimState state) {
+        this.state = state;
+    }
+
+    public int getTick() {
+        return state.tick;
+    }
+
+    public int getBallX() {
+        return state.ballX;
+    }
+
+    public int getBallY() {
+        return state.ballY;
+    }
+
+    public int getBallVX() {
+        return state.ballVX;
+    }
+
+    public int getBallVY() {
+        return state.ballVY;
+    }
+
+    public int getSpeedMultiplier() {
+        return state.speedMultiplier;
+    }
+
+    // Position code of the last paddle to hit the ball, -1 = none
+    public int getLastTouched() {
+        return state.lastTouched;
+    }
+
+    public boolean isActive(int pos) {
+        return state.isActive(pos);
+    }
+
+    public int getPaddleX(int pos) {
+        return state.paddleX[pos];
+    }
+
+    public int getPaddleY(int pos) {
+        return state.paddleY[pos];
+    }
+
+    public int getScore(int pos) {
+        return state.scores[pos];
+    }
+
+    // For strategies that simulate ahead: a private copy they may step freely
+    public void copyTo(SimState out) {
+        out.copyFrom(state);
+    }
+}
@@ -0,0 +1,273 @@
+package com.ponggame.sim;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.ponggame.sim.FixedMath.fromInt;
+
+/**
+ * Obstacles and power-ups for the square arena, played by
+ * {@link LevelSimulation}. A level is a text file, one object per line, in
+ * arena pixels and ticks:
+ *
+ * <pre>
+ *   # comment
+ *   brick   x y w h [hits]             destroyed after hits ball contacts (default 1)
+ *   bumper  x y radius                 round, kicks the ball away faster
+ *   portal  x1 y1 x2 y2 radius         a ball entering one end leaves the other
+ *   mover   x y w h dx dy period       a block sliding to (x+dx, y+dy) and back every period ticks
+ *   powerup slow|fast|point x y every lifetime
+ *                                      appears every ticks for lifetime ticks; the ball collects it
+ * </pre>
+ *
+ * Bricks, bumpers and portal ends are static and indexed in a
+ * {@link StaticBvh} here; movers and power-ups go in each match's
+ * {@link DynamicAabbTree}. A Level is immutable and shared by every match
+ * that plays it; what changes during a match is in {@link LevelState}.
+ */
+public final class Level {
+
+    public static final int BRICK = 0;
+    public static final int BUMPER = 1;
+    public static final int PORTAL = 2;
+
+    public static final int POWER_SLOW = 0;
+    public static final int POWER_FAST = 1;
+    public static final int POWER_POINT = 2;
+
+    public static final int POWER_UP_RADIUS = fromInt(12);
+
+    private final String name;
+
+    // Static obstacles: kind, box, hits to destroy (bricks), other end (portals)
+    private final int staticCount;
+    private final int[] kind, minX, minY, maxX, maxY, hits, pair;
+    private final StaticBvh index;
+
+    // Movers: box at rest, travel and period
+    private final int moverCount;
+    private final int[] moverX, moverY, moverW, moverH, moverDX, moverDY, moverPeriod;
+
+    // Power-ups: effect, centre, schedule
+    private final int powerUpCount;
+    private final int[] powerKind, powerX, powerY, powerEvery, powerLifetime;
+
+    private Level(String name, List<int[]> statics, List<int[]> movers, List<int[]> powerUps) {
+        this.name = name;
+        staticCount = statics.size();
+        kind = column(statics, 0);
+        minX = column(statics, 1);
+        minY = column(statics, 2);
+        maxX = column(statics, 3);
+        maxY = column(statics, 4);
+        hits = column(statics, 5);
+        pair = column(statics, 6);
+        index = new StaticBvh(staticCount, minX, minY, maxX, maxY);
+
+        moverCount = movers.size();
+        moverX = column(movers, 0);
+        moverY = column(movers, 1);
+        moverW = column(movers, 2);
+        moverH = column(movers, 3);
+        moverDX = column(movers, 4);
+        moverDY = column(movers, 5);
+        moverPeriod = column(movers, 6);
+
+        powerUpCount = powerUps.size();
+        powerKind = column(powerUps, 0);
+        powerX = column(powerUps, 1);
+        powerY = column(powerUps, 2);
+        powerEvery = column(powerUps, 3);
+        powerLifetime = column(powerUps, 4);
+    }
+
+    private static int[] column(List<int[]> rows, int c) {
+        int[] values = new int[rows.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = rows.get(i)[c];
+        }
+        return values;
+    }
+
+    public static Level load(Path file) throws IOException {
+        try (Reader in = Files.newBufferedReader(file)) {
+            return read(file.getFileName().toString(), in);
+        }
+    }
+
+    // One of the levels shipped in the jar, e.g. "arcade"
+    public static Level builtIn(String name) throws IOException {
+        try (InputStream in = Level.class.getResourceAsStream("levels/" + name + ".level")) {
+            if (in == null)
+                throw new IOException("No built-in level " + name);
+            return read(name, new InputStreamReader(in, StandardCharsets.UTF_8));
+        }
+    }
+
+    public static Level read(String name, Reader reader) throws IOException {
+        List<int[]> statics = new ArrayList<>();
+        List<int[]> movers = new ArrayList<>();
+        List<int[]> powerUps = new ArrayList<>();
+        BufferedReader in = new BufferedReader(reader);
+        String line;
+        int lineNo = 0;
+        while ((line = in.readLine()) != null) {
+            lineNo++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#"))
+                continue;
+            String[] f = line.split("\\s+");
+            try {
+                switch (f[0]) {
+                    case "brick" -> {
+                        int x = px(f[1]), y = px(f[2]);
+                        statics.add(new int[] {BRICK, x, y, x + px(f[3]), y + px(f[4]),
+                                f.length > 5 ? Integer.parseInt(f[5]) : 1, -1});
+                    }
+                    case "bumper" -> statics.add(circle(BUMPER, px(f[1]), px(f[2]), px(f[3]), -1));
+                    case "portal" -> {
+                        int a = statics.size();
+                        int radius = px(f[5]);
+                        statics.add(circle(PORTAL, px(f[1]), px(f[2]), radius, a + 1));
+                        statics.add(circle(PORTAL, px(f[3]), px(f[4]), radius, a));
+                    }
+                    case "mover" -> movers.add(new int[] {px(f[1]), px(f[2]), px(f[3]), px(f[4]),
+                            px(f[5]), px(f[6]), Math.max(2, Integer.parseInt(f[7]))});
+                    case "powerup" -> powerUps.add(new int[] {powerKind(f[1]), px(f[2]), px(f[3]),
+                            Math.max(1, Integer.parseInt(f[4])), Math.max(1, Integer.parseInt(f[5]))});
+                    default -> throw new IOException("Unknown object " + f[0]);
+                }
+            } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+                throw new IOException(name + ":" + lineNo + ": can't read \"" + line + "\"", e);
+            } catch (IOException e) {
+                throw new IOException(name + ":" + lineNo + ": " + e.getMessage(), e);
+            }
+        }
+        return new Level(name, statics, movers, powerUps);
+    }
+
+    private static int px(String v) {
+        return fromInt(Integer.parseInt(v));
+    }
+
+    private static int[] circle(int kind, int x, int y, int radius, int pair) {
+        return new int[] {kind, x - radius, y - radius, x + radius, y + radius, 0, pair};
+    }
+
+    private static int powerKind(String v) throws IOException {
+        return switch (v) {
+            case "slow" -> POWER_SLOW;
+            case "fast" -> POWER_FAST;
+            case "point" -> POWER_POINT;
+            default -> throw new IOException("Unknown power-up " + v);
+        };
+    }
+
+    // A fresh copy of the static index for one match to destroy bricks in
+    StaticBvh newIndex() {
+        return index.copy();
+    }
+
+    // The index with every obstacle in it; never modified
+    StaticBvh index() {
+        return index;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getStaticCount() {
+        return staticCount;
+    }
+
+    // BRICK, BUMPER or PORTAL; bumpers and portals are circles filling their box
+    public int getKind(int i) {
+        return kind[i];
+    }
+
+    public int getMinX(int i) {
+        return minX[i];
+    }
+
+    public int getMinY(int i) {
+        return minY[i];
+    }
+
+    public int getMaxX(int i) {
+        return maxX[i];
+    }
+
+    public int getMaxY(int i) {
+        return maxY[i];
+    }
+
+    public int getHits(int i) {
+        return hits[i];
+    }
+
+    // The other end of a portal
+    public int getPair(int i) {
+        return pair[i];
+    }
+
+    public int getMoverCount() {
+        return moverCount;
+    }
+
+    // A mover's box at a tick: it slides out for half the period and back for the rest
+    public int getMoverX(int i, int tick) {
+        return moverX[i] + travel(moverDX[i], moverPeriod[i], tick);
+    }
+
+    public int getMoverY(int i, int tick) {
+        return moverY[i] + travel(moverDY[i], moverPeriod[i], tick);
+    }
+
+    public int getMoverW(int i) {
+        return moverW[i];
+    }
+
+    public int getMoverH(int i) {
+        return moverH[i];
+    }
+
+    private static int travel(int distance, int period, int tick) {
+        int phase = tick % period;
+        int half = period / 2;
+        int t = phase < half ? phase : period - phase;
+        return (int) ((long) distance * t / half);
+    }
+
+    public int getPowerUpCount() {
+        return powerUpCount;
+    }
+
+    public int getPowerUpKind(int i) {
+        return powerKind[i];
+    }
+
+    public int getPowerUpX(int i) {
+        return powerX[i];
+    }
+
+    public int getPowerUpY(int i) {
+        return powerY[i];
+    }
+
+    public int getPowerUpEvery(int i) {
+        return powerEvery[i];
+    }
+
+    public int getPowerUpLifetime(int i) {
+        return powerLifetime[i];
+    }
+}
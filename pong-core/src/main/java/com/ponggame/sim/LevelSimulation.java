@@ -0,0 +1,318 @@
+package com.ponggame.sim;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static com.ponggame.sim.FixedMath.fromInt;
+import static com.ponggame.sim.FixedMath.mul;
+
+/**
+ * {@link Simulation} with a {@link Level} in the arena. Each tick the square
+ * game steps as always, then movers and power-ups are brought up to the tick
+ * and the ball is tested against whatever the indexes find near it: bricks
+ * bounce it and break, bumpers kick it away, portals move it to their other
+ * end and power-ups change its speed or give the last player to touch it a
+ * point. Both indexes are queried with the ball's box, so a level with
+ * hundreds of obstacles costs a handful of box tests per tick.
+ *
+ * Fixed point throughout and nothing random, so peers that step the same
+ * inputs stay in lockstep like with Simulation.
+ *
+ * Usage: java -cp pong-core-1.0.jar com.ponggame.sim.LevelSimulation
+ *            [--level file.level] [--bricks 100,400,1600] [--ticks 100000]
+ */
+public final class LevelSimulation {
+
+    // How far a mover may drift before its leaf in the dynamic tree is reinserted
+    static final int MOVER_MARGIN = fromInt(8);
+
+    private static final int BALL_RADIUS = Simulation.BALL_RADIUS;
+    private static final int START_SPEED_MULTIPLIER = FixedMath.ONE * 3 / 2;
+    private static final int MAX_SPEED_MULTIPLIER = FixedMath.ONE * 5 / 2;
+    private static final int BUMPER_KICK = FixedMath.ONE / 10;
+    private static final int FAST_BOOST = FixedMath.ONE / 2;
+    private static final int PORTAL_COOLDOWN = 30;
+
+    private LevelSimulation() {
+    }
+
+    // Simulation.step with the level; returns the position that let the ball through, or -1
+    public static int step(LevelState ls, SimState s, int[] inputs) {
+        int missed = Simulation.step(s, inputs);
+        Level level = ls.level;
+        updateMovers(level, ls, s.tick);
+        updatePowerUps(level, ls, s.tick);
+        if (ls.portalCooldown > 0)
+            ls.portalCooldown--;
+        if (missed >= 0 || s.isOver())
+            return missed; // a fresh serve from the centre
+
+        int r = BALL_RADIUS;
+        int n = ls.statics.query(s.ballX - r, s.ballY - r, s.ballX + r, s.ballY + r, ls.found);
+        for (int k = 0; k < n; k++) {
+            collideStatic(level, ls, s, ls.found[k]);
+        }
+        n = ls.dynamics.query(s.ballX - r, s.ballY - r, s.ballX + r, s.ballY + r, ls.found);
+        for (int k = 0; k < n; k++) {
+            int id = ls.found[k];
+            if (id < level.getMoverCount())
+                collideMover(level, s, id);
+            else
+                collectPowerUp(level, ls, s, id - level.getMoverCount());
+        }
+        return -1;
+    }
+
+    private static void updateMovers(Level level, LevelState ls, int tick) {
+        for (int i = 0; i < level.getMoverCount(); i++) {
+            int x = level.getMoverX(i, tick);
+            int y = level.getMoverY(i, tick);
+            ls.dynamics.move(i, x, y, x + level.getMoverW(i), y + level.getMoverH(i));
+        }
+    }
+
+    private static void updatePowerUps(Level level, LevelState ls, int tick) {
+        int pr = Level.POWER_UP_RADIUS;
+        for (int i = 0; i < level.getPowerUpCount(); i++) {
+            int id = level.getMoverCount() + i;
+            if (ls.powerUpExpires[i] != 0) {
+                if (tick >= ls.powerUpExpires[i]) {
+                    ls.dynamics.remove(id);
+                    ls.powerUpExpires[i] = 0;
+                }
+            } else if (tick % level.getPowerUpEvery(i) == 0) {
+                int x = level.getPowerUpX(i);
+                int y = level.getPowerUpY(i);
+                ls.dynamics.insert(id, x - pr, y - pr, x + pr, y + pr);
+                ls.powerUpExpires[i] = tick + level.getPowerUpLifetime(i);
+            }
+        }
+    }
+
+    private static void collideStatic(Level level, LevelState ls, SimState s, int i) {
+        switch (level.getKind(i)) {
+            case Level.BRICK -> {
+                if (bounceOffBox(s, level.getMinX(i), level.getMinY(i), level.getMaxX(i), level.getMaxY(i))
+                        && --ls.hits[i] <= 0)
+                    ls.statics.remove(i);
+            }
+            case Level.BUMPER -> bounceOffCircle(s, i, level);
+            default -> {
+                int radius = (level.getMaxX(i) - level.getMinX(i)) / 2;
+                int dx = s.ballX - (level.getMinX(i) + radius);
+                int dy = s.ballY - (level.getMinY(i) + radius);
+                if (ls.portalCooldown == 0 && (long) dx * dx + (long) dy * dy <= (long) radius * radius) {
+                    int other = level.getPair(i);
+                    s.ballX = level.getMinX(other) + radius + dx;
+                    s.ballY = level.getMinY(other) + radius + dy;
+                    ls.portalCooldown = PORTAL_COOLDOWN;
+                }
+            }
+        }
+    }
+
+    private static void collideMover(Level level, SimState s, int i) {
+        int x = level.getMoverX(i, s.tick);
+        int y = level.getMoverY(i, s.tick);
+        bounceOffBox(s, x, y, x + level.getMoverW(i), y + level.getMoverH(i));
+    }
+
+    private static void collectPowerUp(Level level, LevelState ls, SimState s, int i) {
+        long reach = BALL_RADIUS + Level.POWER_UP_RADIUS;
+        long dx = s.ballX - level.getPowerUpX(i);
+        long dy = s.ballY - level.getPowerUpY(i);
+        if (dx * dx + dy * dy > reach * reach)
+            return;
+        switch (level.getPowerUpKind(i)) {
+            case Level.POWER_SLOW -> s.speedMultiplier = START_SPEED_MULTIPLIER;
+            case Level.POWER_FAST -> s.speedMultiplier = Math.min(MAX_SPEED_MULTIPLIER, s.speedMultiplier + FAST_BOOST);
+            default -> {
+                int scorer = s.lastTouched;
+                if (scorer >= 0 && s.isActive(scorer) && ++s.scores[scorer] >= Simulation.WIN_SCORE)
+                    s.winner = scorer;
+            }
+        }
+        ls.dynamics.remove(level.getMoverCount() + i);
+        ls.powerUpExpires[i] = 0;
+    }
+
+    /**
+     * Ball against a box: bounces off the face it hit, judged by which side of
+     * the box its centre is on, and is moved back out. Returns whether it hit.
+     */
+    private static boolean bounceOffBox(SimState s, int minX, int minY, int maxX, int maxY) {
+        int r = BALL_RADIUS;
+        int cx = Math.max(minX, Math.min(maxX, s.ballX));
+        int cy = Math.max(minY, Math.min(maxY, s.ballY));
+        long dx = s.ballX - cx;
+        long dy = s.ballY - cy;
+        if (dx * dx + dy * dy > (long) r * r)
+            return false;
+        if (dx == 0 && dy == 0) {
+            // Centre inside: out through the nearest face
+            int left = s.ballX - minX, right = maxX - s.ballX, top = s.ballY - minY, bottom = maxY - s.ballY;
+            int nearest = Math.min(Math.min(left, right), Math.min(top, bottom));
+            if (nearest == left || nearest == right)
+                dx = nearest == left ? -1 : 1;
+            else
+                dy = nearest == top ? -1 : 1;
+        }
+        if (Math.abs(dx) >= Math.abs(dy)) {
+            if (dx < 0) {
+                s.ballVX = -Math.abs(s.ballVX);
+                s.ballX = minX - r;
+            } else {
+                s.ballVX = Math.abs(s.ballVX);
+                s.ballX = maxX + r;
+            }
+        } else {
+            if (dy < 0) {
+                s.ballVY = -Math.abs(s.ballVY);
+                s.ballY = minY - r;
+            } else {
+                s.ballVY = Math.abs(s.ballVY);
+                s.ballY = maxY + r;
+            }
+        }
+        return true;
+    }
+
+    // Ball against a bumper: mirrored in the bumper's surface and kicked a little faster
+    private static void bounceOffCircle(SimState s, int i, Level level) {
+        int radius = (level.getMaxX(i) - level.getMinX(i)) / 2;
+        int dx = s.ballX - (level.getMinX(i) + radius);
+        int dy = s.ballY - (level.getMinY(i) + radius);
+        long reach = BALL_RADIUS + radius;
+        long d2 = (long) dx * dx + (long) dy * dy;
+        if (d2 > reach * reach || d2 == 0)
+            return;
+        // sqrt is correctly rounded everywhere, so this is as deterministic as integer math
+        int dist = (int) Math.sqrt((double) d2);
+        int nx = (int) (((long) dx << FixedMath.SHIFT) / dist);
+        int ny = (int) (((long) dy << FixedMath.SHIFT) / dist);
+        int vn = mul(s.ballVX, nx) + mul(s.ballVY, ny);
+        if (vn < 0) {
+            s.ballVX -= 2 * mul(vn, nx);
+            s.ballVY -= 2 * mul(vn, ny);
+            s.speedMultiplier = Math.min(MAX_SPEED_MULTIPLIER, s.speedMultiplier + BUMPER_KICK);
+        }
+        s.ballX = s.ballX - dx + mul(nx, (int) reach);
+        s.ballY = s.ballY - dy + mul(ny, (int) reach);
+    }
+
+    /**
+     * For each brick count, a grid of that many bricks: the time per ball
+     * query from the BVH against testing every brick, then a match of SimAIs
+     * on the level. With --level, the match is played on that file instead.
+     */
+    public static void main(String[] args) throws IOException {
+        int[] brickCounts = {100, 400, 1600};
+        int ticks = 100_000;
+        Path file = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--level" -> file = Path.of(args[i + 1]);
+                case "--bricks" -> brickCounts = Arrays.stream(args[i + 1].split(",")).mapToInt(Integer::parseInt).toArray();
+                case "--ticks" -> ticks = Integer.parseInt(args[i + 1]);
+                default -> System.err.println("Unknown option " + args[i]);
+            }
+        }
+
+        if (file != null) {
+            play(Level.load(file), ticks);
+            return;
+        }
+        for (int count : brickCounts) {
+            Level level = brickGrid(count);
+            benchQueries(level);
+            play(level, ticks);
+        }
+    }
+
+    // count bricks in a square grid over the middle of the arena
+    private static Level brickGrid(int count) throws IOException {
+        int side = (int) Math.ceil(Math.sqrt(count));
+        int cell = Math.max(2, 400 / side);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            text.append("brick ").append(200 + (i % side) * cell).append(' ').append(200 + (i / side) * cell)
+                    .append(' ').append(cell - 1).append(' ').append(cell - 1).append(" 2\n");
+        }
+        return Level.read(count + " bricks", new StringReader(text.toString()));
+    }
+
+    private static void benchQueries(Level level) {
+        int n = level.getStaticCount();
+        StaticBvh index = level.newIndex();
+        int[] found = new int[n];
+        Random random = new Random(1);
+        int queries = 1 << 16;
+        int[] qx = new int[queries];
+        int[] qy = new int[queries];
+        for (int q = 0; q < queries; q++) {
+            qx[q] = fromInt(150 + random.nextInt(500));
+            qy[q] = fromInt(150 + random.nextInt(500));
+        }
+        int r = BALL_RADIUS;
+        long bvhHits = 0;
+        long scanHits = 0;
+        long bvhNanos = 0;
+        long scanNanos = 0;
+        for (int round = 0; round < 20; round++) {
+            long start = System.nanoTime();
+            for (int q = 0; q < queries; q++) {
+                bvhHits += index.query(qx[q] - r, qy[q] - r, qx[q] + r, qy[q] + r, found);
+            }
+            long mid = System.nanoTime();
+            for (int q = 0; q < queries; q++) {
+                for (int i = 0; i < n; i++) {
+                    if (level.getMinX(i) <= qx[q] + r && level.getMaxX(i) >= qx[q] - r
+                            && level.getMinY(i) <= qy[q] + r && level.getMaxY(i) >= qy[q] - r)
+                        scanHits++;
+                }
+            }
+            long end = System.nanoTime();
+            // The first rounds warm up the JIT
+            if (round >= 10) {
+                bvhNanos += mid - start;
+                scanNanos += end - mid;
+            }
+        }
+        if (bvhHits != scanHits)
+            throw new IllegalStateException("BVH found " + bvhHits + " boxes, a scan " + scanHits);
+        System.out.printf("%s: %.0f ns per query with the BVH, %.0f ns testing every brick%n",
+                level.getName(), bvhNanos / (10.0 * queries), scanNanos / (10.0 * queries));
+    }
+
+    private static void play(Level level, int ticks) {
+        SimState s = new SimState();
+        LevelState ls = new LevelState(level);
+        Simulation.init(s, 2, 1);
+        SimAI[] ais = {new SimAI(0, 1), new SimAI(1, 2)};
+        int[] inputs = new int[4];
+        long nanos = 0;
+        int points = 0;
+        for (int t = 0; t < ticks; t++) {
+            if (s.isOver()) {
+                Simulation.init(s, 2, t);
+                ls.reset();
+            }
+            inputs[0] = ais[0].update(s);
+            inputs[1] = ais[1].update(s);
+            long before = System.nanoTime();
+            if (step(ls, s, inputs) >= 0)
+                points++;
+            nanos += System.nanoTime() - before;
+        }
+        int standing = 0;
+        for (int i = 0; i < level.getStaticCount(); i++) {
+            if (level.getKind(i) == Level.BRICK && ls.isStanding(i))
+                standing++;
+        }
+        System.out.printf("%s: %.0f ns per step, %d points, %d bricks standing at the end%n",
+                level.getName(), (double) nanos / ticks, points, standing);
+    }
+}
@@ -0,0 +1,69 @@
+package com.ponggame.sim;
+
+import java.util.Arrays;
+
+/**
+ * What a {@link Level} looks like during one match: bricks' remaining hits,
+ * the static index they are removed from, where movers and live power-ups are
+ * indexed, and the portal cooldown. Together with the {@link SimState} it is
+ * everything {@link LevelSimulation#step} reads or writes, so copying both
+ * rewinds the game; copying never allocates.
+ */
+public final class LevelState {
+
+    final Level level;
+    final StaticBvh statics;
+    final DynamicAabbTree dynamics;
+    final int[] hits;
+    final int[] powerUpExpires; // tick a live power-up disappears, 0 when not live
+    int portalCooldown;
+
+    // Query results; scratch, not state
+    final int[] found;
+
+    public LevelState(Level level) {
+        this.level = level;
+        this.statics = level.newIndex();
+        this.dynamics = new DynamicAabbTree(level.getMoverCount() + level.getPowerUpCount(), LevelSimulation.MOVER_MARGIN);
+        this.hits = new int[level.getStaticCount()];
+        this.powerUpExpires = new int[level.getPowerUpCount()];
+        this.found = new int[Math.max(level.getStaticCount(), level.getMoverCount() + level.getPowerUpCount())];
+        reset();
+    }
+
+    // As the level was loaded: every brick standing, no power-up out
+    public void reset() {
+        for (int i = 0; i < hits.length; i++) {
+            hits[i] = level.getHits(i);
+        }
+        statics.copyFrom(level.index());
+        dynamics.clear();
+        Arrays.fill(powerUpExpires, 0);
+        portalCooldown = 0;
+    }
+
+    public void copyFrom(LevelState o) {
+        statics.copyFrom(o.statics);
+        dynamics.copyFrom(o.dynamics);
+        System.arraycopy(o.hits, 0, hits, 0, hits.length);
+        System.arraycopy(o.powerUpExpires, 0, powerUpExpires, 0, powerUpExpires.length);
+        portalCooldown = o.portalCooldown;
+    }
+
+    public Level getLevel() {
+        return level;
+    }
+
+    // Bricks are gone once destroyed; bumpers and portals never are
+    public boolean isStanding(int i) {
+        return statics.contains(i);
+    }
+
+    public int getHits(int i) {
+        return hits[i];
+    }
+
+    public boolean isPowerUpLive(int i) {
+        return powerUpExpires[i] != 0;
+    }
+}
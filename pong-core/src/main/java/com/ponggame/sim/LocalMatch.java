@@ -0,0 +1,72 @@
+package com.ponggame.sim;
+
+/**
+ * An offline match on one device: the {@link Simulation} with at most one human
+ * paddle and {@link SimAI} on every other active position. No network and no
+ * rollback, the caller just calls {@link #step()} once per tick (60 Hz) and
+ * draws {@link #getState()}, and with a {@link Level} also
+ * {@link #getLevelState()}.
+ */
+public class LocalMatch {
+
+    public static final int TICK_RATE = 60;
+    public static final int NO_HUMAN = -1;
+
+    private final SimState state = new SimState();
+    private final SimAI[] ais = new SimAI[4];
+    private final int[] inputs = new int[4];
+    private final int humanPosition;
+    private final LevelState level; // null in an empty arena
+    private volatile int humanInput;
+
+    // humanPosition is a position code, or NO_HUMAN to watch AI against AI
+    public LocalMatch(int playerCount, long seed, int humanPosition) {
+        this(playerCount, seed, humanPosition, null);
+    }
+
+    // As above, with the level's obstacles and power-ups in the arena; level may be null
+    public LocalMatch(int playerCount, long seed, int humanPosition, Level level) {
+        this.humanPosition = humanPosition;
+        this.level = level != null ? new LevelState(level) : null;
+        Simulation.init(state, playerCount, seed);
+        for (int pos = 0; pos < 4; pos++) {
+            if (state.isActive(pos) && pos != humanPosition)
+                ais[pos] = new SimAI(pos, seed + pos);
+        }
+    }
+
+    public int getHumanPosition() {
+        return humanPosition;
+    }
+
+    // Control bits (Protocol INPUT_*); may be called from the UI thread
+    public void setHumanInput(int bits) {
+        humanInput = bits;
+    }
+
+    public void step() {
+        for (int pos = 0; pos < 4; pos++) {
+            inputs[pos] = ais[pos] != null ? ais[pos].update(state) : 0;
+        }
+        if (humanPosition >= 0)
+            inputs[humanPosition] = humanInput;
+        if (level != null)
+            LevelSimulation.step(level, state, inputs);
+        else
+            Simulation.step(state, inputs);
+    }
+
+    public boolean isOver() {
+        return state.isOver();
+    }
+
+    // Owned by the match; read it on the thread that calls step()
+    public SimState getState() {
+        return state;
+    }
+
+    // Bricks left and live power-ups, or null without a level; same thread rule as getState
+    public LevelState getLevelState() {
+        return level;
+    }
+}
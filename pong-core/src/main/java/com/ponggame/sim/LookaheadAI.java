@@ -0,0 +1,347 @@
+package com.ponggame.sim;
+
+import com.ponggame.net.LatencyHistogram;
+import com.ponggame.net.Protocol;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A harder AI than {@link SimAI}: instead of chasing the ball it looks ahead.
+ * Every few ticks it considers a set of places to hold its paddle and plays
+ * each one out on copies of the match, with the other paddles (opponents in a
+ * 3- or 4-player arena included) played by SimAI and the ball bouncing off
+ * walls and paddles exactly as {@link Simulation} would. The place whose
+ * rollouts score best is then steered to until the next decision.
+ *
+ * The search is a beam: every candidate gets a first round of rollouts, then
+ * the rest of the budget goes to the best few. Candidates are searched in
+ * parallel on a fork-join pool, each with its own scratch state, so a rollout
+ * is a copyFrom and a loop over Simulation.step and allocates nothing. Every
+ * decision has a hard time budget; when it runs out the best candidate so far
+ * is played, and if nothing was evaluated at all the paddle just follows the
+ * ball like SimAI. Returns control bits, like SimAI, and is offered to players
+ * as the "lookahead" {@link PaddleStrategy}.
+ *
+ * Usage: java -cp pong-core-1.0.jar com.ponggame.sim.LookaheadAI
+ *            [--players 2] [--matches 4] [--budget-us 2000]
+ */
+public class LookaheadAI implements PaddleStrategy {
+
+    public static final long DEFAULT_BUDGET_NANOS = 2_000_000L;
+
+    private static final int DECISION_INTERVAL = 4;
+    private static final int HORIZON = 150;
+    private static final int TARGETS = 11;
+    private static final int BEAM = 3;
+    private static final int FIRST_ROUND = 4;
+    private static final int BEAM_ROUND = 256;
+    private static final int DEAD_ZONE = FixedMath.fromInt(4);
+    private static final int LANE_MIN = FixedMath.fromInt(30);
+    private static final int LANE_MAX = FixedMath.fromInt(770);
+
+    private final int pos;
+    private final ForkJoinPool pool;
+    private final long budgetNanos;
+    private final Candidate[] candidates = new Candidate[TARGETS + 1];
+    private final Search search = new Search();
+    private final SimState root = new SimState();
+    private final SimState viewCopy = new SimState();
+    private long deadline;
+    private long seed;
+    private long decisionSeed;
+    private int frameCounter;
+    private int target = -1;
+    private int lastRollouts;
+
+    public LookaheadAI(int pos, long seed) {
+        this(pos, seed, ForkJoinPool.commonPool(), DEFAULT_BUDGET_NANOS);
+    }
+
+    public LookaheadAI(int pos, long seed, ForkJoinPool pool, long budgetNanos) {
+        this.pos = pos;
+        this.seed = seed;
+        this.pool = pool;
+        this.budgetNanos = budgetNanos;
+        for (int i = 0; i < candidates.length; i++) {
+            candidates[i] = new Candidate();
+        }
+    }
+
+    public int getPosition() {
+        return pos;
+    }
+
+    // Rollouts played for the latest decision, to see how much the budget buys
+    public int getLastRollouts() {
+        return lastRollouts;
+    }
+
+    @Override
+    public int decide(GameView view) {
+        view.copyTo(viewCopy);
+        return update(viewCopy);
+    }
+
+    // Control bits for this tick
+    public int update(SimState s) {
+        frameCounter++;
+        if (target < 0 || frameCounter >= DECISION_INTERVAL) {
+            plan(s);
+            frameCounter = 0;
+        }
+        return steer(s, pos, target);
+    }
+
+    private void plan(SimState s) {
+        root.copyFrom(s);
+        deadline = System.nanoTime() + budgetNanos;
+        decisionSeed = seed++ * 0x9E3779B97F4A7C15L;
+        int size = paddleSize(pos);
+        for (int i = 0; i < TARGETS; i++) {
+            candidates[i].begin(LANE_MIN + (int) ((long) (LANE_MAX - size - LANE_MIN) * i / (TARGETS - 1)));
+        }
+        // Plus simply following the ball, which is also the fallback
+        int follow = ballCoordinate(s, pos) - size / 2;
+        candidates[TARGETS].begin(follow);
+
+        // Round one: every candidate; round two: the beam, until done or the deadline
+        for (Candidate c : candidates) {
+            c.quota = FIRST_ROUND;
+        }
+        runRound();
+        sortByScore();
+        for (int i = 0; i < candidates.length; i++) {
+            candidates[i].quota = i < BEAM ? BEAM_ROUND : 0;
+        }
+        runRound();
+        sortByScore();
+
+        Candidate best = candidates[0];
+        target = best.rollouts > 0 ? best.target : follow;
+        lastRollouts = 0;
+        for (Candidate c : candidates) {
+            lastRollouts += c.rollouts;
+        }
+    }
+
+    private void runRound() {
+        if (System.nanoTime() >= deadline)
+            return;
+        if (pool.getParallelism() <= 1) {
+            // One core: handing the work to a pool thread only adds a context switch to the budget
+            for (Candidate c : candidates) {
+                if (c.quota > 0)
+                    c.compute();
+            }
+            return;
+        }
+        search.reinitialize();
+        pool.invoke(search);
+    }
+
+    // Highest mean first; unevaluated candidates last. Insertion sort, it is a dozen items
+    private void sortByScore() {
+        for (int i = 1; i < candidates.length; i++) {
+            Candidate c = candidates[i];
+            int j = i - 1;
+            while (j >= 0 && c.better(candidates[j])) {
+                candidates[j + 1] = candidates[j];
+                j--;
+            }
+            candidates[j + 1] = c;
+        }
+    }
+
+    public static final class Provider implements PaddleStrategy.Provider {
+        @Override
+        public String getId() {
+            return "lookahead";
+        }
+
+        @Override
+        public String getName() {
+            return "Lookahead (hard)";
+        }
+
+        @Override
+        public PaddleStrategy create(int pos, long seed) {
+            return new LookaheadAI(pos, seed);
+        }
+    }
+
+    // Forks one task per candidate that still has rollouts to do
+    @SuppressWarnings("serial")
+    private final class Search extends RecursiveAction {
+        @Override
+        protected void compute() {
+            int n = 0;
+            for (Candidate c : candidates) {
+                if (c.quota > 0)
+                    n++;
+            }
+            RecursiveAction[] tasks = new RecursiveAction[n];
+            n = 0;
+            for (Candidate c : candidates) {
+                if (c.quota > 0) {
+                    c.reinitialize();
+                    tasks[n++] = c;
+                }
+            }
+            invokeAll(tasks);
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private final class Candidate extends RecursiveAction {
+        // Scratch for this candidate's rollouts, so tasks never share a mutable state
+        private final SimState sim = new SimState();
+        private final SimAI[] others = new SimAI[4];
+        private final int[] inputs = new int[4];
+        int target;
+        int quota;
+        int rollouts;
+        double total;
+
+        Candidate() {
+            for (int p = 0; p < 4; p++) {
+                if (p != pos)
+                    others[p] = new SimAI(p, 0);
+            }
+        }
+
+        void begin(int target) {
+            this.target = target;
+            rollouts = 0;
+            total = 0;
+        }
+
+        double mean() {
+            return total / rollouts;
+        }
+
+        boolean better(Candidate o) {
+            if (rollouts == 0)
+                return false;
+            return o.rollouts == 0 || mean() > o.mean();
+        }
+
+        @Override
+        protected void compute() {
+            for (int r = 0; r < quota && System.nanoTime() < deadline; r++) {
+                // Rollout n sees the same opponents for every candidate, so they are compared on equal terms
+                total += rollout(decisionSeed + rollouts * 0xBF58476D1CE4E5B9L);
+                rollouts++;
+            }
+        }
+
+        /**
+         * Plays one future from the root with the paddle held at target.
+         * +1 for a point this paddle wins, -1 for one it lets through, and
+         * without a point the distance to the ball if it is coming this way.
+         */
+        private double rollout(long rolloutSeed) {
+            SimState s = sim;
+            s.copyFrom(root);
+            for (int p = 0; p < 4; p++) {
+                if (others[p] != null)
+                    others[p].reset(rolloutSeed + p);
+            }
+            for (int t = 0; t < HORIZON; t++) {
+                for (int p = 0; p < 4; p++) {
+                    inputs[p] = !s.isActive(p) ? 0 : p == pos ? steer(s, pos, target) : others[p].update(s);
+                }
+                int missed = Simulation.step(s, inputs);
+                if (missed == pos)
+                    return -1 + t / (2.0 * HORIZON); // later is a little better: more time to recover
+                if (missed >= 0)
+                    return s.lastTouched == pos ? 1 : 0;
+                if (s.isOver())
+                    return 0;
+            }
+            if (!approaching(s, pos))
+                return 0;
+            int centre = (pos >= 2 ? s.paddleX[pos] : s.paddleY[pos]) + paddleSize(pos) / 2;
+            return -0.5 * Math.abs(ballCoordinate(s, pos) - centre) / Simulation.ARENA_SIZE;
+        }
+    }
+
+    private static int steer(SimState s, int pos, int target) {
+        boolean horizontal = pos >= 2;
+        int diff = target - (horizontal ? s.paddleX[pos] : s.paddleY[pos]);
+        if (diff > DEAD_ZONE)
+            return horizontal ? Protocol.INPUT_RIGHT : Protocol.INPUT_DOWN;
+        if (diff < -DEAD_ZONE)
+            return horizontal ? Protocol.INPUT_LEFT : Protocol.INPUT_UP;
+        return 0;
+    }
+
+    private static boolean approaching(SimState s, int pos) {
+        return switch (pos) {
+            case 0 -> s.ballVX < 0;
+            case 1 -> s.ballVX > 0;
+            case 2 -> s.ballVY < 0;
+            default -> s.ballVY > 0;
+        };
+    }
+
+    // Where the ball is along this paddle's lane
+    private static int ballCoordinate(SimState s, int pos) {
+        return pos >= 2 ? s.ballX : s.ballY;
+    }
+
+    private static int paddleSize(int pos) {
+        return pos >= 2 ? Simulation.PADDLE_W[pos] : Simulation.PADDLE_H[pos];
+    }
+
+    // Plays LookaheadAI at position 0 against SimAI everywhere else; rallies can go on forever, so matches are capped
+    public static void main(String[] args) {
+        int players = 2;
+        int matches = 4;
+        long budgetMicros = DEFAULT_BUDGET_NANOS / 1000;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--players" -> players = Integer.parseInt(args[i + 1]);
+                case "--matches" -> matches = Integer.parseInt(args[i + 1]);
+                case "--budget-us" -> budgetMicros = Long.parseLong(args[i + 1]);
+                default -> System.err.println("Unknown option " + args[i]);
+            }
+        }
+
+        SimState s = new SimState();
+        int[] inputs = new int[4];
+        int won = 0;
+        int lost = 0;
+        long decisions = 0;
+        long rollouts = 0;
+        LatencyHistogram decisionTime = new LatencyHistogram();
+        long start = System.nanoTime();
+        for (int m = 0; m < matches; m++) {
+            Simulation.init(s, players, m);
+            LookaheadAI hard = new LookaheadAI(0, m, ForkJoinPool.commonPool(), budgetMicros * 1000);
+            SimAI[] ais = new SimAI[4];
+            for (int p = 1; p < 4; p++) {
+                ais[p] = new SimAI(p, m * 4L + p);
+            }
+            while (!s.isOver() && s.tick < VectorEnv.DEFAULT_MAX_TICKS) {
+                long before = System.nanoTime();
+                inputs[0] = hard.update(s);
+                long took = System.nanoTime() - before;
+                if (hard.frameCounter == 0) {
+                    decisions++;
+                    rollouts += hard.getLastRollouts();
+                    decisionTime.recordNanos(took);
+                }
+                for (int p = 1; p < 4; p++) {
+                    inputs[p] = s.isActive(p) ? ais[p].update(s) : 0;
+                }
+                if (Simulation.step(s, inputs) == 0)
+                    lost++;
+            }
+            won += s.scores[0];
+        }
+        System.out.printf("%d-player, %d matches in %.1f s: %d points won, %d lost; %d rollouts per decision, decision time %s%n",
+                players, matches, (System.nanoTime() - start) / 1e9, won, lost, rollouts / Math.max(1, decisions),
+                decisionTime.summary());
+    }
+}
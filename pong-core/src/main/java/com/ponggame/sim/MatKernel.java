@@ -0,0 +1,35 @@
+package com.ponggame.sim;
+
+/**
+ * The one operation {@link PolicyNet} spends its time in: a dense layer over a
+ * batch of rows. The plain Java version is below; with the vector build profile
+ * a jdk.incubator.vector version is compiled too and picked up when the JVM has
+ * that module.
+ */
+interface MatKernel {
+
+    // out[r * cols + j] = bias[j] + sum over i of in[r * inner + i] * w[i * cols + j], floored at 0 when relu
+    void dense(float[] in, int rows, int inner, float[] w, float[] bias, int cols, float[] out, boolean relu);
+
+    MatKernel SCALAR = (in, rows, inner, w, bias, cols, out, relu) -> {
+        for (int r = 0; r < rows; r++) {
+            int o = r * cols;
+            System.arraycopy(bias, 0, out, o, cols);
+            for (int i = 0; i < inner; i++) {
+                float a = in[r * inner + i];
+                if (a == 0)
+                    continue; // common after a ReLU
+                int wi = i * cols;
+                // Contiguous in j, so the JIT vectorizes it by itself
+                for (int j = 0; j < cols; j++) {
+                    out[o + j] += a * w[wi + j];
+                }
+            }
+            if (relu) {
+                for (int j = 0; j < cols; j++) {
+                    out[o + j] = Math.max(0f, out[o + j]);
+                }
+            }
+        }
+    };
+}
@@ -0,0 +1,58 @@
+package com.ponggame.sim;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceLoader;
+
+/**
+ * Something that plays a paddle: given a read-only {@link GameView} once per
+ * tick, it answers with control bits (Protocol INPUT_*), like a human's keys.
+ * A strategy is made for one position and is only ever called from one thread
+ * at a time, so it may keep state between ticks.
+ *
+ * Strategies are found with {@link ServiceLoader}: a jar lists its
+ * {@link Provider} classes in
+ * META-INF/services/com.ponggame.sim.PaddleStrategy$Provider, and the game
+ * offers every available one for each AI position. Run them through a
+ * {@link StrategyRunner} to keep a slow strategy from holding up the game.
+ */
+public interface PaddleStrategy {
+
+    // Control bits for this tick
+    int decide(GameView view);
+
+    interface Provider {
+
+        // Stable key, e.g. for saved settings
+        String getId();
+
+        // Shown to players
+        String getName();
+
+        // False when it needs something that isn't there, e.g. a weights file
+        default boolean isAvailable() {
+            return true;
+        }
+
+        PaddleStrategy create(int pos, long seed);
+    }
+
+    // Every available provider on the class path, in discovery order
+    static List<Provider> providers() {
+        List<Provider> list = new ArrayList<>();
+        for (Provider provider : ServiceLoader.load(Provider.class)) {
+            if (provider.isAvailable())
+                list.add(provider);
+        }
+        return list;
+    }
+
+    // The available provider with this id, or null
+    static Provider find(String id) {
+        for (Provider provider : providers()) {
+            if (provider.getId().equals(id))
+                return provider;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,73 @@
+package com.ponggame.sim;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+
+/**
+ * A paddle played by a trained {@link PolicyNet}, one observation at a time.
+ * Offered as the "policy" {@link PaddleStrategy} when the JVM is started with
+ * -Dpong.policy=file; the net is loaded once and shared by every paddle.
+ * Where many paddles play at once, batch them through {@link PolicyNet#act}
+ * instead, as the server does.
+ */
+public class PolicyAI implements PaddleStrategy {
+
+    public static final String POLICY_PROPERTY = "pong.policy";
+
+    private final int pos;
+    private final PolicyNet net;
+    private final PolicyNet.Workspace workspace;
+    private final SimState viewCopy = new SimState();
+    private final float[] obs = new float[VectorEnv.OBS_SIZE];
+    private final int[] action = new int[1];
+
+    public PolicyAI(int pos, PolicyNet net) {
+        this.pos = pos;
+        this.net = net;
+        this.workspace = net.newWorkspace(1);
+    }
+
+    @Override
+    public int decide(GameView view) {
+        view.copyTo(viewCopy);
+        VectorEnv.observe(viewCopy, pos, obs, 0);
+        net.act(workspace, obs, 1, action);
+        return VectorEnv.controlBits(pos, action[0]);
+    }
+
+    public static final class Provider implements PaddleStrategy.Provider {
+        private static PolicyNet shared;
+
+        @Override
+        public String getId() {
+            return "policy";
+        }
+
+        @Override
+        public String getName() {
+            return "Trained policy";
+        }
+
+        @Override
+        public boolean isAvailable() {
+            return System.getProperty(POLICY_PROPERTY) != null;
+        }
+
+        @Override
+        public PaddleStrategy create(int pos, long seed) {
+            return new PolicyAI(pos, load());
+        }
+
+        private static synchronized PolicyNet load() {
+            if (shared == null) {
+                try {
+                    shared = PolicyNet.load(Path.of(System.getProperty(POLICY_PROPERTY)));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return shared;
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package com.ponggame.sim;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A small multilayer perceptron that picks paddle actions from
+ * {@link VectorEnv} observations: ReLU hidden layers and one linear output per
+ * ACTION_*, the largest of which is played. Weights are trained elsewhere and
+ * loaded from a compact little-endian file:
+ *
+ * <pre>
+ *   u32 magic 'PGNN'   u32 version   u32 layers   u32 sizes[layers + 1]
+ *   per layer: f32 weights[in][out], row by row   f32 bias[out]
+ * </pre>
+ *
+ * The first size must be OBS_SIZE and the last 3. A net is immutable and can be
+ * shared by threads; each thread evaluates it with its own {@link Workspace},
+ * which holds the activations for a whole batch so a forward pass allocates
+ * nothing. Every paddle that plays by the same net goes through one
+ * {@link #act} call, so each layer is a single matrix multiply over the batch.
+ *
+ * The multiply is plain Java, written so the JIT vectorizes its inner loop. A
+ * build with -Pvector adds a jdk.incubator.vector version, used when the JVM
+ * runs with --add-modules jdk.incubator.vector; see {@link #kernelName()}.
+ *
+ * Usage: java -cp pong-core-1.0.jar com.ponggame.sim.PolicyNet
+ *            [--init policy.pgnn] [--hidden 32,32] [--seed 1] [--bench policy.pgnn] [--batch 1024]
+ */
+public final class PolicyNet {
+
+    private static final int MAGIC = 0x4E4E4750; // "PGNN" read little-endian
+    private static final int VERSION = 1;
+    private static final int MAX_LAYERS = 8;
+    private static final int MAX_WIDTH = 4096;
+    private static final MatKernel KERNEL = loadKernel();
+
+    private final int[] sizes;
+    private final float[][] weights;
+    private final float[][] biases;
+
+    private PolicyNet(int[] sizes, float[][] weights, float[][] biases) {
+        this.sizes = sizes;
+        this.weights = weights;
+        this.biases = biases;
+    }
+
+    // Activations for up to maxBatch rows; one per thread
+    public static final class Workspace {
+        private final int maxBatch;
+        private final float[][] activations;
+
+        private Workspace(int[] sizes, int maxBatch) {
+            this.maxBatch = maxBatch;
+            this.activations = new float[sizes.length - 1][];
+            for (int l = 1; l < sizes.length; l++) {
+                activations[l - 1] = new float[maxBatch * sizes[l]];
+            }
+        }
+
+        public int getMaxBatch() {
+            return maxBatch;
+        }
+
+        // Output layer of the last forward pass, batch row by row
+        public float[] getOutput() {
+            return activations[activations.length - 1];
+        }
+    }
+
+    public static PolicyNet load(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return read(in);
+        }
+    }
+
+    public static PolicyNet read(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+        if (readInt(in) != MAGIC)
+            throw new IOException("Not a policy file");
+        int version = readInt(in);
+        if (version != VERSION)
+            throw new IOException("Unsupported policy version " + version);
+        int layers = readInt(in);
+        if (layers < 1 || layers > MAX_LAYERS)
+            throw new IOException("Bad layer count " + layers);
+        int[] sizes = new int[layers + 1];
+        for (int l = 0; l <= layers; l++) {
+            sizes[l] = readInt(in);
+            if (sizes[l] < 1 || sizes[l] > MAX_WIDTH)
+                throw new IOException("Bad layer size " + sizes[l]);
+        }
+        if (sizes[0] != VectorEnv.OBS_SIZE || sizes[layers] != 3)
+            throw new IOException("Policy must map " + VectorEnv.OBS_SIZE + " inputs to 3 actions, not "
+                    + sizes[0] + " to " + sizes[layers]);
+
+        float[][] weights = new float[layers][];
+        float[][] biases = new float[layers][];
+        for (int l = 0; l < layers; l++) {
+            weights[l] = readFloats(in, sizes[l] * sizes[l + 1]);
+            biases[l] = readFloats(in, sizes[l + 1]);
+        }
+        return new PolicyNet(sizes, weights, biases);
+    }
+
+    // He-initialized weights, so a fresh file gives a trainer something to start from
+    public static PolicyNet random(long seed, int... hidden) {
+        int[] sizes = new int[hidden.length + 2];
+        sizes[0] = VectorEnv.OBS_SIZE;
+        System.arraycopy(hidden, 0, sizes, 1, hidden.length);
+        sizes[sizes.length - 1] = 3;
+        Random rng = new Random(seed);
+        float[][] weights = new float[sizes.length - 1][];
+        float[][] biases = new float[sizes.length - 1][];
+        for (int l = 0; l < weights.length; l++) {
+            float scale = (float) Math.sqrt(2.0 / sizes[l]);
+            weights[l] = new float[sizes[l] * sizes[l + 1]];
+            for (int i = 0; i < weights[l].length; i++) {
+                weights[l][i] = (float) rng.nextGaussian() * scale;
+            }
+            biases[l] = new float[sizes[l + 1]];
+        }
+        return new PolicyNet(sizes, weights, biases);
+    }
+
+    public void save(Path file) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+            ByteBuffer header = ByteBuffer.allocate(4 * (4 + sizes.length)).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(sizes.length - 1);
+            for (int size : sizes) {
+                header.putInt(size);
+            }
+            out.write(header.array(), 0, header.position());
+            for (int l = 0; l < weights.length; l++) {
+                writeFloats(out, weights[l]);
+                writeFloats(out, biases[l]);
+            }
+        }
+    }
+
+    public int getInputSize() {
+        return sizes[0];
+    }
+
+    public int getOutputSize() {
+        return sizes[sizes.length - 1];
+    }
+
+    public int[] getLayerSizes() {
+        return sizes.clone();
+    }
+
+    public Workspace newWorkspace(int maxBatch) {
+        return new Workspace(sizes, maxBatch);
+    }
+
+    // Which multiply is in use: "vector" or "scalar"
+    public static String kernelName() {
+        return KERNEL == MatKernel.SCALAR ? "scalar" : "vector";
+    }
+
+    /**
+     * Runs batch rows of input, each getInputSize() floats, through the net;
+     * the outputs are left in ws.getOutput().
+     */
+    public void forward(Workspace ws, float[] input, int batch) {
+        if (batch > ws.maxBatch)
+            throw new IllegalArgumentException("Batch " + batch + " exceeds workspace size " + ws.maxBatch);
+        float[] in = input;
+        int last = weights.length - 1;
+        for (int l = 0; l <= last; l++) {
+            float[] out = ws.activations[l];
+            KERNEL.dense(in, batch, sizes[l], weights[l], biases[l], sizes[l + 1], out, l < last);
+            in = out;
+        }
+    }
+
+    // Forward pass, then the ACTION_* with the largest output for each row
+    public void act(Workspace ws, float[] input, int batch, int[] actions) {
+        forward(ws, input, batch);
+        float[] out = ws.getOutput();
+        for (int r = 0; r < batch; r++) {
+            int o = r * 3;
+            int best = VectorEnv.ACTION_STAY;
+            if (out[o + VectorEnv.ACTION_BACK] > out[o + best])
+                best = VectorEnv.ACTION_BACK;
+            if (out[o + VectorEnv.ACTION_FORWARD] > out[o + best])
+                best = VectorEnv.ACTION_FORWARD;
+            actions[r] = best;
+        }
+    }
+
+    private static MatKernel loadKernel() {
+        // Compiled only by the vector profile, and needs the incubator module at run time
+        try {
+            return (MatKernel) Class.forName("com.ponggame.sim.VectorMatKernel")
+                    .getDeclaredConstructor().newInstance();
+        } catch (Throwable e) {
+            return MatKernel.SCALAR;
+        }
+    }
+
+    private static int readInt(DataInputStream in) throws IOException {
+        return Integer.reverseBytes(in.readInt());
+    }
+
+    private static float[] readFloats(DataInputStream in, int count) throws IOException {
+        byte[] bytes = new byte[count * 4];
+        in.readFully(bytes);
+        float[] values = new float[count];
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(values);
+        return values;
+    }
+
+    private static void writeFloats(OutputStream out, float[] values) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(values.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+        bytes.asFloatBuffer().put(values);
+        out.write(bytes.array());
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path init = null;
+        Path bench = null;
+        int[] hidden = {32, 32};
+        long seed = 1;
+        int batch = 1024;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--init" -> init = Path.of(args[i + 1]);
+                case "--hidden" -> hidden = Arrays.stream(args[i + 1].split(",")).mapToInt(Integer::parseInt).toArray();
+                case "--seed" -> seed = Long.parseLong(args[i + 1]);
+                case "--bench" -> bench = Path.of(args[i + 1]);
+                case "--batch" -> batch = Integer.parseInt(args[i + 1]);
+                default -> System.err.println("Unknown option " + args[i]);
+            }
+        }
+
+        PolicyNet net = random(seed, hidden);
+        if (init != null) {
+            net.save(init);
+            System.out.println("Wrote " + init + " " + Arrays.toString(net.sizes));
+        }
+        if (bench != null)
+            net = load(bench);
+
+        // Observations from real play, so ReLU sparsity is what a game would see
+        float[] input = new float[batch * VectorEnv.OBS_SIZE];
+        SimState state = new SimState();
+        Simulation.init(state, 2, seed);
+        SimAI left = new SimAI(0, seed);
+        SimAI right = new SimAI(1, seed + 1);
+        int[] inputs = new int[4];
+        for (int r = 0; r < batch; r++) {
+            inputs[0] = left.update(state);
+            inputs[1] = right.update(state);
+            Simulation.step(state, inputs);
+            if (state.isOver())
+                Simulation.init(state, 2, seed + r);
+            VectorEnv.observe(state, r & 1, input, r * VectorEnv.OBS_SIZE);
+        }
+
+        Workspace ws = net.newWorkspace(batch);
+        int[] actions = new int[batch];
+        int[] counts = new int[3];
+        for (int warm = 0; warm < 2_000_000 / batch + 1000; warm++) {
+            net.act(ws, input, batch, actions);
+        }
+        int rounds = Math.max(1000, 5_000_000 / batch);
+        long start = System.nanoTime();
+        for (int n = 0; n < rounds; n++) {
+            net.act(ws, input, batch, actions);
+        }
+        double nanos = (double) (System.nanoTime() - start) / rounds;
+        for (int r = 0; r < batch; r++) {
+            counts[actions[r]]++;
+        }
+        System.out.printf("%s kernel, layers %s, batch %d: %.1f us per batch, %.1f ns per decision (stay/back/forward %s)%n",
+                kernelName(), Arrays.toString(net.sizes), batch, nanos / 1000, nanos / batch, Arrays.toString(counts));
+    }
+}
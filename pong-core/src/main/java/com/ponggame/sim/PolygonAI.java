@@ -0,0 +1,69 @@
+package com.ponggame.sim;
+
+import com.ponggame.net.Protocol;
+
+import java.util.Random;
+
+/**
+ * {@link SimAI} for a paddle of a {@link PolygonSimulation}: every few ticks
+ * it picks a spot a little off where the ball is along its edge, then slides
+ * towards it. Plays at an {@link AIDifficulty} like SimAI.
+ */
+public class PolygonAI {
+
+    private static final int DEAD_ZONE = FixedMath.fromInt(4);
+
+    private final PolygonArena arena;
+    private final int edge;
+    private final Random random;
+    private final int errorMargin;
+    private final int reactionDelay;
+    private final int speed;
+    private int frameCounter;
+    private int target = -1;
+    private int speedCredit;
+
+    public PolygonAI(PolygonArena arena, int edge, long seed) {
+        this(arena, edge, seed, AIDifficulty.BASELINE);
+    }
+
+    public PolygonAI(PolygonArena arena, int edge, long seed, AIDifficulty difficulty) {
+        this.arena = arena;
+        this.edge = edge;
+        this.random = new Random(seed);
+        this.errorMargin = (int) Math.round(difficulty.getErrorMargin() * FixedMath.ONE);
+        this.reactionDelay = difficulty.getReactionDelay();
+        this.speed = (int) Math.min(Simulation.PADDLE_SPEED, Math.round(difficulty.getMaxSpeed() * FixedMath.ONE));
+    }
+
+    public int getEdge() {
+        return edge;
+    }
+
+    // Control bits for this tick
+    public int update(PolygonState s) {
+        frameCounter++;
+        if (target < 0 || frameCounter >= reactionDelay) {
+            int error = (int) ((random.nextDouble() - 0.5) * 2 * errorMargin);
+            target = arena.along(edge, s.ballX, s.ballY) - arena.getPaddleLength() / 2 + error;
+            target = Math.max(arena.getPaddleMin(), Math.min(arena.getPaddleMax(), target));
+            frameCounter = 0;
+        }
+
+        int diff = target - s.paddleOffset[edge];
+        if (Math.abs(diff) <= DEAD_ZONE || !spendSpeed())
+            return 0;
+        return diff > 0 ? Protocol.INPUT_DOWN : Protocol.INPUT_UP;
+    }
+
+    // As SimAI: a full step whenever enough credit has built up
+    private boolean spendSpeed() {
+        if (speed >= Simulation.PADDLE_SPEED)
+            return true;
+        speedCredit += speed;
+        if (speedCredit < Simulation.PADDLE_SPEED)
+            return false;
+        speedCredit -= Simulation.PADDLE_SPEED;
+        return true;
+    }
+}
@@ -0,0 +1,185 @@
+package com.ponggame.sim;
+
+import static com.ponggame.sim.FixedMath.fromInt;
+import static com.ponggame.sim.FixedMath.mul;
+
+/**
+ * Geometry of a regular polygon arena with one paddle per edge, for
+ * {@link PolygonSimulation}. Coordinates are 16.16 fixed point with the
+ * origin at the arena's centre and y pointing down, like the screen. Edge 0
+ * faces left and the rest follow clockwise on screen.
+ *
+ * Each edge has a start vertex, a unit tangent towards its end vertex and a
+ * unit normal pointing into the arena. A point's edge-local coordinates are
+ * how far along the edge it is ({@link #along}) and how far inside the edge
+ * line it is ({@link #inward}); paddles, walls and goals are all tested in
+ * those, whatever the edge's angle. {@link #sector} finds the one edge facing
+ * a point with a table-driven atan2, so the simulation never loops over edges.
+ *
+ * Built once per side count with StrictMath, then rounded, so every platform
+ * gets the same bits. Immutable and shared.
+ */
+public final class PolygonArena {
+
+    public static final int MIN_SIDES = 3;
+    public static final int MAX_SIDES = 32;
+
+    public static final int RADIUS = fromInt(400);
+    public static final int PADDLE_INSET = fromInt(15);
+    public static final int PADDLE_THICKNESS = fromInt(15);
+    public static final int MAX_PADDLE_LENGTH = fromInt(100);
+
+    // Angles for sector lookup are a 65536 step circle, finer than FixedMath's
+    private static final int CIRCLE = 1 << 16;
+    private static final int ATAN_BITS = 10;
+    private static final int[] ATAN = new int[(1 << ATAN_BITS) + 1];
+
+    static {
+        // atan of 0..1 as a fraction of the circle; the other octants are reflections
+        for (int i = 0; i < ATAN.length; i++) {
+            ATAN[i] = (int) StrictMath.round(StrictMath.atan(i / (double) (1 << ATAN_BITS)) * CIRCLE / (2 * StrictMath.PI));
+        }
+    }
+
+    private final int sides;
+    private final int edgeLength;
+    private final int paddleLength;
+    private final int paddleMin;
+    private final int paddleMax;
+    private final int sectorStart;
+    private final int[] vertexX, vertexY;
+    private final int[] tangentX, tangentY;
+    private final int[] normalX, normalY;
+
+    public PolygonArena(int sides) {
+        if (sides < MIN_SIDES || sides > MAX_SIDES)
+            throw new IllegalArgumentException("Sides must be " + MIN_SIDES + " to " + MAX_SIDES + ", not " + sides);
+        this.sides = sides;
+        double radius = FixedMath.toDouble(RADIUS);
+        double half = StrictMath.PI / sides;
+        edgeLength = round(2 * radius * StrictMath.sin(half));
+        paddleLength = Math.min(MAX_PADDLE_LENGTH, edgeLength / 3);
+        // Keeps a paddle out of the corner, where it would overlap its neighbour's
+        paddleMin = round(FixedMath.toDouble(PADDLE_INSET + PADDLE_THICKNESS) * StrictMath.tan(half));
+        paddleMax = edgeLength - paddleMin - paddleLength;
+
+        vertexX = new int[sides];
+        vertexY = new int[sides];
+        tangentX = new int[sides];
+        tangentY = new int[sides];
+        normalX = new int[sides];
+        normalY = new int[sides];
+        for (int i = 0; i < sides; i++) {
+            // Edge i's midpoint is at angle pi + 2 pi i / sides from the centre
+            double mid = StrictMath.PI + 2 * half * i;
+            double start = mid - half;
+            double end = mid + half;
+            vertexX[i] = round(radius * StrictMath.cos(start));
+            vertexY[i] = round(radius * StrictMath.sin(start));
+            double tx = StrictMath.cos(end) - StrictMath.cos(start);
+            double ty = StrictMath.sin(end) - StrictMath.sin(start);
+            double length = StrictMath.sqrt(tx * tx + ty * ty);
+            tangentX[i] = round(tx / length);
+            tangentY[i] = round(ty / length);
+            normalX[i] = round(-StrictMath.cos(mid));
+            normalY[i] = round(-StrictMath.sin(mid));
+        }
+        // The angle where edge 0's sector begins
+        sectorStart = CIRCLE / 2 - CIRCLE / (2 * sides);
+    }
+
+    private static int round(double v) {
+        return (int) StrictMath.round(v * FixedMath.ONE);
+    }
+
+    public int getSides() {
+        return sides;
+    }
+
+    public int getEdgeLength() {
+        return edgeLength;
+    }
+
+    public int getPaddleLength() {
+        return paddleLength;
+    }
+
+    // Range of a paddle's offset along its edge
+    public int getPaddleMin() {
+        return paddleMin;
+    }
+
+    public int getPaddleMax() {
+        return paddleMax;
+    }
+
+    public int getVertexX(int edge) {
+        return vertexX[edge];
+    }
+
+    public int getVertexY(int edge) {
+        return vertexY[edge];
+    }
+
+    public int getTangentX(int edge) {
+        return tangentX[edge];
+    }
+
+    public int getTangentY(int edge) {
+        return tangentY[edge];
+    }
+
+    public int getNormalX(int edge) {
+        return normalX[edge];
+    }
+
+    public int getNormalY(int edge) {
+        return normalY[edge];
+    }
+
+    // Distance of (x, y) along edge from its start vertex
+    public int along(int edge, int x, int y) {
+        return mul(x - vertexX[edge], tangentX[edge]) + mul(y - vertexY[edge], tangentY[edge]);
+    }
+
+    // Distance of (x, y) inside edge's line; negative once past it
+    public int inward(int edge, int x, int y) {
+        return mul(x - vertexX[edge], normalX[edge]) + mul(y - vertexY[edge], normalY[edge]);
+    }
+
+    // Velocity component along edge's inward normal; negative when heading out through it
+    public int normalSpeed(int edge, int vx, int vy) {
+        return mul(vx, normalX[edge]) + mul(vy, normalY[edge]);
+    }
+
+    public int tangentSpeed(int edge, int vx, int vy) {
+        return mul(vx, tangentX[edge]) + mul(vy, tangentY[edge]);
+    }
+
+    /**
+     * The edge whose sector, the wedge from the centre to its two vertices,
+     * holds (x, y). Exact up to the table's resolution; within a few pixels of
+     * a corner the answer may be the neighbour, which callers handle anyway
+     * because a ball that close can reach both edges.
+     */
+    public int sector(int x, int y) {
+        int a = (angle(x, y) - sectorStart) & (CIRCLE - 1);
+        return (int) ((long) a * sides >>> 16);
+    }
+
+    // atan2 in 65536ths of a circle, clockwise from +x on screen
+    private static int angle(int x, int y) {
+        int ax = Math.abs(x);
+        int ay = Math.abs(y);
+        if (ax == 0 && ay == 0)
+            return 0;
+        int a = ay <= ax
+                ? ATAN[(int) (((long) ay << ATAN_BITS) / ax)]
+                : CIRCLE / 4 - ATAN[(int) (((long) ax << ATAN_BITS) / ay)];
+        if (x < 0)
+            a = CIRCLE / 2 - a;
+        if (y < 0)
+            a = CIRCLE - a;
+        return a & (CIRCLE - 1);
+    }
+}
@@ -0,0 +1,222 @@
+package com.ponggame.sim;
+
+import com.ponggame.net.Protocol;
+
+import java.util.Arrays;
+
+import static com.ponggame.sim.FixedMath.fromInt;
+import static com.ponggame.sim.FixedMath.mul;
+
+/**
+ * {@link Simulation} on a regular polygon with one paddle per edge, for party
+ * and tournament matches of 3 to 32 players. Paddles slide along their own
+ * edge; the ball, its speed-up and the scoring rules are those of the square
+ * game, and an edge without a player is a wall.
+ *
+ * Collisions are tested in edge-local coordinates (see {@link PolygonArena}),
+ * so one routine serves every edge at any angle. Each tick the ball's sector
+ * picks the edge it can reach, and only near a corner is the neighbouring edge
+ * tested too: at most two tests whatever the player count, so apart from
+ * moving the paddles a tick costs the same with 32 players as with 3.
+ *
+ * Fixed point and a SplitMix64 in the state, like Simulation, so peers stay in
+ * lockstep. Control bits: INPUT_UP or INPUT_LEFT moves a paddle towards its
+ * edge's start vertex, INPUT_DOWN or INPUT_RIGHT towards its end.
+ *
+ * Usage: java -cp pong-core-1.0.jar com.ponggame.sim.PolygonSimulation
+ *            [--sides 4,6,8,16,32] [--ticks 200000]
+ */
+public final class PolygonSimulation {
+
+    public static final int WIN_SCORE = Simulation.WIN_SCORE;
+
+    private static final int BALL_RADIUS = Simulation.BALL_RADIUS;
+    private static final int PADDLE_SPEED = Simulation.PADDLE_SPEED;
+    private static final int WALL_INSET = PolygonArena.PADDLE_INSET;
+    private static final int OUT_MARGIN = fromInt(20);
+    private static final int BASE_SPEED = fromInt(4);
+    private static final int START_SPEED_MULTIPLIER = FixedMath.ONE * 3 / 2;
+    private static final int MAX_SPEED_MULTIPLIER = FixedMath.ONE * 5 / 2;
+    private static final int SPEED_STEP = FixedMath.ONE / 20;
+    // Like the square game's MIN_AXIS_SPEED: never bounce straight back, or parallel edges trade the ball forever
+    private static final int MIN_TANGENT_SPEED = fromInt(1);
+    // Closer than this to a corner, the ball may reach the neighbouring edge's paddle or wall
+    private static final int CORNER = BALL_RADIUS + PolygonArena.PADDLE_INSET + PolygonArena.PADDLE_THICKNESS;
+
+    private PolygonSimulation() {
+    }
+
+    // Every edge in play, paddles centred, ball served from the centre
+    public static void init(PolygonArena arena, PolygonState s, long seed) {
+        int sides = arena.getSides();
+        s.tick = 0;
+        s.sides = sides;
+        s.activeMask = sides == 32 ? -1 : (1 << sides) - 1;
+        for (int edge = 0; edge < sides; edge++) {
+            s.paddleOffset[edge] = (arena.getPaddleMin() + arena.getPaddleMax()) / 2;
+            s.scores[edge] = 0;
+        }
+        s.rng = seed;
+        s.winner = -1;
+        serve(s);
+    }
+
+    // Advances one tick. inputs holds control bits by edge. Returns the edge that
+    // let the ball through this tick, or -1.
+    public static int step(PolygonArena arena, PolygonState s, int[] inputs) {
+        if (s.isOver())
+            return -1;
+        s.tick++;
+
+        for (int edge = 0; edge < s.sides; edge++) {
+            if (s.isActive(edge))
+                movePaddle(arena, s, edge, inputs[edge]);
+        }
+
+        s.ballX += mul(s.ballVX, s.speedMultiplier);
+        s.ballY += mul(s.ballVY, s.speedMultiplier);
+
+        int edge = arena.sector(s.ballX, s.ballY);
+        collide(arena, s, edge);
+        int u = arena.along(edge, s.ballX, s.ballY);
+        if (u < CORNER)
+            collide(arena, s, edge == 0 ? s.sides - 1 : edge - 1);
+        else if (u > arena.getEdgeLength() - CORNER)
+            collide(arena, s, edge == s.sides - 1 ? 0 : edge + 1);
+        return checkScoring(arena, s);
+    }
+
+    private static void movePaddle(PolygonArena arena, PolygonState s, int edge, int bits) {
+        if ((bits & (Protocol.INPUT_UP | Protocol.INPUT_LEFT)) != 0)
+            s.paddleOffset[edge] = Math.max(arena.getPaddleMin(), s.paddleOffset[edge] - PADDLE_SPEED);
+        if ((bits & (Protocol.INPUT_DOWN | Protocol.INPUT_RIGHT)) != 0)
+            s.paddleOffset[edge] = Math.min(arena.getPaddleMax(), s.paddleOffset[edge] + PADDLE_SPEED);
+    }
+
+    // The ball against one edge's paddle, or its wall when nobody plays it
+    private static void collide(PolygonArena arena, PolygonState s, int edge) {
+        int vn = arena.normalSpeed(edge, s.ballVX, s.ballVY);
+        if (vn >= 0)
+            return;
+        int d = arena.inward(edge, s.ballX, s.ballY);
+        int r = BALL_RADIUS;
+        if (s.isActive(edge)) {
+            if (d - r > PolygonArena.PADDLE_INSET + PolygonArena.PADDLE_THICKNESS || d + r < PolygonArena.PADDLE_INSET)
+                return;
+            int u = arena.along(edge, s.ballX, s.ballY);
+            int offset = s.paddleOffset[edge];
+            if (u < offset || u > offset + arena.getPaddleLength())
+                return;
+            reflect(arena, s, edge, vn);
+            increaseSpeed(s);
+            s.lastTouched = edge;
+        } else if (d - r <= WALL_INSET) {
+            reflect(arena, s, edge, vn);
+            increaseSpeed(s);
+            // Back inside the wall, along the normal
+            int push = WALL_INSET + r - d;
+            s.ballX += mul(arena.getNormalX(edge), push);
+            s.ballY += mul(arena.getNormalY(edge), push);
+        }
+    }
+
+    // Mirrors the velocity in the edge, v - 2 (v.n) n, keeping some speed along it
+    private static void reflect(PolygonArena arena, PolygonState s, int edge, int vn) {
+        s.ballVX -= 2 * mul(vn, arena.getNormalX(edge));
+        s.ballVY -= 2 * mul(vn, arena.getNormalY(edge));
+        int vt = arena.tangentSpeed(edge, s.ballVX, s.ballVY);
+        if (Math.abs(vt) < MIN_TANGENT_SPEED) {
+            int nudge = (vt >= 0 ? MIN_TANGENT_SPEED : -MIN_TANGENT_SPEED) - vt;
+            s.ballVX += mul(nudge, arena.getTangentX(edge));
+            s.ballVY += mul(nudge, arena.getTangentY(edge));
+        }
+    }
+
+    private static int checkScoring(PolygonArena arena, PolygonState s) {
+        int missedBy = arena.sector(s.ballX, s.ballY);
+        if (arena.inward(missedBy, s.ballX, s.ballY) >= -OUT_MARGIN)
+            return -1;
+        if (!s.isActive(missedBy)) {
+            // Slipped past a wall at a corner; nobody scores
+            serve(s);
+            return -1;
+        }
+        int scorer = s.lastTouched;
+        if (scorer >= 0 && scorer != missedBy && s.isActive(scorer)) {
+            s.scores[scorer]++;
+            if (s.scores[scorer] >= WIN_SCORE)
+                s.winner = scorer;
+        }
+        serve(s);
+        return missedBy;
+    }
+
+    private static void increaseSpeed(PolygonState s) {
+        if (s.speedMultiplier < MAX_SPEED_MULTIPLIER)
+            s.speedMultiplier += SPEED_STEP;
+    }
+
+    // From the centre in any direction; every edge is equally likely to face it
+    private static void serve(PolygonState s) {
+        s.ballX = 0;
+        s.ballY = 0;
+        s.speedMultiplier = START_SPEED_MULTIPLIER;
+        s.lastTouched = -1;
+
+        int angle = nextInt(s, FixedMath.ANGLE_STEPS);
+        s.ballVX = mul(FixedMath.cos(angle), BASE_SPEED);
+        s.ballVY = mul(FixedMath.sin(angle), BASE_SPEED);
+    }
+
+    // Simulation's SplitMix64
+    private static int nextInt(PolygonState s, int bound) {
+        s.rng += 0x9E3779B97F4A7C15L;
+        long z = s.rng;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z ^= z >>> 31;
+        return (int) (((z >>> 32) * bound) >>> 32);
+    }
+
+    // Plays PolygonAI on every edge for each side count and times step alone, to show it doesn't grow with players
+    public static void main(String[] args) {
+        int[] sideCounts = {4, 6, 8, 16, 32};
+        int ticks = 200_000;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--sides" -> sideCounts = Arrays.stream(args[i + 1].split(",")).mapToInt(Integer::parseInt).toArray();
+                case "--ticks" -> ticks = Integer.parseInt(args[i + 1]);
+                default -> System.err.println("Unknown option " + args[i]);
+            }
+        }
+
+        for (int sides : sideCounts) {
+            PolygonArena arena = new PolygonArena(sides);
+            PolygonState s = new PolygonState();
+            PolygonAI[] ais = new PolygonAI[sides];
+            for (int edge = 0; edge < sides; edge++) {
+                ais[edge] = new PolygonAI(arena, edge, edge);
+            }
+            int[] inputs = new int[sides];
+            long total = 0;
+            int points = 0;
+            int matches = 0;
+            PolygonSimulation.init(arena, s, sides);
+            for (int t = 0; t < ticks; t++) {
+                if (s.isOver()) {
+                    matches++;
+                    PolygonSimulation.init(arena, s, sides + t);
+                }
+                for (int edge = 0; edge < sides; edge++) {
+                    inputs[edge] = ais[edge].update(s);
+                }
+                long before = System.nanoTime();
+                if (step(arena, s, inputs) >= 0)
+                    points++;
+                total += System.nanoTime() - before;
+            }
+            System.out.printf("%2d sides: %.0f ns per step, %d points, %d matches finished%n",
+                    sides, (double) total / ticks, points, matches);
+        }
+    }
+}
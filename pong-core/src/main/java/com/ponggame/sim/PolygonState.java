@@ -0,0 +1,76 @@
+package com.ponggame.sim;
+
+/**
+ * Complete state of a {@link PolygonSimulation} match, the polygon arena's
+ * {@link SimState}: copying it is enough to rewind the game. Edges are indexed
+ * as in {@link PolygonArena}; arrays are sized for the largest arena, so one
+ * state can hold any match and copying never allocates.
+ *
+ * Positions are 16.16 fixed point relative to the arena's centre; a paddle's
+ * position is its offset along its edge.
+ */
+public class PolygonState {
+
+    public int tick;
+    public int sides;
+    public int ballX, ballY, ballVX, ballVY;
+    public int speedMultiplier;
+    public int lastTouched = -1; // edge, -1 = none
+    public int activeMask; // bit per edge; inactive edges are walls
+    public final int[] paddleOffset = new int[PolygonArena.MAX_SIDES];
+    public final int[] scores = new int[PolygonArena.MAX_SIDES];
+    public long rng;
+    public int winner = -1; // edge once the match is over
+
+    public void copyFrom(PolygonState o) {
+        tick = o.tick;
+        sides = o.sides;
+        ballX = o.ballX;
+        ballY = o.ballY;
+        ballVX = o.ballVX;
+        ballVY = o.ballVY;
+        speedMultiplier = o.speedMultiplier;
+        lastTouched = o.lastTouched;
+        activeMask = o.activeMask;
+        System.arraycopy(o.paddleOffset, 0, paddleOffset, 0, o.sides);
+        System.arraycopy(o.scores, 0, scores, 0, o.sides);
+        rng = o.rng;
+        winner = o.winner;
+    }
+
+    public boolean isActive(int edge) {
+        return (activeMask >>> edge & 1) != 0;
+    }
+
+    public boolean isOver() {
+        return winner >= 0;
+    }
+
+    // 64-bit FNV-1a over every field, like SimState.hash
+    public long hash() {
+        long h = 0xcbf29ce484222325L;
+        h = mix(h, tick);
+        h = mix(h, sides);
+        h = mix(h, ballX);
+        h = mix(h, ballY);
+        h = mix(h, ballVX);
+        h = mix(h, ballVY);
+        h = mix(h, speedMultiplier);
+        h = mix(h, lastTouched);
+        h = mix(h, activeMask);
+        for (int edge = 0; edge < sides; edge++) {
+            h = mix(h, paddleOffset[edge]);
+            h = mix(h, scores[edge]);
+        }
+        h = mix(h, rng);
+        return mix(h, winner);
+    }
+
+    private static long mix(long h, long value) {
+        for (int i = 0; i < 8; i++) {
+            h ^= (value >>> (i * 8)) & 0xFF;
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+}
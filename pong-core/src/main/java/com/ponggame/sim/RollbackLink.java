@@ -0,0 +1,79 @@
+package com.ponggame.sim;
+
+import com.ponggame.net.Protocol;
+import com.ponggame.net.UdpServer;
+
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+
+/**
+ * Peer-to-peer transport for a {@link RollbackSession}. Every frame sends all
+ * local inputs the peer has not acknowledged yet, so a lost packet is covered by
+ * the next one, together with the hash of our newest confirmed tick.
+ */
+public class RollbackLink {
+
+    private static final int MAX_INPUTS_PER_PACKET = 64;
+
+    private final UdpServer udp;
+    private final SocketAddress peer;
+    private final int matchId;
+    private final RollbackSession session;
+    private final ByteBuffer out = ByteBuffer.allocate(Protocol.MTU);
+
+    private int peerAckTick = -1;
+    private long packetsReceived = 0;
+
+    public RollbackLink(UdpServer udp, SocketAddress peer, int matchId, RollbackSession session) {
+        this.udp = udp;
+        this.peer = peer;
+        this.matchId = matchId;
+        this.session = session;
+    }
+
+    // Feeds every queued packet from the peer into the session
+    public void receive() {
+        UdpServer.Datagram d;
+        while ((d = udp.poll()) != null) {
+            ByteBuffer buf = d.data;
+            if (!d.from.equals(peer) || Protocol.readHeader(buf) != Protocol.ROLLBACK || buf.getInt() != matchId)
+                continue;
+            if (buf.remaining() < 21)
+                continue;
+            packetsReceived++;
+            peerAckTick = Math.max(peerAckTick, buf.getInt());
+            int hashTick = buf.getInt();
+            long hash = buf.getLong();
+            int firstTick = buf.getInt();
+            int count = Math.min(buf.get() & 0xFF, buf.remaining());
+            for (int i = 0; i < count; i++) {
+                session.addRemoteInput(firstTick + i, buf.get() & 0xFF);
+            }
+            session.checkRemoteHash(hashTick, hash);
+        }
+    }
+
+    public void send() {
+        int newest = session.getNewestLocalTick();
+        int first = Math.max(peerAckTick + 1, newest - MAX_INPUTS_PER_PACKET + 1);
+        int count = Math.max(0, newest - first + 1);
+        int confirmed = session.getConfirmedTick();
+
+        out.clear();
+        Protocol.writeHeader(out, Protocol.ROLLBACK, matchId);
+        out.putInt(session.getLastRemoteTick());
+        out.putInt(confirmed);
+        out.putLong(confirmed >= 0 ? session.getHash(confirmed) : 0);
+        out.putInt(first);
+        out.put((byte) count);
+        for (int t = first; t < first + count; t++) {
+            out.put((byte) session.getLocalInput(t));
+        }
+        out.flip();
+        udp.send(peer, out);
+    }
+
+    public long getPacketsReceived() {
+        return packetsReceived;
+    }
+}
@@ -0,0 +1,141 @@
+package com.ponggame.sim;
+
+import com.ponggame.net.LatencyHistogram;
+import com.ponggame.net.LossSimulator;
+import com.ponggame.net.Protocol;
+import com.ponggame.net.UdpServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Headless rollback peer for trying the netcode over a real or simulated link.
+ * Start one per side with matching --seed, --match and --delay; a simple bot
+ * steers the local paddle. Logs rollback depth, resimulation cost against the
+ * frame budget, stalls and the first desynced tick if any.
+ *
+ * Usage: java -cp pong-core-1.0.jar com.ponggame.sim.RollbackPeer --port 4001
+ *            --peer 127.0.0.1:4002 --side left [--delay 2] [--seed 1] [--match 1]
+ *            [--loss 0.05] [--latency 40] [--jitter 10]
+ */
+public class RollbackPeer {
+
+    private static final int TICK_RATE = 60;
+    private static final long STATS_INTERVAL_NANOS = 5_000_000_000L;
+
+    private final RollbackSession session;
+    private final RollbackLink link;
+    private final UdpServer udp;
+    private final Random bot = new Random();
+    private final LatencyHistogram frameTime = new LatencyHistogram();
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private long lastStatsNanos = System.nanoTime();
+
+    public RollbackPeer(UdpServer udp, RollbackSession session, RollbackLink link) {
+        this.udp = udp;
+        this.session = session;
+        this.link = link;
+    }
+
+    private void frame() {
+        try {
+            long start = System.nanoTime();
+            link.receive();
+            session.setLocalInput(botInput());
+            session.advance();
+            link.send();
+            frameTime.recordNanos(System.nanoTime() - start);
+
+            boolean done = session.isFinished() || session.getDesyncTick() >= 0;
+            if (start - lastStatsNanos >= STATS_INTERVAL_NANOS || (done && finished.getCount() > 0)) {
+                lastStatsNanos = start;
+                printStats();
+            }
+            if (done)
+                finished.countDown();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Follows the ball with a little hesitation, like a human would
+    private int botInput() {
+        SimState s = session.getState();
+        int pos = session.getLocalPosition();
+        int centre = s.paddleY[pos] + Simulation.PADDLE_H[pos] / 2;
+        int deadZone = FixedMath.fromInt(10);
+        if (bot.nextInt(8) == 0)
+            return 0;
+        if (s.ballY < centre - deadZone)
+            return Protocol.INPUT_UP;
+        if (s.ballY > centre + deadZone)
+            return Protocol.INPUT_DOWN;
+        return 0;
+    }
+
+    private void printStats() {
+        SimState s = session.getState();
+        long rollbacks = session.getRollbacks();
+        System.out.printf("tick=%d score %d-%d rollbacks=%d avgDepth=%.1f maxDepth=%d stalls=%d frame %s%n",
+                session.getTick(), s.scores[0], s.scores[1], rollbacks,
+                rollbacks == 0 ? 0.0 : (double) session.getFramesResimulated() / rollbacks,
+                session.getMaxRollbackDepth(), session.getStalls(), frameTime.summary());
+        if (session.getDesyncTick() >= 0)
+            System.out.println("DESYNC at tick " + session.getDesyncTick());
+        if (s.isOver())
+            System.out.println(Protocol.positionName(s.winner) + " wins, final hash "
+                    + Long.toHexString(s.hash()));
+    }
+
+    public void run() throws InterruptedException {
+        udp.start();
+        ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "rollback-tick"));
+        ticker.scheduleAtFixedRate(this::frame, 0, 1_000_000_000L / TICK_RATE, TimeUnit.NANOSECONDS);
+        finished.await();
+        // Keep sending briefly so the peer can confirm the last ticks too
+        Thread.sleep(500);
+        ticker.shutdownNow();
+        udp.stop();
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = 4001;
+        String peer = "127.0.0.1:4002";
+        String side = "left";
+        int delay = 2;
+        long seed = 1;
+        int match = 1;
+        double loss = 0;
+        int latency = 0;
+        int jitter = 0;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--port" -> port = Integer.parseInt(args[i + 1]);
+                case "--peer" -> peer = args[i + 1];
+                case "--side" -> side = args[i + 1];
+                case "--delay" -> delay = Integer.parseInt(args[i + 1]);
+                case "--seed" -> seed = Long.parseLong(args[i + 1]);
+                case "--match" -> match = Integer.parseInt(args[i + 1]);
+                case "--loss" -> loss = Double.parseDouble(args[i + 1]);
+                case "--latency" -> latency = Integer.parseInt(args[i + 1]);
+                case "--jitter" -> jitter = Integer.parseInt(args[i + 1]);
+                default -> System.err.println("Unknown option " + args[i]);
+            }
+        }
+
+        int localPos = "right".equals(side) ? 1 : 0;
+        String[] hostPort = peer.split(":");
+        InetSocketAddress peerAddress = new InetSocketAddress(hostPort[0], Integer.parseInt(hostPort[1]));
+
+        UdpServer udp = new UdpServer(port, new LossSimulator(loss, latency, jitter));
+        RollbackSession session = new RollbackSession(localPos, 1 - localPos, delay, seed);
+        RollbackLink link = new RollbackLink(udp, peerAddress, match, session);
+        System.out.println("Rollback peer " + side + " on port " + port + " -> " + peer);
+        new RollbackPeer(udp, session, link).run();
+    }
+}
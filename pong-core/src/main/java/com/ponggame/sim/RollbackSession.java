@@ -0,0 +1,218 @@
+package com.ponggame.sim;
+
+/**
+ * Rollback netcode for a two player match. Each peer runs the full
+ * {@link Simulation} locally: its own input is applied after a short delay, and
+ * the remote input is predicted by repeating the last one received. When a remote
+ * input turns out to differ from the prediction, the session restores the saved
+ * state from that tick and resimulates up to the present within the same frame.
+ *
+ * A ring of {@link #HISTORY} states and inputs is kept. The local side runs at
+ * most {@link #MAX_ROLLBACK} ticks ahead of the newest confirmed remote input;
+ * beyond that {@link #canAdvance} returns false and the caller waits. Hashes of
+ * fully confirmed ticks are exchanged to detect desyncs.
+ */
+public class RollbackSession {
+
+    public static final int HISTORY = 64;
+    public static final int MAX_ROLLBACK = 8;
+    private static final int MASK = HISTORY - 1;
+
+    private final int localPos;
+    private final int remotePos;
+    private final int inputDelay;
+
+    // states[t] is the state before tick t is simulated
+    private final SimState[] states = new SimState[HISTORY];
+    private final long[] hashes = new long[HISTORY]; // after tick t
+    private final int[] localInputs = new int[HISTORY];
+    private final int[] localTicks = new int[HISTORY];
+    private final int[] remoteInputs = new int[HISTORY];
+    private final int[] remoteTicks = new int[HISTORY];
+    private final int[] usedRemote = new int[HISTORY]; // what tick t was simulated with
+    private final int[] stepInputs = new int[4];
+
+    private final SimState current = new SimState();
+    private int tick = 0; // next tick to simulate
+    private int lastLocalInput = 0;
+    private int lastRemoteTick;
+    private int lastRemoteInput = 0;
+    private int rollbackFrom = -1;
+
+    private int pendingHashTick = -1;
+    private long pendingHash;
+
+    private long rollbacks = 0;
+    private long framesResimulated = 0;
+    private int maxRollbackDepth = 0;
+    private long stalls = 0;
+    private int desyncTick = -1;
+
+    public RollbackSession(int localPos, int remotePos, int inputDelay, long seed) {
+        this.localPos = localPos;
+        this.remotePos = remotePos;
+        this.inputDelay = inputDelay;
+        for (int i = 0; i < HISTORY; i++) {
+            states[i] = new SimState();
+            localTicks[i] = -1;
+            remoteTicks[i] = -1;
+        }
+        // Both sides play the first inputDelay ticks with no input
+        this.lastRemoteTick = inputDelay - 1;
+        Simulation.init(current, 2, seed);
+    }
+
+    /**
+     * Records this frame's local control bits. They take effect inputDelay ticks
+     * from now; the returned tick is the one to send to the peer.
+     */
+    public int setLocalInput(int bits) {
+        int target = tick + inputDelay;
+        localInputs[target & MASK] = bits;
+        localTicks[target & MASK] = target;
+        lastLocalInput = bits;
+        return target;
+    }
+
+    public int getLocalInput(int t) {
+        return localTicks[t & MASK] == t ? localInputs[t & MASK] : 0;
+    }
+
+    // Newest tick the local input is known for; the link sends up to here
+    public int getNewestLocalTick() {
+        return tick + inputDelay - 1;
+    }
+
+    /**
+     * Confirmed input from the peer. Inputs must arrive in tick order; earlier or
+     * out-of-sequence ones are ignored, so the link resends until acknowledged.
+     */
+    public void addRemoteInput(int t, int bits) {
+        if (t != lastRemoteTick + 1 || t >= tick + HISTORY - MAX_ROLLBACK)
+            return;
+        remoteInputs[t & MASK] = bits;
+        remoteTicks[t & MASK] = t;
+        lastRemoteTick = t;
+        lastRemoteInput = bits;
+
+        // Already simulated with a guess: roll back if the guess was wrong
+        if (t < tick && usedRemote[t & MASK] != bits && (rollbackFrom < 0 || t < rollbackFrom))
+            rollbackFrom = t;
+    }
+
+    public boolean canAdvance() {
+        return !current.isOver() && tick - lastRemoteTick <= MAX_ROLLBACK;
+    }
+
+    // The match is over and no late input can change that any more
+    public boolean isFinished() {
+        return current.isOver() && rollbackFrom < 0 && lastRemoteTick >= tick - 1;
+    }
+
+    // Corrects any misprediction, then simulates the next tick if allowed
+    public void advance() {
+        if (rollbackFrom >= 0)
+            rollBack();
+        if (!canAdvance()) {
+            if (!current.isOver())
+                stalls++;
+            checkPendingHash();
+            return;
+        }
+        // Keep holding the last input if the caller skipped a frame
+        int target = tick + inputDelay;
+        if (localTicks[target & MASK] != target)
+            setLocalInput(lastLocalInput);
+
+        simulate(tick);
+        tick++;
+        checkPendingHash();
+    }
+
+    private void rollBack() {
+        int depth = tick - rollbackFrom;
+        current.copyFrom(states[rollbackFrom & MASK]);
+        for (int t = rollbackFrom; t < tick; t++) {
+            simulate(t);
+        }
+        rollbacks++;
+        framesResimulated += depth;
+        maxRollbackDepth = Math.max(maxRollbackDepth, depth);
+        rollbackFrom = -1;
+    }
+
+    private void simulate(int t) {
+        int slot = t & MASK;
+        states[slot].copyFrom(current);
+        int remote = remoteTicks[slot] == t ? remoteInputs[slot] : lastRemoteInput;
+        usedRemote[slot] = remote;
+        stepInputs[localPos] = getLocalInput(t);
+        stepInputs[remotePos] = remote;
+        Simulation.step(current, stepInputs);
+        hashes[slot] = current.hash();
+    }
+
+    // Newest tick whose inputs from both sides are known and already simulated
+    public int getConfirmedTick() {
+        int confirmed = Math.min(lastRemoteTick, tick - 1);
+        return rollbackFrom >= 0 ? Math.min(confirmed, rollbackFrom - 1) : confirmed;
+    }
+
+    public long getHash(int t) {
+        return hashes[t & MASK];
+    }
+
+    // Compares the peer's hash for a confirmed tick with ours, now or once we get there
+    public void checkRemoteHash(int t, long hash) {
+        if (t < 0 || t <= tick - HISTORY)
+            return;
+        pendingHashTick = t;
+        pendingHash = hash;
+        checkPendingHash();
+    }
+
+    private void checkPendingHash() {
+        if (pendingHashTick < 0 || pendingHashTick > getConfirmedTick())
+            return;
+        if (hashes[pendingHashTick & MASK] != pendingHash && desyncTick < 0)
+            desyncTick = pendingHashTick;
+        pendingHashTick = -1;
+    }
+
+    public SimState getState() {
+        return current;
+    }
+
+    public int getTick() {
+        return tick;
+    }
+
+    public int getLastRemoteTick() {
+        return lastRemoteTick;
+    }
+
+    public int getLocalPosition() {
+        return localPos;
+    }
+
+    public long getRollbacks() {
+        return rollbacks;
+    }
+
+    public long getFramesResimulated() {
+        return framesResimulated;
+    }
+
+    public int getMaxRollbackDepth() {
+        return maxRollbackDepth;
+    }
+
+    public long getStalls() {
+        return stalls;
+    }
+
+    // First tick at which the peers' states differed, or -1
+    public int getDesyncTick() {
+        return desyncTick;
+    }
+}
@@ -0,0 +1,92 @@
+package com.ponggame.sim;
+
+import com.ponggame.net.Protocol;
+
+import java.util.Random;
+
+/**
+ * The desktop AIController on a {@link SimState}: every few ticks it picks a
+ * target a little off the ball, then steers towards it. Instead of moving the
+ * paddle itself it returns control bits, so an AI paddle goes through
+ * {@link Simulation#step} exactly like a human one. How well it plays is an
+ * {@link AIDifficulty}; a paddle slower than the simulation's skips ticks.
+ */
+public class SimAI {
+
+    private static final int DEAD_ZONE = FixedMath.fromInt(4);
+
+    private final int pos;
+    private final Random random;
+    private final int errorMargin;
+    private final int reactionDelay;
+    private final int speed;
+    private int frameCounter;
+    private int target;
+    private boolean decided;
+    private int speedCredit;
+
+    public SimAI(int pos, long seed) {
+        this(pos, seed, AIDifficulty.BASELINE);
+    }
+
+    public SimAI(int pos, long seed, AIDifficulty difficulty) {
+        this.pos = pos;
+        this.random = new Random(seed);
+        this.errorMargin = (int) Math.round(difficulty.getErrorMargin() * FixedMath.ONE);
+        this.reactionDelay = difficulty.getReactionDelay();
+        this.speed = (int) Math.min(Simulation.PADDLE_SPEED, Math.round(difficulty.getMaxSpeed() * FixedMath.ONE));
+    }
+
+    // Starts over as if newly created with this seed, without allocating
+    public void reset(long seed) {
+        random.setSeed(seed);
+        frameCounter = 0;
+        target = 0;
+        decided = false;
+        speedCredit = 0;
+    }
+
+    public int getPosition() {
+        return pos;
+    }
+
+    // Control bits for this tick
+    public int update(SimState s) {
+        frameCounter++;
+        if (!decided || frameCounter >= reactionDelay) {
+            decideTarget(s);
+            frameCounter = 0;
+        }
+
+        boolean horizontal = pos >= 2;
+        int current = horizontal ? s.paddleX[pos] : s.paddleY[pos];
+        int diff = target - current;
+        if (Math.abs(diff) <= DEAD_ZONE || !spendSpeed())
+            return 0;
+        if (diff > DEAD_ZONE)
+            return horizontal ? Protocol.INPUT_RIGHT : Protocol.INPUT_DOWN;
+        if (diff < -DEAD_ZONE)
+            return horizontal ? Protocol.INPUT_LEFT : Protocol.INPUT_UP;
+        return 0;
+    }
+
+    // A full-speed step every time enough credit has built up, so the average speed is the difficulty's
+    private boolean spendSpeed() {
+        if (speed >= Simulation.PADDLE_SPEED)
+            return true;
+        speedCredit += speed;
+        if (speedCredit < Simulation.PADDLE_SPEED)
+            return false;
+        speedCredit -= Simulation.PADDLE_SPEED;
+        return true;
+    }
+
+    private void decideTarget(SimState s) {
+        int error = (int) ((random.nextDouble() - 0.5) * 2 * errorMargin);
+        int size = pos >= 2 ? Simulation.PADDLE_W[pos] : Simulation.PADDLE_H[pos];
+        int aim = (pos >= 2 ? s.ballX : s.ballY) - size / 2 + error;
+        // Within the paddle's travel, as AIController clamps it
+        target = Math.max(Simulation.PADDLE_MIN, Math.min(Simulation.PADDLE_MAX - size, aim));
+        decided = true;
+    }
+}
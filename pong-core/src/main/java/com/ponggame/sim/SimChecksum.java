@@ -0,0 +1,45 @@
+package com.ponggame.sim;
+
+/**
+ * Plays a scripted four player match and prints the state hash every 1000 ticks.
+ * Run it on each platform: matching output means the simulation is bit-identical
+ * there, which lockstep and rollback play depend on.
+ *
+ * Usage: java -cp pong-core-1.0.jar com.ponggame.sim.SimChecksum [ticks] [seed]
+ */
+public final class SimChecksum {
+
+    private SimChecksum() {
+    }
+
+    // Hash after playing the script; the input script uses its own integer generator
+    public static long run(int ticks, long seed, StringBuilder log) {
+        SimState s = new SimState();
+        Simulation.init(s, 4, seed);
+        int[] inputs = new int[4];
+        long script = seed ^ 0x5DEECE66DL;
+        for (int t = 1; t <= ticks; t++) {
+            if (t % 6 == 0) {
+                script = script * 6364136223846793005L + 1442695040888963407L;
+                for (int pos = 0; pos < 4; pos++) {
+                    inputs[pos] = (int) (script >>> (40 + pos * 4)) & 0xF;
+                }
+            }
+            if (s.isOver())
+                Simulation.init(s, 4, s.rng);
+            Simulation.step(s, inputs);
+            if (log != null && t % 1000 == 0)
+                log.append(t).append(' ').append(Long.toHexString(s.hash())).append('\n');
+        }
+        return s.hash();
+    }
+
+    public static void main(String[] args) {
+        int ticks = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+        StringBuilder log = new StringBuilder();
+        long hash = run(ticks, seed, log);
+        System.out.print(log);
+        System.out.println("final " + Long.toHexString(hash));
+    }
+}
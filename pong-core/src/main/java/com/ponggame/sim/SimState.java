@@ -0,0 +1,76 @@
+package com.ponggame.sim;
+
+/**
+ * Complete state of a headless match: everything {@link Simulation#step} reads or
+ * writes, including the random generator, so that copying a SimState is enough to
+ * rewind the game. Positions are indexed by protocol code (left, right, top,
+ * bottom). Plain fields and fixed-size arrays only; copying never allocates.
+ *
+ * Positions, velocities and the speed multiplier are 16.16 fixed point (see
+ * {@link FixedMath}), so identical inputs give identical bits on every platform.
+ */
+public class SimState {
+
+    public int tick;
+    public int ballX, ballY, ballVX, ballVY;
+    public int speedMultiplier;
+    public int lastTouched = -1; // position code, -1 = none
+    public int activeMask;
+    public final int[] paddleX = new int[4];
+    public final int[] paddleY = new int[4];
+    public final int[] scores = new int[4];
+    public long rng;
+    public int winner = -1; // position code once the match is over
+
+    public void copyFrom(SimState o) {
+        tick = o.tick;
+        ballX = o.ballX;
+        ballY = o.ballY;
+        ballVX = o.ballVX;
+        ballVY = o.ballVY;
+        speedMultiplier = o.speedMultiplier;
+        lastTouched = o.lastTouched;
+        activeMask = o.activeMask;
+        System.arraycopy(o.paddleX, 0, paddleX, 0, 4);
+        System.arraycopy(o.paddleY, 0, paddleY, 0, 4);
+        System.arraycopy(o.scores, 0, scores, 0, 4);
+        rng = o.rng;
+        winner = o.winner;
+    }
+
+    public boolean isActive(int pos) {
+        return (activeMask & (1 << pos)) != 0;
+    }
+
+    public boolean isOver() {
+        return winner >= 0;
+    }
+
+    // 64-bit FNV-1a over every field, for comparing peers' states tick by tick
+    public long hash() {
+        long h = 0xcbf29ce484222325L;
+        h = mix(h, tick);
+        h = mix(h, ballX);
+        h = mix(h, ballY);
+        h = mix(h, ballVX);
+        h = mix(h, ballVY);
+        h = mix(h, speedMultiplier);
+        h = mix(h, lastTouched);
+        h = mix(h, activeMask);
+        for (int pos = 0; pos < 4; pos++) {
+            h = mix(h, paddleX[pos]);
+            h = mix(h, paddleY[pos]);
+            h = mix(h, scores[pos]);
+        }
+        h = mix(h, rng);
+        return mix(h, winner);
+    }
+
+    private static long mix(long h, long value) {
+        for (int i = 0; i < 8; i++) {
+            h ^= (value >>> (i * 8)) & 0xFF;
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+}
@@ -0,0 +1,204 @@
+package com.ponggame.sim;
+
+import com.ponggame.net.Protocol;
+
+import static com.ponggame.sim.FixedMath.fromInt;
+import static com.ponggame.sim.FixedMath.mul;
+
+/**
+ * Headless version of GameController.update(): the same paddle movement,
+ * collisions, wall bounces, scoring and serve, applied to a {@link SimState}
+ * instead of JavaFX nodes. Every paddle is driven by control bits (Protocol
+ * INPUT_*), so the result depends only on the starting state and the inputs.
+ * Stepping never allocates, which keeps rollback resimulation cheap.
+ *
+ * All arithmetic is 16.16 fixed point with a table-driven serve angle and an
+ * integer PRNG, so the desktop JVM and Android produce bit-identical states and
+ * lockstep or rollback peers only need to exchange inputs.
+ */
+public final class Simulation {
+
+    public static final int ARENA_SIZE = fromInt(800);
+    public static final int BALL_RADIUS = fromInt(8);
+    public static final int WIN_SCORE = 10;
+
+    public static final int PADDLE_SPEED = fromInt(6);
+    static final int PADDLE_MIN = fromInt(30);
+    static final int PADDLE_MAX = fromInt(770);
+    private static final int WALL_NEAR = fromInt(15);
+    private static final int WALL_FAR = fromInt(785);
+    private static final int OUT_MARGIN = fromInt(20);
+    private static final int BASE_SPEED = fromInt(4);
+    private static final int MIN_AXIS_SPEED = fromInt(2);
+    private static final int START_SPEED_MULTIPLIER = FixedMath.ONE * 3 / 2;
+    private static final int MAX_SPEED_MULTIPLIER = FixedMath.ONE * 5 / 2;
+    private static final int SPEED_STEP = FixedMath.ONE / 20;
+
+    // Paddle rectangles from game.fxml, by position code
+    private static final int[] START_X = { fromInt(15), fromInt(770), fromInt(350), fromInt(350) };
+    private static final int[] START_Y = { fromInt(350), fromInt(350), fromInt(15), fromInt(770) };
+    public static final int[] PADDLE_W = { fromInt(15), fromInt(15), fromInt(100), fromInt(100) };
+    public static final int[] PADDLE_H = { fromInt(100), fromInt(100), fromInt(15), fromInt(15) };
+
+    private Simulation() {
+    }
+
+    public static void init(SimState s, int playerCount, long seed) {
+        s.tick = 0;
+        s.activeMask = switch (playerCount) {
+            case 3 -> 0b0111;
+            case 4 -> 0b1111;
+            default -> 0b0011;
+        };
+        for (int pos = 0; pos < 4; pos++) {
+            s.paddleX[pos] = START_X[pos];
+            s.paddleY[pos] = START_Y[pos];
+            s.scores[pos] = 0;
+        }
+        s.rng = seed;
+        s.winner = -1;
+        serve(s);
+    }
+
+    // Advances one tick. inputs holds control bits by position code. Returns the
+    // position that let the ball through this tick, or -1.
+    public static int step(SimState s, int[] inputs) {
+        if (s.isOver())
+            return -1;
+        s.tick++;
+
+        for (int pos = 0; pos < 4; pos++) {
+            if (s.isActive(pos))
+                movePaddle(s, pos, inputs[pos]);
+        }
+
+        s.ballX += mul(s.ballVX, s.speedMultiplier);
+        s.ballY += mul(s.ballVY, s.speedMultiplier);
+
+        checkPaddleCollisions(s);
+        checkWallCollisions(s);
+        return checkScoring(s);
+    }
+
+    private static void movePaddle(SimState s, int pos, int bits) {
+        if (pos >= 2) { // top and bottom move sideways
+            if ((bits & Protocol.INPUT_LEFT) != 0)
+                s.paddleX[pos] = Math.max(PADDLE_MIN, s.paddleX[pos] - PADDLE_SPEED);
+            if ((bits & Protocol.INPUT_RIGHT) != 0)
+                s.paddleX[pos] = Math.min(PADDLE_MAX - PADDLE_W[pos], s.paddleX[pos] + PADDLE_SPEED);
+        } else {
+            if ((bits & Protocol.INPUT_UP) != 0)
+                s.paddleY[pos] = Math.max(PADDLE_MIN, s.paddleY[pos] - PADDLE_SPEED);
+            if ((bits & Protocol.INPUT_DOWN) != 0)
+                s.paddleY[pos] = Math.min(PADDLE_MAX - PADDLE_H[pos], s.paddleY[pos] + PADDLE_SPEED);
+        }
+    }
+
+    private static void checkPaddleCollisions(SimState s) {
+        int x = s.ballX;
+        int y = s.ballY;
+        int r = BALL_RADIUS;
+
+        for (int pos = 0; pos < 4; pos++) {
+            if (!s.isActive(pos))
+                continue;
+            int px = s.paddleX[pos];
+            int py = s.paddleY[pos];
+            int pw = PADDLE_W[pos];
+            int ph = PADDLE_H[pos];
+
+            boolean hit = switch (pos) {
+                case 0 -> x - r <= px + pw && x + r >= px && y >= py && y <= py + ph && s.ballVX < 0;
+                case 1 -> x + r >= px && x - r <= px + pw && y >= py && y <= py + ph && s.ballVX > 0;
+                case 2 -> y - r <= py + ph && y + r >= py && x >= px && x <= px + pw && s.ballVY < 0;
+                default -> y + r >= py && y - r <= py + ph && x >= px && x <= px + pw && s.ballVY > 0;
+            };
+            if (hit) {
+                if (pos < 2)
+                    s.ballVX = -s.ballVX;
+                else
+                    s.ballVY = -s.ballVY;
+                increaseSpeed(s);
+                s.lastTouched = pos;
+            }
+        }
+    }
+
+    private static void checkWallCollisions(SimState s) {
+        int r = BALL_RADIUS;
+        if (!s.isActive(3) && s.ballY + r >= WALL_FAR && s.ballVY > 0) {
+            s.ballVY = -s.ballVY;
+            increaseSpeed(s);
+            s.ballY = WALL_FAR - r;
+        }
+        if (!s.isActive(2) && s.ballY - r <= WALL_NEAR && s.ballVY < 0) {
+            s.ballVY = -s.ballVY;
+            increaseSpeed(s);
+            s.ballY = WALL_NEAR + r;
+        }
+        if (!s.isActive(0) && s.ballX - r <= WALL_NEAR && s.ballVX < 0) {
+            s.ballVX = -s.ballVX;
+            increaseSpeed(s);
+            s.ballX = WALL_NEAR + r;
+        }
+        if (!s.isActive(1) && s.ballX + r >= WALL_FAR && s.ballVX > 0) {
+            s.ballVX = -s.ballVX;
+            increaseSpeed(s);
+            s.ballX = WALL_FAR - r;
+        }
+    }
+
+    private static int checkScoring(SimState s) {
+        int missedBy = -1;
+        if (s.ballY > ARENA_SIZE + OUT_MARGIN)
+            missedBy = 3;
+        else if (s.ballY < -OUT_MARGIN)
+            missedBy = 2;
+        else if (s.ballX < -OUT_MARGIN)
+            missedBy = 0;
+        else if (s.ballX > ARENA_SIZE + OUT_MARGIN)
+            missedBy = 1;
+
+        if (missedBy < 0 || !s.isActive(missedBy))
+            return -1;
+        int scorer = s.lastTouched;
+        if (scorer >= 0 && scorer != missedBy && s.isActive(scorer)) {
+            s.scores[scorer]++;
+            if (s.scores[scorer] >= WIN_SCORE)
+                s.winner = scorer;
+        }
+        serve(s);
+        return missedBy;
+    }
+
+    private static void increaseSpeed(SimState s) {
+        if (s.speedMultiplier < MAX_SPEED_MULTIPLIER)
+            s.speedMultiplier += SPEED_STEP;
+    }
+
+    // Ball.reset(): centre, random direction, never too flat or too steep
+    private static void serve(SimState s) {
+        s.ballX = ARENA_SIZE / 2;
+        s.ballY = ARENA_SIZE / 2;
+        s.speedMultiplier = START_SPEED_MULTIPLIER;
+        s.lastTouched = -1;
+
+        int angle = nextInt(s, FixedMath.ANGLE_STEPS);
+        s.ballVX = mul(FixedMath.cos(angle), BASE_SPEED);
+        s.ballVY = mul(FixedMath.sin(angle), BASE_SPEED);
+        if (Math.abs(s.ballVX) < MIN_AXIS_SPEED)
+            s.ballVX = s.ballVX >= 0 ? MIN_AXIS_SPEED : -MIN_AXIS_SPEED;
+        if (Math.abs(s.ballVY) < MIN_AXIS_SPEED)
+            s.ballVY = s.ballVY >= 0 ? MIN_AXIS_SPEED : -MIN_AXIS_SPEED;
+    }
+
+    // SplitMix64, with its whole state in SimState.rng so rollback restores it
+    private static int nextInt(SimState s, int bound) {
+        s.rng += 0x9E3779B97F4A7C15L;
+        long z = s.rng;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z ^= z >>> 31;
+        return (int) (((z >>> 32) * bound) >>> 32);
+    }
+}
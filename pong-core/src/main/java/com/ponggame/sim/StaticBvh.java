@@ -0,0 +1,182 @@
+package com.ponggame.sim;
+
+import java.util.Arrays;
+
+/**
+ * Bounding-volume hierarchy over a level's static obstacles, built once when
+ * the level loads: a binary tree of axis-aligned boxes, split at the median
+ * along the longer axis, with one obstacle per leaf. A query for the boxes
+ * overlapping the ball visits O(log n) nodes and allocates nothing.
+ *
+ * The tree's shape never changes after the build. An obstacle that is
+ * destroyed is removed by emptying its leaf and refitting the boxes on the
+ * way to the root, O(log n), so the index shrinks with the level without a
+ * rebuild. A tree made with {@link #copy} shares the shape with its original
+ * and owns its boxes, which {@link #copyFrom} restores for rollback.
+ */
+public final class StaticBvh {
+
+    private static final int EMPTY_MIN = Integer.MAX_VALUE;
+    private static final int EMPTY_MAX = Integer.MIN_VALUE;
+
+    // Shape, shared between copies
+    private final int[] left, right, parent, item, leafOf;
+    private final int nodes;
+    // Boxes, one set per copy
+    private final int[] minX, minY, maxX, maxY;
+    private final int[] stack;
+
+    /**
+     * Indexes items 0..count-1 by their boxes; the arrays are read, not kept.
+     */
+    public StaticBvh(int count, int[] boxMinX, int[] boxMinY, int[] boxMaxX, int[] boxMaxY) {
+        nodes = Math.max(1, 2 * count - 1);
+        left = new int[nodes];
+        right = new int[nodes];
+        parent = new int[nodes];
+        item = new int[nodes];
+        leafOf = new int[count];
+        minX = new int[nodes];
+        minY = new int[nodes];
+        maxX = new int[nodes];
+        maxY = new int[nodes];
+        stack = new int[nodes];
+        Arrays.fill(item, -1);
+        Arrays.fill(minX, EMPTY_MIN);
+        Arrays.fill(minY, EMPTY_MIN);
+        Arrays.fill(maxX, EMPTY_MAX);
+        Arrays.fill(maxY, EMPTY_MAX);
+        parent[0] = -1;
+        if (count == 0)
+            return;
+
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        long[] keys = new long[count];
+        int[] next = {1};
+        build(0, order, 0, count, keys, next, boxMinX, boxMinY, boxMaxX, boxMaxY);
+    }
+
+    private StaticBvh(StaticBvh shape) {
+        left = shape.left;
+        right = shape.right;
+        parent = shape.parent;
+        item = shape.item;
+        leafOf = shape.leafOf;
+        nodes = shape.nodes;
+        minX = shape.minX.clone();
+        minY = shape.minY.clone();
+        maxX = shape.maxX.clone();
+        maxY = shape.maxY.clone();
+        stack = new int[nodes];
+    }
+
+    private void build(int node, int[] order, int from, int to, long[] keys, int[] next,
+                       int[] bMinX, int[] bMinY, int[] bMaxX, int[] bMaxY) {
+        if (to - from == 1) {
+            int i = order[from];
+            item[node] = i;
+            leafOf[i] = node;
+            minX[node] = bMinX[i];
+            minY[node] = bMinY[i];
+            maxX[node] = bMaxX[i];
+            maxY[node] = bMaxY[i];
+            return;
+        }
+        // Split at the median centre along the axis the centres spread most on
+        int cMinX = Integer.MAX_VALUE, cMaxX = Integer.MIN_VALUE, cMinY = Integer.MAX_VALUE, cMaxY = Integer.MIN_VALUE;
+        for (int k = from; k < to; k++) {
+            int i = order[k];
+            int cx = (int) (((long) bMinX[i] + bMaxX[i]) >> 1);
+            int cy = (int) (((long) bMinY[i] + bMaxY[i]) >> 1);
+            cMinX = Math.min(cMinX, cx);
+            cMaxX = Math.max(cMaxX, cx);
+            cMinY = Math.min(cMinY, cy);
+            cMaxY = Math.max(cMaxY, cy);
+        }
+        boolean alongX = (long) cMaxX - cMinX >= (long) cMaxY - cMinY;
+        for (int k = from; k < to; k++) {
+            int i = order[k];
+            long centre = alongX ? ((long) bMinX[i] + bMaxX[i]) >> 1 : ((long) bMinY[i] + bMaxY[i]) >> 1;
+            // Ties broken by index, so the same level always builds the same tree
+            keys[k] = (centre + Integer.MAX_VALUE) << 20 | i;
+        }
+        Arrays.sort(keys, from, to);
+        for (int k = from; k < to; k++) {
+            order[k] = (int) (keys[k] & 0xFFFFF);
+        }
+
+        int mid = (from + to) >>> 1;
+        int l = next[0]++;
+        int r = next[0]++;
+        left[node] = l;
+        right[node] = r;
+        parent[l] = node;
+        parent[r] = node;
+        build(l, order, from, mid, keys, next, bMinX, bMinY, bMaxX, bMaxY);
+        build(r, order, mid, to, keys, next, bMinX, bMinY, bMaxX, bMaxY);
+        refitNode(node);
+    }
+
+    // Same shape, own boxes
+    public StaticBvh copy() {
+        return new StaticBvh(this);
+    }
+
+    // Boxes from a copy of the same tree
+    public void copyFrom(StaticBvh o) {
+        System.arraycopy(o.minX, 0, minX, 0, nodes);
+        System.arraycopy(o.minY, 0, minY, 0, nodes);
+        System.arraycopy(o.maxX, 0, maxX, 0, nodes);
+        System.arraycopy(o.maxY, 0, maxY, 0, nodes);
+    }
+
+    // Takes an item out of every later query; its ancestors shrink to what is left
+    public void remove(int i) {
+        int node = leafOf[i];
+        minX[node] = EMPTY_MIN;
+        minY[node] = EMPTY_MIN;
+        maxX[node] = EMPTY_MAX;
+        maxY[node] = EMPTY_MAX;
+        for (node = parent[node]; node >= 0; node = parent[node]) {
+            refitNode(node);
+        }
+    }
+
+    public boolean contains(int i) {
+        return minX[leafOf[i]] <= maxX[leafOf[i]];
+    }
+
+    /**
+     * Items whose boxes overlap the query box, written to out; returns how
+     * many. out must have room for every item.
+     */
+    public int query(int qMinX, int qMinY, int qMaxX, int qMaxY, int[] out) {
+        int found = 0;
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int node = stack[--top];
+            if (minX[node] > qMaxX || maxX[node] < qMinX || minY[node] > qMaxY || maxY[node] < qMinY)
+                continue;
+            if (item[node] >= 0) {
+                out[found++] = item[node];
+            } else {
+                stack[top++] = right[node];
+                stack[top++] = left[node];
+            }
+        }
+        return found;
+    }
+
+    private void refitNode(int node) {
+        int l = left[node];
+        int r = right[node];
+        minX[node] = Math.min(minX[l], minX[r]);
+        minY[node] = Math.min(minY[l], minY[r]);
+        maxX[node] = Math.max(maxX[l], maxX[r]);
+        maxY[node] = Math.max(maxY[l], maxY[r]);
+    }
+}
@@ -0,0 +1,128 @@
+package com.ponggame.sim;
+
+import com.ponggame.net.LatencyHistogram;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs one {@link PaddleStrategy} on its own thread with a time budget per
+ * decision. {@link #decide} hands the strategy a private snapshot of the
+ * state and waits at most the budget for its answer; when the strategy
+ * overruns, the game goes on with its previous decision and the late answer
+ * is picked up on a later tick. While a decision is still running no new one
+ * is started, so a strategy that stalls costs the game nothing but its paddle.
+ *
+ * Every decision's cost is measured on the strategy's thread; see
+ * {@link #getDecisionTime()}, {@link #getOverruns()} and {@link #summary()}.
+ */
+public final class StrategyRunner implements AutoCloseable {
+
+    // A quarter of a 60 Hz frame
+    public static final long DEFAULT_BUDGET_NANOS = 4_000_000L;
+
+    private final PaddleStrategy strategy;
+    private final String name;
+    private final long budgetNanos;
+    private final ExecutorService thread;
+    private final SimState snapshot = new SimState();
+    private final GameView view = new GameView(snapshot);
+    private final LatencyHistogram decisionTime = new LatencyHistogram();
+
+    private Future<Integer> pending;
+    private long pendingCost;
+    private int lastBits;
+    private long decisions;
+    private long overruns;
+    private long failures;
+
+    public StrategyRunner(PaddleStrategy strategy, String name, long budgetNanos) {
+        this.strategy = strategy;
+        this.name = name;
+        this.budgetNanos = budgetNanos;
+        this.thread = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "strategy-" + name);
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    // Control bits for this tick: the strategy's answer if it comes within the budget, else the last one
+    public int decide(SimState state) {
+        if (pending != null) {
+            if (!pending.isDone())
+                return lastBits;
+            collect();
+        }
+        // The strategy thread is idle, so the snapshot is ours to write
+        snapshot.copyFrom(state);
+        pending = thread.submit(() -> {
+            long start = System.nanoTime();
+            int bits = strategy.decide(view);
+            pendingCost = System.nanoTime() - start;
+            return bits;
+        });
+        try {
+            pending.get(budgetNanos, TimeUnit.NANOSECONDS);
+            collect();
+        } catch (TimeoutException e) {
+            overruns++;
+        } catch (ExecutionException e) {
+            collect(); // counts and reports the failure
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return lastBits;
+    }
+
+    private void collect() {
+        try {
+            lastBits = pending.get();
+            decisions++;
+            decisionTime.recordNanos(pendingCost);
+        } catch (ExecutionException e) {
+            // Keep the paddle on its last decision; one bad tick shouldn't end the game
+            if (failures++ == 0)
+                e.getCause().printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        pending = null;
+    }
+
+    public long getDecisions() {
+        return decisions;
+    }
+
+    // Decisions that took longer than the budget
+    public long getOverruns() {
+        return overruns;
+    }
+
+    public long getFailures() {
+        return failures;
+    }
+
+    // Cost of each finished decision on the strategy's thread
+    public LatencyHistogram getDecisionTime() {
+        return decisionTime;
+    }
+
+    public String summary() {
+        return name + ": decisions=" + decisions + " overruns=" + overruns + " failures=" + failures
+                + " cost " + decisionTime.summary();
+    }
+
+    @Override
+    public void close() {
+        thread.shutdownNow();
+    }
+}
@@ -0,0 +1,500 @@
+package com.ponggame.sim;
+
+import com.ponggame.net.Protocol;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.Phaser;
+
+/**
+ * Many independent matches of the {@link Simulation} stepped together, for
+ * training opponents with reinforcement learning. It follows the Gym vector
+ * environment shape: {@link #reset} once, then {@link #step} with one action per
+ * agent, getting back observations, rewards and done flags for every match. A
+ * match that ends is started again straight away, so the observations returned
+ * with its done flag already belong to the next episode.
+ *
+ * The first {@link #getAgents()} active positions of each match take actions
+ * from the caller; the rest are played by {@link SimAI}, or by a
+ * {@link PolicyNet} given to {@link #setOpponentPolicy} for self-play. Results go into arrays
+ * or buffers the caller owns, laid out match by match and agent by agent:
+ *
+ * <pre>
+ *   actions  [env * agents + agent]                 ACTION_STAY, ACTION_BACK or ACTION_FORWARD
+ *   obs      [(env * agents + agent) * OBS_SIZE + i] see the OBS_* indices
+ *   rewards  [env * agents + agent]                  +1 for a point scored, -1 for a point let through
+ *   dones    [env]                                   NOT_DONE, TERMINATED or TRUNCATED
+ * </pre>
+ *
+ * Observations are in the agent's own frame: u runs along its paddle and v from
+ * its goal line towards the centre, both scaled to 0..1 over the arena, so one
+ * policy can play any seat. Stepping allocates nothing; with more than one
+ * thread the matches are split into equal ranges, one per worker.
+ *
+ * Usage: java -cp pong-core-1.0.jar com.ponggame.sim.VectorEnv
+ *            [--envs 4096] [--players 2] [--agents 2] [--threads 1] [--steps 2000] [--opponent-policy file]
+ */
+public final class VectorEnv implements AutoCloseable {
+
+    // Actions: move towards the low end of the paddle's axis (up or left), or the high end
+    public static final int ACTION_STAY = 0;
+    public static final int ACTION_BACK = 1;
+    public static final int ACTION_FORWARD = 2;
+
+    public static final byte NOT_DONE = 0;
+    public static final byte TERMINATED = 1;
+    public static final byte TRUNCATED = 2;
+
+    public static final int OBS_BALL_U = 0;
+    public static final int OBS_BALL_V = 1;
+    public static final int OBS_BALL_VU = 2;
+    public static final int OBS_BALL_VV = 3;
+    public static final int OBS_PADDLE = 4;
+    // Other positions' paddle centres along their own axes, by position code skipping this agent; -1 = empty
+    public static final int OBS_OTHERS = 5;
+    public static final int OBS_SPEED = 8;
+    public static final int OBS_SCORE = 9;
+    public static final int OBS_BEST_OTHER_SCORE = 10;
+    public static final int OBS_SIZE = 11;
+
+    // Ten minutes of play at 60 Hz
+    public static final int DEFAULT_MAX_TICKS = 36_000;
+
+    private static final float POSITION_SCALE = 1f / FixedMath.fromInt(800);
+    private static final float VELOCITY_SCALE = 1f / FixedMath.fromInt(10);
+    private static final float SPEED_SCALE = 1f / FixedMath.ONE;
+
+    private final int envs;
+    private final int agents;
+    private final int maxTicks;
+    private final SimState[] states;
+    private final SimAI[][] ais;
+    private final int[][] agentPositions;
+    private final long[] episodes;
+    private long seed;
+
+    // Workers wait on the phaser twice per call: once to start, once to finish
+    private final Thread[] workers;
+    private final Phaser phaser;
+    private final int[][] scratch;
+    private final float[][] obsScratch;
+    private final int opponents;
+    private PolicyNet opponentPolicy;
+    private PolicyNet.Workspace[] opponentWorkspaces;
+    private float[][] opponentObs;
+    private int[][] opponentActions;
+    private volatile boolean closed;
+
+    // Arguments of the call in progress; published to the workers by the phaser
+    private boolean resetting;
+    private int[] actionArray;
+    private IntBuffer actionBuffer;
+    private float[] obsArray;
+    private FloatBuffer obsBuffer;
+    private float[] rewardArray;
+    private FloatBuffer rewardBuffer;
+    private byte[] doneArray;
+    private ByteBuffer doneBuffer;
+
+    public VectorEnv(int envs, int playerCount, int agents, int threads) {
+        this(envs, playerCount, agents, threads, DEFAULT_MAX_TICKS);
+    }
+
+    // agents: learning positions per match, 1 to playerCount; maxTicks: episode length before truncation
+    public VectorEnv(int envs, int playerCount, int agents, int threads, int maxTicks) {
+        int players = Math.max(2, Math.min(4, playerCount));
+        if (agents < 1 || agents > players)
+            throw new IllegalArgumentException("agents must be 1.." + players + ": " + agents);
+        this.envs = envs;
+        this.agents = agents;
+        this.maxTicks = maxTicks;
+        this.states = new SimState[envs];
+        this.ais = new SimAI[envs][4];
+        this.agentPositions = new int[envs][agents];
+        this.episodes = new long[envs];
+        for (int e = 0; e < envs; e++) {
+            states[e] = new SimState();
+            Simulation.init(states[e], players, 0);
+            int agent = 0;
+            for (int pos = 0; pos < 4; pos++) {
+                if (!states[e].isActive(pos))
+                    continue;
+                if (agent < agents)
+                    agentPositions[e][agent++] = pos;
+                else
+                    ais[e][pos] = new SimAI(pos, 0);
+            }
+        }
+
+        int n = Math.max(1, Math.min(threads, envs));
+        this.scratch = new int[n][4];
+        this.obsScratch = new float[n][OBS_SIZE];
+        this.opponents = players - agents;
+        this.workers = new Thread[n - 1];
+        this.phaser = new Phaser(n);
+        for (int w = 1; w < n; w++) {
+            int worker = w;
+            workers[w - 1] = new Thread(() -> workLoop(worker), "vector-env-" + w);
+            workers[w - 1].setDaemon(true);
+            workers[w - 1].start();
+        }
+    }
+
+    public int getEnvs() {
+        return envs;
+    }
+
+    public int getAgents() {
+        return agents;
+    }
+
+    // Position code of an agent, the same in every match
+    public int getAgentPosition(int agent) {
+        return agentPositions[0][agent];
+    }
+
+    // Read-only view of one match, e.g. to render it
+    public SimState getState(int env) {
+        return states[env];
+    }
+
+    /**
+     * Plays the non-agent positions with a policy instead of SimAI, or with
+     * SimAI again when null. Each worker runs one forward pass per step over
+     * all the opponents in its matches. Call between steps only.
+     */
+    public void setOpponentPolicy(PolicyNet policy) {
+        opponentPolicy = policy;
+        if (policy == null || opponents == 0)
+            return;
+        int n = scratch.length;
+        opponentWorkspaces = new PolicyNet.Workspace[n];
+        opponentObs = new float[n][];
+        opponentActions = new int[n][];
+        for (int w = 0; w < n; w++) {
+            int batch = (rangeEnd(w) - rangeStart(w)) * opponents;
+            opponentWorkspaces[w] = policy.newWorkspace(batch);
+            opponentObs[w] = new float[batch * OBS_SIZE];
+            opponentActions[w] = new int[batch];
+        }
+    }
+
+    // Starts every match over; match e's episodes are seeded from seed and e
+    public void reset(long seed, float[] obs) {
+        this.seed = seed;
+        resetting = true;
+        obsArray = obs;
+        run();
+        obsArray = null;
+    }
+
+    public void reset(long seed, FloatBuffer obs) {
+        this.seed = seed;
+        resetting = true;
+        obsBuffer = obs;
+        run();
+        obsBuffer = null;
+    }
+
+    public void step(int[] actions, float[] obs, float[] rewards, byte[] dones) {
+        resetting = false;
+        actionArray = actions;
+        obsArray = obs;
+        rewardArray = rewards;
+        doneArray = dones;
+        run();
+        actionArray = null;
+        obsArray = null;
+        rewardArray = null;
+        doneArray = null;
+    }
+
+    // Absolute indexing; the buffers' positions and limits are not touched
+    public void step(IntBuffer actions, FloatBuffer obs, FloatBuffer rewards, ByteBuffer dones) {
+        resetting = false;
+        actionBuffer = actions;
+        obsBuffer = obs;
+        rewardBuffer = rewards;
+        doneBuffer = dones;
+        run();
+        actionBuffer = null;
+        obsBuffer = null;
+        rewardBuffer = null;
+        doneBuffer = null;
+    }
+
+    private void run() {
+        if (closed)
+            throw new IllegalStateException("VectorEnv is closed");
+        if (workers.length == 0) {
+            work(0);
+            return;
+        }
+        phaser.arriveAndAwaitAdvance();
+        work(0);
+        phaser.arriveAndAwaitAdvance();
+    }
+
+    private void workLoop(int worker) {
+        while (true) {
+            phaser.arriveAndAwaitAdvance();
+            if (closed)
+                return;
+            work(worker);
+            phaser.arriveAndAwaitAdvance();
+        }
+    }
+
+    private int rangeStart(int worker) {
+        return (int) ((long) envs * worker / scratch.length);
+    }
+
+    private int rangeEnd(int worker) {
+        return (int) ((long) envs * (worker + 1) / scratch.length);
+    }
+
+    private void work(int worker) {
+        int from = rangeStart(worker);
+        int to = rangeEnd(worker);
+        int[] inputs = scratch[worker];
+        int[] policyActions = null;
+        if (opponentPolicy != null && opponents > 0 && !resetting) {
+            actOpponents(worker, from, to);
+            policyActions = opponentActions[worker];
+        }
+        for (int e = from; e < to; e++) {
+            if (resetting) {
+                episodes[e] = 0;
+                startEpisode(e);
+            } else {
+                stepEnv(e, inputs, policyActions, (e - from) * opponents);
+            }
+            for (int a = 0; a < agents; a++) {
+                observe(e, a, obsScratch[worker]);
+            }
+        }
+    }
+
+    // One batched forward pass for every opponent seat in the worker's matches
+    private void actOpponents(int worker, int from, int to) {
+        float[] obs = opponentObs[worker];
+        int row = 0;
+        for (int e = from; e < to; e++) {
+            for (int pos = 0; pos < 4; pos++) {
+                if (ais[e][pos] != null)
+                    observe(states[e], pos, obs, row++ * OBS_SIZE);
+            }
+        }
+        opponentPolicy.act(opponentWorkspaces[worker], obs, row, opponentActions[worker]);
+    }
+
+    private void startEpisode(int e) {
+        long episodeSeed = mix(seed ^ mix(e) ^ mix(episodes[e]++ * 0x632BE59BD9B4E019L));
+        SimState s = states[e];
+        Simulation.init(s, Integer.bitCount(s.activeMask), episodeSeed);
+        for (int pos = 0; pos < 4; pos++) {
+            if (ais[e][pos] != null)
+                ais[e][pos].reset(episodeSeed + pos);
+        }
+    }
+
+    private void stepEnv(int e, int[] inputs, int[] policyActions, int policyRow) {
+        SimState s = states[e];
+        int[] positions = agentPositions[e];
+        for (int pos = 0; pos < 4; pos++) {
+            if (ais[e][pos] == null)
+                inputs[pos] = 0;
+            else if (policyActions != null)
+                inputs[pos] = controlBits(pos, policyActions[policyRow++]);
+            else
+                inputs[pos] = ais[e][pos].update(s);
+        }
+        int base = e * agents;
+        for (int a = 0; a < agents; a++) {
+            int action = actionArray != null ? actionArray[base + a] : actionBuffer.get(base + a);
+            inputs[positions[a]] = controlBits(positions[a], action);
+        }
+
+        // Scores stay below WIN_SCORE, so they pack into one int a byte each
+        int before = packScores(s);
+        int missed = Simulation.step(s, inputs);
+        int after = missed >= 0 ? packScores(s) : before;
+
+        for (int a = 0; a < agents; a++) {
+            int pos = positions[a];
+            float reward = 0;
+            if (missed == pos)
+                reward -= 1;
+            if (((after ^ before) >>> (pos * 8) & 0xFF) != 0)
+                reward += 1;
+            if (rewardArray != null)
+                rewardArray[base + a] = reward;
+            else
+                rewardBuffer.put(base + a, reward);
+        }
+
+        byte done = s.isOver() ? TERMINATED : s.tick >= maxTicks ? TRUNCATED : NOT_DONE;
+        if (doneArray != null)
+            doneArray[e] = done;
+        else
+            doneBuffer.put(e, done);
+        if (done != NOT_DONE)
+            startEpisode(e);
+    }
+
+    private static int packScores(SimState s) {
+        return s.scores[0] | s.scores[1] << 8 | s.scores[2] << 16 | s.scores[3] << 24;
+    }
+
+    // Protocol INPUT_* bits for an ACTION_* at this position
+    public static int controlBits(int pos, int action) {
+        return switch (action) {
+            case ACTION_BACK -> pos >= 2 ? Protocol.INPUT_LEFT : Protocol.INPUT_UP;
+            case ACTION_FORWARD -> pos >= 2 ? Protocol.INPUT_RIGHT : Protocol.INPUT_DOWN;
+            default -> 0;
+        };
+    }
+
+    private void observe(int e, int a, float[] buffered) {
+        int at = (e * agents + a) * OBS_SIZE;
+        SimState s = states[e];
+        int pos = agentPositions[e][a];
+        if (obsArray != null) {
+            observe(s, pos, obsArray, at);
+            return;
+        }
+        observe(s, pos, buffered, 0);
+        for (int i = 0; i < OBS_SIZE; i++) {
+            obsBuffer.put(at + i, buffered[i]);
+        }
+    }
+
+    /**
+     * Writes the observation of the paddle at pos into out[at] to out[at + OBS_SIZE - 1].
+     * Shared with {@link AgentBridge}, so a policy trained here sees the same
+     * numbers in a live game.
+     */
+    public static void observe(SimState s, int pos, float[] out, int at) {
+        int size = Simulation.ARENA_SIZE;
+
+        // Along the paddle (u) and away from this position's goal line (v)
+        boolean vertical = pos < 2;
+        int u = vertical ? s.ballY : s.ballX;
+        int vu = vertical ? s.ballVY : s.ballVX;
+        int v = switch (pos) {
+            case 0 -> s.ballX;
+            case 1 -> size - s.ballX;
+            case 2 -> s.ballY;
+            default -> size - s.ballY;
+        };
+        int vv = switch (pos) {
+            case 0 -> s.ballVX;
+            case 1 -> -s.ballVX;
+            case 2 -> s.ballVY;
+            default -> -s.ballVY;
+        };
+        out[at + OBS_BALL_U] = u * POSITION_SCALE;
+        out[at + OBS_BALL_V] = v * POSITION_SCALE;
+        out[at + OBS_BALL_VU] = FixedMath.mul(vu, s.speedMultiplier) * VELOCITY_SCALE;
+        out[at + OBS_BALL_VV] = FixedMath.mul(vv, s.speedMultiplier) * VELOCITY_SCALE;
+        out[at + OBS_PADDLE] = paddleCentre(s, pos) * POSITION_SCALE;
+
+        int other = at + OBS_OTHERS;
+        int best = 0;
+        for (int p = 0; p < 4; p++) {
+            if (p == pos)
+                continue;
+            out[other++] = s.isActive(p) ? paddleCentre(s, p) * POSITION_SCALE : -1f;
+            if (s.isActive(p))
+                best = Math.max(best, s.scores[p]);
+        }
+        out[at + OBS_SPEED] = s.speedMultiplier * SPEED_SCALE;
+        out[at + OBS_SCORE] = s.scores[pos] / (float) Simulation.WIN_SCORE;
+        out[at + OBS_BEST_OTHER_SCORE] = best / (float) Simulation.WIN_SCORE;
+    }
+
+    private static int paddleCentre(SimState s, int pos) {
+        return pos < 2 ? s.paddleY[pos] + Simulation.PADDLE_H[pos] / 2 : s.paddleX[pos] + Simulation.PADDLE_W[pos] / 2;
+    }
+
+    // SplitMix64 finalizer, to spread seeds for neighbouring matches and episodes
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    @Override
+    public void close() {
+        if (closed)
+            return;
+        closed = true;
+        if (workers.length > 0)
+            phaser.arriveAndDeregister();
+    }
+
+    public static void main(String[] args) {
+        int envCount = 4096;
+        int players = 2;
+        int agentCount = 2;
+        int threads = 1;
+        int steps = 2000;
+        String opponentPolicy = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--envs" -> envCount = Integer.parseInt(args[i + 1]);
+                case "--players" -> players = Integer.parseInt(args[i + 1]);
+                case "--agents" -> agentCount = Integer.parseInt(args[i + 1]);
+                case "--threads" -> threads = Integer.parseInt(args[i + 1]);
+                case "--steps" -> steps = Integer.parseInt(args[i + 1]);
+                case "--opponent-policy" -> opponentPolicy = args[i + 1];
+                default -> System.err.println("Unknown option " + args[i]);
+            }
+        }
+
+        try (VectorEnv env = new VectorEnv(envCount, players, agentCount, threads)) {
+            int slots = envCount * env.getAgents();
+            int[] actions = new int[slots];
+            float[] obs = new float[slots * OBS_SIZE];
+            float[] rewards = new float[slots];
+            byte[] dones = new byte[envCount];
+            if (opponentPolicy != null) {
+                try {
+                    env.setOpponentPolicy(PolicyNet.load(Path.of(opponentPolicy)));
+                } catch (IOException ex) {
+                    System.err.println("Cannot load " + opponentPolicy + ": " + ex.getMessage());
+                    return;
+                }
+            }
+            env.reset(1, obs);
+
+            // Random play, changing action every few steps like a barely trained policy
+            long rng = 42;
+            long episodes = 0;
+            double points = 0;
+            long start = System.nanoTime();
+            for (int t = 0; t < steps; t++) {
+                if ((t & 7) == 0) {
+                    for (int i = 0; i < slots; i++) {
+                        rng = rng * 6364136223846793005L + 1442695040888963407L;
+                        actions[i] = (int) ((rng >>> 33) % 3);
+                    }
+                }
+                env.step(actions, obs, rewards, dones);
+                for (int i = 0; i < slots; i++) {
+                    points += Math.abs(rewards[i]);
+                }
+                for (int e = 0; e < envCount; e++) {
+                    if (dones[e] != NOT_DONE)
+                        episodes++;
+                }
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%d envs x %d steps on %d threads: %.1fM env steps/s, %d episodes, %.0f reward events%n",
+                    envCount, steps, threads, envCount * (double) steps / seconds / 1e6, episodes, points);
+        }
+    }
+}
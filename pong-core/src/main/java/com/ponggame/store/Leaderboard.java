@@ -0,0 +1,313 @@
+package com.ponggame.store;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Elo ratings for every player in the match history, kept in rank order as
+ * results arrive. Ratings are split into 1/32-point buckets; a Fenwick tree
+ * over the bucket counts answers "how many players rate above this" in
+ * O(log buckets), and each bucket is a small skip list ordered by exact rating,
+ * so a rank costs a tree walk plus counting within one bucket, and a page of
+ * standings jumps from one occupied bucket to the next through the tree. The
+ * buckets are narrow so that even where ratings crowd together, around the
+ * initial rating, a bucket holds a few players per thousand ranked rather
+ * than hundreds.
+ *
+ * Updates come from one thread at a time (the match store's writer); reads can
+ * come from anywhere without locking. While an update is in flight a reader may
+ * see a player's rank off by one, never a torn entry. {@link #top} and
+ * {@link #rank} results are cached until {@link #advance} is called, which the
+ * server does once per tick.
+ *
+ * Each pair of rated players in a match is scored as one game, by final score,
+ * with K split between a player's opponents. AI seats count as opponents with a
+ * fixed rating for their difficulty and are not ranked. Abandoned games don't
+ * count.
+ */
+public class Leaderboard {
+
+    public static final int INITIAL_RATING = 1000;
+
+    private static final double K = 32;
+    private static final int BUCKETS_PER_POINT = 32;
+    private static final int MAX_RATING = 4000;
+    private static final int BUCKETS = MAX_RATING * BUCKETS_PER_POINT;
+    private static final int[] AI_RATINGS = { 800, 1000, 1200 };
+
+    public static final class Entry {
+        final long playerKey;
+        final double rating;
+        final int games;
+        final int wins;
+
+        Entry(long playerKey, double rating, int games, int wins) {
+            this.playerKey = playerKey;
+            this.rating = rating;
+            this.games = games;
+            this.wins = wins;
+        }
+
+        public long getPlayerKey() {
+            return playerKey;
+        }
+
+        public double getRating() {
+            return rating;
+        }
+
+        public int getGames() {
+            return games;
+        }
+
+        public int getWins() {
+            return wins;
+        }
+    }
+
+    public record Standing(int rank, Entry entry) {
+    }
+
+    // Highest rating first; ties broken by key so every entry is distinct
+    private static final Comparator<Entry> ORDER = Comparator.comparingDouble((Entry e) -> -e.rating)
+            .thenComparingLong(e -> e.playerKey);
+
+    private final Map<Long, Entry> players = new ConcurrentHashMap<>();
+    // Created on first use; most of the rating range is never reached
+    private final AtomicReferenceArray<NavigableSet<Entry>> buckets = new AtomicReferenceArray<>(BUCKETS);
+    private final AtomicIntegerArray bucketCounts = new AtomicIntegerArray(BUCKETS);
+    private final AtomicIntegerArray tree = new AtomicIntegerArray(BUCKETS + 1);
+    private final AtomicInteger ranked = new AtomicInteger();
+    private long lastAppliedId;
+
+    // Per-tick query cache
+    private volatile long epoch;
+    private volatile long topEpoch = -1;
+    private volatile List<Standing> topCache = List.of();
+    private volatile long rankEpoch = -1;
+    private final Map<Long, Integer> rankCache = new ConcurrentHashMap<>();
+
+    // Replays the store's history; call before results start arriving through apply()
+    public void load(MatchStore store) {
+        store.scan(lastAppliedId + 1, this::apply);
+    }
+
+    // Drops cached query results; call once per tick
+    public void advance() {
+        epoch++;
+    }
+
+    /**
+     * Applies one finished match. Records are applied in id order and each at most
+     * once, so the store's listener and a replay can overlap safely.
+     */
+    public synchronized void apply(MatchRecord r) {
+        if (r.id <= lastAppliedId)
+            return;
+        lastAppliedId = r.id;
+        if (r.endReason != MatchRecord.END_WIN)
+            return;
+
+        double[] before = new double[MatchRecord.POSITIONS];
+        int humans = 0;
+        int seats = 0;
+        for (int pos = 0; pos < MatchRecord.POSITIONS; pos++) {
+            if (!r.isPresent(pos))
+                continue;
+            seats++;
+            if (r.isAI(pos) || r.playerKeys[pos] == MatchRecord.NO_PLAYER) {
+                before[pos] = AI_RATINGS[Math.min(r.aiDifficulty, AI_RATINGS.length - 1)];
+            } else {
+                humans++;
+                before[pos] = getRating(r.playerKeys[pos]);
+            }
+        }
+        if (humans == 0 || seats < 2)
+            return;
+
+        double k = K / (seats - 1);
+        for (int pos = 0; pos < MatchRecord.POSITIONS; pos++) {
+            if (!r.isPresent(pos) || r.isAI(pos) || r.playerKeys[pos] == MatchRecord.NO_PLAYER)
+                continue;
+            double delta = 0;
+            for (int other = 0; other < MatchRecord.POSITIONS; other++) {
+                if (other == pos || !r.isPresent(other))
+                    continue;
+                double expected = 1 / (1 + Math.pow(10, (before[other] - before[pos]) / 400));
+                double actual = r.scores[pos] > r.scores[other] ? 1 : r.scores[pos] == r.scores[other] ? 0.5 : 0;
+                delta += k * (actual - expected);
+            }
+            update(r.playerKeys[pos], before[pos] + delta, r.winner == pos);
+        }
+    }
+
+    private void update(long key, double rating, boolean won) {
+        Entry old = players.get(key);
+        double clamped = Math.max(0, Math.min(MAX_RATING - 1.0 / BUCKETS_PER_POINT, rating));
+        Entry e = old == null ? new Entry(key, clamped, 1, won ? 1 : 0)
+                : new Entry(key, clamped, old.games + 1, old.wins + (won ? 1 : 0));
+
+        int b = bucketOf(e.rating);
+        NavigableSet<Entry> bucket = buckets.get(b);
+        if (bucket == null) {
+            bucket = new ConcurrentSkipListSet<>(ORDER);
+            buckets.set(b, bucket);
+        }
+        if (old != null && old.rating == e.rating) {
+            // Same place in the order: ORDER sees the two as equal, so swap them in the bucket
+            bucket.remove(old);
+            bucket.add(e);
+            players.put(key, e);
+        } else {
+            // Add before removing, so a reader never sees the player missing from every bucket
+            bucket.add(e);
+            bucketCounts.incrementAndGet(b);
+            addToTree(b, 1);
+            players.put(key, e);
+            if (old != null) {
+                int ob = bucketOf(old.rating);
+                buckets.get(ob).remove(old);
+                bucketCounts.decrementAndGet(ob);
+                addToTree(ob, -1);
+            } else {
+                ranked.incrementAndGet();
+            }
+        }
+        assert counted(b) && (old == null || counted(bucketOf(old.rating)));
+    }
+
+    // A bucket's count, which the tree is built from, matches what the bucket holds
+    private boolean counted(int b) {
+        NavigableSet<Entry> bucket = buckets.get(b);
+        return bucketCounts.get(b) == (bucket == null ? 0 : bucket.size());
+    }
+
+    private static int bucketOf(double rating) {
+        return Math.max(0, Math.min(BUCKETS - 1, (int) (rating * BUCKETS_PER_POINT)));
+    }
+
+    private void addToTree(int bucket, int delta) {
+        for (int i = bucket + 1; i <= BUCKETS; i += i & -i) {
+            tree.addAndGet(i, delta);
+        }
+    }
+
+    // Players in buckets 0..bucket
+    private int prefix(int bucket) {
+        int sum = 0;
+        for (int i = bucket + 1; i > 0; i -= i & -i) {
+            sum += tree.get(i);
+        }
+        return sum;
+    }
+
+    // Lowest bucket whose prefix count reaches k (1-based from the bottom)
+    private int select(int k) {
+        int pos = 0;
+        int remaining = k;
+        for (int step = Integer.highestOneBit(BUCKETS); step > 0; step >>= 1) {
+            int next = pos + step;
+            if (next <= BUCKETS && tree.get(next) < remaining) {
+                pos = next;
+                remaining -= tree.get(next);
+            }
+        }
+        return Math.min(pos, BUCKETS - 1);
+    }
+
+    public int size() {
+        return ranked.get();
+    }
+
+    public double getRating(long playerKey) {
+        Entry e = players.get(playerKey);
+        return e == null ? INITIAL_RATING : e.rating;
+    }
+
+    public Entry get(long playerKey) {
+        return players.get(playerKey);
+    }
+
+    // 1 for the best player, 0 for a player with no rated games
+    public int rank(long playerKey) {
+        long now = epoch;
+        if (rankEpoch != now) {
+            rankCache.clear();
+            rankEpoch = now;
+        }
+        Integer cached = rankCache.get(playerKey);
+        if (cached != null)
+            return cached;
+
+        Entry e = players.get(playerKey);
+        int rank = 0;
+        if (e != null) {
+            int b = bucketOf(e.rating);
+            int above = ranked.get() - prefix(b);
+            rank = Math.max(1, above + buckets.get(b).headSet(e).size() + 1);
+        }
+        rankCache.put(playerKey, rank);
+        return rank;
+    }
+
+    public List<Standing> top(int n) {
+        long now = epoch;
+        List<Standing> cached = topCache;
+        if (topEpoch == now && (cached.size() >= n || cached.size() == ranked.get()))
+            return cached.subList(0, Math.min(n, cached.size()));
+        List<Standing> list = Collections.unmodifiableList(range(1, n));
+        topCache = list;
+        topEpoch = now;
+        return list;
+    }
+
+    // The player's standing with up to radius players on either side
+    public List<Standing> around(long playerKey, int radius) {
+        int rank = rank(playerKey);
+        if (rank == 0)
+            return List.of();
+        int from = Math.max(1, rank - radius);
+        return range(from, rank - from + radius + 1);
+    }
+
+    // Standings from fromRank, walking the occupied buckets from the top down
+    public List<Standing> range(int fromRank, int count) {
+        List<Standing> out = new ArrayList<>(Math.min(count, 256));
+        int total = ranked.get();
+        if (fromRank < 1 || fromRank > total || count <= 0)
+            return out;
+        int fromBottom = total - fromRank + 1;
+        int b = select(fromBottom);
+        int skip = Math.max(0, prefix(b) - fromBottom);
+        int rank = fromRank;
+        while (out.size() < count) {
+            NavigableSet<Entry> bucket = buckets.get(b);
+            if (bucket != null) {
+                for (Entry e : bucket) {
+                    if (skip > 0) {
+                        skip--;
+                        continue;
+                    }
+                    out.add(new Standing(rank++, e));
+                    if (out.size() >= count)
+                        break;
+                }
+            }
+            // The highest occupied bucket below this one; min() keeps a racing update from sending us back up
+            int below = b > 0 ? prefix(b - 1) : 0;
+            if (below == 0)
+                break;
+            b = Math.min(b - 1, select(below));
+        }
+        return out;
+    }
+}
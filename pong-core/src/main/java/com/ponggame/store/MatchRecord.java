@@ -0,0 +1,147 @@
+package com.ponggame.store;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+/**
+ * One finished match as stored by {@link MatchStore}. Every record is exactly
+ * {@link #SIZE} bytes, so record n of a segment sits at n * SIZE and can be read
+ * straight out of the mapped file.
+ *
+ * <pre>
+ *   0  u64 id                 assigned by the store
+ *   8  u64 endedAtMillis      assigned by the store, never decreasing
+ *  16  u32 durationTicks
+ *  20  u8  mode, u8 playerCount, u8 aiDifficulty, u8 winScore
+ *  24  u8  winner (0xFF none), u8 endReason, 6 bytes reserved
+ *  32  4 x participant: u64 playerKey, u16 score, u8 flags, u8 reserved
+ *  80  u64 replayPointer      -1 when no replay was kept
+ *  88  u32 reserved
+ *  92  u32 CRC-32 of bytes 0-91
+ * </pre>
+ *
+ * Participants are indexed by position code (left, right, top, bottom).
+ */
+public class MatchRecord {
+
+    public static final int SIZE = 96;
+    public static final int POSITIONS = 4;
+    public static final int NO_WINNER = 0xFF;
+    public static final long NO_REPLAY = -1;
+    public static final long NO_PLAYER = 0;
+
+    // Participant flags
+    public static final int PRESENT = 1;
+    public static final int AI = 2;
+
+    // End reasons
+    public static final int END_WIN = 0;
+    public static final int END_ABANDONED = 1;
+
+    static final int PARTICIPANTS_OFFSET = 32;
+    static final int PARTICIPANT_SIZE = 12;
+    private static final int CRC_OFFSET = 92;
+
+    public long id;
+    public long endedAtMillis;
+    public int durationTicks;
+    public int mode;
+    public int playerCount;
+    public int aiDifficulty;
+    public int winScore;
+    public int winner = NO_WINNER;
+    public int endReason;
+    public final long[] playerKeys = new long[POSITIONS];
+    public final int[] scores = new int[POSITIONS];
+    public final int[] flags = new int[POSITIONS];
+    public long replayPointer = NO_REPLAY;
+
+    public void setParticipant(int position, long playerKey, int score, boolean ai) {
+        playerKeys[position] = playerKey;
+        scores[position] = score;
+        flags[position] = PRESENT | (ai ? AI : 0);
+    }
+
+    public boolean isPresent(int position) {
+        return (flags[position] & PRESENT) != 0;
+    }
+
+    public boolean isAI(int position) {
+        return (flags[position] & AI) != 0;
+    }
+
+    // Writes the record at an absolute offset; buf's position is not touched
+    void write(ByteBuffer buf, int at, CRC32 crc) {
+        buf.putLong(at, id);
+        buf.putLong(at + 8, endedAtMillis);
+        buf.putInt(at + 16, durationTicks);
+        buf.put(at + 20, (byte) mode);
+        buf.put(at + 21, (byte) playerCount);
+        buf.put(at + 22, (byte) aiDifficulty);
+        buf.put(at + 23, (byte) winScore);
+        buf.put(at + 24, (byte) winner);
+        buf.put(at + 25, (byte) endReason);
+        for (int i = 26; i < PARTICIPANTS_OFFSET; i++) {
+            buf.put(at + i, (byte) 0);
+        }
+        for (int pos = 0; pos < POSITIONS; pos++) {
+            int p = at + PARTICIPANTS_OFFSET + pos * PARTICIPANT_SIZE;
+            buf.putLong(p, playerKeys[pos]);
+            buf.putShort(p + 8, (short) scores[pos]);
+            buf.put(p + 10, (byte) flags[pos]);
+            buf.put(p + 11, (byte) 0);
+        }
+        buf.putLong(at + 80, replayPointer);
+        buf.putInt(at + 88, 0);
+        buf.putInt(at + CRC_OFFSET, checksum(buf, at, crc));
+    }
+
+    void read(ByteBuffer buf, int at) {
+        id = buf.getLong(at);
+        endedAtMillis = buf.getLong(at + 8);
+        durationTicks = buf.getInt(at + 16);
+        mode = buf.get(at + 20) & 0xFF;
+        playerCount = buf.get(at + 21) & 0xFF;
+        aiDifficulty = buf.get(at + 22) & 0xFF;
+        winScore = buf.get(at + 23) & 0xFF;
+        winner = buf.get(at + 24) & 0xFF;
+        endReason = buf.get(at + 25) & 0xFF;
+        for (int pos = 0; pos < POSITIONS; pos++) {
+            int p = at + PARTICIPANTS_OFFSET + pos * PARTICIPANT_SIZE;
+            playerKeys[pos] = buf.getLong(p);
+            scores[pos] = buf.getShort(p + 8) & 0xFFFF;
+            flags[pos] = buf.get(p + 10) & 0xFF;
+        }
+        replayPointer = buf.getLong(at + 80);
+    }
+
+    // True when the bytes at this offset are a complete record with the expected id
+    static boolean isValid(ByteBuffer buf, int at, long expectedId, CRC32 crc) {
+        return buf.getLong(at) == expectedId && buf.getInt(at + CRC_OFFSET) == checksum(buf, at, crc);
+    }
+
+    private static int checksum(ByteBuffer buf, int at, CRC32 crc) {
+        crc.reset();
+        ByteBuffer view = buf.duplicate();
+        view.limit(at + CRC_OFFSET).position(at);
+        crc.update(view);
+        return (int) crc.getValue();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append('#').append(id).append(" at ").append(endedAtMillis)
+                .append(" ticks=").append(durationTicks).append(" mode=").append(mode)
+                .append(" players=").append(playerCount).append(" winner=")
+                .append(winner == NO_WINNER ? "-" : String.valueOf(winner))
+                .append(endReason == END_ABANDONED ? " (abandoned)" : "");
+        for (int pos = 0; pos < POSITIONS; pos++) {
+            if (isPresent(pos))
+                sb.append(' ').append(pos).append('=')
+                        .append(isAI(pos) ? "AI" : Long.toHexString(playerKeys[pos]))
+                        .append(':').append(scores[pos]);
+        }
+        return sb.toString();
+    }
+}
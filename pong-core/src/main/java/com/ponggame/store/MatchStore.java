@@ -0,0 +1,469 @@
+package com.ponggame.store;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only history of finished matches. Callers hand over {@link MatchRecord}s
+ * and return at once; a writer thread gives each one an id and a timestamp,
+ * appends it to the open segment and syncs the whole batch with one fsync, so
+ * the cost of a sync is shared by every record that arrived while the last one
+ * ran.
+ *
+ * Records can be read back by id, by player (newest first, through each sealed
+ * segment's mapped player index) and by time range (binary search, since
+ * timestamps never decrease). A compaction thread merges every
+ * {@link #MERGE_FANIN} equal-sized sealed segments into one, so a player lookup
+ * touches a few files rather than one per {@link #SEGMENT_RECORDS} matches.
+ *
+ * Usage: java -cp pong-core-1.0.jar com.ponggame.store.MatchStore dir
+ *            [--recent 20] [--player key] [--from millis --to millis] [--bench 100000]
+ */
+public class MatchStore implements AutoCloseable {
+
+    public static final int SEGMENT_RECORDS = 64 * 1024;
+    static final int MERGE_FANIN = 4;
+    private static final int MAX_SEGMENT_RECORDS = SEGMENT_RECORDS * 16;
+    private static final int MAX_BATCH = 4096;
+    private static final int QUEUE_CAPACITY = 64 * 1024;
+    private static final long COMPACT_INTERVAL_SECONDS = 30;
+
+    private final Path dir;
+    private final BlockingQueue<MatchRecord> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Object tableLock = new Object();
+    // Ascending by id; the last one takes appends
+    private volatile Segment[] segments;
+
+    private final Thread writer;
+    private final ScheduledExecutorService compactor;
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private long durable;
+    private volatile boolean closing;
+    private volatile IOException failure;
+    private volatile Consumer<MatchRecord> listener;
+
+    // Writer thread only
+    private long nextId;
+    private long lastMillis;
+    private final CRC32 crc = new CRC32();
+
+    private MatchStore(Path dir, Segment[] segments) {
+        this.dir = dir;
+        this.segments = segments;
+        Segment last = segments[segments.length - 1];
+        this.nextId = last.firstId + last.count();
+        // The open segment may be empty, so take the time from the newest record anywhere
+        for (int i = segments.length - 1; i >= 0 && lastMillis == 0; i--) {
+            lastMillis = segments[i].lastMillis();
+        }
+
+        writer = new Thread(this::writeLoop, "match-store-writer");
+        writer.setDaemon(true);
+        compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "match-store-compactor");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Opens the store in dir, creating it if needed, and repairs what an earlier
+     * crash may have left: unfinished temporary files, segments a finished merge
+     * replaced, a merge that never got its index, and a full segment that was
+     * never sealed.
+     */
+    public static MatchStore open(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+            for (Path p : ds) {
+                if (p.getFileName().toString().endsWith(".tmp"))
+                    Files.delete(p);
+                else if (Segment.parseName(p.getFileName().toString()) != null)
+                    files.add(p);
+            }
+        }
+        // Widest range first, so a merged segment is kept over the ones it replaced
+        files.sort(Comparator.<Path>comparingLong(p -> range(p)[0]).thenComparingLong(p -> -range(p)[1]));
+
+        List<Segment> list = new ArrayList<>();
+        long covered = 0;
+        for (Path p : files) {
+            long[] r = range(p);
+            boolean indexed = Files.exists(Segment.indexPath(p));
+            if (r[1] <= covered || (!indexed && r[1] - r[0] > SEGMENT_RECORDS)) {
+                // Replaced by a merge, or a merge that didn't finish
+                Files.deleteIfExists(Segment.indexPath(p));
+                Files.delete(p);
+                continue;
+            }
+            if (r[0] != covered && covered != 0)
+                throw new IOException("Match store " + dir + " has a gap before " + p.getFileName());
+            Segment s = indexed ? Segment.openSealed(p, r[0], r[1]) : Segment.openActive(p, r[0], r[1]);
+            if (!indexed && s.isFull())
+                s.seal();
+            else if (!indexed && !list.isEmpty() && !list.get(list.size() - 1).isSealed())
+                throw new IOException("Match store " + dir + " has two open segments");
+            list.add(s);
+            covered = r[1];
+        }
+        if (list.isEmpty() || list.get(list.size() - 1).isSealed()) {
+            // Ids start at 1 so a zeroed slot never passes as a record
+            long first = list.isEmpty() ? 1 : list.get(list.size() - 1).endId;
+            list.add(Segment.create(dir, first, SEGMENT_RECORDS));
+        }
+
+        MatchStore store = new MatchStore(dir, list.toArray(new Segment[0]));
+        store.writer.start();
+        store.compactor.scheduleWithFixedDelay(store::compact, 0, COMPACT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        return store;
+    }
+
+    private static long[] range(Path p) {
+        return Segment.parseName(p.getFileName().toString());
+    }
+
+    /**
+     * Queues a record without waiting. Returns false, and counts a drop, when the
+     * writer is that far behind; game ticks use this. The store owns the record
+     * from here on and fills in its id and endedAtMillis (kept if it is set and
+     * not older than the last record).
+     */
+    public boolean offer(MatchRecord r) {
+        if (failure != null || closing || !queue.offer(r)) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        submitted.incrementAndGet();
+        return true;
+    }
+
+    // Queues a record, waiting for room; for batch jobs that would rather slow down than lose results
+    public void append(MatchRecord r) throws IOException, InterruptedException {
+        checkOpen();
+        queue.put(r);
+        submitted.incrementAndGet();
+    }
+
+    // Waits until everything queued before the call is on disk
+    public void flush() throws IOException, InterruptedException {
+        long target = submitted.get();
+        synchronized (this) {
+            while (durable < target) {
+                checkOpen();
+                wait(100);
+            }
+        }
+    }
+
+    /**
+     * Called on the writer thread with each record once it is on disk, in id
+     * order. It holds up the next batch, so it should be quick.
+     */
+    public void setListener(Consumer<MatchRecord> listener) {
+        this.listener = listener;
+    }
+
+    private void checkOpen() throws IOException {
+        if (failure != null)
+            throw new IOException("Match store writer failed", failure);
+        if (closing)
+            throw new IOException("Match store is closed");
+    }
+
+    private void writeLoop() {
+        List<MatchRecord> batch = new ArrayList<>(MAX_BATCH);
+        try {
+            while (true) {
+                MatchRecord first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    if (closing)
+                        return;
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH - 1);
+                for (MatchRecord r : batch) {
+                    write(r);
+                }
+                // Group commit: one sync for the whole batch
+                active().force();
+                synchronized (this) {
+                    durable += batch.size();
+                    notifyAll();
+                }
+                Consumer<MatchRecord> l = listener;
+                if (l != null) {
+                    for (MatchRecord r : batch) {
+                        l.accept(r);
+                    }
+                }
+                batch.clear();
+            }
+        } catch (IOException e) {
+            failure = e;
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write(MatchRecord r) throws IOException {
+        long now = System.currentTimeMillis();
+        r.id = nextId++;
+        r.endedAtMillis = Math.max(lastMillis, r.endedAtMillis > 0 ? r.endedAtMillis : now);
+        lastMillis = r.endedAtMillis;
+
+        Segment active = active();
+        active.append(r, crc);
+        if (active.isFull()) {
+            active.force();
+            active.seal();
+            Segment next = Segment.create(dir, active.endId, SEGMENT_RECORDS);
+            synchronized (tableLock) {
+                Segment[] old = segments;
+                Segment[] grown = Arrays.copyOf(old, old.length + 1);
+                grown[old.length] = next;
+                segments = grown;
+            }
+            compactor.execute(this::compact);
+        }
+    }
+
+    private Segment active() {
+        Segment[] segs = segments;
+        return segs[segs.length - 1];
+    }
+
+    private void compact() {
+        try {
+            List<Segment> run;
+            while ((run = nextRun()) != null) {
+                Segment merged = Segment.merge(dir, run);
+                synchronized (tableLock) {
+                    List<Segment> table = new ArrayList<>(Arrays.asList(segments));
+                    int at = table.indexOf(run.get(0));
+                    table.subList(at, at + run.size()).clear();
+                    table.add(at, merged);
+                    segments = table.toArray(new Segment[0]);
+                }
+                for (Segment s : run) {
+                    try {
+                        s.delete();
+                    } catch (IOException e) {
+                        // Still mapped on some platforms; open() removes it next time
+                    }
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // First MERGE_FANIN neighbouring sealed segments of the same size that may grow
+    private List<Segment> nextRun() {
+        Segment[] segs = segments;
+        for (int i = 0; i + MERGE_FANIN <= segs.length; i++) {
+            int size = segs[i].count();
+            if (!segs[i].isSealed() || (long) size * MERGE_FANIN > MAX_SEGMENT_RECORDS)
+                continue;
+            boolean same = true;
+            for (int j = i + 1; j < i + MERGE_FANIN; j++) {
+                if (!segs[j].isSealed() || segs[j].count() != size)
+                    same = false;
+            }
+            if (same)
+                return Arrays.asList(segs).subList(i, i + MERGE_FANIN);
+        }
+        return null;
+    }
+
+    private Segment segmentFor(long id) {
+        Segment[] segs = segments;
+        int lo = 0;
+        int hi = segs.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (segs[mid].firstId <= id)
+                lo = mid;
+            else
+                hi = mid - 1;
+        }
+        Segment s = segs[lo];
+        return id >= s.firstId && id < s.firstId + s.count() ? s : null;
+    }
+
+    // The durable or at least written record with this id, or null
+    public MatchRecord get(long id) {
+        Segment s = segmentFor(id);
+        if (s == null)
+            return null;
+        MatchRecord r = new MatchRecord();
+        s.read(id, r);
+        return r;
+    }
+
+    // Up to limit of the player's matches, newest first
+    public List<MatchRecord> byPlayer(long playerKey, int limit) {
+        Segment[] segs = segments;
+        List<Long> ids = new ArrayList<>();
+        for (int i = segs.length - 1; i >= 0 && ids.size() < limit; i--) {
+            segs[i].findPlayer(playerKey, ids, limit);
+        }
+        List<MatchRecord> out = new ArrayList<>(ids.size());
+        for (long id : ids) {
+            MatchRecord r = get(id);
+            if (r != null)
+                out.add(r);
+        }
+        return out;
+    }
+
+    // Up to limit matches that ended within [fromMillis, toMillis], oldest first
+    public List<MatchRecord> byTime(long fromMillis, long toMillis, int limit) {
+        List<MatchRecord> out = new ArrayList<>();
+        for (Segment s : segments) {
+            int n = s.count();
+            if (n == 0 || s.lastMillis() < fromMillis)
+                continue;
+            if (s.firstMillis() > toMillis)
+                break;
+            for (int i = s.lowerBound(fromMillis); i < n && out.size() < limit; i++) {
+                if (s.millisAt(i) > toMillis)
+                    return out;
+                MatchRecord r = new MatchRecord();
+                s.read(s.firstId + i, r);
+                out.add(r);
+            }
+            if (out.size() >= limit)
+                break;
+        }
+        return out;
+    }
+
+    // Every record from fromId on, oldest first; the record passed in is reused
+    public void scan(long fromId, Consumer<MatchRecord> visitor) {
+        MatchRecord r = new MatchRecord();
+        for (Segment s : segments) {
+            long end = s.firstId + s.count();
+            for (long id = Math.max(fromId, s.firstId); id < end; id++) {
+                s.read(id, r);
+                visitor.accept(r);
+            }
+        }
+    }
+
+    // Up to limit of the newest matches, newest first
+    public List<MatchRecord> recent(int limit) {
+        List<MatchRecord> out = new ArrayList<>();
+        Segment[] segs = segments;
+        for (int i = segs.length - 1; i >= 0 && out.size() < limit; i--) {
+            for (int j = segs[i].count() - 1; j >= 0 && out.size() < limit; j--) {
+                MatchRecord r = new MatchRecord();
+                segs[i].read(segs[i].firstId + j, r);
+                out.add(r);
+            }
+        }
+        return out;
+    }
+
+    public long getCount() {
+        Segment[] segs = segments;
+        Segment last = segs[segs.length - 1];
+        return last.firstId + last.count() - segs[0].firstId;
+    }
+
+    public int getSegmentCount() {
+        return segments.length;
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public int getBacklog() {
+        return queue.size();
+    }
+
+    // Writes out everything already queued, then stops the writer and compactor
+    @Override
+    public void close() throws IOException {
+        closing = true;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null)
+            throw new IOException("Match store writer failed", failure);
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.err.println("Usage: MatchStore dir [--recent n] [--player key] [--from millis --to millis] [--bench n]");
+            return;
+        }
+        Path dir = Path.of(args[0]);
+        int recent = 20;
+        long player = MatchRecord.NO_PLAYER;
+        long from = -1;
+        long to = Long.MAX_VALUE;
+        int bench = 0;
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--recent" -> recent = Integer.parseInt(args[i + 1]);
+                case "--player" -> player = Long.parseUnsignedLong(args[i + 1], 16);
+                case "--from" -> from = Long.parseLong(args[i + 1]);
+                case "--to" -> to = Long.parseLong(args[i + 1]);
+                case "--bench" -> bench = Integer.parseInt(args[i + 1]);
+                default -> System.err.println("Unknown option " + args[i]);
+            }
+        }
+
+        try (MatchStore store = MatchStore.open(dir)) {
+            if (bench > 0) {
+                long start = System.nanoTime();
+                for (int i = 0; i < bench; i++) {
+                    MatchRecord r = new MatchRecord();
+                    r.playerCount = 2;
+                    r.winner = i & 1;
+                    r.durationTicks = 3000;
+                    r.setParticipant(0, 1 + (i % 1000), 10 * (1 - (i & 1)), false);
+                    r.setParticipant(1, 1 + ((i * 7 + 3) % 1000), 10 * (i & 1), false);
+                    store.append(r);
+                }
+                store.flush();
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.printf("appended %d in %.2fs (%.0f/s)%n", bench, seconds, bench / seconds);
+            }
+            List<MatchRecord> found = player != MatchRecord.NO_PLAYER ? store.byPlayer(player, recent)
+                    : from >= 0 ? store.byTime(from, to, recent)
+                    : store.recent(recent);
+            for (MatchRecord r : found) {
+                System.out.println(r);
+            }
+            System.out.println(store.getCount() + " matches in " + store.getSegmentCount() + " segments");
+        }
+    }
+}
@@ -0,0 +1,370 @@
+package com.ponggame.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.zip.CRC32;
+
+/**
+ * A run of consecutive match ids [firstId, endId) in one memory-mapped data
+ * file, named by that range. Only the store's newest segment is open for
+ * appends; it is sealed once full by writing its player index next to it.
+ *
+ * The index file maps player keys to match ids:
+ * <pre>
+ *   u32 magic, u32 entry count, u64 first endedAtMillis, u64 last endedAtMillis, u64 reserved
+ *   entries: u64 playerKey, u64 match id    (sorted by key, then id)
+ * </pre>
+ * It is written to a temporary name and renamed, so a segment with an index file
+ * is always complete.
+ */
+final class Segment {
+
+    static final String DATA_SUFFIX = ".seg";
+    static final String INDEX_SUFFIX = ".idx";
+
+    private static final int INDEX_MAGIC = 0x504D4958; // "PMIX"
+    private static final int INDEX_HEADER = 32;
+    private static final int ENTRY_SIZE = 16;
+    private static final int WRITE_CHUNK = 64 * 1024;
+
+    final Path dataPath;
+    final long firstId;
+    final long endId;
+    private final MappedByteBuffer data;
+    private volatile int count;
+    private volatile MappedByteBuffer index;
+
+    private Segment(Path dataPath, long firstId, long endId, MappedByteBuffer data, int count) {
+        this.dataPath = dataPath;
+        this.firstId = firstId;
+        this.endId = endId;
+        this.data = data;
+        this.count = count;
+    }
+
+    static String name(long firstId, long endId) {
+        return String.format("%016x-%016x", firstId, endId);
+    }
+
+    // Returns {firstId, endId}, or null if the file isn't a segment
+    static long[] parseName(String fileName) {
+        if (!fileName.endsWith(DATA_SUFFIX) || fileName.length() != 33 + DATA_SUFFIX.length())
+            return null;
+        try {
+            return new long[] {
+                    Long.parseUnsignedLong(fileName.substring(0, 16), 16),
+                    Long.parseUnsignedLong(fileName.substring(17, 33), 16) };
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    static Path indexPath(Path dataPath) {
+        String name = dataPath.getFileName().toString();
+        return dataPath.resolveSibling(name.substring(0, name.length() - DATA_SUFFIX.length()) + INDEX_SUFFIX);
+    }
+
+    static Segment create(Path dir, long firstId, int capacity) throws IOException {
+        Path path = dir.resolve(name(firstId, firstId + capacity) + DATA_SUFFIX);
+        return new Segment(path, firstId, firstId + capacity, map(path, capacity, false), 0);
+    }
+
+    /**
+     * Opens a segment that has no index yet. Records are trusted up to the first
+     * one that is torn or missing, which is where the last run stopped.
+     */
+    static Segment openActive(Path path, long firstId, long endId) throws IOException {
+        MappedByteBuffer data = map(path, (int) (endId - firstId), false);
+        CRC32 crc = new CRC32();
+        int n = 0;
+        while (firstId + n < endId && MatchRecord.isValid(data, n * MatchRecord.SIZE, firstId + n, crc)) {
+            n++;
+        }
+        return new Segment(path, firstId, endId, data, n);
+    }
+
+    static Segment openSealed(Path path, long firstId, long endId) throws IOException {
+        int n = (int) (endId - firstId);
+        Segment s = new Segment(path, firstId, endId, map(path, n, true), n);
+        s.loadIndex();
+        return s;
+    }
+
+    private static MappedByteBuffer map(Path path, int records, boolean readOnly) throws IOException {
+        long size = (long) records * MatchRecord.SIZE;
+        if (readOnly) {
+            try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+                return ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+        }
+        // The mapping stays valid after the channel is closed
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            return ch.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    private void loadIndex() throws IOException {
+        Path idx = indexPath(dataPath);
+        try (FileChannel ch = FileChannel.open(idx, StandardOpenOption.READ)) {
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            if (ch.size() < INDEX_HEADER || buf.getInt(0) != INDEX_MAGIC
+                    || ch.size() != INDEX_HEADER + (long) buf.getInt(4) * ENTRY_SIZE)
+                throw new IOException("Corrupt index " + idx);
+            index = buf;
+        }
+    }
+
+    int count() {
+        return count;
+    }
+
+    boolean isFull() {
+        return firstId + count == endId;
+    }
+
+    boolean isSealed() {
+        return index != null;
+    }
+
+    // Both are 0 while the segment is empty
+    long firstMillis() {
+        return count == 0 ? 0 : millisAt(0);
+    }
+
+    long lastMillis() {
+        int n = count;
+        return n == 0 ? 0 : millisAt(n - 1);
+    }
+
+    // Writer thread only
+    void append(MatchRecord r, CRC32 crc) {
+        int n = count;
+        r.write(data, n * MatchRecord.SIZE, crc);
+        // Readers check count first, so the record is complete by the time they see it
+        count = n + 1;
+    }
+
+    void force() {
+        data.force();
+    }
+
+    void read(long id, MatchRecord into) {
+        into.read(data, (int) (id - firstId) * MatchRecord.SIZE);
+    }
+
+    long millisAt(int i) {
+        return data.getLong(i * MatchRecord.SIZE + 8);
+    }
+
+    // First record index whose endedAtMillis is at or after the given time
+    int lowerBound(long millis) {
+        int lo = 0;
+        int hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (millisAt(mid) < millis)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * Adds the ids of this segment's matches with the player, newest first, until
+     * the list holds limit ids. A sealed segment binary-searches its index; the
+     * open one is small enough to scan.
+     */
+    void findPlayer(long playerKey, List<Long> into, int limit) {
+        MappedByteBuffer idx = index;
+        if (idx == null) {
+            for (int i = count - 1; i >= 0 && into.size() < limit; i--) {
+                int at = i * MatchRecord.SIZE;
+                for (int pos = 0; pos < MatchRecord.POSITIONS; pos++) {
+                    int p = at + MatchRecord.PARTICIPANTS_OFFSET + pos * MatchRecord.PARTICIPANT_SIZE;
+                    int flags = data.get(p + 10) & (MatchRecord.PRESENT | MatchRecord.AI);
+                    if (flags == MatchRecord.PRESENT && data.getLong(p) == playerKey) {
+                        into.add(firstId + i);
+                        break;
+                    }
+                }
+            }
+            return;
+        }
+        int entries = idx.getInt(4);
+        // Last entry with this key, then walk back towards older matches
+        int lo = 0;
+        int hi = entries;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (Long.compare(idx.getLong(INDEX_HEADER + mid * ENTRY_SIZE), playerKey) <= 0)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        for (int i = lo - 1; i >= 0 && into.size() < limit; i--) {
+            int at = INDEX_HEADER + i * ENTRY_SIZE;
+            if (idx.getLong(at) != playerKey)
+                break;
+            into.add(idx.getLong(at + 8));
+        }
+    }
+
+    // Writes the player index for a full segment, which makes it read-only from here on
+    void seal() throws IOException {
+        int n = count;
+        int entries = 0;
+        long[] keys = new long[n * MatchRecord.POSITIONS];
+        long[] ids = new long[keys.length];
+        for (int i = 0; i < n; i++) {
+            int at = i * MatchRecord.SIZE;
+            for (int pos = 0; pos < MatchRecord.POSITIONS; pos++) {
+                int p = at + MatchRecord.PARTICIPANTS_OFFSET + pos * MatchRecord.PARTICIPANT_SIZE;
+                int flags = data.get(p + 10);
+                if ((flags & MatchRecord.PRESENT) != 0 && (flags & MatchRecord.AI) == 0) {
+                    keys[entries] = data.getLong(p);
+                    ids[entries] = firstId + i;
+                    entries++;
+                }
+            }
+        }
+        // Ids are already ascending, so a stable sort by key gives (key, id) order
+        Integer[] order = new Integer[entries];
+        for (int i = 0; i < entries; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(keys[a], keys[b]));
+
+        try (IndexWriter w = new IndexWriter(indexPath(dataPath), entries, firstMillis(), lastMillis())) {
+            for (Integer i : order) {
+                w.add(keys[i], ids[i]);
+            }
+        }
+        force();
+        loadIndex();
+    }
+
+    /**
+     * Writes one segment holding all of the given consecutive sealed segments:
+     * the data is copied and their indexes are merged. Runs on the compaction
+     * thread; the inputs are read-only so appends carry on meanwhile.
+     */
+    static Segment merge(Path dir, List<Segment> run) throws IOException {
+        long first = run.get(0).firstId;
+        long end = run.get(run.size() - 1).endId;
+        Path path = dir.resolve(name(first, end) + DATA_SUFFIX);
+        Path tmp = dir.resolve(name(first, end) + DATA_SUFFIX + ".tmp");
+
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (Segment s : run) {
+                ByteBuffer src = s.data.duplicate();
+                src.position(0).limit(s.count * MatchRecord.SIZE);
+                while (src.hasRemaining()) {
+                    out.write(src);
+                }
+            }
+            out.force(true);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        int entries = 0;
+        PriorityQueue<IndexCursor> heap = new PriorityQueue<>();
+        for (Segment s : run) {
+            IndexCursor c = new IndexCursor(s.index);
+            entries += c.entries;
+            if (c.next())
+                heap.add(c);
+        }
+        try (IndexWriter w = new IndexWriter(indexPath(path), entries,
+                run.get(0).firstMillis(), run.get(run.size() - 1).lastMillis())) {
+            while (!heap.isEmpty()) {
+                IndexCursor c = heap.poll();
+                w.add(c.key, c.id);
+                if (c.next())
+                    heap.add(c);
+            }
+        }
+        return openSealed(path, first, end);
+    }
+
+    // Reads one index in order; ordered by (key, id) for the k-way merge
+    private static final class IndexCursor implements Comparable<IndexCursor> {
+        final ByteBuffer buf;
+        final int entries;
+        int pos = -1;
+        long key;
+        long id;
+
+        IndexCursor(ByteBuffer buf) {
+            this.buf = buf;
+            this.entries = buf.getInt(4);
+        }
+
+        boolean next() {
+            if (++pos >= entries)
+                return false;
+            key = buf.getLong(INDEX_HEADER + pos * ENTRY_SIZE);
+            id = buf.getLong(INDEX_HEADER + pos * ENTRY_SIZE + 8);
+            return true;
+        }
+
+        @Override
+        public int compareTo(IndexCursor o) {
+            int c = Long.compare(key, o.key);
+            return c != 0 ? c : Long.compare(id, o.id);
+        }
+    }
+
+    private static final class IndexWriter implements AutoCloseable {
+        private final Path path;
+        private final Path tmp;
+        private final FileChannel ch;
+        private final ByteBuffer buf = ByteBuffer.allocate(WRITE_CHUNK);
+
+        IndexWriter(Path path, int entries, long firstMillis, long lastMillis) throws IOException {
+            this.path = path;
+            this.tmp = path.resolveSibling(path.getFileName() + ".tmp");
+            this.ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            buf.putInt(INDEX_MAGIC).putInt(entries).putLong(firstMillis).putLong(lastMillis).putLong(0);
+        }
+
+        void add(long key, long id) throws IOException {
+            if (buf.remaining() < ENTRY_SIZE)
+                drain();
+            buf.putLong(key).putLong(id);
+        }
+
+        private void drain() throws IOException {
+            buf.flip();
+            while (buf.hasRemaining()) {
+                ch.write(buf);
+            }
+            buf.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            drain();
+            ch.force(true);
+            ch.close();
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    void delete() throws IOException {
+        Files.deleteIfExists(indexPath(dataPath));
+        Files.deleteIfExists(dataPath);
+    }
+}
@@ -0,0 +1,42 @@
+package com.ponggame.sim;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link MatKernel} on jdk.incubator.vector, using the widest float vector the
+ * CPU has. Only built with -Pvector and only used when the JVM runs with
+ * --add-modules jdk.incubator.vector; see PolicyNet.
+ */
+final class VectorMatKernel implements MatKernel {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    @Override
+    public void dense(float[] in, int rows, int inner, float[] w, float[] bias, int cols, float[] out, boolean relu) {
+        int bound = SPECIES.loopBound(cols);
+        for (int r = 0; r < rows; r++) {
+            int o = r * cols;
+            int j = 0;
+            for (; j < bound; j += SPECIES.length()) {
+                FloatVector acc = FloatVector.fromArray(SPECIES, bias, j);
+                for (int i = 0; i < inner; i++) {
+                    float a = in[r * inner + i];
+                    if (a != 0)
+                        acc = FloatVector.fromArray(SPECIES, w, i * cols + j).fma(FloatVector.broadcast(SPECIES, a), acc);
+                }
+                if (relu)
+                    acc = acc.lanewise(VectorOperators.MAX, 0f);
+                acc.intoArray(out, o + j);
+            }
+            for (; j < cols; j++) {
+                float sum = bias[j];
+                for (int i = 0; i < inner; i++) {
+                    sum += in[r * inner + i] * w[i * cols + j];
+                }
+                out[o + j] = relu ? Math.max(0f, sum) : sum;
+            }
+        }
+    }
+}
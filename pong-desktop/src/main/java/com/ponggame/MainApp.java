@@ -1,5 +1,8 @@
 package com.ponggame;
 
+import com.ponggame.audio.AudioMixer;
+import com.ponggame.controller.GameController;
+import com.ponggame.log.EventLog;
 import com.ponggame.model.GameConfig;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
@@ -7,19 +10,47 @@ import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
 
+import javax.sound.sampled.LineUnavailableException;
+
 import java.io.IOException;
+import java.nio.file.Path;
 
 public class MainApp extends Application {
 
     private static Stage primaryStage;
     private static GameConfig gameConfig;
+    private static EventLog eventLog = EventLog.NONE;
+    private static AudioMixer audio = AudioMixer.NONE;
+    private static GameController gameController;
 
     @Override
     public void start(Stage stage) throws IOException {
         primaryStage = stage;
+        try {
+            eventLog = EventLog.open(Path.of(System.getProperty("user.home"), ".ponggame", "logs"));
+        } catch (IOException e) {
+            // The game runs fine without its event log
+            e.printStackTrace();
+        }
+        if (!Boolean.getBoolean("pong.mute")) {
+            try {
+                audio = AudioMixer.open();
+            } catch (LineUnavailableException | IllegalArgumentException | SecurityException e) {
+                // No output device; play silently
+                System.err.println("No audio: " + e.getMessage());
+            }
+        }
         showSetupMenu();
     }
 
+    @Override
+    public void stop() {
+        if (gameController != null)
+            gameController.close();
+        audio.close();
+        eventLog.close();
+    }
+
     private static void showSetupMenu() throws IOException {
         FXMLLoader loader = new FXMLLoader(MainApp.class.getResource("/fxml/setup.fxml"));
         Parent root = loader.load();
@@ -41,7 +72,12 @@ public class MainApp extends Application {
             Parent root = loader.load();
 
             // Pass config to GameController
-            com.ponggame.controller.GameController controller = loader.getController();
+            GameController controller = loader.getController();
+            if (gameController != null)
+                gameController.close();
+            gameController = controller;
+            controller.setEventLog(eventLog);
+            controller.setAudio(audio);
             controller.setGameConfig(config);
 
             Scene scene = new Scene(root, 800, 800);
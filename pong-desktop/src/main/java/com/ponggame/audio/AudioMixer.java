@@ -0,0 +1,284 @@
+package com.ponggame.audio;
+
+import com.ponggame.net.LatencyHistogram;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Plays the game's {@link Sound}s with low, steady latency. Every sound is
+ * decoded into a {@link Sample} when the mixer opens. A mixer thread then
+ * mixes the playing voices a {@link #BLOCK}-frame block at a time into a
+ * 16-bit stereo line whose buffer holds only {@link #LINE_BLOCKS} blocks, about
+ * 12 ms; the blocking write paces the thread, and silence is written when
+ * nothing plays so the line never drains and restarts.
+ *
+ * {@link #play} is called by one thread only, the FX thread. Like
+ * {@link com.ponggame.log.EventLog#record} it fills a slot of a preallocated
+ * ring and publishes it with an ordered store, so it never locks, blocks or
+ * allocates; the mixer picks it up at the start of its next block. Each
+ * voice is resampled by its pitch and panned with equal power. When all
+ * {@link #VOICES} voices are busy the one nearest its end is cut short.
+ *
+ * For each sound started, the time from {@link #play} until its first frame
+ * reaches the line's output is estimated from what is still queued in the
+ * line, and recorded; see {@link #summary()}.
+ */
+public final class AudioMixer implements AutoCloseable {
+
+    public static final int BLOCK = 128;
+    public static final int LINE_BLOCKS = 4;
+    public static final int VOICES = 16;
+
+    // Does nothing; used when there is no audio device so callers need no null checks
+    public static final AudioMixer NONE = new AudioMixer();
+
+    private static final int RING = 64;
+    private static final float MASTER_GAIN = 0.5f;
+
+    // Trigger ring, indexed by sequence & (RING - 1)
+    private final int[] sounds;
+    private final float[] pitches;
+    private final float[] pans;
+    private final long[] times;
+
+    // Producer only
+    private long head;
+    private long cachedTail;
+
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong consumed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong stolen = new AtomicLong();
+    // Recorded by the mixer thread, read by others; guarded by its own lock
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    // Mixer thread only
+    private final Sample[] samples;
+    private final SourceDataLine line;
+    private final Thread mixer;
+    private final int[] voiceSample;
+    private final double[] voicePosition, voiceStep;
+    private final float[] voiceLeft, voiceRight;
+    private final float[] mixLeft, mixRight;
+    private final byte[] out;
+    private long framesWritten;
+    private volatile boolean closing;
+
+    private AudioMixer() {
+        sounds = null;
+        pitches = pans = null;
+        times = null;
+        samples = null;
+        line = null;
+        mixer = null;
+        voiceSample = null;
+        voicePosition = voiceStep = null;
+        voiceLeft = voiceRight = mixLeft = mixRight = null;
+        out = null;
+    }
+
+    private AudioMixer(SourceDataLine line) throws LineUnavailableException {
+        sounds = new int[RING];
+        pitches = new float[RING];
+        pans = new float[RING];
+        times = new long[RING];
+
+        Sound[] all = Sound.values();
+        samples = new Sample[all.length];
+        for (Sound sound : all) {
+            samples[sound.ordinal()] = Sample.load(sound);
+        }
+
+        voiceSample = new int[VOICES];
+        voicePosition = new double[VOICES];
+        voiceStep = new double[VOICES];
+        voiceLeft = new float[VOICES];
+        voiceRight = new float[VOICES];
+        Arrays.fill(voiceSample, -1);
+        mixLeft = new float[BLOCK];
+        mixRight = new float[BLOCK];
+        out = new byte[BLOCK * 4];
+
+        this.line = line;
+        line.open(format(), BLOCK * 4 * LINE_BLOCKS);
+        line.start();
+        mixer = new Thread(this::mixLoop, "audio-mixer");
+        mixer.setDaemon(true);
+        mixer.setPriority(Thread.MAX_PRIORITY);
+        mixer.start();
+    }
+
+    public static AudioFormat format() {
+        return new AudioFormat(Sample.RATE, 16, 2, true, false);
+    }
+
+    // Opens the default output device
+    public static AudioMixer open() throws LineUnavailableException {
+        return open(AudioSystem.getSourceDataLine(format()));
+    }
+
+    public static AudioMixer open(SourceDataLine line) throws LineUnavailableException {
+        return new AudioMixer(line);
+    }
+
+    /**
+     * Starts a sound; pitch 1 plays it as recorded, 2 an octave up and twice
+     * as fast. pan runs from -1 (left) to 1 (right). Single producer only.
+     */
+    public void play(Sound sound, float pitch, float pan) {
+        if (sounds == null)
+            return;
+        long h = head;
+        if (h - cachedTail >= RING) {
+            cachedTail = consumed.get();
+            if (h - cachedTail >= RING) {
+                dropped.incrementAndGet();
+                return;
+            }
+        }
+        int i = (int) h & (RING - 1);
+        sounds[i] = sound.ordinal();
+        pitches[i] = pitch;
+        pans[i] = Math.max(-1f, Math.min(1f, pan));
+        times[i] = System.nanoTime();
+        head = h + 1;
+        // Ordered store: the slot is fully written before the mixer can see it
+        published.lazySet(h + 1);
+    }
+
+    private void mixLoop() {
+        long tail = consumed.get();
+        while (!closing) {
+            // Frames queued ahead of this block, for the latency estimate
+            long queued = framesWritten - line.getLongFramePosition();
+            long now = System.nanoTime();
+            long end = published.get();
+            if (tail < end) {
+                synchronized (latency) {
+                    for (; tail < end; tail++) {
+                        int i = (int) tail & (RING - 1);
+                        start(sounds[i], pitches[i], pans[i]);
+                        latency.recordNanos(now - times[i] + queued * 1_000_000_000L / Sample.RATE);
+                    }
+                }
+                consumed.lazySet(tail);
+            }
+
+            mix();
+            line.write(out, 0, out.length);
+            framesWritten += BLOCK;
+        }
+        line.drain();
+        line.close();
+    }
+
+    private void start(int sound, float pitch, float pan) {
+        int v = 0;
+        double mostPlayed = -1;
+        for (int k = 0; k < VOICES; k++) {
+            if (voiceSample[k] < 0) {
+                v = k;
+                mostPlayed = -1;
+                break;
+            }
+            double played = voicePosition[k] / samples[voiceSample[k]].length();
+            if (played > mostPlayed) {
+                mostPlayed = played;
+                v = k;
+            }
+        }
+        if (mostPlayed >= 0)
+            stolen.incrementAndGet();
+        // Equal-power pan keeps the loudness the same across the field
+        double angle = (pan + 1) * Math.PI / 4;
+        voiceSample[v] = sound;
+        voicePosition[v] = 0;
+        voiceStep[v] = Math.max(0.25, pitch);
+        voiceLeft[v] = (float) Math.cos(angle) * MASTER_GAIN;
+        voiceRight[v] = (float) Math.sin(angle) * MASTER_GAIN;
+    }
+
+    private void mix() {
+        Arrays.fill(mixLeft, 0f);
+        Arrays.fill(mixRight, 0f);
+        for (int v = 0; v < VOICES; v++) {
+            if (voiceSample[v] < 0)
+                continue;
+            float[] data = samples[voiceSample[v]].data;
+            double pos = voicePosition[v];
+            double step = voiceStep[v];
+            float left = voiceLeft[v];
+            float right = voiceRight[v];
+            for (int f = 0; f < BLOCK; f++) {
+                int i = (int) pos;
+                if (i + 1 >= data.length) {
+                    voiceSample[v] = -1;
+                    break;
+                }
+                // Linear interpolation between the two nearest samples
+                float s = data[i] + (float) (pos - i) * (data[i + 1] - data[i]);
+                mixLeft[f] += s * left;
+                mixRight[f] += s * right;
+                pos += step;
+            }
+            voicePosition[v] = pos;
+        }
+        for (int f = 0; f < BLOCK; f++) {
+            put(f * 4, mixLeft[f]);
+            put(f * 4 + 2, mixRight[f]);
+        }
+    }
+
+    private void put(int at, float v) {
+        int s = (int) (Math.max(-1f, Math.min(1f, v)) * 32767);
+        out[at] = (byte) s;
+        out[at + 1] = (byte) (s >> 8);
+    }
+
+    // Sounds not played because the ring was full
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    // Sounds cut short to free a voice
+    public long getStolen() {
+        return stolen.get();
+    }
+
+    // Event-to-output latency of sounds started since the last drain
+    public void drainLatency(LatencyHistogram into) {
+        synchronized (latency) {
+            into.add(latency);
+            latency.reset();
+        }
+    }
+
+    // Counts and latency since the last drain
+    public String summary() {
+        if (line == null)
+            return "audio: off";
+        LatencyHistogram h = new LatencyHistogram();
+        synchronized (latency) {
+            h.add(latency);
+        }
+        return "audio: sounds=" + h.getCount() + " dropped=" + dropped.get() + " cut=" + stolen.get()
+                + " line=" + line.getBufferSize() / 4 + " frames, latency " + h.summary();
+    }
+
+    @Override
+    public void close() {
+        if (mixer == null)
+            return;
+        closing = true;
+        try {
+            mixer.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.ponggame.audio;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A sound decoded once, up front, to mono floats in [-1, 1] at the mixer's
+ * rate, so playing it is only a copy with gain: nothing is decoded or
+ * converted while the game runs.
+ */
+public final class Sample {
+
+    public static final int RATE = 44_100;
+
+    // Attack and release, so notes start and stop without a click
+    private static final int RAMP = RATE / 500;
+
+    final float[] data;
+
+    private Sample(float[] data) {
+        this.data = data;
+    }
+
+    public int length() {
+        return data.length;
+    }
+
+    // The sound's file if it is on the class path, else its synthesized notes
+    public static Sample load(Sound sound) {
+        InputStream in = Sample.class.getResourceAsStream("/sounds/" + sound.file + ".wav");
+        if (in != null) {
+            try (in) {
+                return decode(in);
+            } catch (IOException | UnsupportedAudioFileException e) {
+                // Fall back to the built-in sound
+                e.printStackTrace();
+            }
+        }
+        return notes(sound.noteMillis, sound.notes);
+    }
+
+    // Any format Java Sound reads, down-mixed to mono and resampled to RATE
+    public static Sample decode(InputStream in) throws IOException, UnsupportedAudioFileException {
+        try (AudioInputStream source = AudioSystem.getAudioInputStream(new BufferedInputStream(in))) {
+            AudioFormat from = source.getFormat();
+            int channels = from.getChannels();
+            AudioFormat pcm = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, from.getSampleRate(), 16,
+                    channels, channels * 2, from.getSampleRate(), false);
+            byte[] bytes;
+            try (AudioInputStream converted = AudioSystem.getAudioInputStream(pcm, source)) {
+                bytes = converted.readAllBytes();
+            }
+            int frames = bytes.length / (channels * 2);
+            float[] mono = new float[frames];
+            for (int f = 0; f < frames; f++) {
+                int sum = 0;
+                for (int c = 0; c < channels; c++) {
+                    int b = (f * channels + c) * 2;
+                    sum += (short) (bytes[b] & 0xFF | bytes[b + 1] << 8);
+                }
+                mono[f] = sum / (32768f * channels);
+            }
+            return new Sample(resample(mono, from.getSampleRate()));
+        }
+    }
+
+    private static float[] resample(float[] in, float rate) {
+        if (rate == RATE || in.length < 2)
+            return in;
+        double step = rate / RATE;
+        float[] out = new float[(int) ((in.length - 1) / step) + 1];
+        for (int i = 0; i < out.length; i++) {
+            double pos = i * step;
+            int j = (int) pos;
+            float next = in[Math.min(j + 1, in.length - 1)];
+            out[i] = in[j] + (float) (pos - j) * (next - in[j]);
+        }
+        return out;
+    }
+
+    /**
+     * Notes played one after another, each noteMillis long: a sine with a
+     * little of its octave, fading out over the note.
+     */
+    public static Sample notes(int noteMillis, double... frequencies) {
+        int noteLength = RATE * noteMillis / 1000;
+        float[] data = new float[noteLength * frequencies.length];
+        for (int n = 0; n < frequencies.length; n++) {
+            double w = 2 * Math.PI * frequencies[n] / RATE;
+            for (int i = 0; i < noteLength; i++) {
+                double envelope = Math.exp(-4.0 * i / noteLength)
+                        * Math.min(1.0, Math.min(i, noteLength - 1 - i) / (double) RAMP);
+                data[n * noteLength + i] = (float) (envelope * (0.8 * Math.sin(w * i) + 0.2 * Math.sin(2 * w * i)));
+            }
+        }
+        return new Sample(data);
+    }
+}
@@ -0,0 +1,22 @@
+package com.ponggame.audio;
+
+/**
+ * The game's sounds. Each is read from /sounds/&lt;file&gt;.wav on the class
+ * path if one is there, or else synthesized from its notes, so the game has
+ * sound without shipping any audio files.
+ */
+public enum Sound {
+    PADDLE_HIT("hit", 70, 880.0),
+    WALL_BOUNCE("wall", 45, 440.0),
+    SCORE("score", 90, 523.25, 659.25, 783.99);
+
+    final String file;
+    final int noteMillis;
+    final double[] notes;
+
+    Sound(String file, int noteMillis, double... notes) {
+        this.file = file;
+        this.noteMillis = noteMillis;
+        this.notes = notes;
+    }
+}
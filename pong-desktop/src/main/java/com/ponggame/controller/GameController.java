@@ -1,13 +1,26 @@
 package com.ponggame.controller;
 
-import com.ponggame.model.AIController;
+import com.ponggame.audio.AudioMixer;
+import com.ponggame.audio.Sound;
+import com.ponggame.log.EventLog;
+import com.ponggame.log.EventType;
 import com.ponggame.model.Ball;
 import com.ponggame.model.GameConfig;
 import com.ponggame.model.GameConfig.Position;
 import com.ponggame.model.GameState;
+import com.ponggame.net.Protocol;
+import com.ponggame.sim.AgentBridge;
+import com.ponggame.sim.FixedMath;
+import com.ponggame.sim.PaddleStrategy;
+import com.ponggame.sim.SimState;
+import com.ponggame.sim.StrategyRunner;
+import com.ponggame.sim.VectorEnv;
+import com.ponggame.view.Effects;
 import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.scene.Group;
+import javafx.scene.canvas.Canvas;
 import javafx.scene.control.Label;
 import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyEvent;
@@ -18,8 +31,11 @@ import javafx.scene.shape.Circle;
 import javafx.scene.shape.Rectangle;
 import javafx.scene.transform.Scale;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -34,6 +50,8 @@ public class GameController {
     @FXML
     private Circle ballCircle;
     @FXML
+    private Canvas effectsCanvas;
+    @FXML
     private Label player1Score, player2Score, player3Score, player4Score;
     @FXML
     private Label statusLabel;
@@ -41,11 +59,22 @@ public class GameController {
     private Rectangle paddle1, paddle2, paddle3, paddle4;
 
     private Ball ball;
+    private Effects effects;
     private Map<Position, Rectangle> paddles = new HashMap<>();
-    private Map<Position, AIController> aiControllers = new HashMap<>();
+    // AI paddles, each played by the PaddleStrategy chosen for its position
+    private Map<Position, StrategyRunner> strategies = new HashMap<>();
     private AnimationTimer gameLoop;
     private GameState gameState = GameState.MENU;
     private GameConfig config;
+    private EventLog eventLog = EventLog.NONE;
+    private AudioMixer audio = AudioMixer.NONE;
+
+    // Paddles played by another process; slot i of the bridge is externalPositions[i]
+    private AgentBridge agentBridge;
+    private List<Position> externalPositions = new ArrayList<>();
+    private final SimState agentView = new SimState();
+    private final float[] agentObs = new float[VectorEnv.OBS_SIZE];
+    private int agentTick = 0;
 
     private Set<KeyCode> activeKeys = new HashSet<>();
     private Map<Position, Integer> scores = new HashMap<>();
@@ -53,12 +82,24 @@ public class GameController {
     private final int WIN_SCORE = 10;
     private final double PADDLE_SPEED = 6.0;
     private final double ARENA_SIZE = 800;
+    // How long a frame waits for an external agent's answer before reusing its last action
+    private final long AGENT_WAIT_NANOS = 1_000_000;
 
     @FXML
     public void initialize() {
         // Wait for setGameConfig to be called
     }
 
+    // Events are recorded from the FX thread only
+    public void setEventLog(EventLog eventLog) {
+        this.eventLog = eventLog;
+    }
+
+    // Sounds are started from the FX thread only
+    public void setAudio(AudioMixer audio) {
+        this.audio = audio;
+    }
+
     public void setGameConfig(GameConfig config) {
         this.config = config;
         setupGame();
@@ -87,20 +128,30 @@ public class GameController {
                 scores.put(pos, 0);
 
                 // Create AI controller if not human
-                if (!config.isHuman(pos)) {
-                    boolean isHorizontal = (pos == Position.TOP || pos == Position.BOTTOM);
-                    aiControllers.put(pos, new AIController(paddle, ball, isHorizontal, 30, 770));
+                if (config.isExternalAgent(pos)) {
+                    externalPositions.add(pos);
+                } else if (!config.isHuman(pos)) {
+                    strategies.put(pos, createStrategy(pos));
                 }
 
                 // Set paddle colors
-                paddle.setFill(config.isHuman(pos) ? Color.LIMEGREEN : Color.RED);
+                paddle.setFill(config.isHuman(pos) ? Color.LIMEGREEN
+                        : config.isExternalAgent(pos) ? Color.DEEPSKYBLUE : Color.RED);
             } else {
                 paddle.setVisible(false);
             }
         }
 
+        // Effect colours by position code, as the paddles are painted
+        Color[] colours = new Color[Position.values().length];
+        for (Position pos : Position.values()) {
+            colours[positionCode(pos)] = (Color) paddles.get(pos).getFill();
+        }
+        effects = new Effects(effectsCanvas, (Color) ballCircle.getFill(), colours);
+
         // Hide unused score labels
         updateScoreVisibility();
+        openAgentBridge();
 
         // Setup listeners
         gameRoot.widthProperty().addListener((obs, oldVal, newVal) -> scaleAndCenterGame());
@@ -115,6 +166,69 @@ public class GameController {
         }
     }
 
+    private StrategyRunner createStrategy(Position pos) {
+        PaddleStrategy.Provider provider = PaddleStrategy.find(config.getStrategy(pos));
+        PaddleStrategy strategy = null;
+        try {
+            if (provider != null)
+                strategy = provider.create(positionCode(pos), System.nanoTime());
+        } catch (RuntimeException e) {
+            // e.g. a policy file that won't load
+            e.printStackTrace();
+        }
+        if (strategy == null) {
+            // Fall back to the built-in AI
+            provider = PaddleStrategy.find(GameConfig.DEFAULT_STRATEGY);
+            strategy = provider.create(positionCode(pos), System.nanoTime());
+        }
+        return new StrategyRunner(strategy, provider.getId() + "-" + pos.name().toLowerCase(),
+                config.getStrategyBudgetNanos());
+    }
+
+    // Per-strategy decision counts, overruns and cost, one line per AI paddle
+    public List<String> getStrategyStats() {
+        List<String> stats = new ArrayList<>();
+        for (StrategyRunner runner : strategies.values()) {
+            stats.add(runner.summary());
+        }
+        return stats;
+    }
+
+    // Stops the AI strategies' threads and closes the agent bridge; call when the game window goes away
+    public void close() {
+        if (gameLoop != null)
+            gameLoop.stop();
+        for (StrategyRunner runner : strategies.values()) {
+            runner.close();
+        }
+        strategies.clear();
+        if (agentBridge != null) {
+            try {
+                agentBridge.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            agentBridge = null;
+        }
+    }
+
+    // Spark and trail effects, whose summary() reports their frame cost and detail drops
+    public Effects getEffects() {
+        return effects;
+    }
+
+    private void openAgentBridge() {
+        if (externalPositions.isEmpty())
+            return;
+        try {
+            agentBridge = AgentBridge.create(config.getAgentBridgeFile(), externalPositions.size());
+            System.out.println("External agents: attach to " + config.getAgentBridgeFile());
+        } catch (IOException e) {
+            // Without the bridge the external paddles just stand still
+            e.printStackTrace();
+        }
+    }
+
     private void updateScoreVisibility() {
         Position[] active = config.getActivePositions();
         Set<Position> activeSet = Set.of(active);
@@ -145,9 +259,15 @@ public class GameController {
         gameLoop = new AnimationTimer() {
             @Override
             public void handle(long now) {
-                if (gameState == GameState.PLAYING) {
+                boolean playing = gameState == GameState.PLAYING;
+                if (playing) {
                     update();
                 }
+                effects.frame(now, playing, ball.getX(), ball.getY(), ball.getRadius());
+                // After the game ends the loop runs on until the last sparks have faded
+                if (gameState != GameState.PLAYING && effects.isIdle()) {
+                    stop();
+                }
             }
         };
     }
@@ -166,7 +286,8 @@ public class GameController {
         } else if (event.getCode() == KeyCode.R && gameState == GameState.WIN) {
             resetGame();
         } else if (event.getCode() == KeyCode.ESCAPE) {
-            System.exit(0);
+            // Not System.exit: MainApp.stop() still has to close the game, audio and event log
+            Platform.exit();
         }
     }
 
@@ -178,6 +299,7 @@ public class GameController {
         gameState = GameState.PLAYING;
         statusLabel.setVisible(false);
         gameLoop.start();
+        eventLog.record(EventType.GAME_STARTED, 0, config.getTotalPlayers());
     }
 
     private void resetGame() {
@@ -186,7 +308,9 @@ public class GameController {
         }
         updateAllScores();
         ball.reset(ARENA_SIZE, ARENA_SIZE);
+        effects.clear();
         gameState = GameState.MENU;
+        eventLog.record(EventType.GAME_RESET, 0);
         statusLabel.setText("Press SPACE to Start");
         statusLabel.setVisible(true);
     }
@@ -200,9 +324,14 @@ public class GameController {
         }
 
         // AI movement
-        for (var entry : aiControllers.entrySet()) {
-            entry.getValue().update();
+        if (agentBridge != null || !strategies.isEmpty())
+            captureAgentView();
+        for (var entry : strategies.entrySet()) {
+            int bits = entry.getValue().decide(agentView);
+            movePaddle(entry.getKey(), (bits & (Protocol.INPUT_UP | Protocol.INPUT_LEFT)) != 0,
+                    (bits & (Protocol.INPUT_DOWN | Protocol.INPUT_RIGHT)) != 0);
         }
+        updateExternalAgents();
 
         // Ball movement
         ball.update();
@@ -218,30 +347,81 @@ public class GameController {
     }
 
     private void moveHumanPaddle(Position pos) {
-        Rectangle paddle = paddles.get(pos);
         KeyCode[] keys = config.getKeyBinding(pos);
-        if (keys == null || paddle == null)
+        if (keys == null)
+            return;
+        // Left/Up key, Right/Down key
+        movePaddle(pos, activeKeys.contains(keys[0]), activeKeys.contains(keys[1]));
+    }
+
+    private void movePaddle(Position pos, boolean back, boolean forward) {
+        Rectangle paddle = paddles.get(pos);
+        if (paddle == null)
             return;
 
         boolean isHorizontal = (pos == Position.TOP || pos == Position.BOTTOM);
 
         if (isHorizontal) {
-            if (activeKeys.contains(keys[0])) { // Left/Up key
+            if (back) {
                 paddle.setX(Math.max(30, paddle.getX() - PADDLE_SPEED));
             }
-            if (activeKeys.contains(keys[1])) { // Right/Down key
+            if (forward) {
                 paddle.setX(Math.min(770 - paddle.getWidth(), paddle.getX() + PADDLE_SPEED));
             }
         } else {
-            if (activeKeys.contains(keys[0])) { // Up key
+            if (back) {
                 paddle.setY(Math.max(30, paddle.getY() - PADDLE_SPEED));
             }
-            if (activeKeys.contains(keys[1])) { // Down key
+            if (forward) {
                 paddle.setY(Math.min(770 - paddle.getHeight(), paddle.getY() + PADDLE_SPEED));
             }
         }
     }
 
+    // Shows each external agent the frame as a VectorEnv observation and applies its answer
+    private void updateExternalAgents() {
+        if (agentBridge == null)
+            return;
+        for (int slot = 0; slot < externalPositions.size(); slot++) {
+            Position pos = externalPositions.get(slot);
+            int code = positionCode(pos);
+            VectorEnv.observe(agentView, code, agentObs, 0);
+            agentBridge.publish(slot, agentTick, code, agentObs, 0);
+        }
+        for (int slot = 0; slot < externalPositions.size(); slot++) {
+            int action = agentBridge.action(slot, AGENT_WAIT_NANOS);
+            movePaddle(externalPositions.get(slot), action == VectorEnv.ACTION_BACK,
+                    action == VectorEnv.ACTION_FORWARD);
+        }
+        agentTick++;
+    }
+
+    // The scene in the simulation's fixed-point units, which is what observations are built from
+    private void captureAgentView() {
+        SimState s = agentView;
+        s.tick = agentTick;
+        s.ballX = toFixed(ball.getX());
+        s.ballY = toFixed(ball.getY());
+        s.ballVX = toFixed(ball.getVelocityX());
+        s.ballVY = toFixed(ball.getVelocityY());
+        s.speedMultiplier = toFixed(ball.getSpeedMultiplier());
+        Position touched = playerIdToPosition(ball.getLastTouchedPlayerId());
+        s.lastTouched = touched == null ? -1 : positionCode(touched);
+        s.activeMask = 0;
+        for (Position pos : config.getActivePositions()) {
+            int code = positionCode(pos);
+            Rectangle paddle = paddles.get(pos);
+            s.activeMask |= 1 << code;
+            s.paddleX[code] = toFixed(paddle.getX());
+            s.paddleY[code] = toFixed(paddle.getY());
+            s.scores[code] = scores.getOrDefault(pos, 0);
+        }
+    }
+
+    private static int toFixed(double v) {
+        return (int) Math.round(v * FixedMath.ONE);
+    }
+
     private void checkPaddleCollisions() {
         double ballX = ball.getX();
         double ballY = ball.getY();
@@ -295,6 +475,10 @@ public class GameController {
 
             if (hit) {
                 ball.setLastTouchedPlayerId(positionToPlayerId(pos));
+                effects.paddleHit(positionCode(pos), ballX, ballY, inward(pos));
+                playSound(Sound.PADDLE_HIT);
+                eventLog.record(EventType.PADDLE_HIT, 0, positionCode(pos),
+                        (int) (Math.hypot(ball.getVelocityX(), ball.getVelocityY()) * 100));
             }
         }
     }
@@ -311,6 +495,8 @@ public class GameController {
             if (ballY + ballR >= 785 && ball.getVelocityY() > 0) {
                 ball.reverseY();
                 ballCircle.setCenterY(785 - ballR);
+                effects.wallHit(ball.getX(), ball.getY(), inward(Position.BOTTOM));
+                playSound(Sound.WALL_BOUNCE);
             }
         }
 
@@ -319,6 +505,8 @@ public class GameController {
             if (ballY - ballR <= 15 && ball.getVelocityY() < 0) {
                 ball.reverseY();
                 ballCircle.setCenterY(15 + ballR);
+                effects.wallHit(ball.getX(), ball.getY(), inward(Position.TOP));
+                playSound(Sound.WALL_BOUNCE);
             }
         }
 
@@ -327,6 +515,8 @@ public class GameController {
             if (ballX - ballR <= 15 && ball.getVelocityX() < 0) {
                 ball.reverseX();
                 ballCircle.setCenterX(15 + ballR);
+                effects.wallHit(ball.getX(), ball.getY(), inward(Position.LEFT));
+                playSound(Sound.WALL_BOUNCE);
             }
         }
 
@@ -335,10 +525,29 @@ public class GameController {
             if (ballX + ballR >= 785 && ball.getVelocityX() > 0) {
                 ball.reverseX();
                 ballCircle.setCenterX(785 - ballR);
+                effects.wallHit(ball.getX(), ball.getY(), inward(Position.RIGHT));
+                playSound(Sound.WALL_BOUNCE);
             }
         }
     }
 
+    // Higher as the ball speeds up, 1 at serve speed; panned to where the ball is
+    private void playSound(Sound sound) {
+        float pitch = (float) (ball.getSpeedMultiplier() / Ball.SERVE_SPEED_MULTIPLIER);
+        float pan = (float) (ball.getX() / ARENA_SIZE * 2 - 1);
+        audio.play(sound, pitch, pan);
+    }
+
+    // Direction into the arena from a side, in radians on screen
+    private double inward(Position pos) {
+        return switch (pos) {
+            case BOTTOM -> -Math.PI / 2;
+            case TOP -> Math.PI / 2;
+            case LEFT -> 0;
+            case RIGHT -> Math.PI;
+        };
+    }
+
     private int positionToPlayerId(Position pos) {
         return switch (pos) {
             case BOTTOM -> 1;
@@ -348,6 +557,16 @@ public class GameController {
         };
     }
 
+    // Protocol position code, as the server's event log uses
+    private int positionCode(Position pos) {
+        return switch (pos) {
+            case LEFT -> 0;
+            case RIGHT -> 1;
+            case TOP -> 2;
+            case BOTTOM -> 3;
+        };
+    }
+
     private Position playerIdToPosition(int id) {
         return switch (id) {
             case 1 -> Position.BOTTOM;
@@ -381,7 +600,10 @@ public class GameController {
             // Award point to last toucher if they're not the one who missed
             if (lastTouchedPos != null && lastTouchedPos != missedBy && scores.containsKey(lastTouchedPos)) {
                 scores.put(lastTouchedPos, scores.get(lastTouchedPos) + 1);
+                eventLog.record(EventType.SCORE, 0, positionCode(lastTouchedPos), scores.get(lastTouchedPos));
                 updateScoreLabel(lastTouchedPos);
+                effects.score(positionCode(lastTouchedPos), ballX, ballY);
+                playSound(Sound.SCORE);
             }
             resetBall();
         }
@@ -390,6 +612,8 @@ public class GameController {
     private void resetBall() {
         checkWin();
         ball.reset(ARENA_SIZE, ARENA_SIZE);
+        effects.breakTrail();
+        eventLog.record(EventType.BALL_RESET, 0);
     }
 
     private void updateScoreLabel(Position pos) {
@@ -412,7 +636,7 @@ public class GameController {
         for (var entry : scores.entrySet()) {
             if (entry.getValue() >= WIN_SCORE) {
                 gameState = GameState.WIN;
-                gameLoop.stop();
+                eventLog.record(EventType.GAME_ENDED, 0, positionCode(entry.getKey()), 0);
                 String winner = entry.getKey().name();
                 statusLabel.setText(winner + " Wins! Press R to Restart");
                 statusLabel.setVisible(true);
@@ -4,7 +4,10 @@ import com.ponggame.MainApp;
 import com.ponggame.model.GameConfig;
 import com.ponggame.model.GameConfig.GameMode;
 import com.ponggame.model.GameConfig.Position;
+import com.ponggame.sim.PaddleStrategy;
 import javafx.fxml.FXML;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.ComboBox;
 import javafx.scene.control.Label;
 import javafx.scene.control.ToggleButton;
 import javafx.scene.control.ToggleGroup;
@@ -14,6 +17,7 @@ import javafx.scene.layout.StackPane;
 import javafx.scene.layout.VBox;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class SetupController {
@@ -31,6 +35,9 @@ public class SetupController {
 
     private GameConfig config = new GameConfig();
     private Map<Position, ToggleButton> positionToggles = new HashMap<>();
+    private Map<Position, CheckBox> agentChecks = new HashMap<>();
+    private Map<Position, ComboBox<String>> strategyChoices = new HashMap<>();
+    private List<PaddleStrategy.Provider> strategies = PaddleStrategy.providers();
 
     @FXML
     public void initialize() {
@@ -127,6 +134,8 @@ public class SetupController {
     private void setupPositionGrid() {
         positionGrid.getChildren().clear();
         positionToggles.clear();
+        agentChecks.clear();
+        strategyChoices.clear();
 
         Position[] positions = config.getActivePositions();
         int humansToAssign = config.getHumanCount();
@@ -147,11 +156,40 @@ public class SetupController {
                 updatePositionToggle(toggle);
             });
 
-            positionToggles.put(pos, toggle);
             config.setPositionAssignment(pos, toggle.isSelected());
 
+            // An AI slot can be handed to a trained policy running in another process
+            CheckBox agent = new CheckBox("External agent");
+            agent.setStyle("-fx-text-fill: #00ccff; -fx-font-size: 14px;");
+            agent.setSelected(config.isExternalAgent(pos));
+            agent.setDisable(toggle.isSelected());
+
+            // Which in-process strategy plays the slot, from every PaddleStrategy provider found
+            ComboBox<String> strategy = new ComboBox<>();
+            for (PaddleStrategy.Provider provider : strategies) {
+                strategy.getItems().add(provider.getName());
+                if (provider.getId().equals(config.getStrategy(pos)))
+                    strategy.getSelectionModel().select(provider.getName());
+            }
+            strategy.setDisable(toggle.isSelected() || agent.isSelected());
+            strategy.setOnAction(e -> {
+                int index = strategy.getSelectionModel().getSelectedIndex();
+                if (index >= 0)
+                    config.setStrategy(pos, strategies.get(index).getId());
+            });
+            agent.setOnAction(e -> {
+                config.setExternalAgent(pos, agent.isSelected());
+                strategy.setDisable(agent.isSelected());
+            });
+
+            positionToggles.put(pos, toggle);
+            agentChecks.put(pos, agent);
+            strategyChoices.put(pos, strategy);
+
             positionGrid.add(posLabel, 0, i);
             positionGrid.add(toggle, 1, i);
+            positionGrid.add(agent, 2, i);
+            positionGrid.add(strategy, 3, i);
         }
     }
 
@@ -173,6 +211,9 @@ public class SetupController {
         // Update config
         for (var entry : positionToggles.entrySet()) {
             config.setPositionAssignment(entry.getKey(), entry.getValue().isSelected());
+            agentChecks.get(entry.getKey()).setDisable(entry.getValue().isSelected());
+            strategyChoices.get(entry.getKey()).setDisable(entry.getValue().isSelected()
+                    || config.isExternalAgent(entry.getKey()));
         }
     }
 
@@ -208,14 +249,23 @@ public class SetupController {
         addSummaryLine("Positions:");
 
         for (Position pos : config.getActivePositions()) {
-            String type = config.isHuman(pos) ? "HUMAN" : "AI";
-            String color = config.isHuman(pos) ? "#00ff00" : "#ff0000";
+            String type = config.isHuman(pos) ? "HUMAN"
+                    : config.isExternalAgent(pos) ? "EXTERNAL AGENT" : "AI (" + strategyName(pos) + ")";
+            String color = config.isHuman(pos) ? "#00ff00" : config.isExternalAgent(pos) ? "#00ccff" : "#ff0000";
             Label posLabel = new Label("  " + pos.name() + ": " + type);
             posLabel.setStyle("-fx-text-fill: " + color + "; -fx-font-size: 14px;");
             summaryDisplay.getChildren().add(posLabel);
         }
     }
 
+    private String strategyName(Position pos) {
+        for (PaddleStrategy.Provider provider : strategies) {
+            if (provider.getId().equals(config.getStrategy(pos)))
+                return provider.getName();
+        }
+        return config.getStrategy(pos);
+    }
+
     private void addSummaryLine(String text) {
         Label label = new Label(text);
         label.setStyle("-fx-text-fill: white; -fx-font-size: 14px;");
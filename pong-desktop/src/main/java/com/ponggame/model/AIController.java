@@ -0,0 +1,131 @@
+package com.ponggame.model;
+
+import com.ponggame.net.Protocol;
+import com.ponggame.sim.AIDifficulty;
+import com.ponggame.sim.FixedMath;
+import com.ponggame.sim.GameView;
+import com.ponggame.sim.PaddleStrategy;
+import com.ponggame.sim.Simulation;
+import java.util.Random;
+
+// The game's own AI and the default PaddleStrategy: every few frames it aims a little off the ball.
+// How quickly, how far off and how fast it moves come from a calibrated AIDifficulty preset.
+public class AIController implements PaddleStrategy {
+    private final int position; // protocol position code
+    private final boolean isHorizontal; // true = moves left/right, false = moves up/down
+    private final double minPos, maxPos; // Movement bounds
+    private final double paddleSize; // Along the direction of movement
+
+    private static final double DEAD_ZONE = 4.0;
+    private static final double PADDLE_SPEED = FixedMath.toDouble(Simulation.PADDLE_SPEED);
+
+    private final double errorMargin;
+    private final int reactionDelay;
+    private final double maxSpeed;
+
+    private int frameCounter = 0;
+    private double targetPos = -1;
+    private double speedCredit = 0;
+    private final Random random;
+
+    public AIController(int position, long seed, AIDifficulty difficulty, double minPos, double maxPos) {
+        this.position = position;
+        this.errorMargin = difficulty.getErrorMargin();
+        this.reactionDelay = difficulty.getReactionDelay();
+        this.maxSpeed = difficulty.getMaxSpeed();
+        this.isHorizontal = position >= 2;
+        this.minPos = minPos;
+        this.maxPos = maxPos;
+        this.paddleSize = FixedMath.toDouble(isHorizontal ? Simulation.PADDLE_W[position] : Simulation.PADDLE_H[position]);
+        this.random = new Random(seed);
+    }
+
+    @Override
+    public int decide(GameView view) {
+        frameCounter++;
+        if (targetPos < 0 || frameCounter >= reactionDelay) {
+            decideTarget(view);
+            frameCounter = 0;
+        }
+        return movePaddle(view);
+    }
+
+    private void decideTarget(GameView view) {
+        double error = (random.nextDouble() - 0.5) * 2 * errorMargin;
+
+        if (isHorizontal) {
+            // Horizontal paddle (top/bottom) - track ball X
+            targetPos = FixedMath.toDouble(view.getBallX()) - paddleSize / 2 + error;
+        } else {
+            // Vertical paddle (left/right) - track ball Y
+            targetPos = FixedMath.toDouble(view.getBallY()) - paddleSize / 2 + error;
+        }
+
+        // Clamp to bounds
+        targetPos = Math.max(minPos, Math.min(maxPos - paddleSize, targetPos));
+    }
+
+    private int movePaddle(GameView view) {
+        double currentPos = FixedMath.toDouble(isHorizontal ? view.getPaddleX(position) : view.getPaddleY(position));
+        double diff = targetPos - currentPos;
+
+        if (Math.abs(diff) <= DEAD_ZONE || !spendSpeed())
+            return 0;
+        if (diff > DEAD_ZONE)
+            return isHorizontal ? Protocol.INPUT_RIGHT : Protocol.INPUT_DOWN;
+        if (diff < -DEAD_ZONE)
+            return isHorizontal ? Protocol.INPUT_LEFT : Protocol.INPUT_UP;
+        return 0;
+    }
+
+    // A slower paddle than the game's skips frames, so it averages maxSpeed
+    private boolean spendSpeed() {
+        if (maxSpeed >= PADDLE_SPEED)
+            return true;
+        speedCredit += maxSpeed;
+        if (speedCredit < PADDLE_SPEED)
+            return false;
+        speedCredit -= PADDLE_SPEED;
+        return true;
+    }
+
+    // "classic" plays the medium preset; Easy and Hard register the others
+    public static class Provider implements PaddleStrategy.Provider {
+        private final String level;
+
+        public Provider() {
+            this(AIDifficulty.DEFAULT_LEVEL);
+        }
+
+        protected Provider(String level) {
+            this.level = level;
+        }
+
+        @Override
+        public String getId() {
+            return level.equals(AIDifficulty.DEFAULT_LEVEL) ? "classic" : "classic-" + level;
+        }
+
+        @Override
+        public String getName() {
+            return "Classic (" + level + ")";
+        }
+
+        @Override
+        public PaddleStrategy create(int pos, long seed) {
+            return new AIController(pos, seed, AIDifficulty.get(level), 30, 770);
+        }
+    }
+
+    public static final class Easy extends Provider {
+        public Easy() {
+            super("easy");
+        }
+    }
+
+    public static final class Hard extends Provider {
+        public Hard() {
+            super("hard");
+        }
+    }
+}
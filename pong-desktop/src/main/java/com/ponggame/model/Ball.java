@@ -7,10 +7,11 @@ public class Ball {
     private Circle view;
     private double velocityX;
     private double velocityY;
-    private double speedMultiplier = 1.5;
+    private double speedMultiplier = SERVE_SPEED_MULTIPLIER;
     private int lastTouchedPlayerId = -1; // -1 = none, 1-4 = player ID
 
     // Constants
+    public static final double SERVE_SPEED_MULTIPLIER = 1.5;
     private static final double BASE_SPEED = 4.0;
     private static final double MAX_SPEED_MULTIPLIER = 2.5;
 
@@ -24,7 +25,7 @@ public class Ball {
     public void reset(double width, double height) {
         view.setCenterX(width / 2);
         view.setCenterY(height / 2);
-        speedMultiplier = 1.5;
+        speedMultiplier = SERVE_SPEED_MULTIPLIER;
         lastTouchedPlayerId = -1;
 
         // Random direction
@@ -89,6 +90,10 @@ public class Ball {
         return velocityY;
     }
 
+    public double getSpeedMultiplier() {
+        return speedMultiplier;
+    }
+
     public int getLastTouchedPlayerId() {
         return lastTouchedPlayerId;
     }
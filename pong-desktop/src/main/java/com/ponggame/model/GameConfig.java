@@ -1,8 +1,12 @@
 package com.ponggame.model;
 
+import com.ponggame.sim.StrategyRunner;
 import javafx.scene.input.KeyCode;
+import java.nio.file.Path;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 public class GameConfig {
 
@@ -22,6 +26,15 @@ public class GameConfig {
     // Position -> isHuman (true = human, false = AI)
     private Map<Position, Boolean> positionAssignments = new HashMap<>();
 
+    // AI positions played by another process through com.ponggame.sim.AgentBridge
+    private Set<Position> externalAgents = EnumSet.noneOf(Position.class);
+    private Path agentBridgeFile = Path.of(System.getProperty("java.io.tmpdir"), "pong-agents.bridge");
+
+    // Position -> id of the com.ponggame.sim.PaddleStrategy playing it when it is AI
+    public static final String DEFAULT_STRATEGY = "classic";
+    private Map<Position, String> strategies = new HashMap<>();
+    private long strategyBudgetNanos = StrategyRunner.DEFAULT_BUDGET_NANOS;
+
     // Position -> control keys (up/left key, down/right key)
     private Map<Position, KeyCode[]> keyBindings = new HashMap<>();
 
@@ -90,4 +103,40 @@ public class GameConfig {
     public boolean isHuman(Position pos) {
         return positionAssignments.getOrDefault(pos, false);
     }
+
+    public void setExternalAgent(Position pos, boolean external) {
+        if (external)
+            externalAgents.add(pos);
+        else
+            externalAgents.remove(pos);
+    }
+
+    public boolean isExternalAgent(Position pos) {
+        return !isHuman(pos) && externalAgents.contains(pos);
+    }
+
+    public Path getAgentBridgeFile() {
+        return agentBridgeFile;
+    }
+
+    public void setAgentBridgeFile(Path file) {
+        this.agentBridgeFile = file;
+    }
+
+    public String getStrategy(Position pos) {
+        return strategies.getOrDefault(pos, DEFAULT_STRATEGY);
+    }
+
+    public void setStrategy(Position pos, String id) {
+        strategies.put(pos, id);
+    }
+
+    // Longest a strategy may think per frame before its paddle repeats its last move
+    public long getStrategyBudgetNanos() {
+        return strategyBudgetNanos;
+    }
+
+    public void setStrategyBudgetNanos(long nanos) {
+        this.strategyBudgetNanos = nanos;
+    }
 }
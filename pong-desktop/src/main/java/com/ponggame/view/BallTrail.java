@@ -0,0 +1,66 @@
+package com.ponggame.view;
+
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+
+/**
+ * The ball's recent positions in a ring buffer, drawn as a tapering streak
+ * of fading dots behind it. Recording a frame overwrites the oldest entry;
+ * how many of the stored points are drawn can be lowered at any time without
+ * losing the history.
+ */
+public final class BallTrail {
+
+    private static final int FADE_LEVELS = 4;
+
+    private final double[] x, y;
+    private final Color[] fades;
+    private int head; // next slot to write
+    private int size;
+    private int length;
+
+    public BallTrail(int capacity, Color colour) {
+        x = new double[capacity];
+        y = new double[capacity];
+        length = capacity;
+        fades = new Color[FADE_LEVELS];
+        for (int f = 0; f < FADE_LEVELS; f++) {
+            fades[f] = colour.deriveColor(0, 1, 1, 0.5 * (f + 1.0) / FADE_LEVELS);
+        }
+    }
+
+    public void record(double bx, double by) {
+        x[head] = bx;
+        y[head] = by;
+        head = (head + 1) % x.length;
+        if (size < x.length)
+            size++;
+    }
+
+    // Points drawn, newest first; 0 hides the trail
+    public void setLength(int length) {
+        this.length = Math.max(0, Math.min(length, x.length));
+    }
+
+    public void draw(GraphicsContext g, double radius) {
+        int n = Math.min(size, length);
+        if (n < 2)
+            return;
+        // Oldest to newest so the newer dots cover the older ones; one fill per fade level
+        int fade = -1;
+        for (int k = n - 1; k >= 1; k--) {
+            int i = (head - 1 - k + x.length) % x.length;
+            int f = (n - k) * FADE_LEVELS / (n + 1);
+            if (f != fade) {
+                fade = f;
+                g.setFill(fades[f]);
+            }
+            double r = radius * (n - k) / n;
+            g.fillOval(x[i] - r, y[i] - r, 2 * r, 2 * r);
+        }
+    }
+
+    public void clear() {
+        size = 0;
+    }
+}
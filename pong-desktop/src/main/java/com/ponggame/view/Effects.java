@@ -0,0 +1,168 @@
+package com.ponggame.view;
+
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+
+/**
+ * Hit sparks, score bursts and the ball's trail, drawn on one canvas under
+ * the paddles and ball. The game calls the event methods as things happen and
+ * {@link #frame} once per frame, which updates the {@link ParticlePool} in one
+ * pass and redraws the canvas in one batch.
+ *
+ * Effects are the first thing to go when frames run late. While frames keep
+ * missing {@link #FRAME_BUDGET_NANOS}, or the effects themselves cost more than
+ * {@link #WORK_BUDGET_NANOS}, each burst spawns half as many particles and the
+ * trail shortens, down to none at all; detail comes back one step at a time
+ * after {@link #RECOVERY_FRAMES} good frames, so it doesn't flap around the
+ * threshold. Nothing allocates after construction.
+ */
+public final class Effects {
+
+    // A 60 Hz frame with some slack
+    public static final long FRAME_BUDGET_NANOS = 20_000_000L;
+    public static final long WORK_BUDGET_NANOS = 2_000_000L;
+    public static final int SLOW_FRAMES = 10;
+    public static final int RECOVERY_FRAMES = 180;
+    // Detail levels: 0 everything, each level halves the particles, the last shows nothing
+    public static final int MAX_REDUCTION = 3;
+
+    private static final int CAPACITY = 1024;
+    private static final int TRAIL_LENGTH = 24;
+    private static final int HIT_SPARKS = 24;
+    private static final int WALL_SPARKS = 10;
+    private static final int SCORE_SPARKS = 96;
+    // A gap this long means the window was hidden or the loop paused, not a slow frame
+    private static final long PAUSE_NANOS = 250_000_000L;
+
+    private final Canvas canvas;
+    private final GraphicsContext g;
+    private final ParticlePool particles;
+    private final BallTrail trail;
+    private final int wallColour;
+
+    private int reduction;
+    private int slowFrames;
+    private int goodFrames;
+    private long lastFrame;
+    private boolean drawn;
+
+    // Cost accounting for summary()
+    private long frames;
+    private long workNanos;
+    private long worstWorkNanos;
+    private int peakParticles;
+    private int reductions;
+
+    // colours[c] is the colour burst and score use for c; walls spark white
+    public Effects(Canvas canvas, Color ballColour, Color... colours) {
+        this.canvas = canvas;
+        this.g = canvas.getGraphicsContext2D();
+        Color[] palette = new Color[colours.length + 1];
+        System.arraycopy(colours, 0, palette, 0, colours.length);
+        wallColour = colours.length;
+        palette[wallColour] = Color.WHITE;
+        particles = new ParticlePool(CAPACITY, palette);
+        trail = new BallTrail(TRAIL_LENGTH, ballColour);
+    }
+
+    // Sparks off a paddle, thrown out along normal (radians, pointing into the arena)
+    public void paddleHit(int colour, double x, double y, double normal) {
+        particles.burst(sparks(HIT_SPARKS), x, y, normal, 1.1, 5, 30, colour);
+    }
+
+    public void wallHit(double x, double y, double normal) {
+        particles.burst(sparks(WALL_SPARKS), x, y, normal, 1.2, 3, 20, wallColour);
+    }
+
+    // A ring of the scorer's colour where the ball left
+    public void score(int colour, double x, double y) {
+        double cx = Math.max(0, Math.min(canvas.getWidth(), x));
+        double cy = Math.max(0, Math.min(canvas.getHeight(), y));
+        particles.burst(sparks(SCORE_SPARKS), cx, cy, 0, Math.PI, 8, 60, colour);
+    }
+
+    private int sparks(int n) {
+        return reduction == MAX_REDUCTION ? 0 : n >> reduction;
+    }
+
+    /**
+     * Advances and redraws everything; now is the frame's timestamp in
+     * nanoseconds. While the ball is in play its position extends the trail.
+     */
+    public void frame(long now, boolean ballInPlay, double ballX, double ballY, double ballRadius) {
+        long start = System.nanoTime();
+        particles.update();
+        if (ballInPlay)
+            trail.record(ballX, ballY);
+
+        boolean visible = particles.getCount() > 0 || ballInPlay;
+        if (drawn || visible) {
+            g.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+            trail.draw(g, ballRadius);
+            particles.draw(g);
+            drawn = visible;
+        }
+        long work = System.nanoTime() - start;
+
+        frames++;
+        workNanos += work;
+        worstWorkNanos = Math.max(worstWorkNanos, work);
+        peakParticles = Math.max(peakParticles, particles.getCount());
+        if (lastFrame != 0 && now - lastFrame < PAUSE_NANOS)
+            adjust(now - lastFrame, work);
+        lastFrame = now;
+    }
+
+    // Sheds detail quickly while frames are late, restores it slowly once they aren't
+    private void adjust(long interval, long work) {
+        if (interval > FRAME_BUDGET_NANOS || work > WORK_BUDGET_NANOS) {
+            goodFrames = 0;
+            if (++slowFrames >= SLOW_FRAMES && reduction < MAX_REDUCTION) {
+                setReduction(reduction + 1);
+                reductions++;
+                slowFrames = 0;
+            }
+        } else {
+            slowFrames = 0;
+            if (++goodFrames >= RECOVERY_FRAMES && reduction > 0) {
+                setReduction(reduction - 1);
+                goodFrames = 0;
+            }
+        }
+    }
+
+    private void setReduction(int reduction) {
+        this.reduction = reduction;
+        trail.setLength(reduction == MAX_REDUCTION ? 0 : TRAIL_LENGTH >> reduction);
+        if (reduction == MAX_REDUCTION)
+            particles.clear();
+    }
+
+    // The ball jumped, e.g. back to the centre after a point
+    public void breakTrail() {
+        trail.clear();
+    }
+
+    public void clear() {
+        particles.clear();
+        trail.clear();
+        g.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+        drawn = false;
+    }
+
+    // Nothing left to animate, so the frame loop may stop
+    public boolean isIdle() {
+        return particles.getCount() == 0;
+    }
+
+    public int getReduction() {
+        return reduction;
+    }
+
+    public String summary() {
+        return String.format("effects: frames=%d avg %.1f us worst %.1f us, peak %d/%d particles, detail -%d (%d drops)",
+                frames, frames == 0 ? 0.0 : workNanos / 1000.0 / frames, worstWorkNanos / 1000.0,
+                peakParticles, particles.getCapacity(), reduction, reductions);
+    }
+}
@@ -0,0 +1,163 @@
+package com.ponggame.view;
+
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-capacity pool of short-lived sparks, kept in parallel primitive
+ * arrays. Live particles are packed at the front: {@link #update} moves,
+ * slows and ages them in one pass and fills a dead one's slot with the last
+ * live one. {@link #draw} buckets the live particles by colour and fade level
+ * and draws each bucket with a single fill change, so a frame costs one state
+ * change per colour in use rather than one per particle.
+ *
+ * Colours come from a palette fixed at construction, each with its fade
+ * levels made up front, and nothing allocates after that. When the pool is
+ * full new particles are dropped.
+ */
+public final class ParticlePool {
+
+    private static final int FADE_LEVELS = 4;
+    private static final double DRAG = 0.94;
+
+    private final int capacity;
+    private final double[] x, y, vx, vy, size;
+    private final int[] life, maxLife, colour;
+    private int count;
+
+    // palette[colour * FADE_LEVELS + fade], fade 0 the faintest
+    private final Color[] palette;
+    private final int buckets;
+    private final int[] bucketStart;
+    private final int[] order;
+
+    // xorshift, so spawning costs no more than a few multiplies
+    private int seed = 0x2545F491;
+
+    public ParticlePool(int capacity, Color... colours) {
+        this.capacity = capacity;
+        x = new double[capacity];
+        y = new double[capacity];
+        vx = new double[capacity];
+        vy = new double[capacity];
+        size = new double[capacity];
+        life = new int[capacity];
+        maxLife = new int[capacity];
+        colour = new int[capacity];
+        order = new int[capacity];
+
+        buckets = colours.length * FADE_LEVELS;
+        palette = new Color[buckets];
+        for (int c = 0; c < colours.length; c++) {
+            for (int f = 0; f < FADE_LEVELS; f++) {
+                palette[c * FADE_LEVELS + f] = colours[c].deriveColor(0, 1, 1, (f + 1.0) / FADE_LEVELS);
+            }
+        }
+        bucketStart = new int[buckets + 1];
+    }
+
+    /**
+     * Spawns up to n particles at (px, py) in colour c, flying out within
+     * spread radians either side of angle at up to speed pixels a frame.
+     */
+    public void burst(int n, double px, double py, double angle, double spread, double speed,
+                      int lifetime, int c) {
+        for (int k = 0; k < n && count < capacity; k++) {
+            int i = count++;
+            double a = angle + (random() * 2 - 1) * spread;
+            double s = speed * (0.3 + 0.7 * random());
+            x[i] = px;
+            y[i] = py;
+            vx[i] = Math.cos(a) * s;
+            vy[i] = Math.sin(a) * s;
+            size[i] = 2 + 2 * random();
+            maxLife[i] = lifetime / 2 + (int) (lifetime / 2 * random());
+            life[i] = maxLife[i];
+            colour[i] = c;
+        }
+    }
+
+    public void update() {
+        int i = 0;
+        while (i < count) {
+            if (--life[i] <= 0) {
+                moveLast(i);
+                continue;
+            }
+            x[i] += vx[i];
+            y[i] += vy[i];
+            vx[i] *= DRAG;
+            vy[i] *= DRAG;
+            i++;
+        }
+    }
+
+    // Dead slot i takes the last live particle, which is updated when the loop reaches i again
+    private void moveLast(int i) {
+        int last = --count;
+        x[i] = x[last];
+        y[i] = y[last];
+        vx[i] = vx[last];
+        vy[i] = vy[last];
+        size[i] = size[last];
+        life[i] = life[last];
+        maxLife[i] = maxLife[last];
+        colour[i] = colour[last];
+    }
+
+    public void draw(GraphicsContext g) {
+        if (count == 0)
+            return;
+        // Counting sort of the live particles by bucket
+        Arrays.fill(bucketStart, 0);
+        for (int i = 0; i < count; i++) {
+            bucketStart[bucket(i) + 1]++;
+        }
+        for (int b = 0; b < buckets; b++) {
+            bucketStart[b + 1] += bucketStart[b];
+        }
+        for (int i = 0; i < count; i++) {
+            order[bucketStart[bucket(i)]++] = i;
+        }
+        // bucketStart[b] is now where bucket b ends
+        int from = 0;
+        for (int b = 0; b < buckets; b++) {
+            int to = bucketStart[b];
+            if (to == from)
+                continue;
+            g.setFill(palette[b]);
+            for (int k = from; k < to; k++) {
+                int i = order[k];
+                double s = size[i];
+                g.fillRect(x[i] - s / 2, y[i] - s / 2, s, s);
+            }
+            from = to;
+        }
+    }
+
+    private int bucket(int i) {
+        int fade = life[i] * FADE_LEVELS / (maxLife[i] + 1);
+        return colour[i] * FADE_LEVELS + fade;
+    }
+
+    private double random() {
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        return (seed >>> 8) / (double) (1 << 24);
+    }
+
+    public void clear() {
+        count = 0;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+}
@@ -0,0 +1,401 @@
+package com.ponggame.loadtest;
+
+import com.ponggame.net.LatencyHistogram;
+import com.ponggame.net.Protocol;
+import com.ponggame.net.ReliableChannel;
+import com.ponggame.server.Matchmaker;
+import com.ponggame.server.ServerGameLoop;
+import com.ponggame.server.SnapshotCodec;
+import com.ponggame.sim.FixedMath;
+import com.ponggame.sim.SimAI;
+import com.ponggame.sim.SimState;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * One simulated Android client on its own thread, speaking UDP exactly like
+ * UdpTransport and InputChannel: HELLO handshake, create or join a room (or
+ * queue for matchmaking), toggle ready, then send sampled input with the same redundancy and keepalive rules
+ * while acknowledging snapshots. The paddle is steered by {@link SimAI}, the
+ * desktop AIController's policy, from the decoded snapshots.
+ *
+ * Measures input-to-state latency (from a control change until a snapshot whose
+ * header says the server applied that input) and tick lag (how late each
+ * snapshot arrives against the server's tick clock, relative to the earliest).
+ */
+public class BotClient implements Runnable {
+
+    private static final long TICK_NANOS = 1_000_000_000L / ServerGameLoop.TICK_RATE;
+    private static final long SERVER_TIMEOUT_NANOS = 10_000_000_000L;
+    private static final long ACK_INTERVAL_NANOS = 50_000_000L;
+    private static final int HELLO_ATTEMPTS = 6;
+    private static final int HELLO_TIMEOUT_MS = 250;
+    private static final int SNAPSHOT_HISTORY = 64;
+
+    // Same as the Android InputChannel
+    private static final int REDUNDANCY = 4;
+    private static final int REPEAT_INTERVAL_TICKS = 3;
+    private static final int KEEPALIVE_TICKS = 30;
+
+    private final LoadScenario scenario;
+    private final LoadStats stats;
+    private final CompletableFuture<String> roomCode;
+    private final boolean host;
+    private final long seed;
+    private final long endNanos;
+
+    private final ReliableChannel channel = new ReliableChannel();
+    private final SnapshotCodec.State[] history = new SnapshotCodec.State[SNAPSHOT_HISTORY];
+    private final SimState view = new SimState();
+    private final ByteBuffer out = ByteBuffer.allocate(Protocol.MTU);
+    private final int[] inputHistory = new int[REDUNDANCY];
+
+    private final LatencyHistogram inputLatency = new LatencyHistogram();
+    private final LatencyHistogram tickLag = new LatencyHistogram();
+
+    private DatagramSocket socket;
+    private int token;
+    private SimAI ai;
+    private int position = Protocol.NO_POSITION;
+    private boolean joinSent;
+    private boolean startSent;
+    private boolean playing;
+
+    private int latestTick = -1;
+    private int ackedTick = -1;
+    private int snapshotsReceived;
+    private long minArrivalOffset = Long.MAX_VALUE;
+    private long lastReceiveNanos;
+    private long lastSendNanos;
+
+    private int inputSeq;
+    private int lastSampled;
+    private int repeatsLeft;
+    private int ticksSinceInput;
+    private int pendingSeq = -1;
+    private long pendingSinceNanos;
+
+    public BotClient(LoadScenario scenario, LoadStats stats, CompletableFuture<String> roomCode,
+            boolean host, long seed, long endNanos) {
+        this.scenario = scenario;
+        this.stats = stats;
+        this.roomCode = roomCode;
+        this.host = host;
+        this.seed = seed;
+        this.endNanos = endNanos;
+        for (int i = 0; i < history.length; i++) {
+            history[i] = new SnapshotCodec.State();
+            history[i].tick = -1;
+        }
+    }
+
+    @Override
+    public void run() {
+        try (DatagramSocket s = new DatagramSocket()) {
+            socket = s;
+            s.connect(new InetSocketAddress(scenario.host, scenario.port));
+            long start = System.nanoTime();
+            if (!handshake()) {
+                stats.failed.incrementAndGet();
+                roomCode.completeExceptionally(new IOException("no WELCOME"));
+                return;
+            }
+            stats.onConnected(System.nanoTime() - start);
+
+            if (scenario.matchmaking)
+                queueForMatch();
+            else if (host)
+                channel.send(Protocol.EV_CREATE_ROOM, new byte[] {
+                        (byte) Protocol.modeCode(scenario.getMode()), (byte) scenario.playersPerRoom });
+            play();
+            sendDisconnect();
+        } catch (IOException e) {
+            stats.failed.incrementAndGet();
+        } finally {
+            if (position != Protocol.NO_POSITION)
+                stats.inRoom.decrementAndGet();
+            if (playing)
+                stats.playing.decrementAndGet();
+        }
+    }
+
+    private boolean handshake() throws IOException {
+        int nonce = (int) (seed ^ (seed >>> 32));
+        byte[] in = new byte[Protocol.MTU];
+        socket.setSoTimeout(HELLO_TIMEOUT_MS);
+        for (int attempt = 0; attempt < HELLO_ATTEMPTS; attempt++) {
+            out.clear();
+            Protocol.writeHeader(out, Protocol.HELLO, 0);
+            out.putInt(nonce);
+            // The same seed is the same player, so repeated runs build up a leaderboard
+            out.putLong(seed | 1);
+            socket.send(new DatagramPacket(out.array(), out.position()));
+            try {
+                DatagramPacket packet = new DatagramPacket(in, in.length);
+                socket.receive(packet);
+                ByteBuffer reply = ByteBuffer.wrap(in, 0, packet.getLength());
+                if (Protocol.readHeader(reply) == Protocol.WELCOME) {
+                    int assigned = reply.getInt();
+                    if (reply.getInt() == nonce) {
+                        token = assigned;
+                        return true;
+                    }
+                }
+            } catch (SocketTimeoutException e) {
+                // resend HELLO
+            }
+        }
+        return false;
+    }
+
+    private void play() throws IOException {
+        byte[] in = new byte[Protocol.MTU * 2];
+        DatagramPacket packet = new DatagramPacket(in, in.length);
+        long now = System.nanoTime();
+        long nextTick = now;
+        lastReceiveNanos = now;
+
+        while (now < endNanos) {
+            socket.setSoTimeout((int) Math.max(1, (nextTick - now) / 1_000_000));
+            try {
+                socket.receive(packet);
+                handlePacket(ByteBuffer.wrap(in, 0, packet.getLength()), System.nanoTime());
+            } catch (SocketTimeoutException e) {
+                // time to sample input
+            }
+
+            now = System.nanoTime();
+            // The server only talks to a client with nothing to send it once it is in a game
+            if (playing && now - lastReceiveNanos > SERVER_TIMEOUT_NANOS) {
+                stats.timedOut.incrementAndGet();
+                return;
+            }
+            if (now >= nextTick) {
+                tick(now);
+                nextTick += TICK_NANOS;
+                if (now - nextTick > 10 * TICK_NANOS)
+                    nextTick = now; // fell far behind, e.g. a stalled host; don't burst
+            }
+        }
+    }
+
+    private void tick(long now) throws IOException {
+        if (!joinSent && !host && !scenario.matchmaking && roomCode.isDone()) {
+            joinSent = true;
+            // If the host never got a room this bot just idles, counted as connected but not in a room
+            if (!roomCode.isCompletedExceptionally()) {
+                ByteBuffer payload = ByteBuffer.allocate(64);
+                Protocol.putString(payload, roomCode.join());
+                channel.send(Protocol.EV_JOIN_ROOM, toArray(payload));
+            }
+        }
+
+        boolean sendInput = sampleInput(now);
+        boolean ackDue = latestTick != ackedTick && now - lastSendNanos >= ACK_INTERVAL_NANOS;
+        if (sendInput || ackDue || channel.isAckPending() || channel.hasDue(now))
+            send(now, sendInput);
+    }
+
+    // InputChannel.sample(): returns true when a packet should go out this tick
+    private boolean sampleInput(long now) {
+        int bits = playing && ai != null && latestTick >= 0 ? ai.update(view) : 0;
+        inputSeq = (inputSeq + 1) & 0xFFFF;
+        System.arraycopy(inputHistory, 0, inputHistory, 1, REDUNDANCY - 1);
+        inputHistory[0] = bits;
+        ticksSinceInput++;
+
+        boolean changed = bits != lastSampled;
+        lastSampled = bits;
+        if (changed) {
+            repeatsLeft = REDUNDANCY - 1;
+            if (pendingSeq < 0) {
+                pendingSeq = inputSeq;
+                pendingSinceNanos = now;
+            }
+        } else if (repeatsLeft > 0 && ticksSinceInput >= REPEAT_INTERVAL_TICKS) {
+            repeatsLeft--;
+        } else if (ticksSinceInput < KEEPALIVE_TICKS) {
+            return false;
+        }
+        ticksSinceInput = 0;
+        return true;
+    }
+
+    private void send(long now, boolean withInput) throws IOException {
+        out.clear();
+        Protocol.writeHeader(out, Protocol.DATA, token);
+        out.putShort((short) channel.getAck());
+        out.putInt(channel.getAckBits());
+        out.putInt(Math.max(latestTick, 0));
+        out.putShort((short) snapshotsReceived);
+        int flagsPos = out.position();
+        out.put((byte) 0);
+
+        int flags = 0;
+        if (channel.writeDue(out, now) > 0)
+            flags |= Protocol.FLAG_RELIABLE;
+        if (withInput) {
+            out.putShort((short) inputSeq);
+            out.put((byte) REDUNDANCY);
+            for (int bits : inputHistory) {
+                out.put((byte) bits);
+            }
+            flags |= Protocol.FLAG_INPUT;
+            stats.inputPackets.incrementAndGet();
+        }
+        out.put(flagsPos, (byte) flags);
+        channel.clearAckPending();
+        ackedTick = latestTick;
+        lastSendNanos = now;
+        socket.send(new DatagramPacket(out.array(), out.position()));
+    }
+
+    private void sendDisconnect() throws IOException {
+        out.clear();
+        Protocol.writeHeader(out, Protocol.DISCONNECT, token);
+        socket.send(new DatagramPacket(out.array(), out.position()));
+    }
+
+    private void handlePacket(ByteBuffer buf, long now) {
+        if (Protocol.readHeader(buf) != Protocol.DATA || buf.getInt() != token)
+            return;
+        if (buf.remaining() < Protocol.DATA_HEADER_SIZE - Protocol.HEADER_SIZE)
+            return;
+        lastReceiveNanos = now;
+
+        int ack = buf.getShort() & 0xFFFF;
+        int ackBits = buf.getInt();
+        int appliedInput = buf.getInt() & 0xFFFF;
+        buf.getShort(); // input packets received by the server
+        int flags = buf.get() & 0xFF;
+
+        channel.onAck(ack, ackBits, now);
+        if ((flags & Protocol.FLAG_RELIABLE) != 0)
+            channel.readMessages(buf, this::handleEvent);
+        if ((flags & Protocol.FLAG_SNAPSHOT) != 0) {
+            snapshotsReceived = (snapshotsReceived + 1) & 0xFFFF;
+            stats.snapshots.incrementAndGet();
+            int tick = buf.getInt(buf.position());
+            if (tick > latestTick) {
+                SnapshotCodec.State s = SnapshotCodec.decode(buf, history);
+                if (s != null) {
+                    latestTick = tick;
+                    updateView(s);
+                    recordTiming(tick, appliedInput, now);
+                }
+            }
+        }
+    }
+
+    private synchronized void recordTiming(int tick, int appliedInput, long now) {
+        long offset = now - tick * TICK_NANOS;
+        if (offset < minArrivalOffset)
+            minArrivalOffset = offset;
+        tickLag.recordNanos(offset - minArrivalOffset);
+
+        if (pendingSeq >= 0 && (appliedInput == pendingSeq || Protocol.seqGreater(appliedInput, pendingSeq))) {
+            inputLatency.recordNanos(now - pendingSinceNanos);
+            pendingSeq = -1;
+        }
+    }
+
+    // Snapshot (1/32 px, 64 px offset) to the fixed-point state SimAI reads
+    private void updateView(SnapshotCodec.State s) {
+        view.activeMask = s.activeMask;
+        view.ballX = toFixed(s.ballX);
+        view.ballY = toFixed(s.ballY);
+        for (int pos = 0; pos < 4; pos++) {
+            view.paddleX[pos] = toFixed(s.paddleX[pos]);
+            view.paddleY[pos] = toFixed(s.paddleY[pos]);
+        }
+    }
+
+    private static int toFixed(int quantized) {
+        return (quantized << (FixedMath.SHIFT - 5)) - FixedMath.fromInt(64);
+    }
+
+    private void handleEvent(int event, ByteBuffer payload) {
+        switch (event) {
+            case Protocol.EV_ROOM_JOINED -> {
+                String roomId = Protocol.getString(payload);
+                Protocol.getString(payload); // player id
+                position = payload.get() & 0xFF;
+                if (position == Protocol.NO_POSITION) {
+                    stats.errors.incrementAndGet(); // room was already full
+                    return;
+                }
+                stats.inRoom.incrementAndGet();
+                ai = new SimAI(position, seed);
+                if (host)
+                    roomCode.complete(roomId);
+                // Matched rooms start on their own
+                if (!scenario.matchmaking)
+                    channel.send(Protocol.EV_TOGGLE_READY, new byte[0]);
+            }
+            case Protocol.EV_ROOM_UPDATE -> {
+                boolean allReady = payload.get() != 0;
+                int count = payload.get() & 0xFF;
+                int humans = 0;
+                for (int i = 0; i < count; i++) {
+                    Protocol.getString(payload);
+                    payload.get();
+                    if ((payload.get() & 1) == 0)
+                        humans++;
+                }
+                if (host && !startSent && allReady && humans >= scenario.botsPerRoom) {
+                    channel.send(Protocol.EV_START_GAME, new byte[0]);
+                    startSent = true;
+                }
+            }
+            case Protocol.EV_GAME_STARTED -> {
+                if (!playing)
+                    stats.playing.incrementAndGet();
+                playing = true;
+                stats.gamesStarted.incrementAndGet();
+            }
+            case Protocol.EV_GAME_ENDED -> {
+                if (playing)
+                    stats.playing.decrementAndGet();
+                playing = false;
+                // Keep the room busy for the whole run: the host starts a rematch,
+                // or every bot goes back into the matchmaking queue
+                if (scenario.matchmaking)
+                    queueForMatch();
+                else if (host)
+                    channel.send(Protocol.EV_START_GAME, new byte[0]);
+            }
+            case Protocol.EV_ERROR -> stats.errors.incrementAndGet();
+            default -> {
+                // not needed by the bot
+            }
+        }
+    }
+
+    // Ratings spread around the default so the matchmaker has bands to widen across
+    private void queueForMatch() {
+        int rating = Matchmaker.DEFAULT_RATING + (int) (new Random(seed).nextGaussian() * 200);
+        channel.send(Protocol.EV_MATCHMAKE, new byte[] {
+                (byte) scenario.playersPerRoom, (byte) (rating >> 8), (byte) rating });
+    }
+
+    public synchronized void drainInto(LatencyHistogram latency, LatencyHistogram lag) {
+        latency.add(inputLatency);
+        inputLatency.reset();
+        lag.add(tickLag);
+        tickLag.reset();
+    }
+
+    private static byte[] toArray(ByteBuffer buf) {
+        byte[] out = new byte[buf.position()];
+        buf.flip();
+        buf.get(out);
+        return out;
+    }
+}
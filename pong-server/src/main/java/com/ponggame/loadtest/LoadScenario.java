@@ -0,0 +1,87 @@
+package com.ponggame.loadtest;
+
+import com.ponggame.net.Protocol;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+/**
+ * One load test run, read from a properties file so the same run can be repeated
+ * and compared. Any key can be overridden on the command line as --key value.
+ *
+ * <pre>
+ *   host=127.0.0.1            port=3001
+ *   clients=1000              rampPerSecond=200      durationSeconds=60
+ *   playersPerRoom=2          botsPerRoom=2          seed=1
+ *   reportSeconds=5           matchmaking=false
+ *   maxInputLatencyP99Ms=0    maxTickLagP99Ms=0      (0 = no limit)
+ * </pre>
+ *
+ * Rooms with fewer bots than players are created as human_vs_ai and the server
+ * fills the rest with its AI. With matchmaking=true every bot queues on its own
+ * and the server groups them into playersPerRoom rooms, ignoring botsPerRoom.
+ */
+public class LoadScenario {
+
+    public final String host;
+    public final int port;
+    public final int clients;
+    public final int rampPerSecond;
+    public final int durationSeconds;
+    public final int playersPerRoom;
+    public final int botsPerRoom;
+    public final long seed;
+    public final int reportSeconds;
+    public final boolean matchmaking;
+    public final double maxInputLatencyP99Ms;
+    public final double maxTickLagP99Ms;
+
+    private LoadScenario(Properties p) {
+        host = p.getProperty("host", "127.0.0.1");
+        port = intValue(p, "port", Protocol.DEFAULT_PORT);
+        clients = intValue(p, "clients", 100);
+        rampPerSecond = Math.max(1, intValue(p, "rampPerSecond", 100));
+        durationSeconds = intValue(p, "durationSeconds", 30);
+        playersPerRoom = Math.max(2, Math.min(4, intValue(p, "playersPerRoom", 2)));
+        botsPerRoom = Math.max(1, Math.min(playersPerRoom, intValue(p, "botsPerRoom", playersPerRoom)));
+        seed = Long.parseLong(p.getProperty("seed", "1").trim());
+        reportSeconds = Math.max(1, intValue(p, "reportSeconds", 5));
+        matchmaking = Boolean.parseBoolean(p.getProperty("matchmaking", "false").trim());
+        maxInputLatencyP99Ms = Double.parseDouble(p.getProperty("maxInputLatencyP99Ms", "0").trim());
+        maxTickLagP99Ms = Double.parseDouble(p.getProperty("maxTickLagP99Ms", "0").trim());
+    }
+
+    public static LoadScenario load(Path file, String[] overrides) throws IOException {
+        Properties p = new Properties();
+        if (file != null) {
+            try (Reader in = Files.newBufferedReader(file)) {
+                p.load(in);
+            }
+        }
+        for (int i = 0; i + 1 < overrides.length; i += 2) {
+            if (overrides[i].startsWith("--"))
+                p.setProperty(overrides[i].substring(2), overrides[i + 1]);
+        }
+        return new LoadScenario(p);
+    }
+
+    public String getMode() {
+        return botsPerRoom < playersPerRoom ? "human_vs_ai" : "human_vs_human";
+    }
+
+    private static int intValue(Properties p, String key, int fallback) {
+        String v = p.getProperty(key);
+        return v == null ? fallback : Integer.parseInt(v.trim());
+    }
+
+    @Override
+    public String toString() {
+        return clients + " clients to " + host + ":" + port + " at " + rampPerSecond + "/s, "
+                + (matchmaking ? "matchmaking into " + playersPerRoom + " player rooms, "
+                        : botsPerRoom + " bots in " + playersPerRoom + " player rooms (" + getMode() + "), ")
+                + durationSeconds + "s, seed " + seed;
+    }
+}
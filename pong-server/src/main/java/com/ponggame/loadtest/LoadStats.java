@@ -0,0 +1,47 @@
+package com.ponggame.loadtest;
+
+import com.ponggame.net.LatencyHistogram;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters shared by every bot. Latency histograms are per bot (they are not
+ * thread-safe) and merged here when a report is printed.
+ */
+public class LoadStats {
+
+    public final AtomicInteger connected = new AtomicInteger();
+    public final AtomicInteger failed = new AtomicInteger();
+    public final AtomicInteger timedOut = new AtomicInteger();
+    public final AtomicInteger inRoom = new AtomicInteger();
+    public final AtomicInteger playing = new AtomicInteger();
+    public final AtomicInteger gamesStarted = new AtomicInteger();
+    public final AtomicInteger errors = new AtomicInteger();
+    public final AtomicLong snapshots = new AtomicLong();
+    public final AtomicLong inputPackets = new AtomicLong();
+
+    private final LatencyHistogram connectTime = new LatencyHistogram();
+    private long firstConnectNanos;
+    private long lastConnectNanos;
+
+    public synchronized void onConnected(long handshakeNanos) {
+        long now = System.nanoTime();
+        if (connected.incrementAndGet() == 1)
+            firstConnectNanos = now;
+        lastConnectNanos = now;
+        connectTime.recordNanos(handshakeNanos);
+    }
+
+    // Handshakes completed per second between the first and the last one
+    public synchronized double getConnectRate() {
+        int n = connected.get();
+        long span = lastConnectNanos - firstConnectNanos;
+        return n < 2 || span <= 0 ? n : (n - 1) * 1e9 / span;
+    }
+
+    public synchronized void drainConnectTime(LatencyHistogram into) {
+        into.add(connectTime);
+        connectTime.reset();
+    }
+}
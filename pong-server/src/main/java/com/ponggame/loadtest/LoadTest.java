@@ -0,0 +1,171 @@
+package com.ponggame.loadtest;
+
+import com.ponggame.net.LatencyHistogram;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Swarm of {@link BotClient}s against a running PongServer, for capacity
+ * planning and catching regressions. Bots are started at the scenario's ramp
+ * rate and grouped into rooms; every report prints connections per second,
+ * input-to-state latency and tick lag percentiles. Exits with status 1 when a
+ * p99 limit from the scenario is exceeded.
+ *
+ * Bots run on virtual threads when the JVM has them (21+), otherwise on
+ * platform threads with small stacks, which limits a run to a few thousand.
+ *
+ * Usage: java -cp pong-server-1.0.jar com.ponggame.loadtest.LoadTest
+ *            [scenario.properties] [--clients 2000] [--durationSeconds 60] ...
+ */
+public class LoadTest {
+
+    private static final long PLATFORM_STACK_BYTES = 256 * 1024;
+
+    private final LoadScenario scenario;
+    private final LoadStats stats = new LoadStats();
+    private final List<BotClient> bots = new ArrayList<>();
+    private final List<Thread> threads = new ArrayList<>();
+
+    private final LatencyHistogram totalLatency = new LatencyHistogram();
+    private final LatencyHistogram totalLag = new LatencyHistogram();
+    private final LatencyHistogram totalConnect = new LatencyHistogram();
+    private int lastConnected;
+    private double peakConnectRate;
+
+    public LoadTest(LoadScenario scenario) {
+        this.scenario = scenario;
+    }
+
+    public boolean run() throws InterruptedException {
+        ThreadFactory factory = botThreadFactory();
+        long start = System.nanoTime();
+        long rampNanos = scenario.clients * 1_000_000_000L / scenario.rampPerSecond;
+        long endNanos = start + rampNanos + scenario.durationSeconds * 1_000_000_000L;
+        long reportNanos = scenario.reportSeconds * 1_000_000_000L;
+        long nextReport = start + reportNanos;
+
+        CompletableFuture<String> roomCode = null;
+        for (int i = 0; i < scenario.clients; i++) {
+            long due = start + i * 1_000_000_000L / scenario.rampPerSecond;
+            while (System.nanoTime() < due) {
+                sleepUntil(Math.min(due, nextReport));
+                if (System.nanoTime() >= nextReport) {
+                    report(nextReport - start);
+                    nextReport += reportNanos;
+                }
+            }
+            boolean host = i % scenario.botsPerRoom == 0;
+            if (host)
+                roomCode = new CompletableFuture<>();
+            BotClient bot = new BotClient(scenario, stats, roomCode, host, scenario.seed * 1_000_003L + i, endNanos);
+            Thread t = factory.newThread(bot);
+            bots.add(bot);
+            threads.add(t);
+            t.start();
+        }
+
+        while (System.nanoTime() < endNanos) {
+            sleepUntil(Math.min(endNanos, nextReport));
+            if (System.nanoTime() >= nextReport) {
+                report(nextReport - start);
+                nextReport += reportNanos;
+            }
+        }
+        for (Thread t : threads) {
+            t.join(2000);
+        }
+        report(System.nanoTime() - start);
+        return summary();
+    }
+
+    private void report(long elapsedNanos) {
+        LatencyHistogram latency = new LatencyHistogram();
+        LatencyHistogram lag = new LatencyHistogram();
+        for (BotClient bot : bots) {
+            bot.drainInto(latency, lag);
+        }
+        stats.drainConnectTime(totalConnect);
+        totalLatency.add(latency);
+        totalLag.add(lag);
+
+        int connected = stats.connected.get();
+        double connectRate = (connected - lastConnected) / (double) scenario.reportSeconds;
+        lastConnected = connected;
+        peakConnectRate = Math.max(peakConnectRate, connectRate);
+
+        System.out.printf("t=%ds connected=%d (%.0f/s) failed=%d timedOut=%d inRoom=%d playing=%d errors=%d%n",
+                TimeUnit.NANOSECONDS.toSeconds(elapsedNanos), connected, connectRate, stats.failed.get(),
+                stats.timedOut.get(), stats.inRoom.get(), stats.playing.get(), stats.errors.get());
+        System.out.println("  input->state " + latency.summary());
+        System.out.println("  tick lag     " + lag.summary());
+    }
+
+    private boolean summary() {
+        System.out.println("== " + scenario);
+        System.out.printf("connections=%d failed=%d timedOut=%d rate=%.0f/s peakInterval=%.0f/s games=%d%n",
+                stats.connected.get(), stats.failed.get(), stats.timedOut.get(), stats.getConnectRate(),
+                peakConnectRate, stats.gamesStarted.get());
+        System.out.printf("snapshots=%d inputPackets=%d%n", stats.snapshots.get(), stats.inputPackets.get());
+        System.out.println("handshake    " + totalConnect.summary());
+        System.out.println("input->state " + totalLatency.summary());
+        System.out.println("tick lag     " + totalLag.summary());
+
+        boolean ok = true;
+        if (scenario.maxInputLatencyP99Ms > 0 && totalLatency.percentileMillis(99) > scenario.maxInputLatencyP99Ms) {
+            System.out.println("FAIL input->state p99 above " + scenario.maxInputLatencyP99Ms + "ms");
+            ok = false;
+        }
+        if (scenario.maxTickLagP99Ms > 0 && totalLag.percentileMillis(99) > scenario.maxTickLagP99Ms) {
+            System.out.println("FAIL tick lag p99 above " + scenario.maxTickLagP99Ms + "ms");
+            ok = false;
+        }
+        return ok;
+    }
+
+    private static void sleepUntil(long deadline) throws InterruptedException {
+        long nanos = deadline - System.nanoTime();
+        if (nanos > 0)
+            TimeUnit.NANOSECONDS.sleep(nanos);
+    }
+
+    // Thread.ofVirtual() is looked up reflectively so the project still builds for Java 17
+    private static ThreadFactory botThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, "bot-", 0L);
+            Method factory = builderType.getMethod("factory");
+            System.out.println("Bots on virtual threads");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            System.out.println("Bots on platform threads (run on Java 21+ for virtual threads)");
+            int[] next = { 0 };
+            return r -> {
+                Thread t = new Thread(null, r, "bot-" + next[0]++, PLATFORM_STACK_BYTES);
+                t.setDaemon(true);
+                return t;
+            };
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path file = null;
+        String[] overrides = args;
+        if (args.length > 0 && !args[0].startsWith("--")) {
+            file = Path.of(args[0]);
+            overrides = Arrays.copyOfRange(args, 1, args.length);
+        }
+        LoadScenario scenario = LoadScenario.load(file, overrides);
+        System.out.println("Load test: " + scenario);
+        boolean ok = new LoadTest(scenario).run();
+        System.exit(ok ? 0 : 1);
+    }
+}
@@ -0,0 +1,262 @@
+package com.ponggame.server;
+
+import com.ponggame.net.LatencyHistogram;
+import com.ponggame.net.Protocol;
+import com.ponggame.net.ReliableChannel;
+
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+// Per-client UDP session state, owned by the server thread
+public class ClientConnection {
+
+    private static final int SNAPSHOT_HISTORY = 64;
+    // Paddles further than this from the ball (1/32 px units) can be trimmed
+    private static final int NEAR_DISTANCE = 300 * 32;
+
+    private final int token;
+    private final long playerKey;
+    private final int helloNonce;
+    private SocketAddress address;
+    private final ReliableChannel channel = new ReliableChannel();
+    private final ArrayDeque<Pending> overflow = new ArrayDeque<>();
+    private long lastReceiveNanos;
+    private int inputPacketsReceived = 0;
+
+    private ServerRoom room;
+    private String playerId;
+    private int position = Protocol.NO_POSITION;
+    private int lastInputSeq = -1;
+    private Matchmaker.Ticket ticket;
+
+    // What this client was sent at each recent tick, used as delta baselines
+    private final SnapshotCodec.State[] sentStates = new SnapshotCodec.State[SNAPSHOT_HISTORY];
+    private final long[] sentNanos = new long[SNAPSHOT_HISTORY];
+    private int lastAckedTick = -1;
+    private int snapshotsSinceKeyframe = 0;
+
+    private final LinkEstimator link;
+    private final SnapshotRateController rate;
+
+    private record Pending(int event, byte[] payload) {
+    }
+
+    public ClientConnection(int token, int helloNonce, long playerKey, SocketAddress address, long now,
+            int budgetBytesPerSecond) {
+        this.token = token;
+        // Clients without a stored key are known to match history for one session
+        this.playerKey = playerKey != 0 ? playerKey : Integer.toUnsignedLong(token);
+        this.helloNonce = helloNonce;
+        this.address = address;
+        this.lastReceiveNanos = now;
+        this.link = new LinkEstimator(now);
+        this.rate = new SnapshotRateController(budgetBytesPerSecond);
+        for (int i = 0; i < SNAPSHOT_HISTORY; i++) {
+            sentStates[i] = new SnapshotCodec.State();
+            sentStates[i].tick = -1;
+        }
+    }
+
+    public void sendReliable(int event, byte[] payload) {
+        if (!overflow.isEmpty() || !channel.send(event, payload)) {
+            overflow.add(new Pending(event, payload));
+        }
+    }
+
+    // Moves queued messages into the reliable window as acks free up room
+    public void drainOverflow() {
+        while (!overflow.isEmpty()) {
+            Pending next = overflow.peek();
+            if (!channel.send(next.event(), next.payload()))
+                return;
+            overflow.poll();
+        }
+    }
+
+    public boolean isSnapshotDue(SnapshotCodec.State current) {
+        return rate.isDue(current.tick);
+    }
+
+    /**
+     * Writes a keyframe or a delta against the newest snapshot the client has
+     * acknowledged. Returns false if it does not fit in the remaining space.
+     */
+    public boolean writeSnapshot(ByteBuffer buf, SnapshotCodec.State current, long now) {
+        SnapshotCodec.State base = baseline(current.tick);
+        boolean keyframe = base == null || snapshotsSinceKeyframe >= rate.getKeyframeInterval();
+
+        int slot = current.tick & (SNAPSHOT_HISTORY - 1);
+        SnapshotCodec.State sent = sentStates[slot];
+        int start = buf.position();
+
+        if (keyframe) {
+            if (buf.remaining() < SnapshotCodec.keyframeSize(current))
+                return false;
+            SnapshotCodec.encodeKeyframe(buf, current);
+            sent.copyFrom(current);
+            snapshotsSinceKeyframe = 0;
+        } else {
+            int filter = rate.isTrimmingDistantPaddles() ? nearPaddles(current) : 0xF;
+            int fields = SnapshotCodec.changedFields(current, base, filter);
+            if (buf.remaining() < SnapshotCodec.deltaSize(fields))
+                return false;
+            SnapshotCodec.encodeDelta(buf, current, base, fields);
+            // Record what the client will reconstruct, including trimmed paddles
+            sent.copyFrom(current);
+            for (int pos = 0; pos < 4; pos++) {
+                if ((filter & (1 << pos)) == 0) {
+                    sent.paddleX[pos] = base.paddleX[pos];
+                    sent.paddleY[pos] = base.paddleY[pos];
+                }
+            }
+            snapshotsSinceKeyframe++;
+        }
+
+        sentNanos[slot] = now;
+        rate.onSnapshotSent(current.tick, buf.position() - start + Protocol.DATA_HEADER_SIZE);
+        return true;
+    }
+
+    private SnapshotCodec.State baseline(int tick) {
+        if (lastAckedTick < 0 || tick - lastAckedTick >= SNAPSHOT_HISTORY)
+            return null;
+        SnapshotCodec.State base = sentStates[lastAckedTick & (SNAPSHOT_HISTORY - 1)];
+        return base.tick == lastAckedTick ? base : null;
+    }
+
+    // Own paddle plus any paddle the ball is close to
+    private int nearPaddles(SnapshotCodec.State s) {
+        int mask = position < 4 ? 1 << position : 0;
+        for (int pos = 0; pos < 4; pos++) {
+            int distance = (pos == 0 || pos == 1)
+                    ? Math.abs(s.ballX - s.paddleX[pos])
+                    : Math.abs(s.ballY - s.paddleY[pos]);
+            if (distance < NEAR_DISTANCE)
+                mask |= 1 << pos;
+        }
+        return mask;
+    }
+
+    public void onPacketSent(int bytes, boolean hasSnapshot) {
+        link.onPacketSent(bytes, hasSnapshot);
+    }
+
+    /**
+     * Header fields from the client: newest snapshot tick it holds and its
+     * cumulative snapshot counter.
+     */
+    public void onClientReport(int tick, int receivedCount, long now, LatencyHistogram latency) {
+        link.onReceivedCount(receivedCount);
+        if (tick <= lastAckedTick)
+            return;
+        SnapshotCodec.State acked = sentStates[tick & (SNAPSHOT_HISTORY - 1)];
+        if (acked.tick != tick)
+            return;
+        lastAckedTick = tick;
+        long rtt = now - sentNanos[tick & (SNAPSHOT_HISTORY - 1)];
+        latency.recordNanos(rtt);
+        link.onRttSample(rtt);
+    }
+
+    // Re-evaluates the snapshot rate once per estimator window
+    public void updateRate(long now) {
+        if (link.update(now))
+            rate.adapt(link);
+    }
+
+    public void onInputPacket() {
+        inputPacketsReceived = (inputPacketsReceived + 1) & 0xFFFF;
+    }
+
+    // Accepts an input sample if it is newer than the last one applied
+    public boolean acceptInput(int seq) {
+        if (lastInputSeq >= 0 && !Protocol.seqGreater(seq, lastInputSeq))
+            return false;
+        lastInputSeq = seq;
+        return true;
+    }
+
+    public void joined(ServerRoom room, String playerId, int position) {
+        this.room = room;
+        this.playerId = playerId;
+        this.position = position;
+        this.lastInputSeq = -1;
+        this.lastAckedTick = -1;
+    }
+
+    public void leftRoom() {
+        room = null;
+        playerId = null;
+        position = Protocol.NO_POSITION;
+    }
+
+    // Matchmaking ticket while queued, otherwise null
+    public Matchmaker.Ticket getTicket() {
+        return ticket;
+    }
+
+    public void setTicket(Matchmaker.Ticket ticket) {
+        this.ticket = ticket;
+    }
+
+    public int getToken() {
+        return token;
+    }
+
+    public long getPlayerKey() {
+        return playerKey;
+    }
+
+    public int getHelloNonce() {
+        return helloNonce;
+    }
+
+    public SocketAddress getAddress() {
+        return address;
+    }
+
+    public void setAddress(SocketAddress address) {
+        this.address = address;
+    }
+
+    public ReliableChannel getChannel() {
+        return channel;
+    }
+
+    public long getLastReceiveNanos() {
+        return lastReceiveNanos;
+    }
+
+    public void setLastReceiveNanos(long now) {
+        this.lastReceiveNanos = now;
+    }
+
+    public ServerRoom getRoom() {
+        return room;
+    }
+
+    public String getPlayerId() {
+        return playerId;
+    }
+
+    public int getPosition() {
+        return position;
+    }
+
+    public int getLastInputSeq() {
+        return Math.max(lastInputSeq, 0);
+    }
+
+    public int getInputPacketsReceived() {
+        return inputPacketsReceived;
+    }
+
+    public LinkEstimator getLink() {
+        return link;
+    }
+
+    public SnapshotRateController getRate() {
+        return rate;
+    }
+}
@@ -0,0 +1,87 @@
+package com.ponggame.server;
+
+/**
+ * Per-connection estimates of round-trip time, snapshot loss and send throughput.
+ * RTT comes from snapshot acks; loss compares snapshots sent with the client's
+ * cumulative received counter over one second windows.
+ */
+public class LinkEstimator {
+
+    private static final long WINDOW_NANOS = 1_000_000_000L;
+    private static final int MIN_SAMPLES = 10;
+
+    private double srttMillis = -1;
+    private double minRttMillis = Double.MAX_VALUE;
+    private double lossRate = 0;
+    private double bytesPerSecond = 0;
+
+    private long windowStart;
+    private int snapshotsSent;
+    private long bytesSent;
+    private int receivedAtWindowStart = -1;
+    private int receivedCount = -1;
+
+    public LinkEstimator(long now) {
+        this.windowStart = now;
+    }
+
+    public void onRttSample(long nanos) {
+        double ms = nanos / 1_000_000.0;
+        minRttMillis = Math.min(minRttMillis, ms);
+        srttMillis = srttMillis < 0 ? ms : 0.875 * srttMillis + 0.125 * ms;
+    }
+
+    public void onPacketSent(int bytes, boolean hasSnapshot) {
+        bytesSent += bytes;
+        if (hasSnapshot)
+            snapshotsSent++;
+    }
+
+    // Cumulative (u16) count of snapshots the client has received
+    public void onReceivedCount(int count) {
+        receivedCount = count;
+        if (receivedAtWindowStart < 0)
+            receivedAtWindowStart = count;
+    }
+
+    /**
+     * Closes the measurement window once a second. Returns true when new estimates
+     * are available.
+     */
+    public boolean update(long now) {
+        long elapsed = now - windowStart;
+        if (elapsed < WINDOW_NANOS)
+            return false;
+
+        bytesPerSecond = bytesSent * 1e9 / elapsed;
+        if (snapshotsSent >= MIN_SAMPLES && receivedAtWindowStart >= 0) {
+            int received = (receivedCount - receivedAtWindowStart) & 0xFFFF;
+            // Snapshots sent within the last RTT cannot have been counted yet
+            double inFlight = snapshotsSent * getSmoothedRttMillis() * 1e6 / elapsed;
+            double windowLoss = Math.max(0, 1.0 - (received + inFlight) / snapshotsSent);
+            lossRate = 0.7 * lossRate + 0.3 * windowLoss;
+        }
+
+        windowStart = now;
+        snapshotsSent = 0;
+        bytesSent = 0;
+        receivedAtWindowStart = receivedCount;
+        return true;
+    }
+
+    public double getSmoothedRttMillis() {
+        return Math.max(srttMillis, 0);
+    }
+
+    public double getMinRttMillis() {
+        return minRttMillis == Double.MAX_VALUE ? 0 : minRttMillis;
+    }
+
+    public double getLossRate() {
+        return lossRate;
+    }
+
+    public double getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+}
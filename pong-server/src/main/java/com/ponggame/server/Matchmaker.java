@@ -0,0 +1,280 @@
+package com.ponggame.server;
+
+import com.ponggame.net.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Skill-based matchmaking queue. Players are bucketed by the number of players
+ * they want (2, 3 or 4, the counts GameConfig.getActivePositions knows) and by a
+ * 100 point rating band. Enqueueing is a single offer onto the bucket's
+ * lock-free queue, so any thread can do it without waiting on matchmaking.
+ *
+ * {@link #tick} runs on its own thread four times a second. It moves new tickets
+ * into per-band lists sorted by rating, then walks the bands in rating order
+ * and forms every group it can in that pass. A group is accepted when its
+ * rating spread fits the window of each member; the window starts at
+ * {@link #BASE_WINDOW} and widens the longer a player waits, so nobody stays
+ * queued forever behind a thin band.
+ */
+public class Matchmaker {
+
+    public static final int MIN_PLAYERS = 2;
+    public static final int MAX_PLAYERS = 4;
+    public static final int DEFAULT_RATING = 1000;
+
+    private static final int BAND_WIDTH = 100;
+    private static final int BANDS = 40;
+    private static final int MAX_RATING = BAND_WIDTH * BANDS - 1;
+    private static final int BASE_WINDOW = 100;
+    private static final int WIDEN_PER_SECOND = 20;
+    private static final int MAX_WINDOW = 1000;
+    private static final long INTERVAL_NANOS = 250_000_000L;
+
+    // Ticket states. CLAIMED lasts only while form() takes a whole group at once.
+    private static final int WAITING = 0;
+    private static final int CLAIMED = 1;
+    private static final int MATCHED = 2;
+    private static final int CANCELLED = 3;
+
+    public interface Listener {
+        // Called on the matchmaking thread with the group in rating order; must not block
+        void onMatch(int playerCount, List<Ticket> group);
+    }
+
+    public static final class Ticket {
+        final ClientConnection connection;
+        final int playerCount;
+        final int rating;
+        final long enqueuedNanos;
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+
+        Ticket(ClientConnection connection, int playerCount, int rating, long enqueuedNanos) {
+            this.connection = connection;
+            this.playerCount = playerCount;
+            this.rating = rating;
+            this.enqueuedNanos = enqueuedNanos;
+        }
+
+        public ClientConnection getConnection() {
+            return connection;
+        }
+
+        public int getRating() {
+            return rating;
+        }
+
+        boolean isClosed() {
+            return state.get() > CLAIMED;
+        }
+    }
+
+    // Tickets for one player count, split into rating bands
+    private static final class Pool {
+        final Queue<Ticket>[] incoming;
+        final List<Ticket>[] waiting;
+        final LatencyHistogram queueTime = new LatencyHistogram();
+        final AtomicInteger size = new AtomicInteger();
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Pool() {
+            incoming = new Queue[BANDS];
+            waiting = new List[BANDS];
+            for (int i = 0; i < BANDS; i++) {
+                incoming[i] = new ConcurrentLinkedQueue<>();
+                waiting[i] = new ArrayList<>();
+            }
+        }
+    }
+
+    private final Pool[] pools = new Pool[MAX_PLAYERS + 1];
+    private final Listener listener;
+    private final List<Ticket> group = new ArrayList<>(MAX_PLAYERS);
+    private volatile long matched;
+
+    private ScheduledExecutorService thread;
+
+    public Matchmaker(Listener listener) {
+        this.listener = listener;
+        for (int n = MIN_PLAYERS; n <= MAX_PLAYERS; n++) {
+            pools[n] = new Pool();
+        }
+    }
+
+    public Ticket enqueue(ClientConnection connection, int playerCount, int rating, long now) {
+        int count = Math.max(MIN_PLAYERS, Math.min(MAX_PLAYERS, playerCount));
+        int r = Math.max(0, Math.min(MAX_RATING, rating));
+        return offer(new Ticket(connection, count, r, now));
+    }
+
+    // Queues a matched player again, keeping their place, after someone in their group left
+    public Ticket requeue(Ticket ticket) {
+        return offer(new Ticket(ticket.connection, ticket.playerCount, ticket.rating, ticket.enqueuedNanos));
+    }
+
+    private Ticket offer(Ticket ticket) {
+        Pool pool = pools[ticket.playerCount];
+        pool.size.incrementAndGet();
+        pool.incoming[ticket.rating / BAND_WIDTH].offer(ticket);
+        return ticket;
+    }
+
+    // Safe from any thread; the ticket is dropped from its band on the next tick
+    public boolean cancel(Ticket ticket) {
+        while (true) {
+            int s = ticket.state.get();
+            if (s == WAITING && ticket.state.compareAndSet(WAITING, CANCELLED)) {
+                pools[ticket.playerCount].size.decrementAndGet();
+                return true;
+            }
+            if (s != CLAIMED && s != WAITING)
+                return false;
+            // The matchmaking thread is deciding; it is done within a few instructions
+            Thread.onSpinWait();
+        }
+    }
+
+    public void start() {
+        thread = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "matchmaking");
+            t.setDaemon(true);
+            return t;
+        });
+        thread.scheduleAtFixedRate(this::safeTick, INTERVAL_NANOS, INTERVAL_NANOS, TimeUnit.NANOSECONDS);
+    }
+
+    public void stop() {
+        if (thread != null)
+            thread.shutdownNow();
+    }
+
+    private void safeTick() {
+        try {
+            tick(System.nanoTime());
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public void tick(long now) {
+        for (int n = MIN_PLAYERS; n <= MAX_PLAYERS; n++) {
+            match(pools[n], n, now);
+        }
+    }
+
+    private void match(Pool pool, int n, long now) {
+        boolean enough = pool.size.get() >= n;
+        // The bands hold disjoint, sorted rating ranges, so walking them in order
+        // visits every ticket in rating order and a group may span two bands
+        group.clear();
+        for (int b = 0; b < BANDS; b++) {
+            admit(pool, b);
+            List<Ticket> band = pool.waiting[b];
+            band.removeIf(Ticket::isClosed);
+            if (!enough)
+                continue;
+            for (int i = 0; i < band.size(); i++) {
+                Ticket t = band.get(i);
+                if (t.isClosed())
+                    continue;
+                group.add(t);
+                if (group.size() < n)
+                    continue;
+                if (fits(group, now)) {
+                    if (!form(pool, n, now))
+                        group.removeIf(Ticket::isClosed);
+                } else {
+                    // The lowest rated member can't reach the rest; try the next one up
+                    group.remove(0);
+                }
+            }
+        }
+        group.clear();
+    }
+
+    // Moves newly queued tickets into the band's sorted list
+    private static void admit(Pool pool, int b) {
+        Queue<Ticket> in = pool.incoming[b];
+        List<Ticket> band = pool.waiting[b];
+        boolean added = false;
+        Ticket t;
+        while ((t = in.poll()) != null) {
+            if (!t.isClosed()) {
+                band.add(t);
+                added = true;
+            }
+        }
+        if (added)
+            band.sort((x, y) -> Integer.compare(x.rating, y.rating));
+    }
+
+    private static boolean fits(List<Ticket> candidates, long now) {
+        int spread = candidates.get(candidates.size() - 1).rating - candidates.get(0).rating;
+        for (Ticket t : candidates) {
+            if (spread > window(t, now))
+                return false;
+        }
+        return true;
+    }
+
+    private static int window(Ticket t, long now) {
+        long waited = TimeUnit.NANOSECONDS.toSeconds(now - t.enqueuedNanos);
+        return (int) Math.min(MAX_WINDOW, BASE_WINDOW + waited * WIDEN_PER_SECOND);
+    }
+
+    // Claims the whole group or none of it, so a cancel racing the match never
+    // leaves a player both in a room and in the queue
+    private boolean form(Pool pool, int n, long now) {
+        for (int i = 0; i < group.size(); i++) {
+            if (!group.get(i).state.compareAndSet(WAITING, CLAIMED)) {
+                for (int j = 0; j < i; j++) {
+                    group.get(j).state.set(WAITING);
+                }
+                return false;
+            }
+        }
+        synchronized (pool.queueTime) {
+            for (Ticket t : group) {
+                t.state.set(MATCHED);
+                pool.queueTime.recordNanos(now - t.enqueuedNanos);
+            }
+        }
+        pool.size.addAndGet(-n);
+        matched += n;
+        listener.onMatch(n, new ArrayList<>(group));
+        group.clear();
+        return true;
+    }
+
+    public int getWaiting() {
+        int total = 0;
+        for (int n = MIN_PLAYERS; n <= MAX_PLAYERS; n++) {
+            total += pools[n].size.get();
+        }
+        return total;
+    }
+
+    public int getWaiting(int playerCount) {
+        return pools[playerCount].size.get();
+    }
+
+    public long getMatched() {
+        return matched;
+    }
+
+    // Queue time of players matched since the last drain
+    public void drainQueueTime(int playerCount, LatencyHistogram into) {
+        LatencyHistogram h = pools[playerCount].queueTime;
+        synchronized (h) {
+            into.add(h);
+            h.reset();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.ponggame.server;
+
+import com.ponggame.sim.PolicyNet;
+import com.ponggame.sim.SimState;
+import com.ponggame.sim.VectorEnv;
+
+/**
+ * The AI paddles of every room, played by one {@link PolicyNet} when the server
+ * runs with --policy. Each tick every such paddle queues its observation, and
+ * after all rooms have ticked {@link #run} decides them all in one forward pass.
+ * A paddle acts on that decision the tick after, so rooms never wait on the
+ * net; a frame of lag is well inside what the game's AI already has.
+ * Tick thread only.
+ */
+final class PolicyPaddles {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final PolicyNet net;
+    private PolicyNet.Workspace workspace;
+    private float[] obs;
+    private int[] actions;
+    private int queued;
+    private int decided;
+    private long runs;
+
+    PolicyPaddles(PolicyNet net) {
+        this.net = net;
+        this.workspace = net.newWorkspace(INITIAL_CAPACITY);
+        this.obs = new float[INITIAL_CAPACITY * VectorEnv.OBS_SIZE];
+        this.actions = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Action decided for a ticket from {@link #queue}, or STAY when the ticket
+     * is not from the latest run, e.g. -1 or one taken before a pause.
+     */
+    int action(long ticket) {
+        int row = (int) ticket;
+        return ticket >>> 32 == runs - 1 && row < decided ? actions[row] : VectorEnv.ACTION_STAY;
+    }
+
+    // Queues the view from pos for the next run; the ticket is the run number and the row
+    long queue(SimState state, int pos) {
+        if (queued == workspace.getMaxBatch())
+            grow();
+        VectorEnv.observe(state, pos, obs, queued * VectorEnv.OBS_SIZE);
+        return runs << 32 | queued++;
+    }
+
+    void run() {
+        if (queued > 0)
+            net.act(workspace, obs, queued, actions);
+        decided = queued;
+        queued = 0;
+        runs++;
+    }
+
+    // Only when more AI paddles are playing than ever before; decided actions are kept
+    private void grow() {
+        int capacity = workspace.getMaxBatch() * 2;
+        workspace = net.newWorkspace(capacity);
+        float[] moreObs = new float[capacity * VectorEnv.OBS_SIZE];
+        System.arraycopy(obs, 0, moreObs, 0, obs.length);
+        obs = moreObs;
+        int[] moreActions = new int[capacity];
+        System.arraycopy(actions, 0, moreActions, 0, actions.length);
+        actions = moreActions;
+    }
+}
@@ -0,0 +1,581 @@
+package com.ponggame.server;
+
+import com.ponggame.log.EventLog;
+import com.ponggame.log.EventType;
+import com.ponggame.net.BufferPool;
+import com.ponggame.net.LatencyHistogram;
+import com.ponggame.net.LossSimulator;
+import com.ponggame.net.Protocol;
+import com.ponggame.net.UdpServer;
+import com.ponggame.sim.PolicyNet;
+import com.ponggame.store.Leaderboard;
+import com.ponggame.store.MatchStore;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Headless UDP game server. One thread owns every connection and room: each tick
+ * it drains received datagrams, advances the rooms and flushes one or more
+ * MTU-sized packets per client.
+ *
+ * Rooms live in a {@link RoomRegistry}, which also closes rooms left idle in the
+ * lobby or after a game for longer than --room-ttl seconds. Players who ask for
+ * a match wait in the {@link Matchmaker}, which runs on its own thread and hands
+ * finished groups back to the tick thread to be seated. With --match-store every
+ * finished game is appended to a {@link MatchStore} in that directory and rated
+ * on a {@link Leaderboard}, which players can page through and which seeds their
+ * matchmaking rating. With --event-log, connections, rooms, hits and scores are
+ * written to a rotating {@link EventLog} in that directory. With --policy, AI
+ * paddles in every room are played by that {@link PolicyNet} file, all of them
+ * decided in one batched forward pass per tick.
+ *
+ * Usage: java -jar pong-server-1.0.jar
+ *            [--port 3001] [--client-kbps 64] [--room-ttl 300] [--match-store matches] [--event-log logs]
+ *            [--policy policy.pgnn] [--loss 0.05] [--latency 20] [--jitter 10]
+ */
+public class PongServer {
+
+    private static final long TIMEOUT_NANOS = 10_000_000_000L;
+    private static final long STATS_INTERVAL_NANOS = 5_000_000_000L;
+    // Share of each tick that spectator fan-out may use before deferring to the next
+    private static final long FANOUT_BUDGET_NANOS = 1_000_000_000L / ServerGameLoop.TICK_RATE / 2;
+    private static final int MAX_LIST_PAGE = 32;
+    private static final int MAX_LEADERBOARD_PAGE = 32;
+    // Matched rooms seated per tick, so a burst of matches can't stall the running games
+    private static final int MAX_MATCHES_PER_TICK = 64;
+
+    private final UdpServer udp;
+    private final int clientBudgetBytes;
+    private final SecureRandom tokens = new SecureRandom();
+    private final Map<Integer, ClientConnection> connections = new HashMap<>();
+    private final Map<SocketAddress, ClientConnection> byAddress = new HashMap<>();
+    private final RoomRegistry rooms;
+    private final MatchStore matchStore;
+    private final Leaderboard leaderboard;
+    private final EventLog eventLog;
+    private final PolicyPaddles policyPaddles;
+    private final List<ServerRoom> roomList = new ArrayList<>();
+    private final List<ServerRoom> page = new ArrayList<>();
+    private final Queue<List<Matchmaker.Ticket>> matches = new ConcurrentLinkedQueue<>();
+    private final Matchmaker matchmaker = new Matchmaker((count, group) -> matches.add(group));
+    private final LatencyHistogram queueTime = new LatencyHistogram();
+
+    private final ByteBuffer out = ByteBuffer.allocate(Protocol.MTU);
+    private final BufferPool framePool = new BufferPool(Protocol.MTU);
+    private final LatencyHistogram stateLatency = new LatencyHistogram();
+    private long lastStatsNanos = System.nanoTime();
+    private int serverTick = 0;
+    private long lastMatched = 0;
+    private long lastStored = 0;
+    private long lastLogged = 0;
+
+    private ScheduledExecutorService ticker;
+
+    public PongServer(int port, int clientKbps, int roomTtlSeconds, MatchStore matchStore, EventLog eventLog,
+            PolicyNet policy, LossSimulator loss) throws IOException {
+        this.udp = new UdpServer(port, loss);
+        this.matchStore = matchStore;
+        this.eventLog = eventLog;
+        this.policyPaddles = policy == null ? null : new PolicyPaddles(policy);
+        if (matchStore != null) {
+            leaderboard = new Leaderboard();
+            leaderboard.load(matchStore);
+            matchStore.setListener(leaderboard::apply);
+            // Catch up on anything written between the replay and the listener taking over
+            leaderboard.load(matchStore);
+        } else {
+            leaderboard = null;
+        }
+        this.clientBudgetBytes = clientKbps * 1000 / 8;
+        this.rooms = new RoomRegistry(TimeUnit.SECONDS.toNanos(roomTtlSeconds));
+    }
+
+    public void start() {
+        udp.start();
+        rooms.start();
+        matchmaker.start();
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "game-tick"));
+        long period = 1_000_000_000L / ServerGameLoop.TICK_RATE;
+        ticker.scheduleAtFixedRate(this::safeTick, 0, period, TimeUnit.NANOSECONDS);
+    }
+
+    public void stop() {
+        if (ticker != null)
+            ticker.shutdownNow();
+        rooms.stop();
+        matchmaker.stop();
+        udp.stop();
+        if (matchStore != null) {
+            try {
+                matchStore.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        eventLog.close();
+    }
+
+    private void safeTick() {
+        try {
+            tick(System.nanoTime());
+        } catch (RuntimeException e) {
+            // Never let one bad packet or room kill the scheduler
+            e.printStackTrace();
+        }
+    }
+
+    private void tick(long now) {
+        if (leaderboard != null)
+            leaderboard.advance();
+
+        UdpServer.Datagram d;
+        while ((d = udp.poll()) != null) {
+            try {
+                handleDatagram(d.from, d.data, now);
+            } catch (RuntimeException e) {
+                // A packet the checks below missed costs only itself, not the rest of the tick
+                e.printStackTrace();
+            }
+        }
+
+        ServerRoom idle;
+        while ((idle = rooms.pollIdle()) != null) {
+            if (rooms.isIdle(idle, now))
+                closeIdle(idle);
+        }
+
+        List<Matchmaker.Ticket> group;
+        for (int i = 0; i < MAX_MATCHES_PER_TICK && (group = matches.poll()) != null; i++) {
+            seatMatch(group);
+        }
+
+        serverTick++;
+        rooms.collect(roomList);
+        for (ServerRoom room : roomList) {
+            room.tick(serverTick);
+            if (room.isEmpty()) {
+                rooms.remove(room);
+                room.close();
+                room.logEvent(EventType.ROOM_CLOSED, 0, 0);
+            } else {
+                rooms.refresh(room);
+            }
+        }
+        if (policyPaddles != null)
+            policyPaddles.run();
+
+        long fanOutDeadline = now + FANOUT_BUDGET_NANOS;
+        for (ServerRoom room : roomList) {
+            room.getSpectatorStream().fanOut(udp, fanOutDeadline);
+        }
+
+        for (ClientConnection conn : new ArrayList<>(connections.values())) {
+            if (now - conn.getLastReceiveNanos() > TIMEOUT_NANOS) {
+                disconnect(conn, true);
+                continue;
+            }
+            flush(conn, now);
+        }
+
+        if (now - lastStatsNanos >= STATS_INTERVAL_NANOS) {
+            lastStatsNanos = now;
+            if (stateLatency.getCount() > 0) {
+                System.out.println("clients=" + connections.size() + " rooms=" + rooms.size()
+                        + " open=" + rooms.openCount()
+                        + " state delivery rtt " + stateLatency.summary());
+                stateLatency.reset();
+            }
+            if (matchStore != null && matchStore.getCount() != lastStored) {
+                lastStored = matchStore.getCount();
+                System.out.println("matches stored=" + lastStored + " backlog=" + matchStore.getBacklog()
+                        + " dropped=" + matchStore.getDropped() + " ranked=" + leaderboard.size());
+            }
+            if (eventLog.getWritten() != lastLogged) {
+                lastLogged = eventLog.getWritten();
+                System.out.println("events logged=" + lastLogged + " dropped=" + eventLog.getDropped());
+            }
+            if (matchmaker.getWaiting() > 0 || matchmaker.getMatched() != lastMatched) {
+                lastMatched = matchmaker.getMatched();
+                System.out.println("matchmaking waiting=" + matchmaker.getWaiting()
+                        + " matched=" + matchmaker.getMatched());
+                for (int n = Matchmaker.MIN_PLAYERS; n <= Matchmaker.MAX_PLAYERS; n++) {
+                    matchmaker.drainQueueTime(n, queueTime);
+                    if (queueTime.getCount() > 0)
+                        System.out.println("  " + n + "p waiting=" + matchmaker.getWaiting(n)
+                                + " queue time " + queueTime.summary());
+                    queueTime.reset();
+                }
+            }
+            for (ServerRoom room : roomList) {
+                SpectatorStream stream = room.getSpectatorStream();
+                if (stream.size() > 0)
+                    System.out.println("  room " + room.getId() + " spectators=" + stream.size()
+                            + " encoded=" + stream.getFramesEncoded() + " sent=" + stream.getFramesSent()
+                            + " skipped=" + stream.getFramesSkipped());
+            }
+            for (ClientConnection conn : connections.values()) {
+                if (conn.getRoom() == null || conn.getRoom().isSpectator(conn))
+                    continue;
+                LinkEstimator link = conn.getLink();
+                SnapshotRateController rate = conn.getRate();
+                System.out.printf("  %s rtt=%.0fms loss=%.1f%% %.1fkB/s every %d ticks%s%n",
+                        conn.getAddress(), link.getSmoothedRttMillis(), link.getLossRate() * 100,
+                        link.getBytesPerSecond() / 1000, rate.getInterval(),
+                        rate.isTrimmingDistantPaddles() ? " (trimmed)" : "");
+            }
+        }
+    }
+
+    private void handleDatagram(SocketAddress from, ByteBuffer buf, long now) {
+        int type = Protocol.readHeader(buf);
+        if (type < 0)
+            return;
+        int token = buf.getInt();
+
+        if (type == Protocol.HELLO) {
+            if (buf.remaining() >= 4)
+                handleHello(from, buf.getInt(), buf.remaining() >= 8 ? buf.getLong() : 0, now);
+            return;
+        }
+
+        ClientConnection conn = connections.get(token);
+        if (conn == null || token == 0)
+            return; // unknown or expired token
+        conn.setLastReceiveNanos(now);
+        if (!from.equals(conn.getAddress())) {
+            // The token proves identity, so follow the client across NAT rebinding
+            byAddress.remove(conn.getAddress());
+            conn.setAddress(from);
+            byAddress.put(from, conn);
+        }
+
+        if (type == Protocol.DISCONNECT) {
+            disconnect(conn, false);
+        } else if (type == Protocol.DATA && buf.remaining() >= Protocol.DATA_HEADER_SIZE - Protocol.HEADER_SIZE) {
+            handleData(conn, buf, now);
+        }
+    }
+
+    private void handleHello(SocketAddress from, int nonce, long playerKey, long now) {
+        ClientConnection conn = byAddress.get(from);
+        if (conn == null || conn.getHelloNonce() != nonce) {
+            if (conn != null)
+                disconnect(conn, false);
+            int token;
+            do {
+                token = tokens.nextInt();
+            } while (token == 0 || connections.containsKey(token));
+            conn = new ClientConnection(token, nonce, playerKey, from, now, clientBudgetBytes);
+            connections.put(token, conn);
+            byAddress.put(from, conn);
+            eventLog.record(EventType.CONNECTED, 0, token);
+        }
+
+        // Resent for duplicate HELLOs so a lost WELCOME is harmless
+        out.clear();
+        Protocol.writeHeader(out, Protocol.WELCOME, conn.getToken());
+        out.putInt(nonce);
+        out.putShort((short) ServerGameLoop.TICK_RATE);
+        out.putShort((short) Protocol.MTU);
+        out.flip();
+        udp.send(from, out);
+    }
+
+    private void handleData(ClientConnection conn, ByteBuffer buf, long now) {
+        int ack = buf.getShort() & 0xFFFF;
+        int ackBits = buf.getInt();
+        int stamp = buf.getInt();
+        int received = buf.getShort() & 0xFFFF;
+        int flags = buf.get() & 0xFF;
+
+        conn.getChannel().onAck(ack, ackBits, now);
+        conn.drainOverflow();
+        conn.onClientReport(stamp, received, now, stateLatency);
+
+        if ((flags & Protocol.FLAG_RELIABLE) != 0
+                && !conn.getChannel().readMessages(buf, (event, payload) -> handleEvent(conn, event, payload, now)))
+            return; // truncated; the client resends anything unacked
+        if ((flags & Protocol.FLAG_INPUT) != 0 && buf.remaining() >= 4) {
+            conn.onInputPacket();
+            int seq = buf.getShort() & 0xFFFF;
+            int count = buf.get() & 0xFF;
+            if (count > 0 && conn.acceptInput(seq) && conn.getRoom() != null) {
+                conn.getRoom().setInput(conn, buf.get() & 0xFF);
+            }
+        }
+    }
+
+    private void handleEvent(ClientConnection conn, int event, ByteBuffer payload, long now) {
+        ServerRoom current = conn.getRoom();
+        if (event == Protocol.EV_CREATE_ROOM || event == Protocol.EV_QUICK_PLAY || event == Protocol.EV_JOIN_ROOM
+                || event == Protocol.EV_MATCHMAKE || event == Protocol.EV_CANCEL_MATCHMAKING)
+            leaveQueue(conn);
+        switch (event) {
+            case Protocol.EV_CREATE_ROOM, Protocol.EV_QUICK_PLAY -> {
+                if (current != null)
+                    current.removeConnection(conn);
+                String mode = Protocol.modeName(payload.remaining() > 0 ? payload.get() : 1);
+                int count = payload.remaining() > 0 ? payload.get() : 2;
+                ServerRoom room = createRoom(mode, count);
+                room.addPlayer(conn, true);
+                if (event == Protocol.EV_QUICK_PLAY) {
+                    // Auto-start with AI, as quickPlay does on the Node server
+                    room.scheduleStart(ServerGameLoop.TICK_RATE / 2);
+                }
+            }
+            case Protocol.EV_JOIN_ROOM -> {
+                String code = payload.remaining() > 0 ? Protocol.getString(payload).toUpperCase() : "";
+                ServerRoom room = rooms.get(code);
+                if (room == null) {
+                    sendError(conn, "Room not found");
+                    return;
+                }
+                if (current != null)
+                    current.removeConnection(conn);
+                room.addPlayer(conn, false);
+            }
+            case Protocol.EV_TOGGLE_READY -> {
+                if (current != null)
+                    current.toggleReady(conn);
+            }
+            case Protocol.EV_START_GAME -> {
+                if (current != null && current.isHost(conn))
+                    current.startGame();
+            }
+            case Protocol.EV_LIST_ROOMS -> {
+                String after = payload.remaining() > 0 ? Protocol.getString(payload).toUpperCase() : "";
+                int limit = payload.remaining() > 0 ? payload.get() & 0xFF : MAX_LIST_PAGE;
+                sendRoomList(conn, after, Math.max(1, Math.min(limit, MAX_LIST_PAGE)));
+            }
+            case Protocol.EV_MATCHMAKE -> {
+                if (current != null)
+                    current.removeConnection(conn);
+                int count = payload.remaining() > 0 ? payload.get() : 2;
+                int rating = payload.remaining() >= 2 ? payload.getShort() & 0xFFFF : 0;
+                // Players with rated games are matched on what they earned, not what they claim
+                if (leaderboard != null && leaderboard.get(conn.getPlayerKey()) != null)
+                    rating = (int) Math.round(leaderboard.getRating(conn.getPlayerKey()));
+                conn.setTicket(matchmaker.enqueue(conn, count, rating == 0 ? Matchmaker.DEFAULT_RATING : rating, now));
+            }
+            case Protocol.EV_LEADERBOARD -> {
+                if (leaderboard == null) {
+                    sendError(conn, "Leaderboard unavailable");
+                    return;
+                }
+                int kind = payload.remaining() > 0 ? payload.get() & 0xFF : Protocol.LEADERBOARD_TOP;
+                int count = payload.remaining() > 0 ? payload.get() & 0xFF : MAX_LEADERBOARD_PAGE;
+                sendLeaderboard(conn, kind, Math.max(1, Math.min(count, MAX_LEADERBOARD_PAGE)));
+            }
+            case Protocol.EV_CANCEL_MATCHMAKING -> {
+                // Already left the queue above
+            }
+            case Protocol.EV_SET_RATE -> {
+                // The client is saving battery or cooling down; adapt() still works below this cap
+                int hz = payload.remaining() > 0 ? payload.get() & 0xFF : 0;
+                conn.getRate().setMaxRate(hz);
+            }
+            default -> {
+                // Unknown events from newer clients are ignored
+            }
+        }
+    }
+
+    private ServerRoom createRoom(String mode, int playerCount) {
+        ServerRoom room = rooms.create(id -> new ServerRoom(id, mode, playerCount, "medium", framePool, matchStore,
+                eventLog, policyPaddles));
+        room.logEvent(EventType.ROOM_CREATED, playerCount, 0);
+        return room;
+    }
+
+    private void leaveQueue(ClientConnection conn) {
+        if (conn.getTicket() != null) {
+            matchmaker.cancel(conn.getTicket());
+            conn.setTicket(null);
+        }
+    }
+
+    // Matched players skip the ready check; the room starts as soon as everyone has joined
+    private void seatMatch(List<Matchmaker.Ticket> group) {
+        boolean complete = true;
+        for (Matchmaker.Ticket ticket : group) {
+            // Left the queue or disconnected after the matchmaker took the ticket
+            if (ticket.getConnection().getTicket() != ticket)
+                complete = false;
+        }
+        if (!complete) {
+            for (Matchmaker.Ticket ticket : group) {
+                ClientConnection conn = ticket.getConnection();
+                if (conn.getTicket() == ticket)
+                    conn.setTicket(matchmaker.requeue(ticket));
+            }
+            return;
+        }
+
+        ServerRoom room = createRoom("human_vs_human", group.size());
+        for (Matchmaker.Ticket ticket : group) {
+            ClientConnection conn = ticket.getConnection();
+            conn.setTicket(null);
+            room.addPlayer(conn, room.members().isEmpty());
+        }
+        room.scheduleStart(ServerGameLoop.TICK_RATE);
+    }
+
+    private void closeIdle(ServerRoom room) {
+        // Not removeConnection: a leaving host would broadcast a game end for a game nobody is playing
+        for (ClientConnection member : room.members()) {
+            member.leftRoom();
+            sendError(member, "Room closed after being idle");
+        }
+        rooms.remove(room);
+        room.close();
+        room.logEvent(EventType.ROOM_CLOSED, 1, 0);
+    }
+
+    private void sendRoomList(ClientConnection conn, String after, int limit) {
+        page.clear();
+        String next = rooms.listOpen(after, limit, page);
+        ByteBuffer buf = ByteBuffer.allocate(Protocol.MTU);
+        buf.putInt(rooms.openCount());
+        buf.put((byte) page.size());
+        for (ServerRoom room : page) {
+            room.encodeListing(buf);
+        }
+        Protocol.putString(buf, next == null ? "" : next);
+        byte[] payload = new byte[buf.position()];
+        buf.flip();
+        buf.get(payload);
+        conn.sendReliable(Protocol.EV_ROOM_LIST, payload);
+    }
+
+    private void sendLeaderboard(ClientConnection conn, int kind, int count) {
+        long key = conn.getPlayerKey();
+        List<Leaderboard.Standing> standings = kind == Protocol.LEADERBOARD_AROUND_ME
+                ? leaderboard.around(key, count / 2)
+                : leaderboard.top(count);
+        ByteBuffer buf = ByteBuffer.allocate(Protocol.MTU);
+        buf.putInt(leaderboard.size());
+        buf.putInt(leaderboard.rank(key));
+        buf.putShort((short) Math.round(leaderboard.getRating(key)));
+        int n = Math.min(count, standings.size());
+        buf.put((byte) n);
+        for (int i = 0; i < n; i++) {
+            Leaderboard.Standing s = standings.get(i);
+            buf.putInt(s.rank());
+            buf.putLong(s.entry().getPlayerKey());
+            buf.putShort((short) Math.round(s.entry().getRating()));
+            buf.putShort((short) Math.min(s.entry().getGames(), 0xFFFF));
+        }
+        byte[] payload = new byte[buf.position()];
+        buf.flip();
+        buf.get(payload);
+        conn.sendReliable(Protocol.EV_LEADERBOARD_PAGE, payload);
+    }
+
+    private void sendError(ClientConnection conn, String message) {
+        ByteBuffer buf = ByteBuffer.allocate(256);
+        Protocol.putString(buf, message);
+        byte[] payload = new byte[buf.position()];
+        buf.flip();
+        buf.get(payload);
+        conn.sendReliable(Protocol.EV_ERROR, payload);
+    }
+
+    private void flush(ClientConnection conn, long now) {
+        ServerRoom room = conn.getRoom();
+        // Spectators get their snapshots from the room's SpectatorStream
+        SnapshotCodec.State snapshot = room == null || room.isSpectator(conn) ? null : room.getSnapshot();
+        if (snapshot != null && !conn.isSnapshotDue(snapshot))
+            snapshot = null;
+
+        do {
+            out.clear();
+            Protocol.writeHeader(out, Protocol.DATA, conn.getToken());
+            out.putShort((short) conn.getChannel().getAck());
+            out.putInt(conn.getChannel().getAckBits());
+            out.putInt(conn.getLastInputSeq());
+            out.putShort((short) conn.getInputPacketsReceived());
+            int flagsPos = out.position();
+            out.put((byte) 0);
+
+            int flags = 0;
+            if (conn.getChannel().writeDue(out, now) > 0)
+                flags |= Protocol.FLAG_RELIABLE;
+            if (snapshot != null && conn.writeSnapshot(out, snapshot, now)) {
+                snapshot = null;
+                flags |= Protocol.FLAG_SNAPSHOT;
+            }
+
+            if (flags == 0 && !conn.getChannel().isAckPending())
+                break;
+            conn.getChannel().clearAckPending();
+            out.put(flagsPos, (byte) flags);
+            out.flip();
+            conn.onPacketSent(out.remaining(), (flags & Protocol.FLAG_SNAPSHOT) != 0);
+            udp.send(conn.getAddress(), out);
+
+            if (flags == 0)
+                break;
+        } while (snapshot != null || conn.getChannel().hasDue(now));
+
+        conn.updateRate(now);
+    }
+
+    private void disconnect(ClientConnection conn, boolean timedOut) {
+        eventLog.record(EventType.DISCONNECTED, 0, conn.getToken(), timedOut ? 1 : 0);
+        leaveQueue(conn);
+        if (conn.getRoom() != null)
+            conn.getRoom().removeConnection(conn);
+        connections.remove(conn.getToken());
+        byAddress.remove(conn.getAddress());
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = Protocol.DEFAULT_PORT;
+        int clientKbps = 64;
+        int roomTtl = 300;
+        String storeDir = null;
+        String logDir = null;
+        String policyFile = null;
+        double loss = 0;
+        int latency = 0;
+        int jitter = 0;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--port" -> port = Integer.parseInt(args[i + 1]);
+                case "--client-kbps" -> clientKbps = Integer.parseInt(args[i + 1]);
+                case "--room-ttl" -> roomTtl = Integer.parseInt(args[i + 1]);
+                case "--match-store" -> storeDir = args[i + 1];
+                case "--event-log" -> logDir = args[i + 1];
+                case "--policy" -> policyFile = args[i + 1];
+                case "--loss" -> loss = Double.parseDouble(args[i + 1]);
+                case "--latency" -> latency = Integer.parseInt(args[i + 1]);
+                case "--jitter" -> jitter = Integer.parseInt(args[i + 1]);
+                default -> System.err.println("Unknown option " + args[i]);
+            }
+        }
+
+        LossSimulator sim = new LossSimulator(loss, latency, jitter);
+        PongServer server = new PongServer(port, clientKbps, roomTtl,
+                storeDir == null ? null : MatchStore.open(Path.of(storeDir)),
+                logDir == null ? EventLog.NONE : EventLog.open(Path.of(logDir)),
+                policyFile == null ? null : PolicyNet.load(Path.of(policyFile)), sim);
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+        System.out.println("Pong UDP server listening on port " + port
+                + (sim.isEnabled() ? " (" + sim + ")" : "")
+                + (policyFile != null ? ", AI paddles by " + policyFile + " (" + PolicyNet.kernelName() + " kernel)" : ""));
+    }
+}
@@ -0,0 +1,184 @@
+package com.ponggame.server;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Every live room, keyed by room code. The codes are split over a fixed number
+ * of stripes, each a plain HashMap behind its own lock, so a lookup is one
+ * String hash and one uncontended lock with no allocation, and threads working
+ * on different codes never wait on each other.
+ *
+ * Open rooms (waiting for players, with a free slot) are also kept in a sorted
+ * index that is updated only when a room reports a change, so a lobby page is
+ * read from there instead of by walking every room.
+ *
+ * A sweeper thread looks for rooms nobody has touched for the idle TTL and
+ * queues them; the tick thread, which owns the rooms, makes the final call in
+ * {@link #pollIdle()} since only it can read a room's game state safely.
+ */
+public class RoomRegistry {
+
+    private static final int STRIPES = 64;
+    private static final int MAX_CODE_ATTEMPTS = 1000;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final AtomicInteger size = new AtomicInteger();
+    private final ConcurrentSkipListMap<String, ServerRoom> open = new ConcurrentSkipListMap<>();
+    private final Queue<ServerRoom> idle = new ConcurrentLinkedQueue<>();
+    private final long idleTtlNanos;
+
+    private ScheduledExecutorService sweeper;
+
+    private static final class Stripe {
+        final Map<String, ServerRoom> rooms = new HashMap<>();
+    }
+
+    public RoomRegistry(long idleTtlNanos) {
+        this.idleTtlNanos = idleTtlNanos;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    public void start() {
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "room-sweeper");
+            t.setDaemon(true);
+            return t;
+        });
+        // A room can outlive its TTL by up to one sweep interval
+        long period = Math.max(1_000_000_000L, Math.min(idleTtlNanos / 4, 30_000_000_000L));
+        sweeper.scheduleWithFixedDelay(this::sweep, period, period, TimeUnit.NANOSECONDS);
+    }
+
+    public void stop() {
+        if (sweeper != null)
+            sweeper.shutdownNow();
+    }
+
+    private Stripe stripeFor(String code) {
+        int h = code.hashCode();
+        return stripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+    }
+
+    public ServerRoom get(String code) {
+        Stripe stripe = stripeFor(code);
+        synchronized (stripe) {
+            return stripe.rooms.get(code);
+        }
+    }
+
+    /**
+     * Claims a fresh code and registers the room built for it. The code is
+     * checked and taken under the stripe lock, so two threads can never be handed
+     * the same one.
+     */
+    public ServerRoom create(Function<String, ServerRoom> factory) {
+        for (int attempt = 0; attempt < MAX_CODE_ATTEMPTS; attempt++) {
+            String code = ServerRoom.generateRoomId();
+            Stripe stripe = stripeFor(code);
+            synchronized (stripe) {
+                if (stripe.rooms.containsKey(code))
+                    continue;
+                ServerRoom room = factory.apply(code);
+                stripe.rooms.put(code, room);
+                size.incrementAndGet();
+                refresh(room);
+                return room;
+            }
+        }
+        throw new IllegalStateException("No free room code after " + MAX_CODE_ATTEMPTS + " attempts");
+    }
+
+    public boolean remove(ServerRoom room) {
+        Stripe stripe = stripeFor(room.getId());
+        synchronized (stripe) {
+            if (!stripe.rooms.remove(room.getId(), room))
+                return false;
+        }
+        size.decrementAndGet();
+        open.remove(room.getId(), room);
+        return true;
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    public int openCount() {
+        return open.size();
+    }
+
+    // Copies every room into a list the caller reuses, so a tick doesn't allocate
+    public void collect(List<ServerRoom> into) {
+        into.clear();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                into.addAll(stripe.rooms.values());
+            }
+        }
+    }
+
+    // Moves a room in or out of the open index if it changed since the last call
+    public void refresh(ServerRoom room) {
+        if (!room.takeListingChange())
+            return;
+        if (room.isOpen())
+            open.put(room.getId(), room);
+        else
+            open.remove(room.getId(), room);
+    }
+
+    /**
+     * Up to limit open rooms with codes after the cursor, in code order. Returns
+     * the cursor for the next page, or null on the last one.
+     */
+    public String listOpen(String after, int limit, List<ServerRoom> into) {
+        Map<String, ServerRoom> tail = after == null || after.isEmpty() ? open : open.tailMap(after, false);
+        String last = null;
+        for (ServerRoom room : tail.values()) {
+            if (into.size() >= limit)
+                return last;
+            into.add(room);
+            last = room.getId();
+        }
+        return null;
+    }
+
+    private void sweep() {
+        long now = System.nanoTime();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                for (ServerRoom room : stripe.rooms.values()) {
+                    if (now - room.getLastActivityNanos() > idleTtlNanos)
+                        idle.add(room);
+                }
+            }
+        }
+    }
+
+    /**
+     * Next room the sweeper found idle, to be closed by the tick thread if it is
+     * still registered and still waiting or ended. Null when there are none.
+     */
+    public ServerRoom pollIdle() {
+        return idle.poll();
+    }
+
+    public boolean isIdle(ServerRoom room, long now) {
+        if (now - room.getLastActivityNanos() <= idleTtlNanos || get(room.getId()) != room)
+            return false;
+        String state = room.getGameState();
+        return ServerGameLoop.WAITING.equals(state) || ServerGameLoop.ENDED.equals(state);
+    }
+}
@@ -0,0 +1,71 @@
+package com.ponggame.server;
+
+import java.util.Random;
+
+// Server-side AI paddle, ported from server/game/AIController.js
+public class ServerAIController {
+    private final int position; // protocol position code
+    private final int reactionDelay;
+    private final double errorMargin;
+    private final double speed;
+
+    private int frameCounter = 0;
+    private double target = ServerGameLoop.ARENA_SIZE / 2;
+    private final Random random = new Random();
+
+    public ServerAIController(int position, String difficulty) {
+        this.position = position;
+        switch (difficulty == null ? "medium" : difficulty) {
+            case "easy" -> {
+                reactionDelay = 15;
+                errorMargin = 60;
+                speed = 4;
+            }
+            case "hard" -> {
+                reactionDelay = 3;
+                errorMargin = 10;
+                speed = 8;
+            }
+            default -> {
+                reactionDelay = 8;
+                errorMargin = 30;
+                speed = 6;
+            }
+        }
+    }
+
+    // Returns the new paddle coordinate along its axis of movement
+    public double update(double paddlePos, double paddleSize, double ballX, double ballY, double ballVX, double ballVY) {
+        frameCounter++;
+        if (frameCounter >= reactionDelay) {
+            frameCounter = 0;
+            calculateTarget(ballX, ballY, ballVX, ballVY);
+        }
+        return moveTowardTarget(paddlePos, paddleSize);
+    }
+
+    private void calculateTarget(double ballX, double ballY, double ballVX, double ballVY) {
+        boolean approaching = switch (position) {
+            case 0 -> ballVX < 0;
+            case 1 -> ballVX > 0;
+            case 2 -> ballVY < 0;
+            default -> ballVY > 0;
+        };
+        double tracked = (position == 2 || position == 3) ? ballX : ballY;
+
+        if (approaching) {
+            target = tracked + (random.nextDouble() - 0.5) * errorMargin;
+        } else {
+            target = ServerGameLoop.ARENA_SIZE / 2;
+        }
+    }
+
+    private double moveTowardTarget(double paddlePos, double paddleSize) {
+        double diff = target - (paddlePos + paddleSize / 2);
+        double next = Math.abs(diff) > speed ? paddlePos + (diff > 0 ? speed : -speed) : paddlePos;
+
+        double min = 30;
+        double max = ServerGameLoop.ARENA_SIZE - 30 - paddleSize;
+        return Math.max(min, Math.min(max, next));
+    }
+}
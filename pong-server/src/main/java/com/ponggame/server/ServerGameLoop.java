@@ -0,0 +1,405 @@
+package com.ponggame.server;
+
+import com.ponggame.log.EventType;
+import com.ponggame.net.Protocol;
+import com.ponggame.sim.FixedMath;
+import com.ponggame.sim.SimState;
+import com.ponggame.sim.VectorEnv;
+
+import java.util.Random;
+
+/**
+ * Server-authoritative physics, ported from server/game/GameLoop.js so the Java
+ * server plays exactly like the Node one. Positions are indexed by protocol code
+ * (left, right, top, bottom). Ticked by the server thread; nothing here touches
+ * the network.
+ */
+public class ServerGameLoop {
+
+    public static final double ARENA_SIZE = 800;
+    public static final double BALL_RADIUS = 10;
+    public static final int TICK_RATE = 60;
+
+    private static final double PADDLE_SPEED = 8;
+    public static final int WIN_SCORE = 10;
+    private static final double MAX_BALL_SPEED = 18;
+
+    public static final String WAITING = "waiting";
+    public static final String PLAYING = "playing";
+    public static final String PAUSED = "paused";
+    public static final String ENDED = "ended";
+
+    private final ServerRoom room;
+    private final Random random = new Random();
+
+    // Ball
+    private double ballX = 400, ballY = 400, ballVX, ballVY;
+    private int lastTouchedBy = -1;
+
+    // Paddles, indexed by position code
+    private final boolean[] active = new boolean[4];
+    private final double[] paddleX = new double[4];
+    private final double[] paddleY = new double[4];
+    private final double[] paddleW = new double[4];
+    private final double[] paddleH = new double[4];
+    private final int[] scores = new int[4];
+
+    // Control bits held by each human position, applied every tick
+    private final int[] inputBits = new int[4];
+    private final ServerAIController[] aiControllers = new ServerAIController[4];
+
+    // With --policy the AI positions are played by the shared net instead
+    private final PolicyPaddles policy;
+    private final long[] policyTickets = { -1, -1, -1, -1 };
+    private final SimState policyView = new SimState();
+
+    private String gameState = WAITING;
+    private int tick = 0;
+    private int winner = -1;
+
+    public ServerGameLoop(ServerRoom room) {
+        this.room = room;
+        this.policy = room.getPolicyPaddles();
+        initializePaddles();
+    }
+
+    private void initializePaddles() {
+        for (int pos : room.getPositionSlots()) {
+            active[pos] = true;
+            switch (pos) {
+                case 0 -> setPaddle(pos, 15, 350, 15, 100);
+                case 1 -> setPaddle(pos, 770, 350, 15, 100);
+                case 2 -> setPaddle(pos, 350, 15, 100, 15);
+                case 3 -> setPaddle(pos, 350, 770, 100, 15);
+            }
+            scores[pos] = 0;
+        }
+    }
+
+    private void setPaddle(int pos, double x, double y, double w, double h) {
+        paddleX[pos] = x;
+        paddleY[pos] = y;
+        paddleW[pos] = w;
+        paddleH[pos] = h;
+    }
+
+    private void setupAI() {
+        for (int pos : room.getPositionSlots()) {
+            if (room.isAIPosition(pos)) {
+                aiControllers[pos] = new ServerAIController(pos, room.getAiDifficulty());
+            }
+        }
+    }
+
+    public void start() {
+        gameState = PLAYING;
+        setupAI();
+        resetBall();
+    }
+
+    public void stop() {
+        gameState = ENDED;
+    }
+
+    public void pause() {
+        if (PLAYING.equals(gameState))
+            gameState = PAUSED;
+    }
+
+    public void resume() {
+        if (PAUSED.equals(gameState))
+            gameState = PLAYING;
+    }
+
+    private void resetBall() {
+        ballX = ARENA_SIZE / 2;
+        ballY = ARENA_SIZE / 2;
+
+        double angle = (random.nextDouble() * Math.PI / 2) - Math.PI / 4;
+        double direction = random.nextDouble() > 0.5 ? 1 : -1;
+        double speed = 9;
+
+        ballVX = speed * direction * Math.cos(angle);
+        ballVY = speed * Math.sin(angle);
+        lastTouchedBy = -1;
+        room.logEvent(EventType.BALL_RESET, 0, 0);
+    }
+
+    // Returns true if the match ended this tick
+    public boolean tick() {
+        if (!PLAYING.equals(gameState))
+            return false;
+        tick++;
+
+        applyPlayerInputs();
+        updateAI();
+
+        ballX += ballVX;
+        ballY += ballVY;
+
+        checkPaddleCollisions();
+        checkWallCollisions();
+        return checkScoring();
+    }
+
+    public void setInput(int pos, int bits) {
+        if (pos >= 0 && pos < 4)
+            inputBits[pos] = bits;
+    }
+
+    public void replaceWithAI(int pos) {
+        if (active[pos] && aiControllers[pos] == null) {
+            inputBits[pos] = 0;
+            aiControllers[pos] = new ServerAIController(pos, room.getAiDifficulty());
+        }
+    }
+
+    private void applyPlayerInputs() {
+        for (int pos = 0; pos < 4; pos++) {
+            if (active[pos] && aiControllers[pos] == null)
+                movePaddle(pos, inputBits[pos]);
+        }
+    }
+
+    private void movePaddle(int pos, int bits) {
+        double minBound = 30;
+        double maxBound = ARENA_SIZE - 30;
+        if (isHorizontal(pos)) {
+            if ((bits & Protocol.INPUT_LEFT) != 0) {
+                paddleX[pos] = Math.max(minBound, paddleX[pos] - PADDLE_SPEED);
+            } else if ((bits & Protocol.INPUT_RIGHT) != 0) {
+                paddleX[pos] = Math.min(maxBound - paddleW[pos], paddleX[pos] + PADDLE_SPEED);
+            }
+        } else {
+            if ((bits & Protocol.INPUT_UP) != 0) {
+                paddleY[pos] = Math.max(minBound, paddleY[pos] - PADDLE_SPEED);
+            } else if ((bits & Protocol.INPUT_DOWN) != 0) {
+                paddleY[pos] = Math.min(maxBound - paddleH[pos], paddleY[pos] + PADDLE_SPEED);
+            }
+        }
+    }
+
+    private void updateAI() {
+        if (policy != null) {
+            updatePolicyPaddles();
+            return;
+        }
+        for (int pos = 0; pos < 4; pos++) {
+            ServerAIController ai = aiControllers[pos];
+            if (ai == null)
+                continue;
+            if (isHorizontal(pos)) {
+                paddleX[pos] = ai.update(paddleX[pos], paddleW[pos], ballX, ballY, ballVX, ballVY);
+            } else {
+                paddleY[pos] = ai.update(paddleY[pos], paddleH[pos], ballX, ballY, ballVX, ballVY);
+            }
+        }
+    }
+
+    // Plays last tick's decisions, then queues this tick's views for the server's next forward pass
+    private void updatePolicyPaddles() {
+        for (int pos = 0; pos < 4; pos++) {
+            if (aiControllers[pos] != null)
+                movePaddle(pos, VectorEnv.controlBits(pos, policy.action(policyTickets[pos])));
+        }
+        capturePolicyView();
+        for (int pos = 0; pos < 4; pos++) {
+            if (aiControllers[pos] != null)
+                policyTickets[pos] = policy.queue(policyView, pos);
+        }
+    }
+
+    // The table in the simulation's fixed-point units, which is what policies were trained on
+    private void capturePolicyView() {
+        SimState s = policyView;
+        s.tick = tick;
+        s.ballX = toFixed(ballX);
+        s.ballY = toFixed(ballY);
+        s.ballVX = toFixed(ballVX);
+        s.ballVY = toFixed(ballVY);
+        // Hits speed the ball up directly here, not through a multiplier
+        s.speedMultiplier = FixedMath.ONE;
+        s.activeMask = 0;
+        for (int pos = 0; pos < 4; pos++) {
+            if (!active[pos])
+                continue;
+            s.activeMask |= 1 << pos;
+            s.paddleX[pos] = toFixed(paddleX[pos]);
+            s.paddleY[pos] = toFixed(paddleY[pos]);
+            s.scores[pos] = scores[pos];
+        }
+    }
+
+    private static int toFixed(double v) {
+        return (int) Math.round(v * FixedMath.ONE);
+    }
+
+    private void checkPaddleCollisions() {
+        for (int pos = 0; pos < 4; pos++) {
+            if (!active[pos])
+                continue;
+            double px = paddleX[pos], py = paddleY[pos], pw = paddleW[pos], ph = paddleH[pos];
+            boolean hit = false;
+
+            switch (pos) {
+                case 3: // bottom
+                    if (ballY + BALL_RADIUS >= py && ballY - BALL_RADIUS <= py + ph &&
+                            ballX >= px && ballX <= px + pw && ballVY > 0) {
+                        ballVY = -Math.abs(ballVY);
+                        addSpin(pos, true);
+                        hit = true;
+                    }
+                    break;
+                case 2: // top
+                    if (ballY - BALL_RADIUS <= py + ph && ballY + BALL_RADIUS >= py &&
+                            ballX >= px && ballX <= px + pw && ballVY < 0) {
+                        ballVY = Math.abs(ballVY);
+                        addSpin(pos, true);
+                        hit = true;
+                    }
+                    break;
+                case 0: // left
+                    if (ballX - BALL_RADIUS <= px + pw && ballX + BALL_RADIUS >= px &&
+                            ballY >= py && ballY <= py + ph && ballVX < 0) {
+                        ballVX = Math.abs(ballVX);
+                        addSpin(pos, false);
+                        hit = true;
+                    }
+                    break;
+                case 1: // right
+                    if (ballX + BALL_RADIUS >= px && ballX - BALL_RADIUS <= px + pw &&
+                            ballY >= py && ballY <= py + ph && ballVX > 0) {
+                        ballVX = -Math.abs(ballVX);
+                        addSpin(pos, false);
+                        hit = true;
+                    }
+                    break;
+            }
+
+            if (hit) {
+                lastTouchedBy = pos;
+                ballVX = clamp(ballVX * 1.05, MAX_BALL_SPEED);
+                ballVY = clamp(ballVY * 1.05, MAX_BALL_SPEED);
+                // Speed in hundredths of a pixel per tick
+                room.logEvent(EventType.PADDLE_HIT, pos, (int) (Math.hypot(ballVX, ballVY) * 100));
+            }
+        }
+    }
+
+    private static double clamp(double v, double max) {
+        return Math.max(-max, Math.min(max, v));
+    }
+
+    private void addSpin(int pos, boolean horizontal) {
+        if (horizontal) {
+            double center = paddleX[pos] + paddleW[pos] / 2;
+            ballVX += (ballX - center) / (paddleW[pos] / 2) * 1.5;
+        } else {
+            double center = paddleY[pos] + paddleH[pos] / 2;
+            ballVY += (ballY - center) / (paddleH[pos] / 2) * 1.5;
+        }
+    }
+
+    private void checkWallCollisions() {
+        if (!active[2] && ballY - BALL_RADIUS <= 15) {
+            ballVY = Math.abs(ballVY);
+            ballY = 15 + BALL_RADIUS;
+        }
+        if (!active[3] && ballY + BALL_RADIUS >= 785) {
+            ballVY = -Math.abs(ballVY);
+            ballY = 785 - BALL_RADIUS;
+        }
+        if (!active[0] && ballX - BALL_RADIUS <= 15) {
+            ballVX = Math.abs(ballVX);
+            ballX = 15 + BALL_RADIUS;
+        }
+        if (!active[1] && ballX + BALL_RADIUS >= 785) {
+            ballVX = -Math.abs(ballVX);
+            ballX = 785 - BALL_RADIUS;
+        }
+    }
+
+    private boolean checkScoring() {
+        int missedBy = -1;
+        if (ballY > ARENA_SIZE + 30) {
+            missedBy = 3;
+        } else if (ballY < -30) {
+            missedBy = 2;
+        } else if (ballX < -30) {
+            missedBy = 0;
+        } else if (ballX > ARENA_SIZE + 30) {
+            missedBy = 1;
+        }
+
+        if (missedBy >= 0 && active[missedBy]) {
+            if (lastTouchedBy >= 0 && lastTouchedBy != missedBy && active[lastTouchedBy]) {
+                scores[lastTouchedBy]++;
+                room.logEvent(EventType.SCORE, lastTouchedBy, scores[lastTouchedBy]);
+                if (scores[lastTouchedBy] >= WIN_SCORE) {
+                    gameState = ENDED;
+                    winner = lastTouchedBy;
+                    return true;
+                }
+            }
+            resetBall();
+        }
+        return false;
+    }
+
+    private static boolean isHorizontal(int pos) {
+        return pos == 2 || pos == 3;
+    }
+
+    // Getters used by the snapshot encoder
+    public int getTick() {
+        return tick;
+    }
+
+    public String getGameState() {
+        return gameState;
+    }
+
+    public int getWinner() {
+        return winner;
+    }
+
+    public double getBallX() {
+        return ballX;
+    }
+
+    public double getBallY() {
+        return ballY;
+    }
+
+    public double getBallVX() {
+        return ballVX;
+    }
+
+    public double getBallVY() {
+        return ballVY;
+    }
+
+    public boolean isActive(int pos) {
+        return active[pos];
+    }
+
+    public double getPaddleX(int pos) {
+        return paddleX[pos];
+    }
+
+    public double getPaddleY(int pos) {
+        return paddleY[pos];
+    }
+
+    public double getPaddleWidth(int pos) {
+        return paddleW[pos];
+    }
+
+    public double getPaddleHeight(int pos) {
+        return paddleH[pos];
+    }
+
+    public int getScore(int pos) {
+        return scores[pos];
+    }
+}
@@ -0,0 +1,456 @@
+package com.ponggame.server;
+
+import com.ponggame.log.EventLog;
+import com.ponggame.log.EventType;
+import com.ponggame.net.BufferPool;
+import com.ponggame.net.Protocol;
+import com.ponggame.store.MatchRecord;
+import com.ponggame.store.MatchStore;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A single game room, ported from server/game/GameRoom.js. Room events go out on
+ * each member's reliable channel; the game state is captured once per tick and
+ * each player's connection encodes it against its own acknowledged baseline.
+ * Spectators share a single encoding through {@link SpectatorStream}.
+ */
+public class ServerRoom {
+
+    private static final String ROOM_CODE_CHARS = "ABCDEFGHJKLMNPQRSTUVWXYZ23456789";
+
+    public static class RoomPlayer {
+        final String id;
+        final ClientConnection connection; // null for AI
+        final int position;
+        final boolean isAI;
+        boolean isHost;
+        boolean isReady;
+
+        RoomPlayer(String id, ClientConnection connection, int position, boolean isAI, boolean isHost) {
+            this.id = id;
+            this.connection = connection;
+            this.position = position;
+            this.isAI = isAI;
+            this.isHost = isHost;
+        }
+    }
+
+    private final String id;
+    private final String mode;
+    private final int playerCount;
+    private final String aiDifficulty;
+    private final int[] positions;
+
+    private final Map<String, RoomPlayer> players = new LinkedHashMap<>();
+    private final Set<ClientConnection> spectators = new LinkedHashSet<>();
+    private ServerGameLoop gameLoop;
+    private int startCountdown = -1;
+
+    private final SnapshotCodec.State snapshot = new SnapshotCodec.State();
+    private boolean snapshotReady = false;
+    private final SpectatorStream spectatorStream;
+    private final MatchStore matchStore;
+    private final EventLog eventLog;
+    private final long logSubject;
+    private final PolicyPaddles policyPaddles;
+
+    // Written by the tick thread, read by the registry's sweeper
+    private volatile long lastActivityNanos = System.nanoTime();
+    private boolean listingChanged = true;
+
+    public ServerRoom(String id, String mode, int playerCount, String aiDifficulty, BufferPool framePool,
+            MatchStore matchStore, EventLog eventLog, PolicyPaddles policyPaddles) {
+        this.id = id;
+        this.policyPaddles = policyPaddles;
+        this.matchStore = matchStore;
+        this.eventLog = eventLog;
+        this.logSubject = EventLog.subject(id);
+        this.spectatorStream = new SpectatorStream(framePool);
+        this.mode = mode;
+        this.playerCount = playerCount;
+        this.aiDifficulty = aiDifficulty;
+        this.positions = switch (playerCount) {
+            case 3 -> new int[] { 0, 1, 2 };
+            case 4 -> new int[] { 0, 1, 2, 3 };
+            default -> new int[] { 0, 1 };
+        };
+    }
+
+    public static String generateRoomId() {
+        // Short, human-readable room ID; ThreadLocalRandom so creators on different threads don't contend
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        StringBuilder sb = new StringBuilder(6);
+        for (int i = 0; i < 6; i++) {
+            sb.append(ROOM_CODE_CHARS.charAt(random.nextInt(ROOM_CODE_CHARS.length())));
+        }
+        return sb.toString();
+    }
+
+    public void addPlayer(ClientConnection conn, boolean isHost) {
+        int position = getNextAvailablePosition();
+        String playerId = UUID.randomUUID().toString();
+
+        if (position == Protocol.NO_POSITION) {
+            // Room is full, add as spectator
+            spectators.add(conn);
+            spectatorStream.add(conn);
+            touch();
+            conn.joined(this, playerId, Protocol.NO_POSITION);
+            conn.sendReliable(Protocol.EV_ROOM_JOINED, encodeRoomJoined(playerId, Protocol.NO_POSITION, false, true));
+            return;
+        }
+
+        RoomPlayer player = new RoomPlayer(playerId, conn, position, false, isHost || players.isEmpty());
+        players.put(playerId, player);
+        conn.joined(this, playerId, position);
+
+        conn.sendReliable(Protocol.EV_ROOM_JOINED, encodeRoomJoined(playerId, position, player.isHost, false));
+        broadcastRoomUpdate();
+    }
+
+    private void addAIPlayer(int position) {
+        if (getPlayerAtPosition(position) != null)
+            return;
+        String aiId = "ai_" + Protocol.positionName(position);
+        players.put(aiId, new RoomPlayer(aiId, null, position, true, false));
+        broadcastRoomUpdate();
+    }
+
+    private int getNextAvailablePosition() {
+        for (int pos : positions) {
+            if (getPlayerAtPosition(pos) == null)
+                return pos;
+        }
+        return Protocol.NO_POSITION;
+    }
+
+    private RoomPlayer getPlayerAtPosition(int position) {
+        for (RoomPlayer p : players.values()) {
+            if (p.position == position)
+                return p;
+        }
+        return null;
+    }
+
+    public void removeConnection(ClientConnection conn) {
+        String playerId = conn.getPlayerId();
+        conn.leftRoom();
+        if (spectators.remove(conn)) {
+            spectatorStream.remove(conn);
+            touch();
+            return;
+        }
+
+        RoomPlayer player = players.remove(playerId);
+        if (player == null)
+            return;
+
+        // If host left, end the game immediately (LAN Mode Rule)
+        if (player.isHost) {
+            endGame(-1, MatchRecord.END_ABANDONED, player);
+            for (RoomPlayer p : players.values()) {
+                if (p.connection != null)
+                    p.connection.leftRoom();
+            }
+            for (ClientConnection s : spectators) {
+                s.leftRoom();
+            }
+            players.clear();
+            spectators.clear();
+            spectatorStream.clear();
+            listingChanged = true;
+            return;
+        }
+
+        broadcastRoomUpdate();
+
+        if (gameLoop != null && ServerGameLoop.PLAYING.equals(gameLoop.getGameState())) {
+            if ("human_vs_human".equals(mode)) {
+                // Spec: No AI takeover in online mode
+                gameLoop.pause();
+            } else {
+                addAIPlayer(player.position);
+                gameLoop.replaceWithAI(player.position);
+            }
+        }
+    }
+
+    public void toggleReady(ClientConnection conn) {
+        RoomPlayer player = players.get(conn.getPlayerId());
+        if (player == null || player.isAI)
+            return;
+        player.isReady = !player.isReady;
+        broadcastRoomUpdate();
+    }
+
+    private boolean areAllPlayersReady() {
+        for (RoomPlayer p : players.values()) {
+            if (!p.isAI && !p.isReady)
+                return false;
+        }
+        return true;
+    }
+
+    public boolean isHost(ClientConnection conn) {
+        RoomPlayer player = players.get(conn.getPlayerId());
+        return player != null && player.isHost;
+    }
+
+    // Quick play and matched rooms start shortly after they are created, without
+    // waiting for anyone to press ready
+    public void scheduleStart(int ticks) {
+        startCountdown = ticks;
+    }
+
+    public boolean startGame() {
+        return startGame(false);
+    }
+
+    private boolean startGame(boolean scheduled) {
+        if (!scheduled && !areAllPlayersReady() && "human_vs_human".equals(mode))
+            return false;
+
+        // Fill remaining slots with AI
+        for (int pos : positions) {
+            addAIPlayer(pos);
+        }
+
+        gameLoop = new ServerGameLoop(this);
+        gameLoop.start();
+        listingChanged = true;
+        touch();
+        logEvent(EventType.GAME_STARTED, playerCount, 0);
+
+        ByteBuffer buf = ByteBuffer.allocate(2);
+        buf.put((byte) Protocol.modeCode(mode));
+        buf.put((byte) playerCount);
+        broadcast(Protocol.EV_GAME_STARTED, buf.array());
+        return true;
+    }
+
+    // departed is a player already removed from the room who still belongs in the result
+    private void endGame(int winner, int reason, RoomPlayer departed) {
+        if (gameLoop != null && (reason == MatchRecord.END_WIN || !ServerGameLoop.ENDED.equals(gameLoop.getGameState())))
+            recordResult(winner, reason, departed);
+        if (gameLoop != null)
+            gameLoop.stop();
+        listingChanged = true;
+        touch();
+        logEvent(EventType.GAME_ENDED, winner, reason);
+        broadcast(Protocol.EV_GAME_ENDED, new byte[] { (byte) winner, (byte) reason });
+    }
+
+    // Handed to the store's writer thread; never waits, and a full queue only costs this record
+    private void recordResult(int winner, int reason, RoomPlayer departed) {
+        if (matchStore == null)
+            return;
+        MatchRecord r = new MatchRecord();
+        r.durationTicks = gameLoop.getTick();
+        r.mode = Protocol.modeCode(mode);
+        r.playerCount = playerCount;
+        r.aiDifficulty = switch (aiDifficulty) {
+            case "easy" -> 0;
+            case "hard" -> 2;
+            default -> 1;
+        };
+        r.winScore = ServerGameLoop.WIN_SCORE;
+        r.winner = winner < 0 ? MatchRecord.NO_WINNER : winner;
+        r.endReason = reason;
+        for (RoomPlayer p : players.values()) {
+            addParticipant(r, p);
+        }
+        if (departed != null)
+            addParticipant(r, departed);
+        matchStore.offer(r);
+    }
+
+    private void addParticipant(MatchRecord r, RoomPlayer p) {
+        long key = p.isAI || p.connection == null ? MatchRecord.NO_PLAYER : p.connection.getPlayerKey();
+        r.setParticipant(p.position, key, gameLoop.getScore(p.position), p.isAI);
+    }
+
+    public void setInput(ClientConnection conn, int bits) {
+        RoomPlayer player = players.get(conn.getPlayerId());
+        if (player == null || player.isAI || gameLoop == null)
+            return;
+        gameLoop.setInput(player.position, bits);
+    }
+
+    // serverTick is shared by all rooms so snapshot ticks never go backwards for a client
+    public void tick(int serverTick) {
+        snapshotReady = false;
+        if (startCountdown > 0 && --startCountdown == 0) {
+            startCountdown = -1;
+            startGame(true);
+        }
+        if (gameLoop == null || !ServerGameLoop.PLAYING.equals(gameLoop.getGameState()))
+            return;
+
+        if (gameLoop.tick()) {
+            endGame(gameLoop.getWinner(), MatchRecord.END_WIN, null);
+        }
+
+        snapshot.capture(serverTick, gameLoop);
+        snapshotReady = true;
+        lastActivityNanos = System.nanoTime();
+        spectatorStream.publish(snapshot);
+    }
+
+    // State captured this tick, or null when no game is running
+    public SnapshotCodec.State getSnapshot() {
+        return snapshotReady ? snapshot : null;
+    }
+
+    public boolean isSpectator(ClientConnection conn) {
+        return spectators.contains(conn);
+    }
+
+    public SpectatorStream getSpectatorStream() {
+        return spectatorStream;
+    }
+
+    // Returns pooled buffers once the room is removed
+    public void close() {
+        spectatorStream.clear();
+    }
+
+    private void broadcastRoomUpdate() {
+        // Every change in who holds a seat goes through here
+        listingChanged = true;
+        touch();
+        broadcast(Protocol.EV_ROOM_UPDATE, encodeRoomUpdate());
+    }
+
+    // Tick thread only, like everything else on the room
+    void logEvent(EventType type, int a, int b) {
+        eventLog.record(type, logSubject, a, b);
+    }
+
+    private void touch() {
+        lastActivityNanos = System.nanoTime();
+    }
+
+    public long getLastActivityNanos() {
+        return lastActivityNanos;
+    }
+
+    // True once after anything that can move the room in or out of the open listing
+    boolean takeListingChange() {
+        boolean changed = listingChanged;
+        listingChanged = false;
+        return changed;
+    }
+
+    // Waiting for players with a seat a human can take
+    public boolean isOpen() {
+        return gameLoop == null && !players.isEmpty() && getNextAvailablePosition() != Protocol.NO_POSITION;
+    }
+
+    // Lobby listing entry: string id, u8 mode, u8 humans, u8 player count
+    public void encodeListing(ByteBuffer buf) {
+        int humans = 0;
+        for (RoomPlayer p : players.values()) {
+            if (!p.isAI)
+                humans++;
+        }
+        Protocol.putString(buf, id);
+        buf.put((byte) Protocol.modeCode(mode));
+        buf.put((byte) humans);
+        buf.put((byte) playerCount);
+    }
+
+    private void broadcast(int event, byte[] payload) {
+        for (ClientConnection conn : members()) {
+            conn.sendReliable(event, payload);
+        }
+    }
+
+    public List<ClientConnection> members() {
+        List<ClientConnection> list = new ArrayList<>(players.size() + spectators.size());
+        for (RoomPlayer p : players.values()) {
+            if (p.connection != null)
+                list.add(p.connection);
+        }
+        list.addAll(spectators);
+        return list;
+    }
+
+    private byte[] encodeRoomJoined(String playerId, int position, boolean isHost, boolean isSpectator) {
+        ByteBuffer buf = ByteBuffer.allocate(Protocol.MTU);
+        Protocol.putString(buf, id);
+        Protocol.putString(buf, playerId);
+        buf.put((byte) position);
+        buf.put((byte) ((isHost ? 1 : 0) | (isSpectator ? 2 : 0)));
+        buf.put((byte) Protocol.modeCode(mode));
+        buf.put((byte) playerCount);
+        encodePlayers(buf);
+        return toArray(buf);
+    }
+
+    private byte[] encodeRoomUpdate() {
+        ByteBuffer buf = ByteBuffer.allocate(Protocol.MTU);
+        buf.put((byte) (areAllPlayersReady() ? 1 : 0));
+        encodePlayers(buf);
+        return toArray(buf);
+    }
+
+    // u8 count, then per player: string id, u8 position, u8 flags (1 AI, 2 host, 4 ready)
+    private void encodePlayers(ByteBuffer buf) {
+        buf.put((byte) players.size());
+        for (RoomPlayer p : players.values()) {
+            Protocol.putString(buf, p.id);
+            buf.put((byte) p.position);
+            buf.put((byte) ((p.isAI ? 1 : 0) | (p.isHost ? 2 : 0) | (p.isReady ? 4 : 0)));
+        }
+    }
+
+    private static byte[] toArray(ByteBuffer buf) {
+        byte[] out = new byte[buf.position()];
+        buf.flip();
+        buf.get(out);
+        return out;
+    }
+
+    public boolean isEmpty() {
+        for (RoomPlayer p : players.values()) {
+            if (!p.isAI)
+                return false;
+        }
+        return spectators.isEmpty();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public int[] getPositionSlots() {
+        return positions;
+    }
+
+    public boolean isAIPosition(int position) {
+        RoomPlayer p = getPlayerAtPosition(position);
+        return p == null || p.isAI;
+    }
+
+    public String getAiDifficulty() {
+        return aiDifficulty;
+    }
+
+    // Null unless the server plays AI positions with a policy net
+    PolicyPaddles getPolicyPaddles() {
+        return policyPaddles;
+    }
+
+    public String getGameState() {
+        return gameLoop == null ? ServerGameLoop.WAITING : gameLoop.getGameState();
+    }
+}
@@ -0,0 +1,252 @@
+package com.ponggame.server;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Binary game state snapshot carried in the SNAPSHOT section of a DATA packet.
+ * Positions are u16 in 1/32 px with a 64 px offset (the ball leaves the arena
+ * before a point is scored); velocities are i16 in 1/256 px per tick.
+ *
+ * <pre>
+ *   u32 tick  u8 kind
+ *   kind 0, keyframe:
+ *     u8 gameState  u16 ballX ballY  i16 ballVX ballVY  u8 activeMask
+ *     per active position: u16 x  u16 y  u16 width  u16 height  u8 score
+ *   kind 1, delta against a snapshot the client acknowledged:
+ *     u32 baseTick  u16 fieldMask, then only the fields whose bit is set:
+ *     gameState, ball position, ball velocity, paddle x/y per position, score per position
+ * </pre>
+ *
+ * A four player keyframe is 51 bytes; a typical delta is about 25.
+ */
+public final class SnapshotCodec {
+
+    public static final String[] GAME_STATES = {
+            ServerGameLoop.WAITING, ServerGameLoop.PLAYING, ServerGameLoop.PAUSED, ServerGameLoop.ENDED
+    };
+
+    public static final int KEYFRAME = 0;
+    public static final int DELTA = 1;
+
+    // Delta field mask bits
+    public static final int F_STATE = 1;
+    public static final int F_BALL_POS = 1 << 1;
+    public static final int F_BALL_VEL = 1 << 2;
+    public static final int F_PADDLE = 1 << 3; // shifted by position
+    public static final int F_SCORE = 1 << 7; // shifted by position
+
+    // Quantized copy of the game state at one tick
+    public static class State {
+        public int tick;
+        public int gameState;
+        public int ballX, ballY, ballVX, ballVY;
+        public int activeMask;
+        public final int[] paddleX = new int[4];
+        public final int[] paddleY = new int[4];
+        public final int[] paddleW = new int[4];
+        public final int[] paddleH = new int[4];
+        public final int[] scores = new int[4];
+
+        public void copyFrom(State o) {
+            tick = o.tick;
+            gameState = o.gameState;
+            ballX = o.ballX;
+            ballY = o.ballY;
+            ballVX = o.ballVX;
+            ballVY = o.ballVY;
+            activeMask = o.activeMask;
+            System.arraycopy(o.paddleX, 0, paddleX, 0, 4);
+            System.arraycopy(o.paddleY, 0, paddleY, 0, 4);
+            System.arraycopy(o.paddleW, 0, paddleW, 0, 4);
+            System.arraycopy(o.paddleH, 0, paddleH, 0, 4);
+            System.arraycopy(o.scores, 0, scores, 0, 4);
+        }
+
+        public void capture(int tick, ServerGameLoop loop) {
+            this.tick = tick;
+            gameState = gameStateCode(loop.getGameState());
+            ballX = quantizePos(loop.getBallX());
+            ballY = quantizePos(loop.getBallY());
+            ballVX = quantizeVel(loop.getBallVX());
+            ballVY = quantizeVel(loop.getBallVY());
+            activeMask = 0;
+            for (int pos = 0; pos < 4; pos++) {
+                if (!loop.isActive(pos))
+                    continue;
+                activeMask |= 1 << pos;
+                paddleX[pos] = quantizePos(loop.getPaddleX(pos));
+                paddleY[pos] = quantizePos(loop.getPaddleY(pos));
+                paddleW[pos] = (int) loop.getPaddleWidth(pos);
+                paddleH[pos] = (int) loop.getPaddleHeight(pos);
+                scores[pos] = loop.getScore(pos);
+            }
+        }
+    }
+
+    private SnapshotCodec() {
+    }
+
+    public static int quantizePos(double v) {
+        return (int) Math.max(0, Math.min(0xFFFF, Math.round((v + 64) * 32)));
+    }
+
+    public static int quantizeVel(double v) {
+        return (int) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(v * 256)));
+    }
+
+    public static void encodeKeyframe(ByteBuffer buf, State s) {
+        buf.putInt(s.tick);
+        buf.put((byte) KEYFRAME);
+        buf.put((byte) s.gameState);
+        buf.putShort((short) s.ballX);
+        buf.putShort((short) s.ballY);
+        buf.putShort((short) s.ballVX);
+        buf.putShort((short) s.ballVY);
+        buf.put((byte) s.activeMask);
+        for (int pos = 0; pos < 4; pos++) {
+            if ((s.activeMask & (1 << pos)) == 0)
+                continue;
+            buf.putShort((short) s.paddleX[pos]);
+            buf.putShort((short) s.paddleY[pos]);
+            buf.putShort((short) s.paddleW[pos]);
+            buf.putShort((short) s.paddleH[pos]);
+            buf.put((byte) s.scores[pos]);
+        }
+    }
+
+    /**
+     * Fields of s that differ from base. Paddles outside paddleFilter are left out
+     * even if they moved; the client keeps the baseline value until a later delta.
+     */
+    public static int changedFields(State s, State base, int paddleFilter) {
+        int mask = 0;
+        if (s.gameState != base.gameState)
+            mask |= F_STATE;
+        if (s.ballX != base.ballX || s.ballY != base.ballY)
+            mask |= F_BALL_POS;
+        if (s.ballVX != base.ballVX || s.ballVY != base.ballVY)
+            mask |= F_BALL_VEL;
+        for (int pos = 0; pos < 4; pos++) {
+            if ((s.activeMask & (1 << pos)) == 0)
+                continue;
+            if ((paddleFilter & (1 << pos)) != 0
+                    && (s.paddleX[pos] != base.paddleX[pos] || s.paddleY[pos] != base.paddleY[pos]))
+                mask |= F_PADDLE << pos;
+            if (s.scores[pos] != base.scores[pos])
+                mask |= F_SCORE << pos;
+        }
+        return mask;
+    }
+
+    public static void encodeDelta(ByteBuffer buf, State s, State base, int fields) {
+        buf.putInt(s.tick);
+        buf.put((byte) DELTA);
+        buf.putInt(base.tick);
+        buf.putShort((short) fields);
+        if ((fields & F_STATE) != 0)
+            buf.put((byte) s.gameState);
+        if ((fields & F_BALL_POS) != 0) {
+            buf.putShort((short) s.ballX);
+            buf.putShort((short) s.ballY);
+        }
+        if ((fields & F_BALL_VEL) != 0) {
+            buf.putShort((short) s.ballVX);
+            buf.putShort((short) s.ballVY);
+        }
+        for (int pos = 0; pos < 4; pos++) {
+            if ((fields & (F_PADDLE << pos)) != 0) {
+                buf.putShort((short) s.paddleX[pos]);
+                buf.putShort((short) s.paddleY[pos]);
+            }
+        }
+        for (int pos = 0; pos < 4; pos++) {
+            if ((fields & (F_SCORE << pos)) != 0)
+                buf.put((byte) s.scores[pos]);
+        }
+    }
+
+    /**
+     * Reads a snapshot section, the inverse of the encoders. history is a ring of
+     * decoded states indexed by tick (its length a power of two); a delta is applied
+     * to the baseline it names. Returns null if that baseline is no longer there.
+     */
+    public static State decode(ByteBuffer buf, State[] history) {
+        int tick = buf.getInt();
+        int kind = buf.get();
+        State s = history[tick & (history.length - 1)];
+
+        if (kind == KEYFRAME) {
+            s.gameState = buf.get();
+            s.ballX = buf.getShort() & 0xFFFF;
+            s.ballY = buf.getShort() & 0xFFFF;
+            s.ballVX = buf.getShort();
+            s.ballVY = buf.getShort();
+            s.activeMask = buf.get();
+            for (int pos = 0; pos < 4; pos++) {
+                if ((s.activeMask & (1 << pos)) == 0)
+                    continue;
+                s.paddleX[pos] = buf.getShort() & 0xFFFF;
+                s.paddleY[pos] = buf.getShort() & 0xFFFF;
+                s.paddleW[pos] = buf.getShort() & 0xFFFF;
+                s.paddleH[pos] = buf.getShort() & 0xFFFF;
+                s.scores[pos] = buf.get() & 0xFF;
+            }
+            s.tick = tick;
+            return s;
+        }
+
+        int baseTick = buf.getInt();
+        State base = history[baseTick & (history.length - 1)];
+        if (base.tick != baseTick || base == s)
+            return null;
+        int fields = buf.getShort() & 0xFFFF;
+        s.copyFrom(base);
+        s.tick = tick;
+        if ((fields & F_STATE) != 0)
+            s.gameState = buf.get();
+        if ((fields & F_BALL_POS) != 0) {
+            s.ballX = buf.getShort() & 0xFFFF;
+            s.ballY = buf.getShort() & 0xFFFF;
+        }
+        if ((fields & F_BALL_VEL) != 0) {
+            s.ballVX = buf.getShort();
+            s.ballVY = buf.getShort();
+        }
+        for (int pos = 0; pos < 4; pos++) {
+            if ((fields & (F_PADDLE << pos)) != 0) {
+                s.paddleX[pos] = buf.getShort() & 0xFFFF;
+                s.paddleY[pos] = buf.getShort() & 0xFFFF;
+            }
+        }
+        for (int pos = 0; pos < 4; pos++) {
+            if ((fields & (F_SCORE << pos)) != 0)
+                s.scores[pos] = buf.get() & 0xFF;
+        }
+        return s;
+    }
+
+    public static int keyframeSize(State s) {
+        return 5 + 10 + 9 * Integer.bitCount(s.activeMask);
+    }
+
+    public static int deltaSize(int fields) {
+        int size = 11;
+        if ((fields & F_STATE) != 0)
+            size += 1;
+        if ((fields & F_BALL_POS) != 0)
+            size += 4;
+        if ((fields & F_BALL_VEL) != 0)
+            size += 4;
+        size += 4 * Integer.bitCount(fields & (0xF * F_PADDLE));
+        size += Integer.bitCount(fields & (0xF * F_SCORE));
+        return size;
+    }
+
+    public static int gameStateCode(String state) {
+        for (int i = 0; i < GAME_STATES.length; i++) {
+            if (GAME_STATES[i].equals(state))
+                return i;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,93 @@
+package com.ponggame.server;
+
+/**
+ * Chooses how often one client gets a snapshot, how often that snapshot is a full
+ * keyframe, and whether distant paddles may be left out, from that client's own
+ * link estimates. A congested client slows down alone; nothing is queued for it,
+ * it simply skips ticks.
+ */
+public class SnapshotRateController {
+
+    // UDP + IPv4 header bytes per datagram
+    private static final int DATAGRAM_OVERHEAD = 28;
+    private static final int MAX_INTERVAL = 6;
+    private static final int STABLE_WINDOWS_TO_RECOVER = 3;
+
+    private static final double CONGESTED_LOSS = 0.05;
+    private static final double LOSSY_LINK = 0.02;
+
+    private final int budgetBytesPerSecond;
+    private int minInterval = 1;
+    private int interval = 1;
+    private int keyframeInterval = 120;
+    private boolean trimDistantPaddles = false;
+    private int stableWindows = 0;
+    private double avgPacketBytes = 60;
+    private int lastSentTick = Integer.MIN_VALUE / 2;
+
+    public SnapshotRateController(int budgetBytesPerSecond) {
+        this.budgetBytesPerSecond = budgetBytesPerSecond;
+    }
+
+    public boolean isDue(int tick) {
+        return tick - lastSentTick >= interval;
+    }
+
+    public void onSnapshotSent(int tick, int packetBytes) {
+        lastSentTick = tick;
+        avgPacketBytes = 0.9 * avgPacketBytes + 0.1 * (packetBytes + DATAGRAM_OVERHEAD);
+    }
+
+    // Upper bound requested by the client itself, e.g. to save battery
+    public void setMaxRate(int hz) {
+        int tickRate = ServerGameLoop.TICK_RATE;
+        minInterval = hz <= 0 ? 1 : Math.max(1, Math.min(MAX_INTERVAL, (tickRate + hz - 1) / hz));
+        interval = Math.max(interval, minInterval);
+    }
+
+    // Called once per LinkEstimator window
+    public void adapt(LinkEstimator link) {
+        double rtt = link.getSmoothedRttMillis();
+        double minRtt = link.getMinRttMillis();
+        boolean queueing = rtt > 2 * minRtt && rtt > minRtt + 40;
+        boolean congested = link.getLossRate() > CONGESTED_LOSS || queueing;
+        boolean overBudget = projectedBytesPerSecond(interval) > budgetBytesPerSecond;
+
+        if (congested || overBudget) {
+            stableWindows = 0;
+            if (overBudget && !trimDistantPaddles) {
+                // Give up distant paddle updates before slowing the ball down
+                trimDistantPaddles = true;
+            } else {
+                interval = Math.min(MAX_INTERVAL, interval * 2);
+            }
+        } else if (++stableWindows >= STABLE_WINDOWS_TO_RECOVER) {
+            stableWindows = 0;
+            if (interval > minInterval && projectedBytesPerSecond(interval - 1) <= budgetBytesPerSecond) {
+                interval--;
+            } else if (trimDistantPaddles && projectedBytesPerSecond(interval) * 1.25 < budgetBytesPerSecond) {
+                trimDistantPaddles = false;
+            }
+        }
+        interval = Math.max(interval, minInterval);
+
+        // Deltas need an acked baseline; on lossy links refresh it more often
+        keyframeInterval = link.getLossRate() > LOSSY_LINK ? 20 : 120;
+    }
+
+    private double projectedBytesPerSecond(int interval) {
+        return avgPacketBytes * ServerGameLoop.TICK_RATE / interval;
+    }
+
+    public int getInterval() {
+        return interval;
+    }
+
+    public int getKeyframeInterval() {
+        return keyframeInterval;
+    }
+
+    public boolean isTrimmingDistantPaddles() {
+        return trimDistantPaddles;
+    }
+}
@@ -0,0 +1,182 @@
+package com.ponggame.server;
+
+import com.ponggame.net.BufferPool;
+import com.ponggame.net.Protocol;
+import com.ponggame.net.UdpServer;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Snapshot fan-out for a room's spectators. Every few ticks the room state is
+ * encoded once, as a complete DATA packet carrying a keyframe, into a pooled
+ * direct buffer. Each spectator then gets that same buffer: only the token and
+ * ack fields of the header are patched in place before the send, so the cost per
+ * viewer is one syscall and no encoding or copying.
+ *
+ * A spectator holds at most one frame. If it could not be sent before the next
+ * one is published (the socket buffer was full, or the tick's fan-out budget ran
+ * out), the old frame is dropped and the spectator skips to the latest.
+ */
+public class SpectatorStream {
+
+    // 20 Hz is plenty for watching; players get their own adaptive stream
+    private static final int INTERVAL = 3;
+    // Check the clock this often rather than on every send
+    private static final int DEADLINE_CHECK_EVERY = 64;
+
+    private static final int TOKEN_OFFSET = 4;
+    private static final int ACK_OFFSET = Protocol.HEADER_SIZE;
+    private static final int ACK_BITS_OFFSET = ACK_OFFSET + 2;
+
+    private static class Subscriber {
+        final ClientConnection connection;
+        int index;
+        BufferPool.Frame pending;
+
+        Subscriber(ClientConnection connection, int index) {
+            this.connection = connection;
+            this.index = index;
+        }
+    }
+
+    private final BufferPool pool;
+    private final List<Subscriber> subscribers = new ArrayList<>();
+    private final Map<ClientConnection, Subscriber> byConnection = new HashMap<>();
+    private BufferPool.Frame latest;
+    private int cursor = 0;
+    private int ticksSincePublish = INTERVAL;
+
+    private long framesEncoded = 0;
+    private long framesSent = 0;
+    private long framesSkipped = 0;
+
+    public SpectatorStream(BufferPool pool) {
+        this.pool = pool;
+    }
+
+    public void add(ClientConnection conn) {
+        if (byConnection.containsKey(conn))
+            return;
+        Subscriber sub = new Subscriber(conn, subscribers.size());
+        subscribers.add(sub);
+        byConnection.put(conn, sub);
+        if (latest != null)
+            sub.pending = latest.retain();
+    }
+
+    public void remove(ClientConnection conn) {
+        Subscriber sub = byConnection.remove(conn);
+        if (sub == null)
+            return;
+        if (sub.pending != null)
+            sub.pending.release();
+        // Swap-remove keeps removal O(1) for large audiences
+        Subscriber last = subscribers.remove(subscribers.size() - 1);
+        if (last != sub) {
+            last.index = sub.index;
+            subscribers.set(sub.index, last);
+        }
+        if (cursor >= subscribers.size())
+            cursor = 0;
+    }
+
+    public void clear() {
+        for (Subscriber sub : subscribers) {
+            if (sub.pending != null)
+                sub.pending.release();
+        }
+        subscribers.clear();
+        byConnection.clear();
+        if (latest != null) {
+            latest.release();
+            latest = null;
+        }
+        cursor = 0;
+    }
+
+    // Encodes the state once if a spectator frame is due this tick
+    public void publish(SnapshotCodec.State state) {
+        if (subscribers.isEmpty() || ++ticksSincePublish < INTERVAL)
+            return;
+        ticksSincePublish = 0;
+
+        BufferPool.Frame frame = pool.acquire();
+        ByteBuffer buf = frame.buffer();
+        Protocol.writeHeader(buf, Protocol.DATA, 0);
+        buf.putShort((short) 0); // ack, patched per spectator
+        buf.putInt(0); // ackBits, patched per spectator
+        buf.putInt(0); // stamp: spectators send no input
+        buf.putShort((short) 0); // received
+        buf.put((byte) Protocol.FLAG_SNAPSHOT);
+        SnapshotCodec.encodeKeyframe(buf, state);
+        frame.seal();
+        framesEncoded++;
+
+        if (latest != null)
+            latest.release();
+        latest = frame;
+        for (Subscriber sub : subscribers) {
+            if (sub.pending != null) {
+                sub.pending.release();
+                framesSkipped++;
+            }
+            sub.pending = frame.retain();
+        }
+    }
+
+    /**
+     * Sends pending frames round-robin until everyone is served, the socket send
+     * buffer fills up or the deadline passes. Whoever is left over keeps their
+     * frame for the next tick.
+     */
+    public void fanOut(UdpServer udp, long deadlineNanos) {
+        int count = subscribers.size();
+        for (int i = 0; i < count; i++) {
+            if (i % DEADLINE_CHECK_EVERY == DEADLINE_CHECK_EVERY - 1 && System.nanoTime() > deadlineNanos)
+                return;
+            Subscriber sub = subscribers.get(cursor);
+            if (sub.pending != null) {
+                if (!send(udp, sub))
+                    return;
+                sub.pending.release();
+                sub.pending = null;
+                framesSent++;
+            }
+            if (++cursor >= count)
+                cursor = 0;
+        }
+    }
+
+    private static boolean send(UdpServer udp, Subscriber sub) {
+        ClientConnection conn = sub.connection;
+        ByteBuffer buf = sub.pending.buffer();
+        buf.putInt(TOKEN_OFFSET, conn.getToken());
+        buf.putShort(ACK_OFFSET, (short) conn.getChannel().getAck());
+        buf.putInt(ACK_BITS_OFFSET, conn.getChannel().getAckBits());
+        buf.limit(sub.pending.length()).position(0);
+        if (!udp.trySend(conn.getAddress(), buf))
+            return false;
+        conn.getChannel().clearAckPending();
+        return true;
+    }
+
+    public int size() {
+        return subscribers.size();
+    }
+
+    public long getFramesEncoded() {
+        return framesEncoded;
+    }
+
+    public long getFramesSent() {
+        return framesSent;
+    }
+
+    public long getFramesSkipped() {
+        return framesSkipped;
+    }
+}
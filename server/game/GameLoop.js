@@ -7,6 +7,12 @@
 
 const AIController = require('./AIController');
 
+// Control bits used by inputBatch packets
+const INPUT_UP = 1;
+const INPUT_DOWN = 2;
+const INPUT_LEFT = 4;
+const INPUT_RIGHT = 8;
+
 class GameLoop {
     constructor(room) {
         this.room = room;
@@ -27,6 +33,7 @@ class GameLoop {
 
         // Player input states - KEY FIX: stored per player, applied every tick
         this.playerInputs = {}; // playerId -> { direction: 'up'|'down'|'left'|'right'|'stop' }
+        this.inputSequences = {}; // playerId -> newest applied inputBatch sequence number
 
         // AI controllers
         this.aiControllers = {};
@@ -196,6 +203,35 @@ class GameLoop {
         this.playerInputs[playerId] = { direction: direction };
     }
 
+    /**
+     * Called for binary input packets: [seq u16][count][bitmask x count], newest first.
+     * Packets repeat earlier samples, so anything at or behind the newest applied
+     * sequence is a duplicate or arrived out of order and is dropped.
+     */
+    handleInputBatch(playerId, packet) {
+        if (!Buffer.isBuffer(packet) || packet.length < 4) return;
+
+        const seq = packet.readUInt16BE(0);
+        const count = packet[2];
+        if (count < 1 || packet.length < 3 + count) return;
+
+        const lastSeq = this.inputSequences[playerId];
+        if (lastSeq !== undefined) {
+            const delta = (seq - lastSeq) & 0xFFFF;
+            if (delta === 0 || delta >= 0x8000) return;
+        }
+        this.inputSequences[playerId] = seq;
+
+        const bits = packet[3];
+        let direction = 'stop';
+        if (bits & INPUT_UP) direction = 'up';
+        else if (bits & INPUT_DOWN) direction = 'down';
+        else if (bits & INPUT_LEFT) direction = 'left';
+        else if (bits & INPUT_RIGHT) direction = 'right';
+
+        this.handleInput(playerId, direction);
+    }
+
     updateAI() {
         for (const [pos, ai] of Object.entries(this.aiControllers)) {
             const paddle = this.paddles[pos];
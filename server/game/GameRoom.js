@@ -318,6 +318,15 @@ class GameRoom {
         }
     }
 
+    handleInputBatch(playerId, packet) {
+        const player = this.players.get(playerId);
+        if (!player || player.isAI) return;
+
+        if (this.gameLoop) {
+            this.gameLoop.handleInputBatch(playerId, packet);
+        }
+    }
+
     broadcast(message) {
         this.io.to(this.id).emit('gameMessage', message);
     }
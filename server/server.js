@@ -194,6 +194,13 @@ io.on('connection', (socket) => {
         currentRoom.handleInput(playerId, data.direction);
     });
 
+    // Sampled, sequence-numbered input packets (Android client)
+    socket.on('inputBatch', (packet) => {
+        if (!currentRoom || !playerId) return;
+
+        currentRoom.handleInputBatch(playerId, packet);
+    });
+
     // Disconnect handling
     socket.on('disconnect', () => {
         console.log(`Player disconnected: ${socket.id}`);